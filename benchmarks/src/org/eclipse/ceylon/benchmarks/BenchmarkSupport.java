@@ -0,0 +1,73 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.io.File;
+
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.ceylon.CeylonUtils;
+import org.eclipse.ceylon.compiler.typechecker.TypeChecker;
+import org.eclipse.ceylon.compiler.typechecker.TypeCheckerBuilder;
+import org.eclipse.ceylon.compiler.typechecker.io.cmr.impl.LeakingLogger;
+
+/**
+ * Locations and setup shared by the benchmarks. The locations
+ * are passed as system properties by the <tt>jmh</tt> task.
+ */
+final class BenchmarkSupport {
+
+    private BenchmarkSupport() {}
+
+    static File getSystemRepo() {
+        return new File(System.getProperty("ceylon.system.repo", 
+                "../build/distribution/repo"));
+    }
+
+    /**
+     * The small corpus of this project.
+     */
+    static File getCorpus(String name) {
+        return new File(System.getProperty("benchmark.corpus", 
+                "corpus"), name);
+    }
+
+    /**
+     * The corpus to type check, which is the type checker 
+     * test suite by default.
+     */
+    static File getTypeCheckerCorpus() {
+        return new File(System.getProperty("benchmark.typechecker.corpus", 
+                "../typechecker/test/main"));
+    }
+
+    static RepositoryManager getRepositoryManager() {
+        return CeylonUtils.repoManager()
+                .systemRepo(getSystemRepo().getPath())
+                .logger(new LeakingLogger())
+                .buildManager();
+    }
+
+    /**
+     * A type checker for the given source directory, which
+     * has parsed it but not type checked it yet.
+     */
+    static TypeChecker getTypeChecker(RepositoryManager repositoryManager, 
+            File sourceDirectory, int parallelism) {
+        File dir = sourceDirectory;
+        if (!dir.isDirectory()) {
+            throw new IllegalStateException("Missing corpus: " + dir);
+        }
+        return new TypeCheckerBuilder()
+                .setRepositoryManager(repositoryManager)
+                .parallelism(parallelism)
+                .addSrcDirectory(dir)
+                .getTypeChecker();
+    }
+}
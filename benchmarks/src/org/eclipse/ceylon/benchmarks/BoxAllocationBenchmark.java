@@ -0,0 +1,144 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.compiler.java.language.AbstractCallable;
+import org.eclipse.ceylon.compiler.java.runtime.model.TypeDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ceylon.language.Array;
+import ceylon.language.Character;
+import ceylon.language.Entry;
+import ceylon.language.Integer;
+import ceylon.language.Iterator;
+import ceylon.language.String;
+import ceylon.language.finished_;
+
+/**
+ * Common <tt>Iterable</tt> pipelines which box an
+ * <tt>Integer</tt> or a <tt>Character</tt> for every element.
+ * Run with <tt>-prof gc</tt>, the <tt>gc.alloc.rate.norm</tt>
+ * column gives the bytes allocated per pipeline.
+ *
+ * The elements are either in the range of the box caches of
+ * <tt>Integer.instance()</tt> and <tt>Character.instance()</tt>,
+ * or outside it, where every box is allocated, as all boxes
+ * were before the caches were added. Comparing the two, or
+ * the results of builds with and without the caches, gives
+ * the allocation the caches save.
+ *
+ * It's here rather than in the <tt>language</tt> project,
+ * which only wraps the Ant build of the language module and
+ * has no Java source set to run JMH from, and it benchmarks
+ * the language module as it's published, like the other
+ * runtime benchmarks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoxAllocationBenchmark {
+
+    private static final TypeDescriptor INTEGER_ARGUMENT =
+            TypeDescriptor.tuple(false, false, -1, Integer.$TypeDescriptor$);
+    private static final TypeDescriptor INTEGER_ARGUMENTS =
+            TypeDescriptor.tuple(false, false, -1,
+                    Integer.$TypeDescriptor$, Integer.$TypeDescriptor$);
+
+    private static final AbstractCallable<Integer> successor =
+            new AbstractCallable<Integer>(Integer.$TypeDescriptor$,
+                    INTEGER_ARGUMENT, "Integer(Integer)", (short)-1) {
+        @Override
+        public Integer $call$(java.lang.Object x) {
+            return Integer.instance(((Integer) x).longValue() + 1);
+        }
+    };
+    private static final AbstractCallable<Integer> count =
+            new AbstractCallable<Integer>(Integer.$TypeDescriptor$,
+                    INTEGER_ARGUMENTS, "Integer(Integer, Integer)", (short)-1) {
+        @Override
+        public Integer $call$(java.lang.Object count, java.lang.Object x) {
+            // stays in the cached range whatever the elements are
+            return Integer.instance((((Integer) count).longValue() + 1) & 0xff);
+        }
+    };
+
+    @Param({"1000"})
+    public int size;
+
+    /**
+     * Whether the elements are in the range of the box caches
+     */
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private Array<Integer> integers;
+    private String characters;
+
+    @Setup
+    public void setup() {
+        long first = cached ? 0 : 1 << 20;
+        Integer[] integerArray = new Integer[size];
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            integerArray[i] = Integer.instance(first + i % 1000);
+            sb.appendCodePoint((int) (first + 'a' + i % 26));
+        }
+        integers = Array.instance(integerArray);
+        characters = String.instance(sb.toString());
+    }
+
+    @Benchmark
+    public long mapFold() {
+        return integers.map(Integer.$TypeDescriptor$, successor)
+                .fold(Integer.$TypeDescriptor$, Integer.instance(0), count)
+                .longValue();
+    }
+
+    @Benchmark
+    public long indexed() {
+        long sum = 0;
+        Iterator<? extends Entry<? extends Integer, ? extends Integer>> it =
+                integers.getIndexed().iterator();
+        java.lang.Object next;
+        while (!((next = it.next()) instanceof finished_)) {
+            @SuppressWarnings("unchecked")
+            Entry<? extends Integer, ? extends Integer> entry =
+                    (Entry<? extends Integer, ? extends Integer>) next;
+            sum += entry.getKey().longValue() + entry.getItem().longValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long characters() {
+        long sum = 0;
+        Iterator<? extends Character> it = characters.iterator();
+        java.lang.Object next;
+        while (!((next = it.next()) instanceof finished_)) {
+            sum += ((Character) next).intValue();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,155 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.compiler.typechecker.TypeChecker;
+import org.eclipse.ceylon.model.typechecker.model.Class;
+import org.eclipse.ceylon.model.typechecker.model.ClassOrInterface;
+import org.eclipse.ceylon.model.typechecker.model.Declaration;
+import org.eclipse.ceylon.model.typechecker.model.Interface;
+import org.eclipse.ceylon.model.typechecker.model.Module;
+import org.eclipse.ceylon.model.typechecker.model.Package;
+import org.eclipse.ceylon.model.typechecker.model.TypeDeclaration;
+import org.eclipse.ceylon.model.typechecker.model.Unit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <tt>TypeDeclaration.inherits()</tt> between every pair of
+ * classes and interfaces of <tt>ceylon.language</tt>, 
+ * between a deep subtype and one of its distant supertypes,
+ * and between the bottom and the top of chains of ten to a
+ * thousand classes, to show how the time scales with the
+ * depth of the hierarchy.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InheritanceBenchmark {
+
+    private TypeDeclaration[] declarations;
+    private TypeDeclaration arraySequence;
+    private TypeDeclaration category;
+
+    @Setup
+    public void setup() {
+        TypeChecker typeChecker =
+                BenchmarkSupport.getTypeChecker(
+                        BenchmarkSupport.getRepositoryManager(),
+                        BenchmarkSupport.getCorpus("hierarchy"), 1);
+        typeChecker.process(true);
+        Module languageModule =
+                typeChecker.getContext().getModules()
+                    .getLanguageModule();
+        Package pkg =
+                languageModule.getDirectPackage(
+                        Module.LANGUAGE_MODULE_NAME);
+        List<TypeDeclaration> list =
+                new ArrayList<TypeDeclaration>();
+        for (Declaration member: pkg.getMembers()) {
+            if (member instanceof ClassOrInterface
+                    && !((ClassOrInterface) member).isAlias()) {
+                list.add((TypeDeclaration) member);
+            }
+        }
+        declarations = list.toArray(new TypeDeclaration[list.size()]);
+        arraySequence = declaration(pkg, "ArraySequence");
+        category = declaration(pkg, "Category");
+    }
+
+    private static TypeDeclaration declaration(Package pkg, String name) {
+        TypeDeclaration dec = (TypeDeclaration)
+                pkg.getDirectMember(name, null, false);
+        if (dec == null) {
+            throw new IllegalStateException("Missing declaration: " + name);
+        }
+        return dec;
+    }
+
+    /**
+     * A chain of classes, each satisfying an interface of
+     * its own, and the interface at the top of the chain.
+     */
+    @State(Scope.Thread)
+    public static class Chain {
+        @Param({"10", "100", "1000"})
+        public int depth;
+
+        private Class bottom;
+        private Interface top;
+
+        @Setup
+        public void setup() {
+            Unit unit = new Unit();
+            Package pkg = new Package();
+            pkg.setName(Collections.singletonList("chain"));
+            unit.setPackage(pkg);
+            top = declaration(new Interface(), "Top", unit);
+            Class c = declaration(new Class(), "C0", unit);
+            c.getSatisfiedTypes().add(top.getType());
+            for (int i = 1; i < depth; i++) {
+                Class sub = declaration(new Class(), "C" + i, unit);
+                sub.setExtendedType(c.getType());
+                Interface iface = declaration(new Interface(), "I" + i, unit);
+                sub.getSatisfiedTypes().add(iface.getType());
+                c = sub;
+            }
+            bottom = c;
+        }
+
+        private static <T extends ClassOrInterface> T declaration(T dec, String name, Unit unit) {
+            dec.setName(name);
+            dec.setUnit(unit);
+            dec.setContainer(unit.getPackage());
+            return dec;
+        }
+    }
+
+    @Benchmark
+    public int inheritsAllPairs() {
+        TypeDeclaration[] decs = declarations;
+        int count = 0;
+        for (int i = 0; i < decs.length; i++) {
+            for (int j = 0; j < decs.length; j++) {
+                if (decs[i].inherits(decs[j])) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public boolean inheritsDistantSupertype() {
+        return arraySequence.inherits(category);
+    }
+
+    @Benchmark
+    public boolean inheritsTopOfChain(Chain chain) {
+        return chain.bottom.inherits(chain.top);
+    }
+}
@@ -0,0 +1,163 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.compiler.java.language.AbstractCallable;
+import org.eclipse.ceylon.compiler.java.runtime.model.TypeDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ceylon.language.Array;
+import ceylon.language.Boolean;
+import ceylon.language.Float;
+import ceylon.language.Integer;
+import ceylon.language.Iterator;
+import ceylon.language.finished_;
+
+/**
+ * The pipeline <tt>xs.map((x) => x*2).filter((x) => x%3 != 0)
+ * .fold(0, (sum, x) => sum+x)</tt>, and its <tt>Float</tt>
+ * counterpart, both as the runtime calls which are made
+ * without the <tt>IterableFusion</tt> optimization and as the
+ * single loop with an unboxed accumulator which the compiler
+ * emits with it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IterablePipelineBenchmark {
+
+    private static final TypeDescriptor INTEGER_ARGUMENT =
+            TypeDescriptor.tuple(false, false, -1, Integer.$TypeDescriptor$);
+    private static final TypeDescriptor INTEGER_ARGUMENTS =
+            TypeDescriptor.tuple(false, false, -1,
+                    Integer.$TypeDescriptor$, Integer.$TypeDescriptor$);
+    private static final TypeDescriptor FLOAT_ARGUMENT =
+            TypeDescriptor.tuple(false, false, -1, Float.$TypeDescriptor$);
+    private static final TypeDescriptor FLOAT_ARGUMENTS =
+            TypeDescriptor.tuple(false, false, -1,
+                    Float.$TypeDescriptor$, Float.$TypeDescriptor$);
+
+    private static final AbstractCallable<Integer> doubleInteger =
+            new AbstractCallable<Integer>(Integer.$TypeDescriptor$,
+                    INTEGER_ARGUMENT, "Integer(Integer)", (short)-1) {
+        @Override
+        public Integer $call$(java.lang.Object x) {
+            return Integer.instance(((Integer) x).longValue() * 2);
+        }
+    };
+    private static final AbstractCallable<Boolean> notDivisibleByThree =
+            new AbstractCallable<Boolean>(Boolean.$TypeDescriptor$,
+                    INTEGER_ARGUMENT, "Boolean(Integer)", (short)-1) {
+        @Override
+        public Boolean $call$(java.lang.Object x) {
+            return Boolean.instance(((Integer) x).longValue() % 3 != 0);
+        }
+    };
+    private static final AbstractCallable<Integer> plusInteger =
+            new AbstractCallable<Integer>(Integer.$TypeDescriptor$,
+                    INTEGER_ARGUMENTS, "Integer(Integer, Integer)", (short)-1) {
+        @Override
+        public Integer $call$(java.lang.Object sum, java.lang.Object x) {
+            return Integer.instance(((Integer) sum).longValue()
+                    + ((Integer) x).longValue());
+        }
+    };
+    private static final AbstractCallable<Float> halveFloat =
+            new AbstractCallable<Float>(Float.$TypeDescriptor$,
+                    FLOAT_ARGUMENT, "Float(Float)", (short)-1) {
+        @Override
+        public Float $call$(java.lang.Object x) {
+            return Float.instance(((Float) x).doubleValue() / 2);
+        }
+    };
+    private static final AbstractCallable<Float> plusFloat =
+            new AbstractCallable<Float>(Float.$TypeDescriptor$,
+                    FLOAT_ARGUMENTS, "Float(Float, Float)", (short)-1) {
+        @Override
+        public Float $call$(java.lang.Object sum, java.lang.Object x) {
+            return Float.instance(((Float) sum).doubleValue()
+                    + ((Float) x).doubleValue());
+        }
+    };
+
+    @Param({"10", "1000"})
+    public int size;
+
+    private Array<Integer> integers;
+    private Array<Float> floats;
+
+    @Setup
+    public void setup() {
+        Integer[] integerArray = new Integer[size];
+        Float[] floatArray = new Float[size];
+        for (int i = 0; i < size; i++) {
+            integerArray[i] = Integer.instance(i);
+            floatArray[i] = Float.instance(i);
+        }
+        integers = Array.instance(integerArray);
+        floats = Array.instance(floatArray);
+    }
+
+    @Benchmark
+    public long integerPipeline() {
+        return integers.map(Integer.$TypeDescriptor$, doubleInteger)
+                .filter(notDivisibleByThree)
+                .fold(Integer.$TypeDescriptor$, Integer.instance(0), plusInteger)
+                .longValue();
+    }
+
+    @Benchmark
+    public long fusedIntegerPipeline() {
+        long sum = 0;
+        Iterator<? extends Integer> it = integers.iterator();
+        java.lang.Object next;
+        while (!((next = it.next()) instanceof finished_)) {
+            long x = ((Integer) next).longValue() * 2;
+            if (x % 3 != 0) {
+                sum = sum + x;
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double floatPipeline() {
+        return floats.map(Float.$TypeDescriptor$, halveFloat)
+                .fold(Float.$TypeDescriptor$, Float.instance(0.0), plusFloat)
+                .doubleValue();
+    }
+
+    @Benchmark
+    public double fusedFloatPipeline() {
+        double sum = 0.0;
+        Iterator<? extends Float> it = floats.iterator();
+        java.lang.Object next;
+        while (!((next = it.next()) instanceof finished_)) {
+            double x = ((Float) next).doubleValue() / 2;
+            sum = sum + x;
+        }
+        return sum;
+    }
+}
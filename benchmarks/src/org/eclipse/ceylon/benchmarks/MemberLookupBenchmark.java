@@ -0,0 +1,75 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.model.typechecker.model.Class;
+import org.eclipse.ceylon.model.typechecker.model.Declaration;
+import org.eclipse.ceylon.model.typechecker.model.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <tt>ClassOrInterface.getDirectMember()</tt> on classes with
+ * from ten to ten thousand members, to show how the lookup
+ * time scales with the number of members.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MemberLookupBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int members;
+
+    private Class c;
+    private String[] names;
+    private int next;
+
+    @Setup
+    public void setup() {
+        c = new Class();
+        c.setName("C");
+        names = new String[members];
+        for (int i = 0; i < members; i++) {
+            names[i] = "m" + i;
+            Value value = new Value();
+            value.setName(names[i]);
+            value.setContainer(c);
+            value.setScope(c);
+            c.addMember(value);
+        }
+    }
+
+    @Benchmark
+    public Declaration getDirectMember() {
+        String name = names[next];
+        next = (next + 1) % members;
+        return c.getDirectMember(name, null, false);
+    }
+
+    @Benchmark
+    public Declaration getMissingDirectMember() {
+        return c.getDirectMember("missing", null, false);
+    }
+}
@@ -0,0 +1,84 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.compiler.java.runtime.metamodel.Metamodel;
+import org.eclipse.ceylon.compiler.java.runtime.model.TypeDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ceylon.language.Integer;
+import ceylon.language.Null;
+import ceylon.language.Sequential;
+import ceylon.language.String;
+import ceylon.language.Tuple;
+
+/**
+ * Reified type tests, as done by <tt>is</tt> conditions on 
+ * generic types.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MetamodelBenchmark {
+
+    private final java.lang.Object string = String.instance("hello");
+    private final java.lang.Object integer = Integer.instance(42);
+    private final java.lang.Object tuple = 
+            new Tuple<Integer,Integer,Sequential<? extends Integer>>(
+                    Integer.$TypeDescriptor$, 
+                    new java.lang.Object[] { 
+                        Integer.instance(1), 
+                        Integer.instance(2), 
+                        Integer.instance(3) 
+                    });
+
+    private final TypeDescriptor optionalInteger = 
+            TypeDescriptor.union(Null.$TypeDescriptor$, 
+                    Integer.$TypeDescriptor$);
+    private final TypeDescriptor sequentialOfIntegers = 
+            TypeDescriptor.klass(Sequential.class, 
+                    Integer.$TypeDescriptor$);
+    private final TypeDescriptor sequentialOfStrings = 
+            TypeDescriptor.klass(Sequential.class, 
+                    String.$TypeDescriptor$);
+
+    @Benchmark
+    public boolean isReifiedClass() {
+        return Metamodel.isReified(string, String.$TypeDescriptor$);
+    }
+
+    @Benchmark
+    public boolean isReifiedUnion() {
+        return Metamodel.isReified(integer, optionalInteger);
+    }
+
+    @Benchmark
+    public boolean isReifiedGeneric() {
+        return Metamodel.isReified(tuple, sequentialOfIntegers);
+    }
+
+    @Benchmark
+    public boolean isNotReifiedGeneric() {
+        return Metamodel.isReified(tuple, sequentialOfStrings);
+    }
+}
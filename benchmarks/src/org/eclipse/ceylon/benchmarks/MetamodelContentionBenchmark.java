@@ -0,0 +1,72 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.compiler.java.runtime.metamodel.Metamodel;
+import org.eclipse.ceylon.compiler.java.runtime.model.TypeDescriptor;
+import org.eclipse.ceylon.model.typechecker.model.Type;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ceylon.language.Integer;
+import ceylon.language.Sequential;
+import ceylon.language.String;
+
+/**
+ * Metamodel lookups from many threads at once, which used
+ * to contend on the model loader lock even when the result
+ * was already cached. Compare with <tt>-t 1</tt>.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class MetamodelContentionBenchmark {
+
+    private final TypeDescriptor sequentialOfIntegers = 
+            TypeDescriptor.klass(Sequential.class, 
+                    Integer.$TypeDescriptor$);
+
+    @Setup
+    public void setup() {
+        // load everything once
+        classDeclaration();
+        producedType();
+    }
+
+    @Benchmark
+    public java.lang.Object classDeclaration() {
+        return Metamodel.getOrCreateMetamodel(String.class);
+    }
+
+    @Benchmark
+    public Type producedType() {
+        return Metamodel.getProducedType(sequentialOfIntegers);
+    }
+
+    @Benchmark
+    public java.lang.Object appliedType() {
+        return Metamodel.getAppliedMetamodel(sequentialOfIntegers);
+    }
+}
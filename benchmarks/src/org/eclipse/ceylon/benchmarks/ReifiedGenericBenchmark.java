@@ -0,0 +1,99 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.compiler.java.Util;
+import org.eclipse.ceylon.compiler.java.runtime.model.TypeDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ceylon.language.Integer;
+import ceylon.language.Sequential;
+import ceylon.language.String;
+import ceylon.language.Tuple;
+
+/**
+ * <tt>Util.isReified()</tt> on generic <tt>Tuple</tt> and 
+ * <tt>Sequential</tt> types, which have to be answered with
+ * a subtype test on the typechecker model unless the result
+ * is cached. Run with 
+ * <tt>-Dceylon.language.TypeDescriptor.cache.size=0</tt> to
+ * compare with the uncached subtype tests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReifiedGenericBenchmark {
+
+    private final java.lang.Object tuple = 
+            new Tuple<Integer,Integer,Sequential<? extends Integer>>(
+                    Integer.$TypeDescriptor$, 
+                    new java.lang.Object[] { 
+                        Integer.instance(1), 
+                        Integer.instance(2), 
+                        Integer.instance(3) 
+                    });
+
+    private final TypeDescriptor sequentialOfIntegers = 
+            TypeDescriptor.klass(Sequential.class, 
+                    Integer.$TypeDescriptor$);
+    private final TypeDescriptor sequentialOfStrings = 
+            TypeDescriptor.klass(Sequential.class, 
+                    String.$TypeDescriptor$);
+    private final TypeDescriptor tupleOfIntegers = 
+            TypeDescriptor.tuple(true, false, -1, 
+                    Integer.$TypeDescriptor$);
+    private final TypeDescriptor integerStringTuple = 
+            TypeDescriptor.tuple(false, false, -1, 
+                    Integer.$TypeDescriptor$, 
+                    String.$TypeDescriptor$);
+
+    @Benchmark
+    public boolean isSequential() {
+        return Util.isReified(tuple, sequentialOfIntegers);
+    }
+
+    @Benchmark
+    public boolean isNotSequential() {
+        return Util.isReified(tuple, sequentialOfStrings);
+    }
+
+    @Benchmark
+    public boolean isTuple() {
+        return Util.isReified(tuple, tupleOfIntegers);
+    }
+
+    @Benchmark
+    public boolean isNotTuple() {
+        return Util.isReified(tuple, integerStringTuple);
+    }
+
+    /**
+     * Generated code creates a new descriptor for each test.
+     */
+    @Benchmark
+    public boolean isSequentialNewDescriptor() {
+        return Util.isReified(tuple, 
+                TypeDescriptor.klass(Sequential.class, 
+                        Integer.$TypeDescriptor$));
+    }
+}
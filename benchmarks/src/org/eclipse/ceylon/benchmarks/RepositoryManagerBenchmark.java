@@ -0,0 +1,61 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.cmr.api.ArtifactContext;
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.common.Versions;
+import org.eclipse.ceylon.model.cmr.ArtifactResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Artifact lookups against the local distribution repository.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RepositoryManagerBenchmark {
+
+    private RepositoryManager repositoryManager;
+
+    @Setup
+    public void setup() {
+        repositoryManager = BenchmarkSupport.getRepositoryManager();
+    }
+
+    @Benchmark
+    public ArtifactResult getLanguageModule() {
+        return repositoryManager.getArtifactResult(
+                new ArtifactContext(null, "ceylon.language", 
+                        Versions.CEYLON_VERSION_NUMBER, 
+                        ArtifactContext.CAR));
+    }
+
+    @Benchmark
+    public ArtifactResult getMissingModule() {
+        return repositoryManager.getArtifactResult(
+                new ArtifactContext(null, "com.example.missing", 
+                        "1.0", ArtifactContext.CAR));
+    }
+}
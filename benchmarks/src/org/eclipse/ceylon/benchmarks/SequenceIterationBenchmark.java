@@ -0,0 +1,100 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ceylon.language.Array;
+import ceylon.language.Integer;
+import ceylon.language.Iterator;
+import ceylon.language.Sequential;
+import ceylon.language.Tuple;
+import ceylon.language.finished_;
+
+/**
+ * Iteration over arrays and tuples of integers, both through 
+ * their iterators, as for loops over generic streams do, and 
+ * by index. Run with <tt>-prof gc</tt> to see the allocation 
+ * of boxes per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SequenceIterationBenchmark {
+
+    @Param({"10", "1000"})
+    public int size;
+
+    private Array<Integer> array;
+    private Tuple<Integer,Integer,Sequential<? extends Integer>> tuple;
+
+    @Setup
+    public void setup() {
+        Integer[] integers = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            integers[i] = Integer.instance(i);
+        }
+        array = Array.instance(integers);
+        tuple = new Tuple<Integer,Integer,Sequential<? extends Integer>>(
+                Integer.$TypeDescriptor$, integers);
+    }
+
+    private static long sum(Iterator<?> it) {
+        long sum = 0;
+        java.lang.Object next;
+        while (!((next = it.next()) instanceof finished_)) {
+            sum += ((Integer) next).longValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long iterateArray() {
+        return sum(array.iterator());
+    }
+
+    @Benchmark
+    public long indexArray() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += array.getFromFirst(i).longValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long iterateTuple() {
+        return sum(tuple.iterator());
+    }
+
+    @Benchmark
+    public long indexTuple() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += tuple.getFromFirst(i).longValue();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,113 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ceylon.language.Character;
+import ceylon.language.String;
+
+/**
+ * Operations of <tt>ceylon.language::String</tt> and of
+ * <tt>ceylon.language::StringBuilder</tt>, which work on 
+ * code points rather than on UTF-16 chars, on ASCII text 
+ * and on text with supplementary characters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StringBenchmark {
+
+    @Param({"16", "1024"})
+    public int length;
+
+    @Param({"false", "true"})
+    public boolean supplementary;
+
+    private java.lang.String value;
+    private ceylon.language.StringBuilder builder;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            if (supplementary && i % 8 == 0) {
+                // a musical symbol, outside the BMP
+                sb.appendCodePoint(0x1D11E);
+            }
+            else {
+                sb.append((char) ('a' + i % 26));
+            }
+        }
+        value = sb.toString();
+        builder = new ceylon.language.StringBuilder();
+        builder.append(value);
+    }
+
+    @Benchmark
+    public long size() {
+        return String.getSize(value);
+    }
+
+    @Benchmark
+    public Character getFromFirstMiddle() {
+        return String.getFromFirst(value, length / 2);
+    }
+
+    @Benchmark
+    public Character getFromLast() {
+        return String.getFromLast(value, 0);
+    }
+
+    @Benchmark
+    public long builderSize() {
+        return builder.getSize();
+    }
+
+    @Benchmark
+    public Character builderGetFromFirstMiddle() {
+        return builder.getFromFirst(length / 2);
+    }
+
+    @Benchmark
+    public java.lang.String reversed() {
+        return String.getReversed(value);
+    }
+
+    @Benchmark
+    public java.lang.String measure() {
+        return String.measure(value, length / 4, length / 2);
+    }
+
+    @Benchmark
+    public java.lang.String uppercased() {
+        return String.getUppercased(value);
+    }
+
+    @Benchmark
+    public long indexOf() {
+        return String.indexOf(value, "xyz");
+    }
+}
@@ -0,0 +1,105 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.compiler.typechecker.TypeChecker;
+import org.eclipse.ceylon.model.typechecker.context.TypeCache;
+import org.eclipse.ceylon.model.typechecker.model.Package;
+import org.eclipse.ceylon.model.typechecker.model.Type;
+import org.eclipse.ceylon.model.typechecker.model.TypeDeclaration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Subtyping and supertype lookups on the types declared in 
+ * <tt>corpus/hierarchy</tt>, with and without the type cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TypeBenchmark {
+
+    @Param({"true", "false"})
+    public boolean typeCache;
+
+    private Type leaf;
+    private Type strings;
+    private Type top;
+    private Type bottom;
+    private Type containerOfStrings;
+    private TypeDeclaration container;
+
+    @Setup
+    public void setup() {
+        TypeChecker typeChecker = 
+                BenchmarkSupport.getTypeChecker(
+                        BenchmarkSupport.getRepositoryManager(), 
+                        BenchmarkSupport.getCorpus("hierarchy"), 1);
+        typeChecker.process(true);
+        Package pkg = typeChecker.getPhasedUnits()
+                .getPhasedUnits().get(0).getPackage();
+        leaf = type(pkg, "Leaf");
+        strings = type(pkg, "Strings");
+        top = type(pkg, "Top");
+        bottom = type(pkg, "Bottom");
+        container = declaration(pkg, "Container");
+        containerOfStrings = strings.getSupertype(container);
+        // the cache flag is per thread, and state setup runs
+        // on the benchmark thread
+        TypeCache.setEnabled(typeCache);
+    }
+
+    private static TypeDeclaration declaration(Package pkg, String name) {
+        TypeDeclaration dec = (TypeDeclaration) 
+                pkg.getDirectMember(name, null, false);
+        if (dec == null) {
+            throw new IllegalStateException("Missing declaration: " + name);
+        }
+        return dec;
+    }
+
+    private static Type type(Package pkg, String name) {
+        return declaration(pkg, name).getType();
+    }
+
+    @Benchmark
+    public boolean isSubtypeOfInterface() {
+        return leaf.isSubtypeOf(top);
+    }
+
+    @Benchmark
+    public boolean isNotSubtypeOfInterface() {
+        return strings.isSubtypeOf(bottom);
+    }
+
+    @Benchmark
+    public boolean isSubtypeOfGenericInterface() {
+        return strings.isSubtypeOf(containerOfStrings);
+    }
+
+    @Benchmark
+    public Type getSupertype() {
+        return strings.getSupertype(container);
+    }
+}
@@ -0,0 +1,64 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.compiler.typechecker.TypeChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Type checks a fixed corpus. Parsing happens before each
+ * invocation, so only {@link TypeChecker#process(boolean)}
+ * is measured.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class TypeCheckerBenchmark {
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private RepositoryManager repositoryManager;
+    private TypeChecker typeChecker;
+
+    @Setup(Level.Trial)
+    public void setupRepository() {
+        repositoryManager = BenchmarkSupport.getRepositoryManager();
+    }
+
+    @Setup(Level.Invocation)
+    public void parse() {
+        typeChecker = BenchmarkSupport.getTypeChecker(repositoryManager, 
+                BenchmarkSupport.getTypeCheckerCorpus(), parallelism);
+    }
+
+    @Benchmark
+    public TypeChecker process() {
+        typeChecker.process(true);
+        return typeChecker;
+    }
+}
@@ -0,0 +1,86 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.model.typechecker.model.Class;
+import org.eclipse.ceylon.model.typechecker.model.ClassOrInterface;
+import org.eclipse.ceylon.model.typechecker.model.Interface;
+import org.eclipse.ceylon.model.typechecker.model.ModelUtil;
+import org.eclipse.ceylon.model.typechecker.model.Package;
+import org.eclipse.ceylon.model.typechecker.model.Type;
+import org.eclipse.ceylon.model.typechecker.model.UnionList;
+import org.eclipse.ceylon.model.typechecker.model.Unit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <tt>ModelUtil.addToUnion()</tt> building a union of from
+ * a hundred to five thousand unrelated classes, which all
+ * satisfy the same interface, to show how the time scales
+ * with the number of case types.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UnionBenchmark {
+
+    @Param({"100", "1000", "5000"})
+    public int count;
+
+    private List<Type> types;
+
+    @Setup
+    public void setup() {
+        Unit unit = new Unit();
+        Package pkg = new Package();
+        pkg.setName(Collections.singletonList("union"));
+        unit.setPackage(pkg);
+        Interface top = declaration(new Interface(), "Top", unit);
+        types = new ArrayList<Type>(count);
+        for (int i = 0; i < count; i++) {
+            Class c = declaration(new Class(), "C" + i, unit);
+            c.getSatisfiedTypes().add(top.getType());
+            types.add(c.getType());
+        }
+    }
+
+    private static <T extends ClassOrInterface> T declaration(T dec, String name, Unit unit) {
+        dec.setName(name);
+        dec.setUnit(unit);
+        dec.setContainer(unit.getPackage());
+        return dec;
+    }
+
+    @Benchmark
+    public List<Type> addToUnion() {
+        List<Type> list = new UnionList();
+        for (int i = 0, s = types.size(); i < s; i++) {
+            ModelUtil.addToUnion(list, types.get(i));
+        }
+        return list;
+    }
+}
@@ -130,6 +130,7 @@ public class CeylonTool implements Tool {
     private List<String> defines;
     private Boolean showHome;
     private boolean showDistributionError;
+    private Integer forwardedResult;
     
     public CeylonTool() {
     }
@@ -389,6 +390,9 @@ public class CeylonTool implements Tool {
             setSystemProperties();
             oldConfig = setupConfig();
             result = SC_OK;
+            // we forward before the tool is created, since it may start
+            // doing real work as soon as it gets its arguments
+            forwardedResult = forwardToCompileServer();
         } catch (Exception e) {
             result = handleException(this, e);
         }
@@ -396,8 +400,41 @@ public class CeylonTool implements Tool {
         return result;
     }
 
+    /**
+     * Runs the tool in the compile server if there is one and the tool
+     * should run there, returning its exit code, or null if it should run
+     * here.
+     */
+    private Integer forwardToCompileServer() {
+        if (version
+                || getShowHome()
+                || showDistributionError
+                || cwd != null
+                || config != null
+                || noConfig
+                || (defines != null && !defines.isEmpty())
+                || !CompileServer.isForwardable(toolName, toolArgs)) {
+            return null;
+        }
+        List<String> args = new ArrayList<String>(toolArgs.size() + 3);
+        String dir = System.getProperty(Constants.PROP_CEYLON_CWD);
+        if (dir == null) {
+            dir = System.getProperty("user.dir");
+        }
+        args.add("--cwd=" + new File(dir).getAbsolutePath());
+        if (stacktraces) {
+            args.add("--stacktraces");
+        }
+        args.add(toolName);
+        args.addAll(toolArgs);
+        return CompileServer.forward(args, System.out, System.err);
+    }
+
     // Warning: this method called by reflection in Launcher
     public int execute() throws Exception {
+        if (forwardedResult != null) {
+            return forwardedResult;
+        }
         int result = SC_OK;
         try {
             setSystemCwd();
@@ -609,6 +646,10 @@ public class CeylonTool implements Tool {
 
     // WARNING: this is called by reflection in Launcher: do not REMOVE!!!
     public Tool[] getTools() {
+        if (forwardedResult != null) {
+            // the compile server already ran them
+            return new Tool[0];
+        }
         String[] toolNames = getToolNames();
         Tool[] tools = new Tool[toolNames.length];
         for(int i=0;i<toolNames.length;i++)
@@ -0,0 +1,491 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.common.tools;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.ceylon.common.Constants;
+import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.common.Versions;
+
+/**
+ * A server which runs the <tt>ceylon</tt> commands it is sent in its own
+ * JVM, so that they don't each pay for starting a new JVM and loading the
+ * same modules again.
+ *
+ * It only listens on the loopback interface, and only accepts requests
+ * which know the random token it wrote, along with its port, to the
+ * <tt>compile-server</tt> file of the user's Ceylon directory. It sends
+ * back what the commands print and their exit code.
+ *
+ * Each connection is handled by its own thread, but commands share
+ * {@link System#out}, so only one runs at a time: while it runs, the server
+ * tells the other clients that it is busy, and they run their commands
+ * themselves. A command whose client goes away is interrupted.
+ *
+ * While it runs, {@link CeylonTool} forwards the <tt>compile</tt> commands
+ * of the same distribution to it, unless the
+ * {@value #ENABLED_PROPERTY} system property is <tt>false</tt>.
+ */
+public class CompileServer {
+
+    public static final String ENABLED_PROPERTY = "ceylon.compile.server";
+
+    private static final String STATE_FILE = "compile-server";
+    private static final int MAGIC = 0xCE7C0005;
+    private static final String STOP = "--stop-compile-server";
+
+    private static final byte EXIT = 0;
+    private static final byte OUT = 1;
+    private static final byte ERR = 2;
+    private static final byte BUSY = 3;
+
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final int REQUEST_TIMEOUT = 10000;
+    private static final int MAX_ARGUMENTS = 100000;
+
+    /** Set while a server runs in this JVM, so it never forwards to itself */
+    private static volatile boolean serving;
+
+    private final ServerSocket socket;
+    private final String token;
+    private volatile boolean stopped;
+    /** Held while a command runs */
+    private final Semaphore running = new Semaphore(1);
+
+    /**
+     * Creates a server listening on the given port of the loopback
+     * interface, or on any free port if it is 0.
+     */
+    public CompileServer(int port) throws IOException {
+        this.socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder();
+        for (byte b : random) {
+            token.append(String.format("%02x", b & 0xFF));
+        }
+        this.token = token.toString();
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    /**
+     * Serves requests until we are stopped, either by {@link #stop()} or by
+     * a client.
+     */
+    public void serve() throws IOException {
+        serving = true;
+        writeState();
+        try {
+            while (!stopped) {
+                final Socket client;
+                try {
+                    client = socket.accept();
+                } catch (SocketException x) {
+                    if (stopped)
+                        break;
+                    throw x;
+                }
+                // so that a slow client doesn't keep the others waiting
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            handle(client);
+                        } catch (IOException x) {
+                            // the client went away, nothing we can tell it
+                        } finally {
+                            try {
+                                client.close();
+                            } catch (IOException x) {
+                                // ignore
+                            }
+                        }
+                    }
+                }, "Ceylon compile server connection");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } finally {
+            stopped = true;
+            serving = false;
+            socket.close();
+            deleteState();
+        }
+    }
+
+    public void stop() {
+        stopped = true;
+        try {
+            socket.close();
+        } catch (IOException x) {
+            // we're closing anyway
+        }
+    }
+
+    private void handle(Socket client) throws IOException {
+        client.setSoTimeout(REQUEST_TIMEOUT);
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+        if (in.readInt() != MAGIC || !token.equals(in.readUTF())) {
+            return;
+        }
+        int count = in.readInt();
+        if (count < 0 || count > MAX_ARGUMENTS) {
+            return;
+        }
+        List<String> args = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            args.add(in.readUTF());
+        }
+        client.setSoTimeout(0);
+        int result;
+        if (args.size() == 1 && STOP.equals(args.get(0))) {
+            stop();
+            result = CeylonTool.SC_OK;
+        } else if (running.tryAcquire()) {
+            try {
+                result = runUnlessDisconnected(in, args, out);
+            } finally {
+                running.release();
+            }
+        } else {
+            out.writeByte(BUSY);
+            out.flush();
+            return;
+        }
+        out.writeByte(EXIT);
+        out.writeInt(result);
+        out.flush();
+    }
+
+    /**
+     * Runs the given command in this thread, which is interrupted if the
+     * client goes away, since nobody wants its result anymore.
+     */
+    private int runUnlessDisconnected(final DataInputStream in, List<String> args, DataOutputStream out) {
+        final Thread command = Thread.currentThread();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread watcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // the client sends nothing more, so this only returns
+                    // once it closed the connection
+                    while (in.read() != -1) {}
+                } catch (IOException x) {
+                    // the same
+                }
+                if (done.compareAndSet(false, true)) {
+                    command.interrupt();
+                }
+            }
+        }, "Ceylon compile server client watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        try {
+            return run(args, out);
+        } finally {
+            // if we were interrupted it's too late to clear it, but the
+            // thread ends with this connection anyway
+            done.set(true);
+        }
+    }
+
+    private int run(List<String> args, DataOutputStream out) {
+        PrintStream oldOut = System.out;
+        PrintStream oldErr = System.err;
+        PrintStream toolOut = new PrintStream(new FrameOutputStream(out, OUT), true);
+        PrintStream toolErr = new PrintStream(new FrameOutputStream(out, ERR), true);
+        System.setOut(toolOut);
+        System.setErr(toolErr);
+        try {
+            return execute(args.toArray(new String[args.size()]));
+        } catch (Exception | Error x) {
+            // including the error of a cancelled compile
+            x.printStackTrace();
+            return CeylonTool.SC_TOOL_EXCEPTION;
+        } finally {
+            toolOut.flush();
+            toolErr.flush();
+            System.setOut(oldOut);
+            System.setErr(oldErr);
+        }
+    }
+
+    /**
+     * Runs the given <tt>ceylon</tt> command, which prints to
+     * {@link System#out} and {@link System#err}, and returns its exit code.
+     */
+    protected int execute(String[] args) throws Exception {
+        return new CeylonTool().bootstrap(args);
+    }
+
+    /**
+     * Sends what a command prints to the client, as frames of the given
+     * kind.
+     */
+    private static final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte kind;
+
+        FrameOutputStream(DataOutputStream out, byte kind) {
+            this.out = out;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{ (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return;
+            synchronized (out) {
+                out.writeByte(kind);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+
+    private static File getStateFile() {
+        return new File(FileUtil.getUserDir(), STATE_FILE);
+    }
+
+    private void writeState() throws IOException {
+        Properties state = new Properties();
+        state.setProperty("port", String.valueOf(getPort()));
+        state.setProperty("token", token);
+        state.setProperty("version", Versions.CEYLON_VERSION_NUMBER);
+        String home = System.getProperty(Constants.PROP_CEYLON_HOME_DIR);
+        if (home != null) {
+            state.setProperty("home", home);
+        }
+        File file = getStateFile();
+        FileUtil.mkdirs(file.getParentFile());
+        File tmp = File.createTempFile(STATE_FILE, ".tmp", file.getParentFile());
+        try {
+            // only the user may read the token
+            tmp.setReadable(false, false);
+            tmp.setReadable(true, true);
+            try (OutputStream os = new FileOutputStream(tmp)) {
+                state.store(os, "Ceylon compile server");
+            }
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                if (!tmp.renameTo(file))
+                    throw new IOException("Could not write " + file);
+            }
+        } finally {
+            if (tmp.exists())
+                tmp.delete();
+        }
+    }
+
+    private void deleteState() {
+        // unless another server replaced us
+        Properties state = readState();
+        if (state != null && token.equals(state.getProperty("token"))) {
+            getStateFile().delete();
+        }
+    }
+
+    private static Properties readState() {
+        File file = getStateFile();
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties state = new Properties();
+        try (InputStream is = new FileInputStream(file)) {
+            state.load(is);
+        } catch (IOException x) {
+            return null;
+        }
+        return state;
+    }
+
+    /**
+     * Returns true if the given <tt>ceylon</tt> command should be sent to a
+     * compile server if there is one.
+     */
+    static boolean isForwardable(String toolName, List<String> toolArgs) {
+        if (serving || "false".equals(System.getProperty(ENABLED_PROPERTY))) {
+            return false;
+        }
+        if (!"compile".equals(toolName)) {
+            return false;
+        }
+        for (String arg : toolArgs) {
+            // relative to our working directory, not the server's
+            if (arg.startsWith("--cwd")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs the given <tt>ceylon</tt> command in the compile server, printing
+     * what it prints to the given streams, and returns its exit code, or null
+     * if there is no compile server for this distribution, in which case
+     * the command was not run.
+     */
+    static Integer forward(List<String> args, PrintStream out, PrintStream err) {
+        Properties state = getServerState();
+        Socket socket = connect(state);
+        if (socket == null) {
+            return null;
+        }
+        boolean started = false;
+        try {
+            send(socket, state.getProperty("token"), args);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while (true) {
+                byte kind = in.readByte();
+                if (kind == BUSY) {
+                    // we'd rather run it ourselves than wait
+                    return null;
+                }
+                started = true;
+                if (kind == EXIT) {
+                    out.flush();
+                    err.flush();
+                    return in.readInt();
+                }
+                int length = in.readInt();
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                (kind == ERR ? err : out).write(bytes, 0, length);
+            }
+        } catch (IOException x) {
+            if (!started) {
+                // the server went away before it ran anything, we can run it ourselves
+                return null;
+            }
+            err.println("Lost the connection to the compile server: " + x.getMessage());
+            return CeylonTool.SC_TOOL_EXCEPTION;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException x) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Stops the compile server of this distribution, returns false if there
+     * is none.
+     */
+    public static boolean stopRunning() {
+        Properties state = getServerState();
+        Socket socket = connect(state);
+        if (socket == null) {
+            return false;
+        }
+        try {
+            send(socket, state.getProperty("token"), Collections.singletonList(STOP));
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            return in.readByte() == EXIT;
+        } catch (IOException x) {
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException x) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Returns what the compile server of this distribution wrote about
+     * itself, or null if there is none.
+     */
+    static Properties getServerState() {
+        Properties state = readState();
+        if (state == null
+                || state.getProperty("port") == null
+                || state.getProperty("token") == null
+                || !Versions.CEYLON_VERSION_NUMBER.equals(state.getProperty("version"))
+                || !Objects.equals(System.getProperty(Constants.PROP_CEYLON_HOME_DIR), state.getProperty("home"))) {
+            return null;
+        }
+        return state;
+    }
+
+    static Socket connect(Properties state) {
+        if (state == null) {
+            return null;
+        }
+        Socket socket = new Socket();
+        try {
+            int port = Integer.parseInt(state.getProperty("port"));
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            return socket;
+        } catch (IOException | RuntimeException x) {
+            // it's gone
+            try {
+                socket.close();
+            } catch (IOException y) {
+                // ignore
+            }
+            return null;
+        }
+    }
+
+    static void send(Socket socket, String token, List<String> args) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        out.writeInt(MAGIC);
+        out.writeUTF(token);
+        out.writeInt(args.size());
+        for (String arg : args) {
+            out.writeUTF(arg);
+        }
+        out.flush();
+    }
+}
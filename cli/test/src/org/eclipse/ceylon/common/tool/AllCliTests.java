@@ -9,6 +9,7 @@
  ********************************************************************************/
 package org.eclipse.ceylon.common.tool;
 
+import org.eclipse.ceylon.common.tools.CompileServerTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -20,7 +21,8 @@ import org.junit.runners.Suite.SuiteClasses;
     ToolLoaderTest.class,
     ToolFactoryTest.class,
     MultiplicityTest.class,
-    WordWrapTest.class
+    WordWrapTest.class,
+    CompileServerTest.class
 })
 public class AllCliTests {
 
@@ -0,0 +1,255 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.common.tools;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.ceylon.common.Constants;
+import org.eclipse.ceylon.common.FileUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the compile server with commands which don't compile anything,
+ * but print, wait, or wait to be cancelled.
+ */
+public class CompileServerTest {
+
+    private static final int TIMEOUT = 10;
+
+    private File userDir;
+    private String oldUserDir;
+    private TestServer server;
+    private Thread serverThread;
+    private final AtomicInteger executed = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+
+    private class TestServer extends CompileServer {
+        TestServer() throws IOException {
+            super(0);
+        }
+
+        @Override
+        protected int execute(String[] args) throws Exception {
+            executed.incrementAndGet();
+            switch (args[0]) {
+            case "echo":
+                System.out.print(join(args));
+                System.err.print("done");
+                return args.length;
+            case "block":
+                started.countDown();
+                release.await(TIMEOUT, TimeUnit.SECONDS);
+                return 0;
+            case "wait":
+                started.countDown();
+                try {
+                    Thread.sleep(TIMEOUT * 1000);
+                } catch (InterruptedException x) {
+                    cancelled.countDown();
+                }
+                return 0;
+            default:
+                return 1;
+            }
+        }
+    }
+
+    private static String join(String[] args) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i < args.length; i++) {
+            if (i > 1)
+                sb.append(' ');
+            sb.append(args[i]);
+        }
+        return sb.toString();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        userDir = Files.createTempDirectory("ceylon-compile-server").toFile();
+        oldUserDir = System.getProperty(Constants.PROP_CEYLON_USER_DIR);
+        System.setProperty(Constants.PROP_CEYLON_USER_DIR, userDir.getPath());
+        server = new TestServer();
+        serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    server.serve();
+                } catch (IOException x) {
+                    x.printStackTrace();
+                }
+            }
+        });
+        serverThread.start();
+        // wait until it wrote its state
+        for (int i = 0; i < TIMEOUT * 100 && CompileServer.getServerState() == null; i++) {
+            Thread.sleep(10);
+        }
+        Assert.assertNotNull(CompileServer.getServerState());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        server.stop();
+        serverThread.join(TIMEOUT * 1000);
+        if (oldUserDir != null) {
+            System.setProperty(Constants.PROP_CEYLON_USER_DIR, oldUserDir);
+        } else {
+            System.clearProperty(Constants.PROP_CEYLON_USER_DIR);
+        }
+        FileUtil.delete(userDir);
+    }
+
+    private static File getStateFile() {
+        return new File(FileUtil.getUserDir(), "compile-server");
+    }
+
+    private static Integer forward(String... args) {
+        return forward(new ByteArrayOutputStream(), new ByteArrayOutputStream(), args);
+    }
+
+    private static Integer forward(ByteArrayOutputStream out, ByteArrayOutputStream err, String... args) {
+        return CompileServer.forward(Arrays.asList(args), new PrintStream(out, true), new PrintStream(err, true));
+    }
+
+    @Test
+    public void testForwardable() throws Exception {
+        List<String> none = Collections.emptyList();
+        // never to ourselves
+        Assert.assertFalse(CompileServer.isForwardable("compile", none));
+        server.stop();
+        serverThread.join(TIMEOUT * 1000);
+        Assert.assertTrue(CompileServer.isForwardable("compile", Arrays.asList("--out=out", "foo")));
+        Assert.assertFalse(CompileServer.isForwardable("run", none));
+        Assert.assertFalse(CompileServer.isForwardable("compile", Arrays.asList("--cwd=..", "foo")));
+        System.setProperty(CompileServer.ENABLED_PROPERTY, "false");
+        try {
+            Assert.assertFalse(CompileServer.isForwardable("compile", none));
+        } finally {
+            System.clearProperty(CompileServer.ENABLED_PROPERTY);
+        }
+    }
+
+    @Test
+    public void testForwarding() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        Assert.assertEquals(Integer.valueOf(3), forward(out, err, "echo", "a", "b"));
+        Assert.assertEquals("a b", out.toString("UTF-8"));
+        Assert.assertEquals("done", err.toString("UTF-8"));
+        // the same server again
+        Assert.assertEquals(Integer.valueOf(1), forward("echo"));
+        Assert.assertEquals(2, executed.get());
+    }
+
+    @Test
+    public void testTokenIsChecked() throws Exception {
+        Properties state = CompileServer.getServerState();
+        try (Socket socket = CompileServer.connect(state)) {
+            Assert.assertNotNull(socket);
+            socket.setSoTimeout(TIMEOUT * 1000);
+            CompileServer.send(socket, "not" + state.getProperty("token"), Arrays.asList("echo"));
+            // closed without an answer
+            Assert.assertEquals(-1, socket.getInputStream().read());
+        }
+        Assert.assertEquals(0, executed.get());
+        // and it still serves the others
+        Assert.assertEquals(Integer.valueOf(1), forward("echo"));
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        Assert.assertTrue(CompileServer.stopRunning());
+        serverThread.join(TIMEOUT * 1000);
+        Assert.assertFalse(serverThread.isAlive());
+        Assert.assertFalse(getStateFile().exists());
+        // nothing to forward to anymore
+        Assert.assertNull(forward("echo"));
+        Assert.assertFalse(CompileServer.stopRunning());
+        Assert.assertEquals(0, executed.get());
+    }
+
+    @Test
+    public void testFallbackWhenServerDied() throws Exception {
+        // like a server which was killed before it could clean up
+        byte[] state = Files.readAllBytes(getStateFile().toPath());
+        server.stop();
+        serverThread.join(TIMEOUT * 1000);
+        Files.write(getStateFile().toPath(), state);
+        Assert.assertNull(forward("echo"));
+        Assert.assertEquals(0, executed.get());
+    }
+
+    @Test
+    public void testBusyServerDoesNotBlockOthers() throws Exception {
+        ExecutorService client = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> blocked = client.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return forward("block");
+                }
+            });
+            Assert.assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+            // runs it ourselves rather than wait
+            Assert.assertNull(forward("echo"));
+            Assert.assertFalse(blocked.isDone());
+            release.countDown();
+            Assert.assertEquals(Integer.valueOf(0), blocked.get(TIMEOUT, TimeUnit.SECONDS));
+            // not busy anymore
+            Assert.assertEquals(Integer.valueOf(1), forward("echo"));
+        } finally {
+            client.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDisconnectCancelsCommand() throws Exception {
+        Properties state = CompileServer.getServerState();
+        try (Socket socket = CompileServer.connect(state)) {
+            CompileServer.send(socket, state.getProperty("token"), Arrays.asList("wait"));
+            Assert.assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        }
+        Assert.assertTrue("The command was not interrupted", cancelled.await(TIMEOUT, TimeUnit.SECONDS));
+        // and the next one can run
+        for (int i = 0; i < TIMEOUT * 100; i++) {
+            Integer result = forward("echo");
+            if (result != null) {
+                Assert.assertEquals(Integer.valueOf(1), result);
+                return;
+            }
+            // still finishing the cancelled one
+            Thread.sleep(10);
+        }
+        Assert.fail("The server stayed busy");
+    }
+}
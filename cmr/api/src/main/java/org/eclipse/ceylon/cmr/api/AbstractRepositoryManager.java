@@ -13,6 +13,7 @@ import java.io.File;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -159,6 +160,15 @@ public abstract class AbstractRepositoryManager implements RepositoryManager {
         return results;
     }
 
+    @Override
+    public List<ArtifactResult> getArtifactResultsBatch(Collection<ArtifactContext> contexts) throws RepositoryException {
+        final List<ArtifactResult> results = new ArrayList<>(contexts.size());
+        for (ArtifactContext context : contexts) {
+            results.add(getArtifactResult(context));
+        }
+        return results;
+    }
+
     @Override
     public void putArtifact(String namespace, String name, String version, InputStream content) throws RepositoryException {
         final ArtifactContext context = new ArtifactContext(namespace, name, version);
@@ -11,6 +11,7 @@ package org.eclipse.ceylon.cmr.api;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.List;
 
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
@@ -119,6 +120,19 @@ public interface RepositoryManager {
      */
     List<ArtifactResult> getArtifactResults(ArtifactContext context) throws RepositoryException;
 
+    /**
+     * Returns an ArtifactResult object for each of the given contexts,
+     * as {@link #getArtifactResult(ArtifactContext)} would. Implementations
+     * may look the artifacts up concurrently.
+     * 
+     * @param contexts the lookup info of the artifacts
+     * @return the ArtifactResult of each context, in the iteration order
+     * of the contexts, with null for the artifacts that weren't found
+     * 
+     * @throws RepositoryException if anything went wrong
+     */
+    List<ArtifactResult> getArtifactResultsBatch(Collection<ArtifactContext> contexts) throws RepositoryException;
+
     /**
      * Publishes an artifact by name/version as an InputStream
      * 
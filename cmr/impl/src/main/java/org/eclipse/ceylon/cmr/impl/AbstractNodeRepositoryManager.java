@@ -14,11 +14,22 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.ceylon.cmr.api.AbstractRepositoryManager;
 import org.eclipse.ceylon.cmr.api.ArtifactContext;
@@ -49,6 +60,49 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
     protected static final String ORIGIN = ".origin";
     protected static final String MISSING = ".missing";
 
+    /**
+     * How many artifacts {@link #getArtifactResultsBatch(Collection)} looks up
+     * at the same time. Lookups mostly wait for I/O, so this is more than
+     * the number of processors.
+     */
+    private static final int LOOKUP_PARALLELISM = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * How many remote repositories are probed at the same time, by all
+     * the parallel lookups together.
+     */
+    private static final int PROBE_PARALLELISM = 2 * LOOKUP_PARALLELISM;
+
+    /**
+     * Runs the parallel lookups of {@link #getArtifactResultsBatch(Collection)}.
+     */
+    private static final ExecutorService lookupExecutor = newExecutor("ceylon-cmr-lookup-", LOOKUP_PARALLELISM);
+
+    /**
+     * Runs the probes of the remote repositories which the parallel lookups
+     * wait for. They have their own threads, so that lookups waiting for
+     * probes can't take up all the threads the probes need.
+     */
+    private static final ExecutorService probeExecutor = newExecutor("ceylon-cmr-probe-", PROBE_PARALLELISM);
+
+    private static ExecutorService newExecutor(final String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), 
+                new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // don't keep idle threads around
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private List<CmrRepository> roots = new CopyOnWriteArrayList<>(); // lookup roots - order matters!
     private List<CmrRepository> allRoots;
 
@@ -159,8 +213,53 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
     }
 
     public ArtifactResult getArtifactResult(ArtifactContext context) throws RepositoryException {
+        return getArtifactResult(context, false);
+    }
+
+    /**
+     * Looks the given artifacts up concurrently. Each artifact is looked
+     * up like {@link #getArtifactResult(ArtifactContext)} does, except that
+     * the remote repositories are probed in parallel: the artifact of the
+     * first repository which has it is still the one we return.
+     */
+    @Override
+    public List<ArtifactResult> getArtifactResultsBatch(Collection<ArtifactContext> contexts) throws RepositoryException {
+        final ArtifactContext[] todo = contexts.toArray(new ArtifactContext[contexts.size()]);
+        final ArtifactResult[] results = new ArtifactResult[todo.length];
+        if (todo.length == 1) {
+            results[0] = getArtifactResult(todo[0], true);
+        } else if (todo.length > 1) {
+            final AtomicInteger next = new AtomicInteger();
+            int workers = Math.min(todo.length, LOOKUP_PARALLELISM);
+            List<Future<Void>> running = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                running.add(lookupExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        int index;
+                        while ((index = next.getAndIncrement()) < todo.length) {
+                            try {
+                                results[index] = getArtifactResult(todo[index], true);
+                            } catch (RuntimeException | Error e) {
+                                // make the other workers stop
+                                next.set(todo.length);
+                                throw e;
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> worker : running) {
+                waitFor(worker);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private ArtifactResult getArtifactResult(ArtifactContext context, boolean parallelProbes) throws RepositoryException {
         context = applyOverrides(context);
-        final Node node = getLeafNode(context);
+        final Node node = getLeafNode(context, parallelProbes);
         if (node != null) {
             String foundSuffix = ArtifactContext.getSuffixFromNode(node);
             // First handle all the artifact we didn't find
@@ -397,7 +496,13 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
     }
 
     protected Node getLeafNode(ArtifactContext context) {
-        final Node node = getFromAllRoots(context, true);
+        return getLeafNode(context, false);
+    }
+
+    private Node getLeafNode(ArtifactContext context, boolean parallelProbes) {
+        final Node node = parallelProbes
+                ? fromRepositoriesInParallel(getRepositoriesForContext(context), context, true)
+                : getFromAllRoots(context, true);
         if (node == null) {
             if (context.isThrowErrorIfMissing())
                 throw new IllegalArgumentException("No such artifact: " + context);
@@ -456,24 +561,129 @@ public abstract class AbstractNodeRepositoryManager extends AbstractRepositoryMa
         return null;
     }
 
+    /**
+     * Like {@link #fromRepositories(Iterable, ArtifactContext, boolean)},
+     * but once we get to the first remote repository all the remaining
+     * remote repositories are probed at the same time. We still wait for
+     * the repositories in order, so the first one which has the artifact
+     * wins, whichever answers first.
+     */
+    private Node fromRepositoriesInParallel(List<CmrRepository> repositories, final ArtifactContext context, final boolean addLeaf) {
+        log.debug("Looking for " + context + " (probing remote repositories in parallel)");
+
+        List<Future<Node>> probes = null;
+        LookupCaching.enable();
+        try {
+            for (int i = 0; i < repositories.size(); i++) {
+                CmrRepository repository = repositories.get(i);
+                log.debug(" Looking in " + repository);
+                if(!repository.supportsNamespace(context.getNamespace())){
+                    log.debug(" -> does not support namespace "+context.getNamespace());
+                    continue;
+                }
+                Node child;
+                if (repository.getRoot().isRemote()) {
+                    if (probes == null) {
+                        probes = probeRemoteRepositories(repositories, i, context, addLeaf);
+                    }
+                    child = waitFor(probes.get(i));
+                } else {
+                    child = fromRepository(repository, context, addLeaf);
+                }
+                if (child != null){
+                    log.debug(" -> Found");
+                    return child;
+                }
+
+                log.debug("  -> Not Found");
+            }
+        } finally {
+            LookupCaching.disable();
+            if (probes != null) {
+                // we don't need the answers of the other repositories
+                for (Future<Node> probe : probes) {
+                    if (probe != null) {
+                        probe.cancel(false);
+                    }
+                }
+            }
+        }
+
+        log.debug(" -> Artifact " + context + " not found in any repository");
+        return null;
+    }
+
+    /**
+     * Starts probing the remote repositories from the given index on,
+     * and returns the probes by repository index, with null for the
+     * repositories we don't probe.
+     */
+    private List<Future<Node>> probeRemoteRepositories(List<CmrRepository> repositories, int start,
+            final ArtifactContext context, final boolean addLeaf) {
+        List<Future<Node>> probes = new ArrayList<>(repositories.size());
+        for (int i = 0; i < repositories.size(); i++) {
+            final CmrRepository repository = repositories.get(i);
+            if (i < start
+                    || !repository.getRoot().isRemote()
+                    || !repository.supportsNamespace(context.getNamespace())) {
+                probes.add(null);
+                continue;
+            }
+            probes.add(probeExecutor.submit(new Callable<Node>() {
+                @Override
+                public Node call() {
+                    LookupCaching.enable();
+                    try {
+                        return fromRepository(repository, context, addLeaf);
+                    } finally {
+                        LookupCaching.disable();
+                    }
+                }
+            }));
+        }
+        return probes;
+    }
+
+    private static <T> T waitFor(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RepositoryException("Interrupted while looking up artifacts", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RepositoryException(cause);
+        }
+    }
+
     protected Node fromRepository(CmrRepository repository, ArtifactContext context, boolean addLeaf) {
         log.debug(" Trying repository " + repository.getDisplayString());
         Node node = repository.findParent(context);
         if (node != null) {
             if (addLeaf) {
                 Node parent = node;
-                context.toNode(parent);
-                NodeUtils.keepRepository(parent, repository);
-                try {
-                    String[] names = repository.getArtifactNames(context);
-                    for (String name : names) {
-                        node = parent.getChild(name);
-                        if (node != null) {
-                            break;
+                // the context is attached to the parent while we look
+                // for the leaf, so don't let concurrent lookups share it
+                synchronized (parent) {
+                    context.toNode(parent);
+                    NodeUtils.keepRepository(parent, repository);
+                    try {
+                        String[] names = repository.getArtifactNames(context);
+                        for (String name : names) {
+                            node = parent.getChild(name);
+                            if (node != null) {
+                                break;
+                            }
                         }
+                    } finally {
+                        ArtifactContext.removeNode(parent);
                     }
-                } finally {
-                    ArtifactContext.removeNode(parent);
                 }
             }
 
@@ -33,6 +33,7 @@ import org.eclipse.ceylon.cmr.api.ModuleVersionResult;
 import org.eclipse.ceylon.cmr.api.Overrides;
 import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.cmr.api.ModuleQuery.Retrieval;
+import org.eclipse.ceylon.cmr.spi.ContentStore;
 import org.eclipse.ceylon.cmr.spi.Node;
 import org.eclipse.ceylon.cmr.spi.OpenNode;
 import org.eclipse.ceylon.common.ModuleUtil;
@@ -171,6 +172,16 @@ public abstract class AbstractRepository implements CmrRepository {
         // this is only for non-Maven modules
         if(ModuleUtil.isMavenModule(query.getName()))
             return;
+        ModuleSearchIndex index = getSearchIndex();
+        try {
+            completeModules(index != null ? index.getRoot() : root, query, result);
+        } finally {
+            if (index != null)
+                index.flush();
+        }
+    }
+
+    private void completeModules(Node root, ModuleQuery query, ModuleSearchResult result) {
         // we NEED the -1 limit here to get empty tokens
         String[] paths = query.getName().split("\\.", -1);
         // find the right parent
@@ -190,6 +201,24 @@ public abstract class AbstractRepository implements CmrRepository {
         }
     }
 
+    /**
+     * Returns the module search index of this repository, if it has one.
+     */
+    private ModuleSearchIndex getSearchIndex() {
+        if (!isSearchIndexed())
+            return null;
+        ContentStore store = root.getService(ContentStore.class);
+        return store instanceof FileContentStore ? ((FileContentStore) store).getSearchIndex() : null;
+    }
+
+    /**
+     * Returns true if searching this repository can use an index of its
+     * modules, when it is a local folder.
+     */
+    protected boolean isSearchIndexed() {
+        return false;
+    }
+
     private void collectArtifacts(Node node, ModuleQuery lookup, ModuleSearchResult result) {
         // Winner of the less aptly-named method
         boolean isFolder = !node.hasBinaries();
@@ -310,7 +339,7 @@ public abstract class AbstractRepository implements CmrRepository {
             if (file == null)
                 return false; // can't verify
 
-            ModuleInfoReader reader = getModuleInfoReader(suffix);
+            ModuleInfoReader reader = getModuleInfoReader(node, suffix);
             if (reader != null) {
                 int[] versions = reader.getBinaryVersions(module, version, file);
                 if (versions == null)
@@ -405,7 +434,7 @@ public abstract class AbstractRepository implements CmrRepository {
         try {
             File file = artifact.getContent(File.class);
             if (file != null) {
-                ModuleInfoReader reader = getModuleInfoReader(artifact);
+                ModuleInfoReader reader = getModuleInfoReader(artifact, ArtifactContext.getSuffixFromNode(artifact));
                 if (reader != null) {
                     return reader.matchesModuleInfo(moduleName, version, file, query, getOverrides());
                 }
@@ -567,11 +596,15 @@ public abstract class AbstractRepository implements CmrRepository {
         // this is only for non-Maven modules
         if(ModuleUtil.isMavenModule(query.getName()))
             return;
-        // do the searching the hard way
+        // do the searching the hard way, unless we have an index
+        ModuleSearchIndex index = getSearchIndex();
         try {
-            searchModules(root, query, result, new Ret());
+            searchModules(index != null ? index.getRoot() : root, query, result, new Ret());
         } catch (GetOut e) {
             // easy out
+        } finally {
+            if (index != null)
+                index.flush();
         }
     }
 
@@ -725,7 +758,7 @@ public abstract class AbstractRepository implements CmrRepository {
         try {
             File file = artifact.getContent(File.class);
             if (file != null) {
-                ModuleInfoReader reader = getModuleInfoReader(suffix);
+                ModuleInfoReader reader = getModuleInfoReader(artifact, suffix);
                 if (reader != null) {
                     ModuleVersionDetails mvd2 = reader.readModuleInfo(name, version, file, memberName != null, getOverrides());
                     Set<String> matchingMembers = null;
@@ -832,9 +865,11 @@ public abstract class AbstractRepository implements CmrRepository {
         return artifact;
     }
     
-    private ModuleInfoReader getModuleInfoReader(Node infoNode) {
-        String suffix = ArtifactContext.getSuffixFromNode(infoNode);
-        return getModuleInfoReader(suffix);
+    private ModuleInfoReader getModuleInfoReader(Node artifact, String suffix) {
+        ModuleInfoReader reader = getModuleInfoReader(suffix);
+        ModuleSearchIndex index = getSearchIndex();
+        // remember what we read from indexed artifacts
+        return reader != null && index != null ? index.getCachingReader(reader, artifact) : reader;
     }
     
     private ModuleInfoReader getModuleInfoReader(String suffix) {
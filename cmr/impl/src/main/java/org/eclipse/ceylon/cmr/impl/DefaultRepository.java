@@ -39,6 +39,11 @@ public class DefaultRepository extends AbstractRepository {
         return new DefaultArtifactResult(this, manager, node);
     }
 
+    @Override
+    protected boolean isSearchIndexed() {
+        return true;
+    }
+
     protected static class DefaultArtifactResult extends AbstractCeylonArtifactResult {
 
         private Node node;
@@ -39,6 +39,7 @@ public class FileContentStore implements ContentStore, StructureBuilder {
 
     private final File root;
     private final ConcurrentMap<Node, File> cache = new ConcurrentHashMap<>();
+    private volatile ModuleSearchIndex searchIndex;
 
     public FileContentStore(File root) {
         if (root == null)
@@ -96,6 +97,19 @@ public class FileContentStore implements ContentStore, StructureBuilder {
         cache.clear();
     }
 
+    /**
+     * Returns the module search index of this store, which is shared with
+     * every other store for the same folder.
+     */
+    ModuleSearchIndex getSearchIndex() {
+        ModuleSearchIndex index = searchIndex;
+        if (index == null) {
+            index = ModuleSearchIndex.forRoot(root);
+            searchIndex = index;
+        }
+        return index;
+    }
+
     protected ContentHandle createContentHandle(Node owner, File file) {
         return file.isDirectory() ? new FolderContentHandle(owner, file) : new FileContentHandle(owner, file);
     }
@@ -141,6 +155,7 @@ public class FileContentStore implements ContentStore, StructureBuilder {
         try{
             IOUtils.writeToFile(file, stream);
             success = true;
+            getSearchIndex().added(file);
         }catch(SocketTimeoutException ex){
             SocketTimeoutException newEx = new SocketTimeoutException("Timed out reading from "+node.getStoreDisplayString());
             newEx.initCause(ex);
@@ -212,6 +227,7 @@ public class FileContentStore implements ContentStore, StructureBuilder {
         File[] files = file.listFiles();
         if ((files == null || files.length == 0) && (file.exists() == false || file.delete())) {
             cache.remove(node); // remove from cache, since probably not used anymore
+            getSearchIndex().removed(file);
             delete(file.getParentFile(), NodeUtils.firstParent(node));
         }
     }
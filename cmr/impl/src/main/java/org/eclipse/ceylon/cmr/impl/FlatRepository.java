@@ -58,6 +58,12 @@ public class FlatRepository extends DefaultRepository {
     public boolean supportsNamespace(String searchedNamespace) {
         return true;
     }
+
+    @Override
+    protected boolean isSearchIndexed() {
+        // modules are not in their own folders
+        return false;
+    }
     
     protected static class FlatArtifactResult extends DefaultArtifactResult {
 
@@ -0,0 +1,250 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.cmr.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.ceylon.common.config.Repositories;
+
+/**
+ * Persistent cache of what remote repositories told us about their URLs:
+ * whether they exist, and their size, modification date and ETag, so that
+ * we don't have to ask again each time we resolve modules.
+ *
+ * Entries are trusted for {@value #TTL_PROPERTY} seconds when the URL
+ * exists, and for {@value #NEGATIVE_TTL_PROPERTY} seconds when it doesn't,
+ * after which they are revalidated with a conditional request. A TTL of 0
+ * disables the cache. Entries live in the <tt>.http-metadata</tt> folder of
+ * the cache repository, one file per URL.
+ */
+final class HttpMetadataCache {
+
+    static final String TTL_PROPERTY = "ceylon.cmr.http.cache.ttl";
+    static final String NEGATIVE_TTL_PROPERTY = "ceylon.cmr.http.cache.negative.ttl";
+
+    private static final int MAGIC = 0xCE7C0004;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String CACHE_FOLDER = ".http-metadata";
+    private static final int MAX_ENTRIES_IN_MEMORY = 4096;
+
+    private static final ConcurrentMap<File, HttpMetadataCache> caches = new ConcurrentHashMap<File, HttpMetadataCache>();
+
+    /**
+     * What we know about a URL.
+     */
+    static final class Entry {
+        private final int status;
+        private final long size;
+        private final long lastModified;
+        private final String etag;
+        private final long checked;
+
+        Entry(int status, long size, long lastModified, String etag, long checked) {
+            this.status = status;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.checked = checked;
+        }
+
+        static Entry notFound() {
+            return new Entry(HttpURLConnection.HTTP_NOT_FOUND, -1, 0, null, System.currentTimeMillis());
+        }
+
+        static Entry fromConnection(HttpURLConnection con, int status) {
+            if (status != HttpURLConnection.HTTP_OK)
+                return new Entry(status, -1, 0, null, System.currentTimeMillis());
+            return new Entry(status, con.getContentLengthLong(), con.getLastModified(),
+                    con.getHeaderField("ETag"), System.currentTimeMillis());
+        }
+
+        boolean exists() {
+            return status == HttpURLConnection.HTTP_OK;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        String getETag() {
+            return etag;
+        }
+
+        /**
+         * Returns a copy of this entry which was checked just now.
+         */
+        Entry revalidated() {
+            return new Entry(status, size, lastModified, etag, System.currentTimeMillis());
+        }
+
+        private boolean isCacheable() {
+            return status == HttpURLConnection.HTTP_OK
+                    || status == HttpURLConnection.HTTP_NOT_FOUND
+                    || status == HttpURLConnection.HTTP_GONE;
+        }
+
+        private long getAge() {
+            return System.currentTimeMillis() - checked;
+        }
+    }
+
+    private final File folder;
+    private final long ttl;
+    private final long negativeTtl;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    private HttpMetadataCache(File folder) {
+        this.folder = folder;
+        this.ttl = getTtl(TTL_PROPERTY, 24 * 60 * 60);
+        this.negativeTtl = getTtl(NEGATIVE_TTL_PROPERTY, 5 * 60);
+    }
+
+    private static long getTtl(String property, long defaultSeconds) {
+        return Math.max(0, Long.getLong(property, defaultSeconds)) * 1000;
+    }
+
+    /**
+     * Returns the cache living in the current cache repository.
+     */
+    static HttpMetadataCache get() {
+        File folder = new File(Repositories.get().getCacheRepoDir(), CACHE_FOLDER).getAbsoluteFile();
+        HttpMetadataCache cache = caches.get(folder);
+        if (cache == null) {
+            cache = new HttpMetadataCache(folder);
+            HttpMetadataCache existing = caches.putIfAbsent(folder, cache);
+            if (existing != null)
+                cache = existing;
+        }
+        return cache;
+    }
+
+    boolean isEnabled() {
+        return ttl > 0 || negativeTtl > 0;
+    }
+
+    /**
+     * Returns true if the given entry is recent enough that we don't need to
+     * check it again.
+     */
+    boolean isFresh(Entry entry) {
+        long age = entry.getAge();
+        return age >= 0 && age < (entry.exists() ? ttl : negativeTtl);
+    }
+
+    /**
+     * Returns what we know about the given URL, fresh or not, or null.
+     */
+    Entry get(URL url) {
+        if (!isEnabled())
+            return null;
+        String key = url.toExternalForm();
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = read(key);
+            if (entry != null)
+                remember(key, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Records what we just learnt about the given URL, unless it is a
+     * transient answer.
+     */
+    void put(URL url, Entry entry) {
+        if (!isEnabled() || !entry.isCacheable())
+            return;
+        String key = url.toExternalForm();
+        remember(key, entry);
+        write(key, entry);
+    }
+
+    private void remember(String key, Entry entry) {
+        if (entries.size() >= MAX_ENTRIES_IN_MEMORY)
+            entries.clear();
+        entries.put(key, entry);
+    }
+
+    private File getCacheFile(String key) {
+        String sha1 = IOUtils.sha1(new ByteArrayInputStream(key.getBytes(UTF8)));
+        return sha1 != null ? new File(folder, sha1) : null;
+    }
+
+    private Entry read(String key) {
+        File cacheFile = getCacheFile(key);
+        if (cacheFile == null || !cacheFile.isFile())
+            return null;
+        try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (is.readInt() != MAGIC || !key.equals(is.readUTF()))
+                return null;
+            int status = is.readInt();
+            long size = is.readLong();
+            long lastModified = is.readLong();
+            String etag = is.readBoolean() ? is.readUTF() : null;
+            long checked = is.readLong();
+            return new Entry(status, size, lastModified, etag, checked);
+        } catch (IOException x) {
+            // corrupt or unreadable, we'll just overwrite it
+            return null;
+        }
+    }
+
+    private void write(String key, Entry entry) {
+        File cacheFile = getCacheFile(key);
+        if (cacheFile == null)
+            return;
+        if (!folder.isDirectory() && !folder.mkdirs())
+            return;
+        File tmp = null;
+        try {
+            // write to a temporary file first so concurrent readers never see
+            // a partial entry
+            tmp = File.createTempFile(cacheFile.getName(), ".tmp", folder);
+            try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                os.writeInt(MAGIC);
+                os.writeUTF(key);
+                os.writeInt(entry.status);
+                os.writeLong(entry.size);
+                os.writeLong(entry.lastModified);
+                os.writeBoolean(entry.etag != null);
+                if (entry.etag != null)
+                    os.writeUTF(entry.etag);
+                os.writeLong(entry.checked);
+            }
+            if (!tmp.renameTo(cacheFile)) {
+                // some platforms won't rename over an existing file
+                cacheFile.delete();
+                tmp.renameTo(cacheFile);
+            }
+        } catch (IOException x) {
+            // ignore, this is only a cache
+        } finally {
+            if (tmp != null && tmp.exists())
+                tmp.delete();
+        }
+    }
+}
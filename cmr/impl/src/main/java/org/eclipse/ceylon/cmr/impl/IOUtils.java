@@ -32,9 +32,9 @@ import java.util.jar.Manifest;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import org.eclipse.ceylon.cmr.api.ArtifactContext;
+import org.eclipse.ceylon.cmr.util.ArchiveWriter;
 import org.eclipse.ceylon.common.FileUtil;
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
 
@@ -224,35 +224,16 @@ public class IOUtils {
         }
         File zipFile = File.createTempFile("ceylon-zipper-", ".zip");
         try {
-            boolean skipManifest = manifest != null;
-            ZipOutputStream os = new ZipOutputStream(new FileOutputStream(zipFile));
-            try {
+            try (ArchiveWriter os = new ArchiveWriter(zipFile)) {
                 // JarOutputStream puts the manifest first, but does not create the
                 // META-INF folder before, so it causes issues on Windows, so we roll
-                // our own
-                if(skipManifest){
-                    // write the jar file first
-                    ZipEntry entry = new ZipEntry("META-INF/");
-                    os.putNextEntry(entry);
-                    os.closeEntry();
-                    entry = new ZipEntry("META-INF/MANIFEST.MF");
-                    os.putNextEntry(entry);
-                    manifest.write(os);
-                    os.closeEntry();
+                // our own, and the folder's own manifest is then ignored
+                if(manifest != null){
+                    os.addManifest(manifest);
                 }
                 for (ZipRoot zipRoot : zipRoots) {
-                    // first folders
-                    for (File f : zipRoot.root.listFiles()) {
-                        zipInternal(zipRoot.prefix, f, os, true, skipManifest);
-                    }
-                    // then files
-                    for (File f : zipRoot.root.listFiles()) {
-                        zipInternal(zipRoot.prefix, f, os, false, skipManifest);
-                    }
+                    os.addFolder(zipRoot.root, zipRoot.prefix);
                 }
-            } finally {
-                os.flush();
-                os.close();
             }
             return zipFile;
         } catch (IOException x) {
@@ -261,37 +242,6 @@ public class IOUtils {
         }
     }
 
-    private static void zipInternal(String path, File file, ZipOutputStream os, 
-            boolean justFolders, 
-            boolean skipManifest)
-                    throws IOException {
-        String filePath;
-        if(path.isEmpty())
-            filePath = file.getName();
-        else
-            filePath = path + "/" + file.getName();
-        if (file.isDirectory()) {
-            if(justFolders){
-                if(!filePath.equalsIgnoreCase("META-INF") || !skipManifest){
-                    ZipEntry entry = new ZipEntry(filePath+"/");
-                    os.putNextEntry(entry);
-                    os.closeEntry();
-                }
-            }
-            for (File f : file.listFiles())
-                zipInternal(filePath, f, os, justFolders, skipManifest);
-        } else if(!justFolders) {
-            if(!filePath.equalsIgnoreCase("META-INF/MANIFEST.MF") || !skipManifest){
-                ZipEntry entry = new ZipEntry(filePath);
-                os.putNextEntry(entry);
-                try (FileInputStream in = new FileInputStream(file)) {
-                    copyStreamNoClose(in, os);
-                }
-                os.closeEntry();
-            }
-        }
-    }
-
     public enum UnzipFailure {
         DestinationNotDirectory,
         CannotCreateDestination,
@@ -0,0 +1,338 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.cmr.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.ceylon.cmr.api.AbstractRepositoryManager;
+import org.eclipse.ceylon.cmr.api.ArtifactContext;
+import org.eclipse.ceylon.cmr.api.CmrRepository;
+import org.eclipse.ceylon.cmr.api.ModuleQuery;
+import org.eclipse.ceylon.cmr.api.ModuleSearchResult;
+import org.eclipse.ceylon.cmr.api.ModuleVersionQuery;
+import org.eclipse.ceylon.cmr.api.ModuleVersionResult;
+import org.eclipse.ceylon.cmr.api.Overrides;
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.spi.ContentStore;
+import org.eclipse.ceylon.common.log.Logger;
+import org.eclipse.ceylon.model.cmr.ArtifactResult;
+import org.eclipse.ceylon.model.cmr.RepositoryException;
+
+/**
+ * Repository manager which remembers the artifacts it found, for long-lived
+ * processes which resolve the same modules over and over again, like a
+ * compile server.
+ *
+ * A remembered artifact is only used while its checksum is the one it had
+ * when we found it, and while it doesn't show up in a local repository
+ * which comes before the one we found it in, such as the output repository
+ * when we compile it, otherwise we look it up again. We never remember
+ * missing artifacts, since they can show up at any time.
+ */
+public class MemoizingRepositoryManager extends AbstractRepositoryManager {
+
+    private static final int MAX_RESULTS = 4096;
+
+    private static final class Memo {
+        private final ArtifactResult result;
+        private final String checksum;
+        private final List<Shadow> shadows;
+
+        Memo(ArtifactResult result, String checksum, List<Shadow> shadows) {
+            this.result = result;
+            this.checksum = checksum;
+            this.shadows = shadows;
+        }
+
+        /**
+         * Returns the repository in which the artifact showed up, which
+         * comes before the one we found it in, or null.
+         */
+        CmrRepository getShadowingRepository() {
+            for (Shadow shadow : shadows) {
+                if (shadow.file.exists()) {
+                    return shadow.repository;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A file which would be found instead of a remembered artifact if it
+     * showed up.
+     */
+    private static final class Shadow {
+        private final File file;
+        private final CmrRepository repository;
+
+        Shadow(File file, CmrRepository repository) {
+            this.file = file;
+            this.repository = repository;
+        }
+    }
+
+    private final RepositoryManager delegate;
+    private final ConcurrentMap<String, Memo> results = new ConcurrentHashMap<String, Memo>();
+
+    public MemoizingRepositoryManager(RepositoryManager delegate, Logger log) {
+        super(log, delegate.getOverrides());
+        this.delegate = delegate;
+    }
+
+    public RepositoryManager getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public ArtifactResult getArtifactResult(ArtifactContext context) throws RepositoryException {
+        String key = getKey(context);
+        if (key == null) {
+            return delegate.getArtifactResult(context);
+        }
+        Memo memo = results.get(key);
+        if (memo != null) {
+            CmrRepository shadowing = memo.getShadowingRepository();
+            if (shadowing != null) {
+                log.debug("Artifact showed up in " + shadowing.getDisplayString() + ", looking it up again: " + context);
+                // it remembers that the artifact wasn't there
+                shadowing.refresh(true);
+            } else if (memo.checksum.equals(getChecksum(memo.result))) {
+                return memo.result;
+            } else {
+                log.debug("Artifact changed, looking it up again: " + context);
+            }
+            results.remove(key, memo);
+        }
+        ArtifactResult result = delegate.getArtifactResult(context);
+        if (result != null) {
+            String checksum = getChecksum(result);
+            if (checksum != null) {
+                if (results.size() >= MAX_RESULTS) {
+                    results.clear();
+                }
+                results.put(key, new Memo(result, checksum, getShadows(context, result)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the key we remember the result for the given context under, or
+     * null if its result should not be remembered.
+     */
+    private static String getKey(ArtifactContext context) {
+        if (context.getCallback() != null
+                || context.getSearchRepository() != null
+                || context.isForceOperation()
+                || context.isIgnoreCache()) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder();
+        key.append(context.getNamespace()).append(':')
+            .append(context.getName()).append('/')
+            .append(context.getVersion())
+            .append(Arrays.toString(context.getSuffixes()));
+        if (context.isLocalOnly())
+            key.append(",local");
+        if (context.isIgnoreSHA())
+            key.append(",nosha");
+        if (context.isThrowErrorIfMissing())
+            key.append(",throw");
+        if (context.isForceDescriptorCheck())
+            key.append(",descriptor");
+        if (context.isIgnoreDependencies())
+            key.append(",nodeps");
+        return key.toString();
+    }
+
+    /**
+     * Returns the files the given artifact would have in the local
+     * repositories which come before the one we found it in, which would be
+     * found instead if they showed up. Files which are already there are
+     * left out, since they weren't picked.
+     */
+    private List<Shadow> getShadows(ArtifactContext context, ArtifactResult result) {
+        File artifact;
+        try {
+            artifact = result.artifact();
+        } catch (RepositoryException x) {
+            return Collections.emptyList();
+        }
+        List<Shadow> shadows = new ArrayList<Shadow>();
+        for (CmrRepository repository : delegate.getRepositories()) {
+            if (!(repository instanceof AbstractRepository)) {
+                continue;
+            }
+            ContentStore store = repository.getRoot().getService(ContentStore.class);
+            if (!(store instanceof FileContentStore)) {
+                continue;
+            }
+            List<String> path = ((AbstractRepository) repository).getDefaultParentPath(context);
+            String[] names = repository.getArtifactNames(context);
+            for (File folder : store.getBaseDirectories()) {
+                for (String token : path) {
+                    folder = new File(folder, token);
+                }
+                for (String name : names) {
+                    File file = new File(folder, name);
+                    if (file.equals(artifact)) {
+                        return shadows;
+                    }
+                    if (!file.exists()) {
+                        shadows.add(new Shadow(file, repository));
+                    }
+                }
+            }
+        }
+        // we found it somewhere else, such as a remote repository
+        return shadows;
+    }
+
+    /**
+     * Returns the checksum of the given result's artifact: the contents of
+     * the SHA1 file the repositories keep next to it if there is one, or its
+     * size and modification date, or null if it doesn't exist.
+     */
+    private static String getChecksum(ArtifactResult result) {
+        File artifact;
+        try {
+            artifact = result.artifact();
+        } catch (RepositoryException x) {
+            return null;
+        }
+        if (artifact == null || !artifact.exists()) {
+            return null;
+        }
+        StringBuilder checksum = new StringBuilder();
+        checksum.append(artifact.length()).append('@').append(artifact.lastModified());
+        File sha1 = new File(artifact.getPath() + ArtifactContext.SHA1);
+        if (sha1.isFile()) {
+            try (InputStream is = new FileInputStream(sha1)) {
+                checksum.append('#').append(IOUtils.readSha1(is));
+            } catch (IOException x) {
+                // the size and date will have to do
+            }
+        }
+        return checksum.toString();
+    }
+
+    /**
+     * Forgets what we found for the given module, because we're changing it.
+     */
+    private void forget(ArtifactContext context) {
+        String prefix = context.getNamespace() + ":" + context.getName() + "/" + context.getVersion() + "[";
+        Iterator<String> keys = results.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(prefix)) {
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * Forgets all the artifacts we found.
+     */
+    public void clear() {
+        results.clear();
+    }
+
+    @Override
+    public ArtifactContext getArtifactOverride(ArtifactContext context) throws RepositoryException {
+        return delegate.getArtifactOverride(context);
+    }
+
+    @Override
+    public void putArtifact(ArtifactContext context, InputStream content) throws RepositoryException {
+        forget(context);
+        delegate.putArtifact(context, content);
+    }
+
+    @Override
+    public void putArtifact(ArtifactContext context, File content) throws RepositoryException {
+        forget(context);
+        delegate.putArtifact(context, content);
+    }
+
+    @Override
+    public void removeArtifact(ArtifactContext context) throws RepositoryException {
+        forget(context);
+        delegate.removeArtifact(context);
+    }
+
+    @Override
+    public boolean isSameFile(ArtifactContext context, File srcFile) throws RepositoryException {
+        if (delegate instanceof AbstractRepositoryManager) {
+            return ((AbstractRepositoryManager) delegate).isSameFile(context, srcFile);
+        }
+        return false;
+    }
+
+    @Override
+    public List<CmrRepository> getRepositories() {
+        return delegate.getRepositories();
+    }
+
+    @Override
+    public List<String> getRepositoriesDisplayString() {
+        return delegate.getRepositoriesDisplayString();
+    }
+
+    @Override
+    public ModuleSearchResult completeModules(ModuleQuery query) {
+        return delegate.completeModules(query);
+    }
+
+    @Override
+    public ModuleVersionResult completeVersions(ModuleVersionQuery query) {
+        return delegate.completeVersions(query);
+    }
+
+    @Override
+    public ModuleSearchResult searchModules(ModuleQuery query) {
+        return delegate.searchModules(query);
+    }
+
+    @Override
+    public void refresh(boolean recurse) {
+        clear();
+        delegate.refresh(recurse);
+    }
+
+    @Override
+    public Overrides getOverrides() {
+        return delegate.getOverrides();
+    }
+
+    @Override
+    public void setOverrides(Overrides overrides) {
+        delegate.setOverrides(overrides);
+    }
+
+    @Override
+    public boolean isValidNamespace(String namespace) {
+        return delegate.isValidNamespace(namespace);
+    }
+
+    @Override
+    public String toString() {
+        return "MemoizingRepositoryManager: " + delegate;
+    }
+}
@@ -0,0 +1,1051 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.cmr.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.eclipse.ceylon.cmr.api.ArtifactContext;
+import org.eclipse.ceylon.cmr.api.ModuleDependencyInfo;
+import org.eclipse.ceylon.cmr.api.ModuleInfo;
+import org.eclipse.ceylon.cmr.api.ModuleInfoReader;
+import org.eclipse.ceylon.cmr.api.ModuleVersionArtifact;
+import org.eclipse.ceylon.cmr.api.ModuleVersionDetails;
+import org.eclipse.ceylon.cmr.api.Overrides;
+import org.eclipse.ceylon.cmr.spi.Node;
+import org.eclipse.ceylon.cmr.spi.SizedInputStream;
+import org.eclipse.ceylon.common.Backend;
+import org.eclipse.ceylon.common.Backends;
+import org.eclipse.ceylon.common.config.Repositories;
+import org.eclipse.ceylon.model.cmr.ModuleScope;
+
+/**
+ * Persistent index of the modules of a local repository, used to search and
+ * complete modules without walking the repository folders and opening every
+ * module artifact.
+ *
+ * The index mirrors the folders and files of the repository as {@link Node}s,
+ * so that {@link AbstractRepository} can search it exactly like the
+ * repository itself, and remembers the module information read from the
+ * artifacts, which is keyed by their size and modification date. It lives in
+ * the <tt>.module-index</tt> folder of the cache repository, in files named
+ * after the SHA1 of the path of the repository: a snapshot, which is created
+ * the first time we search the repository, and a journal of the changes
+ * since, which {@link FileContentStore} appends to when artifacts are added or
+ * removed, and which gets merged into the snapshot once it grows too big.
+ *
+ * The snapshot also records the modification date of every folder, and the
+ * first time a search goes into a folder we check it against the repository,
+ * and scan the folder again if it has changed, so that we also see the
+ * changes made to the repository by other tools. Folders which a search
+ * doesn't go into aren't checked, and artifacts are only checked when their
+ * folder has changed.
+ */
+final class ModuleSearchIndex {
+
+    static final String INDEX_FOLDER = ".module-index";
+
+    private static final int MAGIC = 0xCE7C0004;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final long MIN_COMPACTION_SIZE = 64 * 1024;
+    /**
+     * Some file systems only record modification times to the second, or
+     * to two seconds for FAT, so a folder or an artifact modified more
+     * recently than that may change again without its modification time
+     * changing.
+     */
+    private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+    /**
+     * The modification time of a folder which we must scan again.
+     */
+    private static final long UNKNOWN = -1;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_DETAILS = 3;
+    private static final byte OP_BINARY_VERSIONS = 4;
+
+    /**
+     * One index per repository folder, so that file locks are only ever
+     * taken once per JVM.
+     */
+    private static final ConcurrentMap<File, ModuleSearchIndex> indexes = new ConcurrentHashMap<>();
+
+    private final File root;
+    private final File indexFolder;
+    private final File indexFile;
+    private final File journalFile;
+    private final File lockFile;
+
+    // guarded by this
+    private Folder tree;
+    private long indexModified;
+    private long indexLength;
+    private long journalLength;
+    private boolean rescanned;
+
+    /**
+     * Incremented for every search, so that we check each folder against
+     * the repository once per search.
+     */
+    private volatile int generation;
+
+    private final List<byte[]> pendingRecords = new ArrayList<>();
+
+    private final ConcurrentMap<String, Info> infos = new ConcurrentHashMap<>();
+
+    private ModuleSearchIndex(File root, File indexFolder) {
+        this.root = root;
+        this.indexFolder = indexFolder;
+        String name = hash(root.getPath());
+        this.indexFile = new File(indexFolder, name);
+        this.journalFile = new File(indexFolder, name + ".log");
+        this.lockFile = new File(indexFolder, name + ".lock");
+    }
+
+    static ModuleSearchIndex forRoot(File root) {
+        File key = root.getAbsoluteFile();
+        ModuleSearchIndex index = indexes.get(key);
+        if (index == null) {
+            index = new ModuleSearchIndex(key, 
+                    new File(Repositories.get().getCacheRepoDir(), INDEX_FOLDER));
+            ModuleSearchIndex existing = indexes.putIfAbsent(key, index);
+            if (existing != null)
+                index = existing;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the root node of the index for a new search, creating it if
+     * needed. Its folders are brought up to date with the repository as the
+     * search goes into them.
+     */
+    synchronized Node getRoot() {
+        generation++;
+        if (!indexFile.isFile()) {
+            if (tree == null)
+                rebuild();
+            return tree;
+        }
+        try {
+            if (tree == null
+                    || indexFile.lastModified() != indexModified
+                    || indexFile.length() != indexLength
+                    || journalFile.length() < journalLength) {
+                load();
+            }
+            if (journalFile.length() > journalLength)
+                replay();
+            if (journalLength > Math.max(MIN_COMPACTION_SIZE, indexLength / 2))
+                compact();
+        } catch (IOException | RuntimeException x) {
+            // corrupt, start over
+            rebuild();
+        }
+        return tree;
+    }
+
+    /**
+     * Scans the given folder again if it was modified since we last saw it,
+     * unless we already checked it during this search.
+     */
+    private void validate(Folder folder) {
+        int current = generation;
+        if (folder.checked == current)
+            return;
+        synchronized (this) {
+            if (folder.checked == current)
+                return;
+            folder.checked = current;
+            if (ArtifactContext.isDirectoryName(folder.label))
+                // we don't index what's inside
+                return;
+            File dir = folder.getFile();
+            if (dir.lastModified() != folder.lastModified) {
+                rescan(folder, dir);
+                rescanned = true;
+            }
+        }
+    }
+
+    /**
+     * Updates the children of the given folder, without going into the
+     * folders which were already there.
+     */
+    private void rescan(Folder folder, File dir) {
+        folder.lastModified = settled(dir.lastModified());
+        Set<String> names = new HashSet<>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (isIgnored(name))
+                    continue;
+                names.add(name);
+                Entry existing = folder.children.get(name);
+                if (file.isDirectory()) {
+                    if (existing instanceof Folder == false)
+                        folder.children.put(name, ArtifactContext.isDirectoryName(name)
+                                ? new Folder(name, folder, 0) : scan(file, name, folder));
+                } else {
+                    long size = file.length();
+                    long lastModified = file.lastModified();
+                    if (existing instanceof Artifact == false
+                            || ((Artifact) existing).size != size
+                            || ((Artifact) existing).lastModified != lastModified)
+                        folder.children.put(name, new Artifact(name, folder, size, lastModified));
+                }
+            }
+        }
+        for (String name : folder.children.keySet()) {
+            if (!names.contains(name))
+                folder.children.remove(name);
+        }
+    }
+
+    /**
+     * Returns the given modification time, unless it is too recent to
+     * tell further changes apart from it.
+     */
+    private static long settled(long lastModified) {
+        return System.currentTimeMillis() - lastModified < MODIFICATION_TIME_RESOLUTION
+                ? UNKNOWN : lastModified;
+    }
+
+    //
+    // Updates
+
+    /**
+     * Records that the given file was written to the repository.
+     */
+    void added(File file) {
+        String path = relativePath(file);
+        if (path == null)
+            return;
+        update(OP_ADD, path, file.length(), file.lastModified());
+    }
+
+    /**
+     * Records that the given file or folder was removed from the repository.
+     */
+    void removed(File file) {
+        String path = relativePath(file);
+        if (path == null)
+            return;
+        update(OP_REMOVE, path, 0, 0);
+    }
+
+    private synchronized void update(byte op, String path, long size, long lastModified) {
+        boolean persisted = indexFile.isFile();
+        if (!persisted && tree == null)
+            // nobody searched this repository yet
+            return;
+        if (persisted) {
+            try {
+                if (!append(Collections.singletonList(record(op, path, size, lastModified, null))))
+                    // we're behind, we'll replay it all next time
+                    return;
+            } catch (IOException x) {
+                // read-only repository, at least update it in memory
+                if (tree == null)
+                    return;
+            }
+        }
+        apply(op, path, size, lastModified, null);
+    }
+
+    /**
+     * Remembers what we read from an artifact. It is only written to the
+     * journal when we {@link #flush()}, to avoid taking the lock for every
+     * artifact.
+     */
+    private synchronized void remember(byte op, String path, Info info) {
+        apply(op, path, 0, 0, info);
+        if (indexFile.isFile()) {
+            try {
+                pendingRecords.add(record(op, path, 0, 0, info));
+            } catch (IOException x) {
+                // can't happen
+            }
+        }
+    }
+
+    /**
+     * Writes what we read from the artifacts since the last time to the
+     * journal, and the folders we scanned again to the snapshot.
+     */
+    synchronized void flush() {
+        try {
+            if (!pendingRecords.isEmpty())
+                append(pendingRecords);
+            if (rescanned && indexFile.isFile())
+                compact();
+        } catch (IOException x) {
+            // read-only repository, never mind
+        } finally {
+            pendingRecords.clear();
+            rescanned = false;
+        }
+    }
+
+    /**
+     * Appends the given records to the journal, and returns true if we had
+     * already replayed everything that was in it.
+     */
+    private boolean append(List<byte[]> records) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(lockFile, "rw")) {
+            FileLock lock = raf.getChannel().lock();
+            try {
+                long before = journalFile.length();
+                try (OutputStream os = new BufferedOutputStream(new FileOutputStream(journalFile, true))) {
+                    for (byte[] record : records)
+                        os.write(record);
+                }
+                if (tree == null || before != journalLength)
+                    return false;
+                journalLength = journalFile.length();
+                return true;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    private void apply(byte op, String path, long size, long lastModified, Info info) {
+        switch (op) {
+        case OP_ADD:
+            String[] parts = path.split("/");
+            Folder folder = tree;
+            for (int i = 0; i < parts.length - 1; i++) {
+                if (isIgnored(parts[i]))
+                    return;
+                Entry child = folder.children.get(parts[i]);
+                if (child instanceof Folder == false) {
+                    child = new Folder(parts[i], folder, UNKNOWN);
+                    folder.children.put(parts[i], child);
+                }
+                folder = (Folder) child;
+                if (ArtifactContext.isDirectoryName(parts[i]))
+                    // we don't index what's inside
+                    return;
+            }
+            String name = parts[parts.length - 1];
+            if (!isIgnored(name))
+                folder.children.put(name, new Artifact(name, folder, size, lastModified));
+            break;
+        case OP_REMOVE:
+            Entry entry = find(path);
+            if (entry != null && entry.parent != null)
+                entry.parent.children.remove(entry.label, entry);
+            break;
+        default:
+            Info existing = infos.get(path);
+            infos.put(path, existing != null ? existing.merge(info) : info);
+            break;
+        }
+    }
+
+    private Entry find(String path) {
+        Entry entry = tree;
+        for (String part : path.split("/")) {
+            if (entry instanceof Folder == false)
+                return null;
+            entry = ((Folder) entry).children.get(part);
+        }
+        return entry;
+    }
+
+    private String relativePath(File file) {
+        String rootPath = root.getPath();
+        String path = file.getAbsolutePath();
+        if (path.length() <= rootPath.length() + 1 || !path.startsWith(rootPath + File.separator))
+            return null;
+        path = path.substring(rootPath.length() + 1);
+        return File.separatorChar == '/' ? path : path.replace(File.separatorChar, '/');
+    }
+
+    private static boolean isIgnored(String name) {
+        // our own files, hidden folders and the package caches of the cache
+        // repository, none of which can contain modules
+        return name.startsWith(".");
+    }
+
+    //
+    // Module information
+
+    /**
+     * Returns a reader which remembers what the given reader finds in the
+     * given artifact of this index.
+     */
+    ModuleInfoReader getCachingReader(final ModuleInfoReader reader, final Node node) {
+        if (node instanceof Artifact == false)
+            return reader;
+        final Artifact artifact = (Artifact) node;
+        if (settled(artifact.lastModified) == UNKNOWN)
+            // it may still change without its size or modification date
+            // changing
+            return reader;
+        final String path = artifact.getPath();
+        // what we know of the artifact is as recent as the last scan of its
+        // folder, or the last time we wrote it, so we don't look at it again
+        final long size = artifact.size;
+        final long lastModified = artifact.lastModified;
+        return new ModuleInfoReader() {
+            @Override
+            public ModuleVersionDetails readModuleInfo(String moduleName, String version, File moduleArchive,
+                    boolean includeMembers, Overrides overrides) {
+                if (includeMembers || moduleArchive == null)
+                    return reader.readModuleInfo(moduleName, version, moduleArchive, includeMembers, overrides);
+                Info info = infos.get(path);
+                if (info == null || !info.detailsKnown || !info.isFor(size, lastModified)) {
+                    // read it without overrides, we apply them ourselves
+                    info = Info.ofDetails(size, lastModified,
+                            reader.readModuleInfo(moduleName, version, moduleArchive, false, null));
+                    remember(OP_DETAILS, path, info);
+                }
+                return info.details != null ? copy(info.details, moduleName, overrides) : null;
+            }
+
+            @Override
+            public boolean matchesModuleInfo(String moduleName, String version, File moduleArchive,
+                    String query, Overrides overrides) {
+                ModuleVersionDetails mvd = readModuleInfo(moduleName, version, moduleArchive, false, overrides);
+                return mvd != null && matches(mvd, query);
+            }
+
+            @Override
+            public int[] getBinaryVersions(String moduleName, String version, File moduleArchive) {
+                if (moduleArchive == null)
+                    return reader.getBinaryVersions(moduleName, version, moduleArchive);
+                Info info = infos.get(path);
+                if (info == null || !info.binaryVersionsKnown || !info.isFor(size, lastModified)) {
+                    info = Info.ofBinaryVersions(size, lastModified,
+                            reader.getBinaryVersions(moduleName, version, moduleArchive));
+                    remember(OP_BINARY_VERSIONS, path, info);
+                }
+                return info.binaryVersions != null ? info.binaryVersions.clone() : null;
+            }
+        };
+    }
+
+    private static ModuleVersionDetails copy(ModuleVersionDetails details, String moduleName, Overrides overrides) {
+        ModuleVersionDetails mvd = new ModuleVersionDetails(details.getNamespace(), details.getModule(),
+                details.getVersion(), details.getGroupId(), details.getArtifactId());
+        mvd.setLabel(details.getLabel());
+        mvd.setDoc(details.getDoc());
+        mvd.setLicense(details.getLicense());
+        mvd.getAuthors().addAll(details.getAuthors());
+        for (ModuleVersionArtifact mva : details.getArtifactTypes()) {
+            mvd.getArtifactTypes().add(new ModuleVersionArtifact(mva.getSuffix(),
+                    mva.getMajorBinaryVersion(), mva.getMinorBinaryVersion()));
+        }
+        Set<ModuleDependencyInfo> dependencies = details.getDependencies();
+        if (overrides != null) {
+            dependencies = overrides.applyOverrides(moduleName, details.getVersion(),
+                    new ModuleInfo(null, moduleName, details.getVersion(), details.getGroupId(),
+                            details.getArtifactId(), null, null, dependencies)).getDependencies();
+        }
+        mvd.getDependencies().addAll(dependencies);
+        return mvd;
+    }
+
+    private static boolean matches(ModuleVersionDetails mvd, String query) {
+        if (matches(mvd.getDoc(), query)
+                || matches(mvd.getLabel(), query)
+                || matches(mvd.getLicense(), query))
+            return true;
+        for (String author : mvd.getAuthors()) {
+            if (matches(author, query))
+                return true;
+        }
+        for (ModuleDependencyInfo dep : mvd.getDependencies()) {
+            if (matches(dep.getModuleName(), query))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean matches(String string, String query) {
+        return string != null && string.toLowerCase().contains(query);
+    }
+
+    //
+    // Persistence
+
+    private void rebuild() {
+        tree = scan(root, "", null);
+        infos.clear();
+        indexFolder.mkdirs();
+        try (RandomAccessFile raf = new RandomAccessFile(lockFile, "rw")) {
+            FileLock lock = raf.getChannel().lock();
+            try {
+                save();
+            } finally {
+                lock.release();
+            }
+        } catch (IOException x) {
+            // read-only repository, we'll just keep it in memory
+        }
+    }
+
+    private Folder scan(File dir, String label, Folder parent) {
+        Folder folder = new Folder(label, parent, settled(dir.lastModified()));
+        folder.checked = generation;
+        File[] files = dir.listFiles();
+        if (files == null)
+            return folder;
+        for (File file : files) {
+            String name = file.getName();
+            if (isIgnored(name))
+                continue;
+            if (file.isDirectory()) {
+                // we never search inside those
+                folder.children.put(name, ArtifactContext.isDirectoryName(name)
+                        ? new Folder(name, folder, 0) : scan(file, name, folder));
+            } else {
+                folder.children.put(name, new Artifact(name, folder, file.length(), file.lastModified()));
+            }
+        }
+        return folder;
+    }
+
+    private void load() throws IOException {
+        try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (is.readInt() != MAGIC)
+                throw new IOException("Not a module index: " + indexFile);
+            long modified = indexFile.lastModified();
+            long length = indexFile.length();
+            Folder newTree = readFolder(is, "", null);
+            infos.clear();
+            int count = is.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = readString(is);
+                infos.put(path, readInfo(is));
+            }
+            tree = newTree;
+            indexModified = modified;
+            indexLength = length;
+            journalLength = 0;
+        }
+    }
+
+    private void replay() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile, "r")) {
+            raf.seek(journalLength);
+            long end = raf.length();
+            while (raf.getFilePointer() + 4 <= end) {
+                int size = raf.readInt();
+                if (raf.getFilePointer() + size > end)
+                    // still being written
+                    break;
+                byte[] bytes = new byte[size];
+                raf.readFully(bytes);
+                DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes));
+                byte op = is.readByte();
+                String path = readString(is);
+                switch (op) {
+                case OP_ADD:
+                    apply(op, path, is.readLong(), is.readLong(), null);
+                    break;
+                case OP_REMOVE:
+                    apply(op, path, 0, 0, null);
+                    break;
+                case OP_DETAILS:
+                case OP_BINARY_VERSIONS:
+                    apply(op, path, 0, 0, readInfo(is));
+                    break;
+                default:
+                    throw new IOException("Corrupt module index journal: " + journalFile);
+                }
+                journalLength = raf.getFilePointer();
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(lockFile, "rw")) {
+            FileLock lock = raf.getChannel().lock();
+            try {
+                // catch up with whatever was written since we last looked,
+                // the folders we scanned again will be checked again
+                if (indexFile.lastModified() != indexModified || indexFile.length() != indexLength)
+                    load();
+                replay();
+                save();
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Writes the snapshot and clears the journal. Must hold the file lock.
+     */
+    private void save() throws IOException {
+        File tmp = File.createTempFile(indexFile.getName(), ".tmp", indexFolder);
+        try {
+            try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                os.writeInt(MAGIC);
+                writeFolder(os, tree);
+                List<Map.Entry<String, Info>> valid = new ArrayList<>();
+                for (Map.Entry<String, Info> entry : infos.entrySet()) {
+                    Entry artifact = find(entry.getKey());
+                    // drop what's stale
+                    if (artifact instanceof Artifact && entry.getValue().isFor((Artifact) artifact))
+                        valid.add(entry);
+                }
+                os.writeInt(valid.size());
+                for (Map.Entry<String, Info> entry : valid) {
+                    writeString(os, entry.getKey());
+                    writeInfo(os, entry.getValue());
+                }
+            }
+            if (!tmp.renameTo(indexFile)) {
+                // some platforms won't rename over an existing file
+                indexFile.delete();
+                if (!tmp.renameTo(indexFile))
+                    throw new IOException("Cannot write module index: " + indexFile);
+            }
+            journalFile.delete();
+            indexModified = indexFile.lastModified();
+            indexLength = indexFile.length();
+            journalLength = 0;
+        } finally {
+            if (tmp.exists())
+                tmp.delete();
+        }
+    }
+
+    private static byte[] record(byte op, String path, long size, long lastModified, Info info) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream os = new DataOutputStream(bytes);
+        os.writeByte(op);
+        writeString(os, path);
+        if (op == OP_ADD) {
+            os.writeLong(size);
+            os.writeLong(lastModified);
+        } else if (info != null) {
+            writeInfo(os, info);
+        }
+        os.flush();
+        ByteArrayOutputStream record = new ByteArrayOutputStream(bytes.size() + 4);
+        new DataOutputStream(record).writeInt(bytes.size());
+        bytes.writeTo(record);
+        return record.toByteArray();
+    }
+
+    private void writeFolder(DataOutputStream os, Folder folder) throws IOException {
+        os.writeLong(folder.lastModified);
+        os.writeInt(folder.children.size());
+        for (Entry child : folder.children.values()) {
+            writeString(os, child.label);
+            if (child instanceof Folder) {
+                os.writeBoolean(true);
+                writeFolder(os, (Folder) child);
+            } else {
+                Artifact artifact = (Artifact) child;
+                os.writeBoolean(false);
+                os.writeLong(artifact.size);
+                os.writeLong(artifact.lastModified);
+            }
+        }
+    }
+
+    private Folder readFolder(DataInputStream is, String label, Folder parent) throws IOException {
+        Folder folder = new Folder(label, parent, is.readLong());
+        int count = is.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = readString(is);
+            if (is.readBoolean())
+                folder.children.put(name, readFolder(is, name, folder));
+            else
+                folder.children.put(name, new Artifact(name, folder, is.readLong(), is.readLong()));
+        }
+        return folder;
+    }
+
+    private static void writeInfo(DataOutputStream os, Info info) throws IOException {
+        os.writeLong(info.size);
+        os.writeLong(info.lastModified);
+        os.writeBoolean(info.detailsKnown);
+        if (info.detailsKnown) {
+            ModuleVersionDetails mvd = info.details;
+            os.writeBoolean(mvd != null);
+            if (mvd != null) {
+                writeString(os, mvd.getNamespace());
+                writeString(os, mvd.getModule());
+                writeString(os, mvd.getVersion());
+                writeString(os, mvd.getGroupId());
+                writeString(os, mvd.getArtifactId());
+                writeString(os, mvd.getLabel());
+                writeString(os, mvd.getDoc());
+                writeString(os, mvd.getLicense());
+                os.writeInt(mvd.getAuthors().size());
+                for (String author : mvd.getAuthors())
+                    writeString(os, author);
+                os.writeInt(mvd.getDependencies().size());
+                for (ModuleDependencyInfo dep : mvd.getDependencies()) {
+                    writeString(os, dep.getNamespace());
+                    writeString(os, dep.getName());
+                    writeString(os, dep.getVersion());
+                    os.writeBoolean(dep.isOptional());
+                    os.writeBoolean(dep.isExport());
+                    List<String> backends = new ArrayList<>();
+                    for (Backend backend : dep.getNativeBackends())
+                        backends.add(backend.nativeAnnotation);
+                    os.writeInt(backends.size());
+                    for (String backend : backends)
+                        writeString(os, backend);
+                    os.writeInt(dep.getModuleScope() != null ? dep.getModuleScope().ordinal() : -1);
+                }
+                os.writeInt(mvd.getArtifactTypes().size());
+                for (ModuleVersionArtifact mva : mvd.getArtifactTypes()) {
+                    writeString(os, mva.getSuffix());
+                    writeInteger(os, mva.getMajorBinaryVersion());
+                    writeInteger(os, mva.getMinorBinaryVersion());
+                }
+            }
+        }
+        os.writeBoolean(info.binaryVersionsKnown);
+        if (info.binaryVersionsKnown) {
+            os.writeBoolean(info.binaryVersions != null);
+            if (info.binaryVersions != null) {
+                os.writeInt(info.binaryVersions[0]);
+                os.writeInt(info.binaryVersions[1]);
+            }
+        }
+    }
+
+    private static Info readInfo(DataInputStream is) throws IOException {
+        long size = is.readLong();
+        long lastModified = is.readLong();
+        boolean detailsKnown = is.readBoolean();
+        ModuleVersionDetails mvd = null;
+        if (detailsKnown && is.readBoolean()) {
+            String namespace = readString(is);
+            String module = readString(is);
+            String version = readString(is);
+            mvd = new ModuleVersionDetails(namespace, module, version, readString(is), readString(is));
+            mvd.setLabel(readString(is));
+            mvd.setDoc(readString(is));
+            mvd.setLicense(readString(is));
+            int count = is.readInt();
+            for (int i = 0; i < count; i++)
+                mvd.getAuthors().add(readString(is));
+            count = is.readInt();
+            for (int i = 0; i < count; i++) {
+                String depNamespace = readString(is);
+                String name = readString(is);
+                String depVersion = readString(is);
+                boolean optional = is.readBoolean();
+                boolean export = is.readBoolean();
+                int backendCount = is.readInt();
+                List<String> backends = new ArrayList<>(backendCount);
+                for (int j = 0; j < backendCount; j++)
+                    backends.add(readString(is));
+                int scope = is.readInt();
+                mvd.getDependencies().add(new ModuleDependencyInfo(depNamespace, name, depVersion, optional, export,
+                        Backends.fromAnnotations(backends), scope >= 0 ? ModuleScope.values()[scope] : null));
+            }
+            count = is.readInt();
+            for (int i = 0; i < count; i++)
+                mvd.getArtifactTypes().add(new ModuleVersionArtifact(readString(is), readInteger(is), readInteger(is)));
+        }
+        boolean binaryVersionsKnown = is.readBoolean();
+        int[] binaryVersions = null;
+        if (binaryVersionsKnown && is.readBoolean())
+            binaryVersions = new int[]{ is.readInt(), is.readInt() };
+        return new Info(size, lastModified, detailsKnown, mvd, binaryVersionsKnown, binaryVersions);
+    }
+
+    private static void writeString(DataOutputStream os, String string) throws IOException {
+        if (string == null) {
+            os.writeInt(-1);
+        } else {
+            // not writeUTF(), docs can be longer than 64k
+            byte[] bytes = string.getBytes(UTF8);
+            os.writeInt(bytes.length);
+            os.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream is) throws IOException {
+        int length = is.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        is.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static void writeInteger(DataOutputStream os, Integer i) throws IOException {
+        os.writeBoolean(i != null);
+        if (i != null)
+            os.writeInt(i);
+    }
+
+    private static Integer readInteger(DataInputStream is) throws IOException {
+        return is.readBoolean() ? is.readInt() : null;
+    }
+
+    private static String hash(String path) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(path.getBytes(UTF8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException x) {
+            // can't happen, SHA-1 must be implemented
+            throw new RuntimeException(x);
+        }
+    }
+
+    //
+    // Contents
+
+    /**
+     * What we read from an artifact, as long as it has the given size and
+     * modification date.
+     */
+    private static final class Info {
+        final long size;
+        final long lastModified;
+        final boolean detailsKnown;
+        final ModuleVersionDetails details;
+        final boolean binaryVersionsKnown;
+        final int[] binaryVersions;
+
+        Info(long size, long lastModified,
+                boolean detailsKnown, ModuleVersionDetails details,
+                boolean binaryVersionsKnown, int[] binaryVersions) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.detailsKnown = detailsKnown;
+            this.details = details;
+            this.binaryVersionsKnown = binaryVersionsKnown;
+            this.binaryVersions = binaryVersions;
+        }
+
+        static Info ofDetails(long size, long lastModified, ModuleVersionDetails details) {
+            return new Info(size, lastModified, true, details, false, null);
+        }
+
+        static Info ofBinaryVersions(long size, long lastModified, int[] binaryVersions) {
+            return new Info(size, lastModified, false, null, true, binaryVersions);
+        }
+
+        boolean isFor(long size, long lastModified) {
+            return this.size == size && this.lastModified == lastModified;
+        }
+
+        boolean isFor(Artifact artifact) {
+            return isFor(artifact.size, artifact.lastModified);
+        }
+
+        Info merge(Info info) {
+            if (size != info.size || lastModified != info.lastModified)
+                return info;
+            return new Info(size, lastModified,
+                    detailsKnown || info.detailsKnown, info.detailsKnown ? info.details : details,
+                    binaryVersionsKnown || info.binaryVersionsKnown,
+                    info.binaryVersionsKnown ? info.binaryVersions : binaryVersions);
+        }
+    }
+
+    private abstract class Entry implements Node {
+        final String label;
+        final Folder parent;
+
+        Entry(String label, Folder parent) {
+            this.label = label;
+            this.parent = parent;
+        }
+
+        String getPath() {
+            return parent == null || parent.parent == null ? label : parent.getPath() + "/" + label;
+        }
+
+        File getFile() {
+            return parent == null ? root : new File(root, getPath());
+        }
+
+        @Override
+        public String getLabel() {
+            return label;
+        }
+
+        @Override
+        public <T> T getValue(Class<T> valueType) {
+            return null;
+        }
+
+        @Override
+        public Node getChild(String label) {
+            return null;
+        }
+
+        @Override
+        public Iterable<? extends Node> getChildren() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public InputStream getInputStream() throws IOException {
+            SizedInputStream stream = getSizedInputStream();
+            return stream != null ? stream.getInputStream() : null;
+        }
+
+        @Override
+        public SizedInputStream getSizedInputStream() throws IOException {
+            File file = getFile();
+            return new SizedInputStream(new FileInputStream(file), file.length());
+        }
+
+        @Override
+        public <T> T getContent(Class<T> contentType) throws IOException {
+            return File.class.equals(contentType) ? contentType.cast(getFile()) : null;
+        }
+
+        @Override
+        public Node getParent(String label) {
+            return parent != null && parent.label.equals(label) ? parent : null;
+        }
+
+        @Override
+        public Iterable<? extends Node> getParents() {
+            return parent != null ? Collections.singletonList(parent) : Collections.<Node>emptyList();
+        }
+
+        @Override
+        public boolean isRemote() {
+            return false;
+        }
+
+        @Override
+        public String getDisplayString() {
+            return getFile().getPath();
+        }
+
+        @Override
+        public String getStoreDisplayString() {
+            return root.getPath();
+        }
+
+        @Override
+        public String toString() {
+            return "Indexed: " + getDisplayString();
+        }
+    }
+
+    private final class Folder extends Entry {
+        final ConcurrentSkipListMap<String, Entry> children = new ConcurrentSkipListMap<>();
+        /**
+         * The modification time of the folder when we last scanned it, or
+         * {@link #UNKNOWN}
+         */
+        long lastModified;
+        /**
+         * The {@link #generation} of the last search which checked it
+         */
+        volatile int checked = -1;
+
+        Folder(String label, Folder parent, long lastModified) {
+            super(label, parent);
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public Node getChild(String label) {
+            validate(this);
+            return children.get(label);
+        }
+
+        @Override
+        public Iterable<? extends Node> getChildren() {
+            validate(this);
+            return children.values();
+        }
+
+        @Override
+        public boolean hasBinaries() {
+            return false;
+        }
+
+        @Override
+        public SizedInputStream getSizedInputStream() throws IOException {
+            return null;
+        }
+
+        @Override
+        public long getLastModified() throws IOException {
+            return getFile().lastModified();
+        }
+
+        @Override
+        public long getSize() throws IOException {
+            return 0;
+        }
+    }
+
+    private final class Artifact extends Entry {
+        final long size;
+        final long lastModified;
+
+        Artifact(String label, Folder parent, long size, long lastModified) {
+            super(label, parent);
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean hasBinaries() {
+            return true;
+        }
+
+        @Override
+        public long getLastModified() throws IOException {
+            return lastModified;
+        }
+
+        @Override
+        public long getSize() throws IOException {
+            return size;
+        }
+    }
+}
@@ -37,7 +37,7 @@ public class RemoteContentStore extends URLContentStore {
     }
 
     protected SizedInputStream openSizedStream(final URL url) throws IOException {
-        if (connectionAllowed()) {
+        if (connectionAllowed() && !isKnownMissing(url)) {
             try {
                 return new RetryingSizedInputStream(url, proxy, timeout);
             } catch (NotGettable e) {
@@ -51,13 +51,21 @@ public class RemoteContentStore extends URLContentStore {
         Attempts a = new Attempts();
         while (true) {
             try {
-                return head(url) != null;
+                HttpMetadataCache.Entry entry = probe(url);
+                return entry != null && entry.exists();
             } catch (IOException e) {
                 a.giveup("testing existence of", url, e);
             }
         }
     }
 
+    @Override
+    HttpMetadataCache getMetadataCache() {
+        // we can't write, so the contents only change on the server side
+        HttpMetadataCache cache = HttpMetadataCache.get();
+        return cache.isEnabled() ? cache : null;
+    }
+
     public ContentHandle peekContent(Node node) {
         return urlExists(node) ? createContentHandle(null, null, null, node) : null;
     }
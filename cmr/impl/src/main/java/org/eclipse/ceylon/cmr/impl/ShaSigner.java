@@ -43,7 +43,12 @@ public class ShaSigner {
         String sha1 = hash(file, "SHA-1", log);
         if(sha1 == null)
             return null;
-        
+        return sign(file, sha1, log, verbose);
+    }
+
+    /** Writes the given SHA-1 hash of the given file, when it was computed
+     * while writing the file, for example by {@link org.eclipse.ceylon.cmr.util.ArchiveWriter}. */
+    public static File sign(File file, String sha1, Logger log, boolean verbose){
         File sha1File = new File(file.getPath()+".sha1");
         if(verbose){
             log.info("[signing jar "+file.getPath()+" into: "+sha1File.getPath()+"]");
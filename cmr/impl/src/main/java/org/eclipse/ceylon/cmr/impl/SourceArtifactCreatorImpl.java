@@ -11,7 +11,6 @@ package org.eclipse.ceylon.cmr.impl;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -19,13 +18,12 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.jar.JarOutputStream;
-import java.util.zip.ZipEntry;
 
 import org.eclipse.ceylon.cmr.api.ArtifactContext;
 import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.cmr.api.SourceArtifactCreator;
 import org.eclipse.ceylon.cmr.api.SourceStream;
+import org.eclipse.ceylon.cmr.util.ArchiveWriter;
 import org.eclipse.ceylon.cmr.util.JarUtils;
 import org.eclipse.ceylon.common.FileUtil;
 import org.eclipse.ceylon.common.log.Logger;
@@ -61,36 +59,44 @@ public class SourceArtifactCreatorImpl implements SourceArtifactCreator {
     public Set<String> copyStreams(Collection<SourceStream> sourceStreams) throws IOException {
         final Set<String> copiedFiles = new HashSet<String>();
         File outputSrcFile = File.createTempFile("ceylon-", ".src");
-        try (JarOutputStream srcOutputStream = new JarOutputStream(new FileOutputStream(outputSrcFile))) {
-            final Set<SourceStream> uniqueSources = new HashSet<SourceStream>(sourceStreams);
-            final Set<String> folders = new HashSet<String>();
-            for (SourceStream sourceStream : uniqueSources) {
-                // must remove the prefix first
-                String sourceFile = sourceStream.getSourceRelativePath();
-                if (!copiedFiles.contains(sourceFile)) {
-                    srcOutputStream.putNextEntry(new ZipEntry(sourceFile));
-                    try {
+        try {
+            ArchiveWriter srcArchive = new ArchiveWriter(outputSrcFile);
+            try {
+                final Set<SourceStream> uniqueSources = new HashSet<SourceStream>(sourceStreams);
+                final Set<String> folders = new HashSet<String>();
+                for (SourceStream sourceStream : uniqueSources) {
+                    // must remove the prefix first
+                    String sourceFile = sourceStream.getSourceRelativePath();
+                    if (!copiedFiles.contains(sourceFile)) {
                         InputStream inputStream = sourceStream.getInputStream();
                         try {
-                            JarUtils.copy(inputStream, srcOutputStream);
+                            srcArchive.addStream(sourceFile, inputStream);
                         } finally {
                             inputStream.close();
                         }
-                    } finally {
-                        srcOutputStream.closeEntry();
+                        copiedFiles.add(sourceFile);
+                        String folder = JarUtils.getFolder(sourceFile);
+                        if(folder != null)
+                            folders.add(folder);
                     }
-                    copiedFiles.add(sourceFile);
-                    String folder = JarUtils.getFolder(sourceFile);
-                    if(folder != null)
-                        folders.add(folder);
                 }
-            }
-            JarUtils.finishUpdatingJar(originalSrcFile, outputSrcFile, srcContext, srcOutputStream, new JarUtils.JarEntryFilter() {
-                @Override
-                public boolean avoid(String entryFullName) {
-                    return copiedFiles.contains(entryFullName);
+                // copy the other entries of the previous archive as they are
+                if (JarUtils.isValidJar(originalSrcFile)) {
+                    srcArchive.copyFrom(originalSrcFile, new ArchiveWriter.EntryVisitor() {
+                        @Override
+                        public boolean accept(String name, boolean directory) {
+                            return !copiedFiles.contains(name);
+                        }
+                    });
                 }
-            }, repoManager, verbose, log, folders);
+                for (String folder : folders) {
+                    srcArchive.addDirectory(folder);
+                }
+            } finally {
+                srcArchive.close();
+            }
+            File sha1File = ShaSigner.sign(outputSrcFile, srcArchive.getSha1(), log, verbose);
+            JarUtils.publish(outputSrcFile, sha1File, srcContext, repoManager, log);
         } finally {
             FileUtil.deleteQuietly(outputSrcFile);
         }
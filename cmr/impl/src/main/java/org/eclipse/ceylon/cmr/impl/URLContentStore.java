@@ -16,7 +16,6 @@ import java.net.Proxy;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -43,11 +42,11 @@ import org.eclipse.ceylon.cmr.spi.ContentHandle;
 import org.eclipse.ceylon.cmr.spi.Node;
 import org.eclipse.ceylon.cmr.spi.OpenNode;
 import org.eclipse.ceylon.cmr.spi.SizedInputStream;
+import org.eclipse.ceylon.cmr.util.HttpTransport;
 import org.eclipse.ceylon.cmr.util.WS;
 import org.eclipse.ceylon.cmr.util.WS.Link;
 import org.eclipse.ceylon.cmr.util.WS.Parser;
 import org.eclipse.ceylon.cmr.util.WS.XMLHandler;
-import org.eclipse.ceylon.common.Constants;
 import org.eclipse.ceylon.common.ModuleUtil;
 import org.eclipse.ceylon.common.log.Logger;
 
@@ -129,18 +128,27 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
         try{
             // we support both API 1 to 5
             URL rootURL = getURL("?version="+herdRequestedApi);
-            HttpURLConnection con;
-            if (proxy != null) {
-                con = (HttpURLConnection) rootURL.openConnection(proxy);
-            } else {
-                con = (HttpURLConnection) rootURL.openConnection();
+            // we remember servers which are not Herd, Herd links are not cached
+            HttpMetadataCache cache = getMetadataCache();
+            HttpMetadataCache.Entry cached = cache != null ? cache.get(rootURL) : null;
+            if (cached != null && !cached.exists() && cache.isFresh(cached)) {
+                log.debug("Remote host is known not to be a Herd repo");
+                return false;
+            }
+            HttpURLConnection con = getTransport().open(rootURL, proxy, timeout);
+            if (con == null) {
+                return false;
             }
             try{
-                con.setConnectTimeout(timeout);
-                con.setReadTimeout(timeout * Constants.READ_TIMEOUT_MULTIPLIER);
                 con.setRequestMethod("OPTIONS");
-                if(con.getResponseCode() != HttpURLConnection.HTTP_OK)
+                int status = con.getResponseCode();
+                if(status != HttpURLConnection.HTTP_OK){
+                    // errors may be transient, only remember definite answers
+                    if(status == HttpURLConnection.HTTP_NOT_FOUND
+                            || status == HttpURLConnection.HTTP_GONE)
+                        rememberNotHerd(rootURL);
                     return false;
+                }
                 String herdVersion = con.getHeaderField("X-Herd-Version");
                 log.debug("Herd version: "+herdVersion);
                 try{
@@ -151,10 +159,12 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
                 boolean ret = herdVersion != null && !herdVersion.isEmpty();
                 if(ret){
                     collectHerdLinks(con);
+                }else{
+                    rememberNotHerd(rootURL);
                 }
                 return ret;
             }finally{
-                con.disconnect();
+                getTransport().release(con);
             }
         }catch(Exception x){
             log.debug("Failed to determine if remote host is a Herd repo: "+x.getMessage());
@@ -162,6 +172,13 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
         }
     }
 
+    private void rememberNotHerd(URL rootURL) {
+        HttpMetadataCache cache = getMetadataCache();
+        if (cache != null) {
+            cache.put(rootURL, HttpMetadataCache.Entry.notFound());
+        }
+    }
+
     private void collectHerdLinks(HttpURLConnection con) {
         // collect the links
         try{
@@ -347,8 +364,8 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
         Attempts a = new Attempts();
         while (true) {
             try {
-                HttpURLConnection con = head(url);
-                return con != null ? con.getLastModified() : -1;
+                HttpMetadataCache.Entry entry = probe(url);
+                return entry != null && entry.exists() ? entry.getLastModified() : -1;
             } catch (IOException e) {
                 a.giveup("last modified of", url, e);
             }
@@ -359,8 +376,8 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
         Attempts a = new Attempts();
         while (true) {
             try {
-                HttpURLConnection con = head(url);
-                return con != null ? con.getContentLength() : -1;
+                HttpMetadataCache.Entry entry = probe(url);
+                return entry != null && entry.exists() ? entry.getSize() : -1;
             } catch (IOException e) {
                 a.giveup("size of", url, e);
             }
@@ -368,32 +385,117 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
     }
 
     protected final HttpURLConnection head(final URL url) throws IOException {
+        HttpURLConnection huc = head(url, null);
+        if (huc != null && huc.getResponseCode() == 200) {
+            return huc;
+        }
+        return null;
+    }
+
+    /**
+     * Makes a HEAD request, which is conditional if we have validators for
+     * what we know about the URL, and returns the released connection,
+     * or null if we can't connect.
+     */
+    private HttpURLConnection head(final URL url, HttpMetadataCache.Entry cached) throws IOException {
         if (connectionAllowed()) {
-            final URLConnection conn;
-            if (proxy != null) {
-                conn = url.openConnection(proxy);
-            } else {
-                conn = url.openConnection();
-            }
-            if (conn instanceof HttpURLConnection) {
-                HttpURLConnection huc = (HttpURLConnection) conn;
-                huc.setConnectTimeout(timeout);
-                huc.setReadTimeout(timeout * Constants.READ_TIMEOUT_MULTIPLIER);
-                huc.setRequestMethod("HEAD");
-                addCredentials(huc);
-                conn.connect();
-                int code = huc.getResponseCode();
-                log.debug("Connect: " + huc.getHeaderField("Connection"));
-                huc.disconnect();
-                log.debug("Got " + code + " for url: " + url);
-                if (code == 200) {
-                    return huc;
+            HttpURLConnection huc = getTransport().open(url, proxy, timeout);
+            if (huc != null) {
+                try {
+                    huc.setRequestMethod("HEAD");
+                    addCredentials(huc);
+                    if (cached != null && cached.exists()) {
+                        addValidators(huc, cached);
+                    }
+                    huc.connect();
+                    int code = huc.getResponseCode();
+                    log.debug("Connect: " + huc.getHeaderField("Connection"));
+                    log.debug("Got " + code + " for url: " + url);
+                } finally {
+                    // don't disconnect, so the connection can be reused
+                    getTransport().release(huc);
                 }
+                return huc;
             }
         }
         return null;
     }
 
+    /**
+     * Returns what we know about the given URL, asking the server only if
+     * we don't know it already, or if what we know is too old. Returns null
+     * if we can't ask the server.
+     */
+    HttpMetadataCache.Entry probe(final URL url) throws IOException {
+        HttpMetadataCache cache = getMetadataCache();
+        HttpMetadataCache.Entry cached = cache != null ? cache.get(url) : null;
+        if (cached != null && cache.isFresh(cached) && connectionAllowed()) {
+            log.debug("Using cached metadata for url: " + url);
+            return cached;
+        }
+        HttpURLConnection huc = head(url, cached);
+        if (huc == null) {
+            return null;
+        }
+        int code = huc.getResponseCode();
+        HttpMetadataCache.Entry entry;
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            log.debug("Cached metadata still valid for url: " + url);
+            entry = cached.revalidated();
+        } else {
+            entry = HttpMetadataCache.Entry.fromConnection(huc, code);
+        }
+        if (cache != null) {
+            cache.put(url, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns true if we know that the given URL doesn't exist, without
+     * asking the server.
+     */
+    boolean isKnownMissing(URL url) {
+        HttpMetadataCache cache = getMetadataCache();
+        HttpMetadataCache.Entry cached = cache != null ? cache.get(url) : null;
+        return cached != null && !cached.exists() && cache.isFresh(cached);
+    }
+
+    /**
+     * Records the response we got for the given URL.
+     */
+    void remember(URL url, HttpURLConnection con, int code) {
+        HttpMetadataCache cache = getMetadataCache();
+        if (cache != null) {
+            cache.put(url, HttpMetadataCache.Entry.fromConnection(con, code));
+        }
+    }
+
+    private void addValidators(HttpURLConnection huc, HttpMetadataCache.Entry cached) {
+        if (cached.getETag() != null) {
+            huc.setRequestProperty("If-None-Match", cached.getETag());
+        }
+        if (cached.getLastModified() > 0) {
+            huc.setIfModifiedSince(cached.getLastModified());
+        }
+    }
+
+    /**
+     * Returns the cache of what we know about our URLs, or null if what
+     * they point to can change behind our back, for example because we
+     * write to them.
+     */
+    HttpMetadataCache getMetadataCache() {
+        return null;
+    }
+
+    /**
+     * Returns the transport we open our connections with.
+     */
+    protected HttpTransport getTransport() {
+        return HttpTransport.get();
+    }
+
     /**
      * Adds the {@code Authorization} request header for HTTP basic authentication
      */
@@ -855,6 +957,7 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
                 try{
                     connection = makeConnection(url, -1);
                     int code = connection.getResponseCode();
+                    remember(url, connection, code);
                     if (code != -1 && code != 200) {
                         log.info("Got " + code + " for url: " + url);
                         NotGettable notGettable = new NotGettable();
@@ -883,7 +986,8 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
     
         /**
          * According to https://docs.oracle.com/javase/8/docs/technotes/guides/net/http-keepalive.html
-         * we should read the error stream so the connection can be reused.
+         * we should read the error stream so the connection can be reused,
+         * which the transport does when we release it.
          */
         protected void cleanUpStreams(Exception inflight) {
             if (stream != null) {
@@ -895,21 +999,7 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
                 }
             }
             
-            if (connection != null) {
-                byte[] buf = new byte[8*2014];
-                InputStream es = connection.getErrorStream();
-                if (es != null) {
-                    try {
-                        try {
-                            while (es.read(buf) > 0) {}
-                        } finally {
-                            es.close();
-                        }
-                    } catch (IOException errorStreamError) {
-                        inflight.addSuppressed(errorStreamError);
-                    }
-                }
-            }
+            getTransport().release(connection);
         }
     
         private void debug(String s) {
@@ -918,18 +1008,10 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
         
         protected HttpURLConnection makeConnection(URL url, long start)
                 throws IOException, SocketTimeoutException, NotGettable {
-            URLConnection conn;
-            if (proxy != null) {
-                conn = url.openConnection(proxy);
-            } else {
-                conn = url.openConnection();
-            }   
-            if (!(conn instanceof HttpURLConnection)) {
+            HttpURLConnection huc = getTransport().open(url, proxy, timeout);
+            if (huc == null) {
                 throw new NotGettable();
             }
-            HttpURLConnection huc = (HttpURLConnection)conn;
-            huc.setConnectTimeout(timeout);
-            huc.setReadTimeout(timeout * Constants.READ_TIMEOUT_MULTIPLIER);
             boolean useRangeRequest = start > 0;
             if (useRangeRequest) {
                 String range = "bytes "+start+"-";
@@ -938,7 +1020,12 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
             }
             addCredentials(huc);
             debug("Connecting to " + url);
-            conn.connect();
+            try {
+                huc.connect();
+            } catch (IOException | RuntimeException x) {
+                getTransport().release(huc);
+                throw x;
+            }
             return huc;
         }
         
@@ -957,8 +1044,12 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
          */
         class ReconnectingInputStream extends InputStream {
             public void close() throws IOException {
-                if (stream != null) {
-                    stream.close();
+                try {
+                    if (stream != null) {
+                        stream.close();
+                    }
+                } finally {
+                    getTransport().release(connection);
                 }
             }
             
@@ -972,6 +1063,8 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
                         int result = stream.read(buf, offset, length);
                         if (result != -1) {
                             bytesRead+=result;
+                        } else {
+                            getTransport().release(connection);
                         }
                         return result;
                     } catch (IOException readException) {
@@ -987,6 +1080,8 @@ public abstract class URLContentStore extends AbstractRemoteContentStore {
                         int result = stream.read();
                         if (result != -1) {
                             bytesRead++;
+                        } else {
+                            getTransport().release(connection);
                         }
                         return result;
                     } catch (IOException readException) {
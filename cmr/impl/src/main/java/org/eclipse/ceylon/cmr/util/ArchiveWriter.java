@@ -0,0 +1,827 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.cmr.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Writes a zip, jar or car archive, deflating its entries in parallel
+ * while the entries before them are written. Entries are written in the
+ * order they are added, and adding an entry whose name was already added
+ * does nothing, so the first one wins.
+ *
+ * Entries of existing archives are copied as they are, without being
+ * inflated and deflated again, and the SHA1 hash of the archive is
+ * computed while it is written, so that it doesn't need to be read again
+ * to be signed.
+ *
+ * Entries are deflated by a shared pool of daemon threads, whose size is
+ * the number of processors, unless the {@value #THREADS_PROPERTY} system
+ * property says otherwise. If it is 0 or 1, entries are deflated by the
+ * thread which adds them. Adding entries blocks while the entries waiting
+ * to be written hold more than 32MB.
+ *
+ * Entries which are already compressed, like nested archives and images,
+ * are stored rather than deflated again.
+ */
+public class ArchiveWriter implements Closeable {
+
+    public static final String THREADS_PROPERTY = "ceylon.archive.threads";
+
+    /** Decides which entries of an existing archive to copy */
+    public static interface EntryVisitor {
+        /**
+         * Returns true if the given entry should be copied, called for every
+         * entry of the archive, in order.
+         */
+        public boolean accept(String name, boolean directory) throws IOException;
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int ZIP64_END_HEADER = 0x06064b50;
+    private static final int ZIP64_END_HEADER_SIZE = 56;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int ZIP64_EXTRA = 0x0001;
+
+    private static final int STORED = ZipEntry.STORED;
+    private static final int DEFLATED = ZipEntry.DEFLATED;
+    private static final int FLAG_ENCRYPTED = 0x1;
+    private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+    private static final int FLAG_UTF8 = 0x800;
+    private static final int VERSION = 20;
+    private static final int VERSION_ZIP64 = 45;
+
+    private static final long MAX_16 = 0xFFFFL;
+    private static final long MAX_32 = 0xFFFFFFFFL;
+
+    private static final int THREADS = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+    private static final long MAX_PENDING_BYTES = 32 * 1024 * 1024;
+    private static final String[] COMPRESSED_SUFFIXES = {
+        ".jar", ".car", ".zip", ".war", ".ear", ".jmod",
+        ".gz", ".tgz", ".bz2", ".xz", ".7z",
+        ".png", ".jpg", ".jpeg", ".gif",
+    };
+    private static ExecutorService executor;
+
+    private final File file;
+    private final HashingOutputStream out;
+    private final Set<String> names = new HashSet<String>();
+    /** The entries being deflated or waiting to be written, in order */
+    private final Deque<Pending> pending = new ArrayDeque<Pending>();
+    /** The written entries, for the central directory */
+    private final List<Chunk> written = new ArrayList<Chunk>();
+    /** The archives we copy entries from, until we wrote them */
+    private final List<RawArchive> sources = new ArrayList<RawArchive>();
+    private final int maxPending;
+    /** The bytes the pending entries hold */
+    private long pendingBytes;
+    private String sha1;
+    private boolean closed;
+
+    public ArchiveWriter(File file) throws IOException {
+        this.file = file;
+        this.out = new HashingOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+        this.maxPending = Math.max(1, THREADS) * 4;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the SHA1 hash of the archive, as hexadecimal, once it has
+     * been closed.
+     */
+    public String getSha1() {
+        return sha1;
+    }
+
+    /**
+     * Returns true if an entry of the given name was added.
+     */
+    public boolean contains(String name) {
+        return names.contains(name);
+    }
+
+    /**
+     * Adds a folder entry, whose name gets a trailing slash if it has
+     * none.
+     */
+    public boolean addDirectory(String name) throws IOException {
+        if (!name.endsWith("/"))
+            name += "/";
+        if (!names.add(name))
+            return false;
+        enqueue(done(new Chunk(name, System.currentTimeMillis())), 0);
+        return true;
+    }
+
+    /**
+     * Adds a {@code META-INF/MANIFEST.MF} entry, after a {@code META-INF/}
+     * folder entry: jar readers want it first, and some of them want its
+     * folder before it.
+     */
+    public boolean addManifest(Manifest manifest) throws IOException {
+        addDirectory("META-INF/");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        manifest.write(bytes);
+        return addBytes("META-INF/MANIFEST.MF", bytes.toByteArray());
+    }
+
+    public boolean addBytes(String name, byte[] bytes) throws IOException {
+        return addBytes(name, bytes, System.currentTimeMillis());
+    }
+
+    public boolean addBytes(final String name, final byte[] bytes, final long time) throws IOException {
+        if (!names.add(name))
+            return false;
+        enqueue(new Callable<Chunk>() {
+            @Override
+            public Chunk call() throws Exception {
+                return deflate(name, time, bytes);
+            }
+        }, bytes.length);
+        return true;
+    }
+
+    /**
+     * Adds an entry with what remains of the given stream, which is read
+     * right away, but not closed.
+     */
+    public boolean addStream(String name, InputStream in) throws IOException {
+        if (names.contains(name))
+            return false;
+        return addBytes(name, readFully(in, -1));
+    }
+
+    /**
+     * Adds an entry with the contents of the given file, which is read
+     * when it gets deflated.
+     */
+    public boolean addFile(final String name, final File file) throws IOException {
+        if (!names.add(name))
+            return false;
+        final long size = file.length();
+        enqueue(new Callable<Chunk>() {
+            @Override
+            public Chunk call() throws Exception {
+                if (size > Integer.MAX_VALUE - 8)
+                    throw new IOException("File too large for an archive entry: " + file);
+                try (InputStream in = new FileInputStream(file)) {
+                    return deflate(name, file.lastModified(), readFully(in, (int) size));
+                }
+            }
+        }, size);
+        return true;
+    }
+
+    /**
+     * Adds the contents of the given folder, with the given path prefix:
+     * first all its folders, then all its files.
+     */
+    public void addFolder(File root, String prefix) throws IOException {
+        if (!root.isDirectory())
+            throw new IOException("Zip root must be a folder");
+        File[] files = root.listFiles();
+        for (File f : files) {
+            addFolder(prefix, f, true);
+        }
+        for (File f : files) {
+            addFolder(prefix, f, false);
+        }
+    }
+
+    private void addFolder(String path, File file, boolean justFolders) throws IOException {
+        String filePath = path.isEmpty() ? file.getName() : path + "/" + file.getName();
+        if (file.isDirectory()) {
+            if (justFolders)
+                addDirectory(filePath);
+            for (File f : file.listFiles())
+                addFolder(filePath, f, justFolders);
+        } else if (!justFolders) {
+            addFile(filePath, file);
+        }
+    }
+
+    /**
+     * Copies the entries of the given archive the given visitor accepts,
+     * unless an entry of the same name was already added. Entries are
+     * copied compressed, as they are, unless we can't read the archive
+     * ourselves, like Zip64 or encrypted archives, in which case they are
+     * inflated and deflated again.
+     */
+    public void copyFrom(File archive, EntryVisitor visitor) throws IOException {
+        RawArchive raw = RawArchive.open(archive);
+        if (raw == null) {
+            copyInflated(archive, visitor);
+            return;
+        }
+        boolean used = false;
+        try {
+            for (Chunk entry : raw.entries) {
+                if (visitor.accept(entry.name, entry.name.endsWith("/"))
+                        && names.add(entry.name)) {
+                    used = true;
+                    // copied when it gets written
+                    enqueue(done(entry), 0);
+                }
+            }
+        } finally {
+            if (used) {
+                sources.add(raw);
+            } else {
+                raw.close();
+            }
+        }
+    }
+
+    private void copyInflated(File archive, EntryVisitor visitor) throws IOException {
+        try (ZipFile zip = new ZipFile(archive)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!visitor.accept(name, entry.isDirectory()) || names.contains(name))
+                    continue;
+                if (entry.isDirectory()) {
+                    addDirectory(name);
+                } else {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        addBytes(name, readFully(in, (int) entry.getSize()), entry.getTime());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the entries which are not written yet and the central
+     * directory, and closes the archive.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            while (!pending.isEmpty()) {
+                write(pending.poll());
+            }
+            writeCentralDirectory();
+            out.flush();
+            sha1 = toHexString(out.digest.digest());
+        } finally {
+            for (Pending entry : pending) {
+                entry.future.cancel(false);
+            }
+            pending.clear();
+            for (RawArchive source : sources) {
+                source.close();
+            }
+            sources.clear();
+            out.close();
+        }
+    }
+
+    private void enqueue(Callable<Chunk> task, long size) throws IOException {
+        if (closed)
+            throw new IOException("Archive already closed: " + file);
+        ExecutorService executor = getExecutor();
+        enqueue(executor != null ? executor.submit(task) : done(task), size);
+    }
+
+    /**
+     * Adds an entry which holds the given number of bytes until it is
+     * written.
+     */
+    private void enqueue(Future<Chunk> future, long size) throws IOException {
+        if (closed)
+            throw new IOException("Archive already closed: " + file);
+        pending.add(new Pending(future, size));
+        pendingBytes += size;
+        // write what's ready, and wait if we're too far ahead
+        while (!pending.isEmpty()
+                && (pending.peek().future.isDone() 
+                        || pending.size() > maxPending
+                        || pendingBytes > MAX_PENDING_BYTES)) {
+            write(pending.poll());
+        }
+    }
+
+    private static Future<Chunk> done(final Chunk chunk) {
+        return done(new Callable<Chunk>() {
+            @Override
+            public Chunk call() {
+                return chunk;
+            }
+        });
+    }
+
+    private static Future<Chunk> done(Callable<Chunk> task) {
+        FutureTask<Chunk> future = new FutureTask<Chunk>(task);
+        future.run();
+        return future;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (THREADS <= 1)
+            return null;
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+                private int count;
+                @Override
+                public synchronized Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "ceylon-archive-writer-" + (++count));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    private void write(Pending entry) throws IOException {
+        pendingBytes -= entry.size;
+        Chunk chunk;
+        try {
+            chunk = entry.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing " + file);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+        chunk.write(out);
+        written.add(chunk);
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        long start = out.count;
+        for (Chunk chunk : written) {
+            chunk.writeCentralHeader(out);
+        }
+        long end = out.count;
+        long count = written.size();
+        long size = end - start;
+        ByteBuffer buf;
+        if (count >= MAX_16 || start >= MAX_32 || size >= MAX_32) {
+            buf = buffer(ZIP64_END_HEADER_SIZE + ZIP64_LOCATOR_SIZE);
+            buf.putInt(ZIP64_END_HEADER);
+            buf.putLong(ZIP64_END_HEADER_SIZE - 12);
+            buf.putShort((short) VERSION_ZIP64);
+            buf.putShort((short) VERSION_ZIP64);
+            buf.putInt(0);
+            buf.putInt(0);
+            buf.putLong(count);
+            buf.putLong(count);
+            buf.putLong(size);
+            buf.putLong(start);
+            buf.putInt(ZIP64_LOCATOR);
+            buf.putInt(0);
+            buf.putLong(end);
+            buf.putInt(1);
+            out.write(buf.array());
+        }
+        buf = buffer(END_HEADER_SIZE);
+        buf.putInt(END_HEADER);
+        buf.putShort((short) 0);
+        buf.putShort((short) 0);
+        buf.putShort((short) Math.min(count, MAX_16));
+        buf.putShort((short) Math.min(count, MAX_16));
+        buf.putInt((int) Math.min(size, MAX_32));
+        buf.putInt((int) Math.min(start, MAX_32));
+        buf.putShort((short) 0);
+        out.write(buf.array());
+    }
+
+    private static Chunk deflate(String name, long time, byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        Chunk chunk = new Chunk(name, time);
+        chunk.crc = crc.getValue();
+        chunk.size = bytes.length;
+        if (isCompressed(name, bytes)) {
+            chunk.method = STORED;
+            chunk.data = bytes;
+            chunk.compressedSize = bytes.length;
+            return chunk;
+        }
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream deflated = new ByteArrayOutputStream(bytes.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                deflated.write(buffer, 0, n);
+                if (deflated.size() >= bytes.length) {
+                    // not worth it
+                    break;
+                }
+            }
+            if (deflater.finished() && deflated.size() < bytes.length) {
+                chunk.method = DEFLATED;
+                chunk.data = deflated.toByteArray();
+            } else {
+                chunk.method = STORED;
+                chunk.data = bytes;
+            }
+        } finally {
+            deflater.end();
+        }
+        chunk.compressedSize = chunk.data.length;
+        return chunk;
+    }
+
+    /**
+     * Returns true if the given entry is already compressed, like a
+     * nested archive or an image, so that deflating it again would cost
+     * time for next to nothing.
+     */
+    private static boolean isCompressed(String name, byte[] bytes) {
+        String lowerCaseName = name.toLowerCase(Locale.ROOT);
+        for (String suffix : COMPRESSED_SUFFIXES) {
+            if (lowerCaseName.endsWith(suffix))
+                return true;
+        }
+        // zip and gzip streams, whatever their name
+        return bytes.length >= 4
+                && bytes[0] == 'P' && bytes[1] == 'K' && bytes[2] == 3 && bytes[3] == 4
+            || bytes.length >= 2
+                && (bytes[0] & 0xFF) == 0x1F && (bytes[1] & 0xFF) == 0x8B;
+    }
+
+    /**
+     * An entry being deflated or waiting to be written, with the number
+     * of bytes it holds until then.
+     */
+    private static class Pending {
+        final Future<Chunk> future;
+        final long size;
+
+        Pending(Future<Chunk> future, long size) {
+            this.future = future;
+            this.size = size;
+        }
+    }
+
+    /**
+     * An entry, with what we need to write its local header, its data and
+     * its central directory header.
+     */
+    private static class Chunk {
+        final String name;
+        final byte[] nameBytes;
+        int flags = FLAG_UTF8;
+        int method = STORED;
+        int dosTime;
+        long crc;
+        long compressedSize;
+        long size;
+        byte[] comment;
+        long offset;
+        /** The stored or deflated data, for new entries */
+        byte[] data;
+        /** Where the local header is, for copied entries */
+        RawArchive source;
+        long sourceOffset;
+
+        Chunk(String name, long time) {
+            this.name = name;
+            this.nameBytes = name.getBytes(UTF8);
+            this.dosTime = toDosTime(time);
+        }
+
+        Chunk(String name, byte[] nameBytes) {
+            this.name = name;
+            this.nameBytes = nameBytes;
+        }
+
+        void write(HashingOutputStream out) throws IOException {
+            offset = out.count;
+            ByteBuffer buf = buffer(LOCAL_HEADER_SIZE);
+            buf.putInt(LOCAL_HEADER);
+            buf.putShort((short) VERSION);
+            buf.putShort((short) flags);
+            buf.putShort((short) method);
+            buf.putInt(dosTime);
+            buf.putInt((int) crc);
+            buf.putInt((int) compressedSize);
+            buf.putInt((int) size);
+            buf.putShort((short) nameBytes.length);
+            buf.putShort((short) 0);
+            out.write(buf.array());
+            out.write(nameBytes);
+            if (data != null) {
+                out.write(data);
+                // don't keep it until we write the central directory
+                data = null;
+            } else if (source != null) {
+                source.copy(this, out);
+                source = null;
+            }
+        }
+
+        void writeCentralHeader(HashingOutputStream out) throws IOException {
+            boolean zip64 = offset >= MAX_32;
+            int commentLength = comment != null ? comment.length : 0;
+            ByteBuffer buf = buffer(CENTRAL_HEADER_SIZE);
+            buf.putInt(CENTRAL_HEADER);
+            buf.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION));
+            buf.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION));
+            buf.putShort((short) flags);
+            buf.putShort((short) method);
+            buf.putInt(dosTime);
+            buf.putInt((int) crc);
+            buf.putInt((int) compressedSize);
+            buf.putInt((int) size);
+            buf.putShort((short) nameBytes.length);
+            buf.putShort((short) (zip64 ? 12 : 0));
+            buf.putShort((short) commentLength);
+            buf.putShort((short) 0);
+            buf.putShort((short) 0);
+            buf.putInt(0);
+            buf.putInt((int) Math.min(offset, MAX_32));
+            out.write(buf.array());
+            out.write(nameBytes);
+            if (zip64) {
+                ByteBuffer extra = buffer(12);
+                extra.putShort((short) ZIP64_EXTRA);
+                extra.putShort((short) 8);
+                extra.putLong(offset);
+                out.write(extra.array());
+            }
+            if (comment != null)
+                out.write(comment);
+        }
+    }
+
+    /**
+     * An existing archive, whose central directory we read to copy its
+     * entries without inflating them.
+     */
+    private static class RawArchive implements Closeable {
+        final RandomAccessFile file;
+        final FileChannel channel;
+        final List<Chunk> entries = new ArrayList<Chunk>();
+
+        private RawArchive(RandomAccessFile file) {
+            this.file = file;
+            this.channel = file.getChannel();
+        }
+
+        /**
+         * Returns null if we can't copy the entries of the given archive
+         * ourselves.
+         */
+        static RawArchive open(File archive) throws IOException {
+            RawArchive raw = new RawArchive(new RandomAccessFile(archive, "r"));
+            boolean ok = false;
+            try {
+                ok = raw.readCentralDirectory();
+                return ok ? raw : null;
+            } finally {
+                if (!ok)
+                    raw.close();
+            }
+        }
+
+        private boolean readCentralDirectory() throws IOException {
+            long length = channel.size();
+            if (length < END_HEADER_SIZE)
+                return false;
+            // the end header is followed by a comment of up to 64K
+            int tail = (int) Math.min(length, END_HEADER_SIZE + MAX_16);
+            ByteBuffer buf = read(length - tail, tail);
+            int end = -1;
+            for (int i = tail - END_HEADER_SIZE; i >= 0; i--) {
+                if (buf.getInt(i) == END_HEADER
+                        && i + END_HEADER_SIZE + (buf.getShort(i + 20) & 0xFFFF) == tail) {
+                    end = i;
+                    break;
+                }
+            }
+            if (end < 0)
+                return false;
+            if (end >= ZIP64_LOCATOR_SIZE && buf.getInt(end - ZIP64_LOCATOR_SIZE) == ZIP64_LOCATOR)
+                return false;
+            int count = buf.getShort(end + 10) & 0xFFFF;
+            long size = buf.getInt(end + 12) & MAX_32;
+            long start = buf.getInt(end + 16) & MAX_32;
+            if (count == MAX_16 || size == MAX_32 || start == MAX_32
+                    || start + size > length - tail + end)
+                return false;
+            ByteBuffer cd = read(start, (int) size);
+            int pos = 0;
+            for (int i = 0; i < count; i++) {
+                if (pos + CENTRAL_HEADER_SIZE > size || cd.getInt(pos) != CENTRAL_HEADER)
+                    return false;
+                int flags = cd.getShort(pos + 8) & 0xFFFF;
+                int nameLength = cd.getShort(pos + 28) & 0xFFFF;
+                int extraLength = cd.getShort(pos + 30) & 0xFFFF;
+                int commentLength = cd.getShort(pos + 32) & 0xFFFF;
+                if ((flags & FLAG_ENCRYPTED) != 0
+                        || pos + CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength > size)
+                    return false;
+                byte[] nameBytes = new byte[nameLength];
+                cd.position(pos + CENTRAL_HEADER_SIZE);
+                cd.get(nameBytes);
+                Chunk entry = new Chunk(new String(nameBytes, UTF8), nameBytes);
+                // we write the sizes and CRC in the local header
+                entry.flags = flags & ~FLAG_DATA_DESCRIPTOR;
+                entry.method = cd.getShort(pos + 10) & 0xFFFF;
+                entry.dosTime = cd.getInt(pos + 12);
+                entry.crc = cd.getInt(pos + 16) & MAX_32;
+                entry.compressedSize = cd.getInt(pos + 20) & MAX_32;
+                entry.size = cd.getInt(pos + 24) & MAX_32;
+                entry.sourceOffset = cd.getInt(pos + 42) & MAX_32;
+                if (commentLength > 0) {
+                    entry.comment = new byte[commentLength];
+                    cd.position(pos + CENTRAL_HEADER_SIZE + nameLength + extraLength);
+                    cd.get(entry.comment);
+                }
+                entry.source = this;
+                entries.add(entry);
+                pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+            }
+            return true;
+        }
+
+        void copy(Chunk entry, OutputStream out) throws IOException {
+            ByteBuffer header = read(entry.sourceOffset, LOCAL_HEADER_SIZE);
+            if (header.getInt(0) != LOCAL_HEADER)
+                throw new IOException("Invalid local header for entry " + entry.name + " in archive");
+            long position = entry.sourceOffset + LOCAL_HEADER_SIZE
+                    + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+            long remaining = entry.compressedSize;
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(remaining, 65536));
+            while (remaining > 0) {
+                buf.clear();
+                buf.limit((int) Math.min(remaining, buf.capacity()));
+                int n = channel.read(buf, position);
+                if (n < 0)
+                    throw new IOException("Unexpected end of archive in entry " + entry.name);
+                out.write(buf.array(), 0, n);
+                position += n;
+                remaining -= n;
+            }
+        }
+
+        private ByteBuffer read(long position, int length) throws IOException {
+            ByteBuffer buf = buffer(length);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, position + buf.position()) < 0)
+                    throw new IOException("Unexpected end of archive");
+            }
+            buf.flip();
+            return buf;
+        }
+
+        @Override
+        public void close() throws IOException {
+            file.close();
+        }
+    }
+
+    /**
+     * Counts and hashes what we write.
+     */
+    private static class HashingOutputStream extends OutputStream {
+        final OutputStream out;
+        final MessageDigest digest;
+        long count;
+
+        HashingOutputStream(OutputStream out) {
+            this.out = out;
+            try {
+                this.digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                // can't happen, specs say SHA-1 must be implemented
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            digest.update((byte) b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            digest.update(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int toDosTime(long time) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(time);
+        int year = c.get(Calendar.YEAR);
+        if (year < 1980)
+            return (1 << 21) | (1 << 16);
+        return (year - 1980) << 25
+                | (c.get(Calendar.MONTH) + 1) << 21
+                | c.get(Calendar.DAY_OF_MONTH) << 16
+                | c.get(Calendar.HOUR_OF_DAY) << 11
+                | c.get(Calendar.MINUTE) << 5
+                | c.get(Calendar.SECOND) >> 1;
+    }
+
+    private static byte[] readFully(InputStream in, int size) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(size > 0 ? size : 8192);
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final char[] Hexadecimal = {'0','1','2','3','4','5','6','7','8','9','a','b','c','d','e','f'};
+
+    private static String toHexString(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int b = 0, c = 0; b < bytes.length; b++) {
+            int v = (int) bytes[b] & 0xFF;
+            chars[c++] = Hexadecimal[v / 16];
+            chars[c++] = Hexadecimal[v % 16];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,267 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.cmr.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.ceylon.common.Constants;
+
+/**
+ * Opens the HTTP connections we use to talk to remote repositories.
+ *
+ * The JDK keeps connections alive and reuses them for the next request to
+ * the same host, but only if we read their response and don't disconnect
+ * them, so every connection opened with {@link #open(URL, Proxy, int)} must
+ * be given back with {@link #release(HttpURLConnection)} once its response
+ * body, if any, has been closed.
+ *
+ * At most {@value #MAX_REQUESTS_PER_HOST_PROPERTY} requests are in flight
+ * for each host at any time, which defaults to the number of idle
+ * connections the JDK keeps alive per host, so that they can all be reused.
+ * A value of 0 removes the limit. A connection which is never released
+ * gives its slot back once it is garbage collected, and we stop waiting for
+ * a slot after the connection timeout.
+ *
+ * Subclasses can use another HTTP implementation by overriding
+ * {@link #openConnection(URL, Proxy)}, and be installed with
+ * {@link #set(HttpTransport)}.
+ */
+public class HttpTransport {
+
+    public static final String MAX_REQUESTS_PER_HOST_PROPERTY = "ceylon.cmr.http.max.requests.per.host";
+
+    /** How much of an error response we read to keep its connection */
+    private static final int MAX_DRAIN = 64 * 1024;
+    /** How long we wait for a free slot when there's no timeout */
+    private static final int DEFAULT_WAIT = 60 * 1000;
+    /** How often we look for leaked connections while we wait for a slot */
+    private static final int CLEANUP_INTERVAL = 100;
+
+    private static volatile HttpTransport instance = new HttpTransport();
+
+    private final int maxRequestsPerHost;
+    private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<String, Semaphore>();
+    private final ConcurrentMap<Lease, Lease> inFlight = new ConcurrentHashMap<Lease, Lease>();
+    private final ReferenceQueue<HttpURLConnection> leaked = new ReferenceQueue<HttpURLConnection>();
+
+    /**
+     * The slot held by a connection. It only refers weakly to the connection,
+     * so that a connection which is never released can be garbage collected,
+     * and then gives its slot back.
+     */
+    private static final class Lease extends WeakReference<HttpURLConnection> {
+        private final int hash;
+        private final Semaphore permits;
+
+        Lease(HttpURLConnection con, Semaphore permits, ReferenceQueue<HttpURLConnection> queue) {
+            super(con, queue);
+            this.hash = System.identityHashCode(con);
+            this.permits = permits;
+        }
+
+        /**
+         * A lease to look up the one of the given connection.
+         */
+        Lease(HttpURLConnection con) {
+            super(con);
+            this.hash = System.identityHashCode(con);
+            this.permits = null;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Lease))
+                return false;
+            HttpURLConnection con = get();
+            return con != null && con == ((Lease) obj).get();
+        }
+    }
+
+    public HttpTransport() {
+        this(Integer.getInteger(MAX_REQUESTS_PER_HOST_PROPERTY, Integer.getInteger("http.maxConnections", 5)));
+    }
+
+    public HttpTransport(int maxRequestsPerHost) {
+        this.maxRequestsPerHost = Math.max(0, maxRequestsPerHost);
+    }
+
+    /**
+     * Returns the transport used by remote repositories.
+     */
+    public static HttpTransport get() {
+        return instance;
+    }
+
+    /**
+     * Sets the transport used by remote repositories.
+     */
+    public static void set(HttpTransport transport) {
+        if (transport == null)
+            throw new IllegalArgumentException("Null transport");
+        instance = transport;
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * Opens a connection to the given URL, through the given proxy if it is
+     * not null, once there is a free slot for its host. Returns null if the
+     * URL is not an HTTP URL.
+     */
+    public HttpURLConnection open(URL url, Proxy proxy, int timeout) throws IOException {
+        URLConnection conn = openConnection(url, proxy);
+        if (!(conn instanceof HttpURLConnection)) {
+            return null;
+        }
+        HttpURLConnection huc = (HttpURLConnection) conn;
+        huc.setConnectTimeout(timeout);
+        huc.setReadTimeout(timeout * Constants.READ_TIMEOUT_MULTIPLIER);
+        Semaphore permits = getPermits(url);
+        if (permits != null) {
+            try {
+                // if someone forgot to release their connection and still
+                // holds on to it we'd rather exceed the limit than wait
+                // forever
+                if (acquire(permits, timeout > 0 ? timeout : DEFAULT_WAIT)) {
+                    Lease lease = new Lease(huc, permits, leaked);
+                    inFlight.put(lease, lease);
+                }
+            } catch (InterruptedException x) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to connect to " + url);
+            }
+        }
+        return huc;
+    }
+
+    private boolean acquire(Semaphore permits, long wait) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait);
+        while (true) {
+            expungeLeakedConnections();
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+                return false;
+            long slice = Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(CLEANUP_INTERVAL));
+            if (permits.tryAcquire(slice, TimeUnit.NANOSECONDS))
+                return true;
+        }
+    }
+
+    /**
+     * Gives back the slots of the connections which were garbage collected
+     * without being released.
+     */
+    private void expungeLeakedConnections() {
+        Reference<? extends HttpURLConnection> ref;
+        while ((ref = leaked.poll()) != null) {
+            Lease lease = inFlight.remove(ref);
+            if (lease != null) {
+                lease.permits.release();
+            }
+        }
+    }
+
+    /**
+     * Opens the connection for the given URL, override this to use another
+     * HTTP implementation.
+     */
+    protected URLConnection openConnection(URL url, Proxy proxy) throws IOException {
+        if (proxy != null) {
+            return url.openConnection(proxy);
+        } else {
+            return url.openConnection();
+        }
+    }
+
+    /**
+     * Gives back a connection obtained from {@link #open(URL, Proxy, int)}
+     * so that it can be reused, reading what's left of its error response.
+     * The caller must have closed the response body it read, if any. Can
+     * be called more than once.
+     */
+    public void release(HttpURLConnection con) {
+        if (con == null) {
+            return;
+        }
+        try {
+            drainErrorStream(con);
+        } finally {
+            Lease lease = inFlight.remove(new Lease(con));
+            if (lease != null) {
+                lease.clear();
+                lease.permits.release();
+            }
+        }
+    }
+
+    private static void drainErrorStream(HttpURLConnection con) {
+        InputStream es = con.getErrorStream();
+        if (es == null) {
+            return;
+        }
+        try {
+            try {
+                byte[] buf = new byte[8 * 1024];
+                int total = 0;
+                int read;
+                while ((read = es.read(buf)) > 0) {
+                    total += read;
+                    if (total > MAX_DRAIN) {
+                        // not worth reading it all
+                        con.disconnect();
+                        break;
+                    }
+                }
+            } finally {
+                es.close();
+            }
+        } catch (IOException x) {
+            // the JDK won't reuse it then
+        }
+    }
+
+    private Semaphore getPermits(URL url) {
+        if (maxRequestsPerHost == 0) {
+            return null;
+        }
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        String host = url.getProtocol() + "://" + url.getHost() + ":" + port;
+        Semaphore permits = hosts.get(host);
+        if (permits == null) {
+            permits = new Semaphore(maxRequestsPerHost);
+            Semaphore existing = hosts.putIfAbsent(host, permits);
+            if (existing != null)
+                permits = existing;
+        }
+        return permits;
+    }
+}
@@ -26,7 +26,6 @@ import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
-import org.eclipse.ceylon.common.Constants;
 import org.eclipse.ceylon.common.config.DefaultToolOptions;
 
 /**
@@ -121,15 +120,10 @@ public class WS {
     public static void getXML(String url, XMLHandler handler){
         try{
             URL endpoint = new URL(url);
-            HttpURLConnection connection;
             Proxy proxy = DefaultToolOptions.getDefaultProxy();
-            if (proxy != null) {
-                connection = (HttpURLConnection) endpoint.openConnection(proxy);
-            } else {
-                connection = (HttpURLConnection) endpoint.openConnection();
-            }
-            connection.setConnectTimeout((int) DefaultToolOptions.getDefaultTimeout());
-            connection.setReadTimeout((int) DefaultToolOptions.getDefaultTimeout() * Constants.READ_TIMEOUT_MULTIPLIER);
+            HttpURLConnection connection = HttpTransport.get().open(endpoint, proxy, (int) DefaultToolOptions.getDefaultTimeout());
+            if (connection == null)
+                throw new IOException("Not an HTTP URL: " + url);
             getXML(connection, handler);
         }catch(IOException x){
             throw new RuntimeException(x);
@@ -157,7 +151,7 @@ public class WS {
                     }
                 }
             }finally{
-                connection.disconnect();
+                HttpTransport.get().release(connection);
             }
         }catch(XMLStreamException x){
             throw new RuntimeException(x);
@@ -21,6 +21,12 @@ import org.junit.runners.Suite.SuiteClasses;
         HerdTestCase.class,
         BuilderTestCase.class,
         CallbackTestCase.class,
+        ParallelLookupTestCase.class,
+        HttpMetadataCacheTestCase.class,
+        HttpTransportTestCase.class,
+        MemoizingRepositoryManagerTestCase.class,
+        ModuleSearchIndexTestCase.class,
+        ArchiveWriterTestCase.class,
         AetherTestCase.class,
         ResolverTestCase.class
 })
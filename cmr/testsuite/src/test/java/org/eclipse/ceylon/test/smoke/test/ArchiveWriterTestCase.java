@@ -0,0 +1,251 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.test.smoke.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.ceylon.cmr.impl.ShaSigner;
+import org.eclipse.ceylon.cmr.util.ArchiveWriter;
+import org.eclipse.ceylon.common.FileUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that archives written with parallel deflation, and with entries
+ * copied from other archives, are valid and hashed correctly.
+ */
+public class ArchiveWriterTestCase {
+
+    private File folder;
+
+    @Before
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("ceylon-cmrtest-archive-").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtil.deleteQuietly(folder);
+    }
+
+    private static byte[] contents(int i) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < i * 10; j++) {
+            sb.append("entry ").append(i).append(" line ").append(j).append('\n');
+        }
+        return sb.toString().getBytes();
+    }
+
+    private static byte[] read(ZipFile zip, String name) throws IOException {
+        ZipEntry entry = zip.getEntry(name);
+        Assert.assertNotNull(name, entry);
+        try (InputStream in = zip.getInputStream(entry)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, n);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    private static List<String> names(ZipFile zip) {
+        List<String> names = new ArrayList<String>();
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            names.add(entries.nextElement().getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void testWritesEntriesInOrder() throws Exception {
+        File root = new File(folder, "root");
+        File pkg = new File(root, "a/b");
+        FileUtil.mkdirs(pkg);
+        try (OutputStream os = new FileOutputStream(new File(pkg, "file.txt"))) {
+            os.write(contents(7));
+        }
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().putValue("Manifest-Version", "1.0");
+        manifest.getMainAttributes().putValue("Created-By", "test");
+
+        File archive = new File(folder, "test.jar");
+        ArchiveWriter writer = new ArchiveWriter(archive);
+        try {
+            writer.addManifest(manifest);
+            for (int i = 0; i < 200; i++) {
+                Assert.assertTrue(writer.addBytes("entries/e" + i + ".txt", contents(i)));
+            }
+            // first one wins
+            Assert.assertFalse(writer.addBytes("entries/e0.txt", contents(1)));
+            writer.addFolder(root, "");
+        } finally {
+            writer.close();
+        }
+
+        Assert.assertEquals(ShaSigner.sha1(archive), writer.getSha1());
+        try (JarFile jar = new JarFile(archive)) {
+            List<String> names = names(jar);
+            Assert.assertEquals("META-INF/", names.get(0));
+            Assert.assertEquals("META-INF/MANIFEST.MF", names.get(1));
+            Assert.assertEquals("entries/e0.txt", names.get(2));
+            Assert.assertEquals("entries/e199.txt", names.get(201));
+            Assert.assertEquals(205, names.size());
+            Assert.assertEquals("test", jar.getManifest().getMainAttributes().getValue("Created-By"));
+            for (int i = 0; i < 200; i++) {
+                Assert.assertArrayEquals(contents(i), read(jar, "entries/e" + i + ".txt"));
+            }
+            Assert.assertTrue(jar.getEntry("a/").isDirectory());
+            Assert.assertTrue(jar.getEntry("a/b/").isDirectory());
+            Assert.assertArrayEquals(contents(7), read(jar, "a/b/file.txt"));
+        }
+    }
+
+    @Test
+    public void testCopiesEntriesAsTheyAre() throws Exception {
+        // written with a data descriptor after each entry
+        File original = new File(folder, "original.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(original))) {
+            zos.putNextEntry(new ZipEntry("dir/"));
+            for (int i = 0; i < 10; i++) {
+                ZipEntry entry = new ZipEntry("dir/e" + i + ".txt");
+                if (i == 3) {
+                    entry.setComment("three");
+                }
+                zos.putNextEntry(entry);
+                zos.write(contents(i));
+            }
+        }
+
+        File archive = new File(folder, "copy.zip");
+        final List<String> visited = new ArrayList<String>();
+        ArchiveWriter writer = new ArchiveWriter(archive);
+        try {
+            writer.addBytes("dir/e1.txt", "new".getBytes());
+            writer.copyFrom(original, new ArchiveWriter.EntryVisitor() {
+                @Override
+                public boolean accept(String name, boolean directory) {
+                    visited.add(name);
+                    return !name.equals("dir/e2.txt");
+                }
+            });
+        } finally {
+            writer.close();
+        }
+
+        Assert.assertEquals(11, visited.size());
+        Assert.assertEquals(ShaSigner.sha1(archive), writer.getSha1());
+        try (ZipFile copy = new ZipFile(archive); ZipFile zip = new ZipFile(original)) {
+            List<String> names = names(copy);
+            Assert.assertEquals(10, names.size());
+            Assert.assertEquals("dir/e1.txt", names.get(0));
+            Assert.assertArrayEquals("new".getBytes(), read(copy, "dir/e1.txt"));
+            Assert.assertNull(copy.getEntry("dir/e2.txt"));
+            for (int i = 0; i < 10; i++) {
+                if (i == 1 || i == 2)
+                    continue;
+                String name = "dir/e" + i + ".txt";
+                Assert.assertArrayEquals(contents(i), read(copy, name));
+                ZipEntry copied = copy.getEntry(name);
+                ZipEntry entry = zip.getEntry(name);
+                Assert.assertEquals(entry.getCompressedSize(), copied.getCompressedSize());
+                Assert.assertEquals(entry.getCrc(), copied.getCrc());
+                Assert.assertEquals(entry.getTime(), copied.getTime());
+            }
+            Assert.assertEquals("three", copy.getEntry("dir/e3.txt").getComment());
+            Assert.assertTrue(copy.getEntry("dir/").isDirectory());
+        }
+        Assert.assertEquals(Collections.singletonList("dir/e2.txt"), missing(visited, archive));
+    }
+
+    @Test
+    public void testStoresCompressedEntries() throws Exception {
+        ByteArrayOutputStream nested = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(nested)) {
+            zos.putNextEntry(new ZipEntry("e.txt"));
+            zos.write(contents(20));
+        }
+        File archive = new File(folder, "outer.car");
+        ArchiveWriter writer = new ArchiveWriter(archive);
+        try {
+            writer.addBytes("lib/nested.jar", nested.toByteArray());
+            // recognised by its contents
+            writer.addBytes("lib/nested.bin", nested.toByteArray());
+            writer.addBytes("text.txt", contents(20));
+        } finally {
+            writer.close();
+        }
+
+        try (ZipFile zip = new ZipFile(archive)) {
+            Assert.assertEquals(ZipEntry.STORED, zip.getEntry("lib/nested.jar").getMethod());
+            Assert.assertEquals(ZipEntry.STORED, zip.getEntry("lib/nested.bin").getMethod());
+            Assert.assertEquals(ZipEntry.DEFLATED, zip.getEntry("text.txt").getMethod());
+            Assert.assertArrayEquals(nested.toByteArray(), read(zip, "lib/nested.jar"));
+            Assert.assertArrayEquals(nested.toByteArray(), read(zip, "lib/nested.bin"));
+            Assert.assertArrayEquals(contents(20), read(zip, "text.txt"));
+        }
+    }
+
+    @Test
+    public void testWritesLargeEntries() throws Exception {
+        // more than the writer keeps pending at once
+        byte[] large = new byte[12 * 1024 * 1024];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i % 251);
+        }
+        File archive = new File(folder, "large.zip");
+        ArchiveWriter writer = new ArchiveWriter(archive);
+        try {
+            for (int i = 0; i < 5; i++) {
+                writer.addBytes("large" + i, large);
+            }
+        } finally {
+            writer.close();
+        }
+
+        Assert.assertEquals(ShaSigner.sha1(archive), writer.getSha1());
+        try (ZipFile zip = new ZipFile(archive)) {
+            Assert.assertEquals(5, names(zip).size());
+            for (int i = 0; i < 5; i++) {
+                Assert.assertArrayEquals(large, read(zip, "large" + i));
+            }
+        }
+    }
+
+    private static List<String> missing(List<String> names, File archive) throws IOException {
+        List<String> missing = new ArrayList<String>();
+        try (ZipFile zip = new ZipFile(archive)) {
+            for (String name : names) {
+                if (zip.getEntry(name) == null)
+                    missing.add(name);
+            }
+        }
+        return missing;
+    }
+}
@@ -0,0 +1,223 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.test.smoke.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.ceylon.cmr.api.ArtifactContext;
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.api.RepositoryManagerBuilder;
+import org.eclipse.ceylon.cmr.impl.DefaultRepository;
+import org.eclipse.ceylon.cmr.impl.RemoteContentStore;
+import org.eclipse.ceylon.common.Constants;
+import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.model.cmr.ArtifactResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests that we remember what remote repositories told us about their
+ * files, using a local HTTP server which counts the requests it gets.
+ */
+public class HttpMetadataCacheTestCase extends AbstractTest {
+
+    private static final String TTL_PROPERTY = "ceylon.cmr.http.cache.ttl";
+    private static final String NEGATIVE_TTL_PROPERTY = "ceylon.cmr.http.cache.negative.ttl";
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String url;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private final AtomicInteger options = new AtomicInteger();
+    // what we answer to OPTIONS requests, if not 0
+    private volatile int optionsStatus;
+    private final List<File> folders = new ArrayList<>();
+    private String oldCacheRepo;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        oldCacheRepo = System.getProperty(Constants.PROP_CEYLON_CACHE_REPO);
+        // each test gets its own metadata cache
+        System.setProperty(Constants.PROP_CEYLON_CACHE_REPO, createFolder().getPath());
+        url = startServer(getRepositoryRoot());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+        executor.shutdownNow();
+        for (File folder : folders) {
+            FileUtil.deleteQuietly(folder);
+        }
+        restoreProperty(Constants.PROP_CEYLON_CACHE_REPO, oldCacheRepo);
+        System.clearProperty(TTL_PROPERTY);
+        System.clearProperty(NEGATIVE_TTL_PROPERTY);
+        super.tearDown();
+    }
+
+    private static void restoreProperty(String name, String value) {
+        if (value != null) {
+            System.setProperty(name, value);
+        } else {
+            System.clearProperty(name);
+        }
+    }
+
+    private File createFolder() throws IOException {
+        File folder = Files.createTempDirectory("ceylon-cmrtest-http-").toFile();
+        folders.add(folder);
+        return folder;
+    }
+
+    /**
+     * Starts a server which serves the files of the given folder, with an
+     * ETag, and which understands If-None-Match.
+     */
+    private String startServer(final File folder) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                if ("OPTIONS".equals(exchange.getRequestMethod())) {
+                    options.incrementAndGet();
+                    if (optionsStatus != 0) {
+                        exchange.sendResponseHeaders(optionsStatus, -1);
+                        exchange.close();
+                        return;
+                    }
+                }
+                File file = new File(folder, exchange.getRequestURI().getPath());
+                if (file.isFile()) {
+                    String etag = "\"" + file.length() + "-" + file.lastModified() + "\"";
+                    exchange.getResponseHeaders().add("ETag", etag);
+                    if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                        notModified.incrementAndGet();
+                        exchange.sendResponseHeaders(304, -1);
+                    } else {
+                        boolean head = "HEAD".equals(exchange.getRequestMethod());
+                        exchange.sendResponseHeaders(200, head ? -1 : file.length());
+                        if (!head) {
+                            try (OutputStream os = exchange.getResponseBody()) {
+                                Files.copy(file.toPath(), os);
+                            }
+                        }
+                    }
+                } else {
+                    exchange.sendResponseHeaders(404, -1);
+                }
+                exchange.close();
+            }
+        });
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private RepositoryManager getRemoteRepositoryManager() throws Exception {
+        RepositoryManagerBuilder builder = new RepositoryManagerBuilder(createFolder(), log, false, 20000, Proxy.NO_PROXY);
+        RemoteContentStore rcs = new RemoteContentStore(url, log, false, 20000, Proxy.NO_PROXY);
+        builder.addRepository(new DefaultRepository(rcs.createRoot()));
+        return builder.buildRepository();
+    }
+
+    private int lookUp(String name, String version) throws Exception {
+        requests.set(0);
+        ArtifactResult result = getRemoteRepositoryManager().getArtifactResult(new ArtifactContext(null, name, version, ArtifactContext.CAR));
+        if (result != null) {
+            Assert.assertTrue(result.artifact().isFile());
+        }
+        return requests.get();
+    }
+
+    private boolean isHerd() throws Exception {
+        // a new store each time, like another build
+        return new RemoteContentStore(url, log, false, 20000, Proxy.NO_PROXY).isHerd();
+    }
+
+    @Test
+    public void testNotHerdIsRemembered() throws Exception {
+        // answered with a 404
+        Assert.assertFalse(isHerd());
+        Assert.assertFalse(isHerd());
+        Assert.assertEquals(1, options.get());
+    }
+
+    @Test
+    public void testNoHerdVersionIsRemembered() throws Exception {
+        optionsStatus = 200;
+        Assert.assertFalse(isHerd());
+        Assert.assertFalse(isHerd());
+        Assert.assertEquals(1, options.get());
+    }
+
+    @Test
+    public void testHerdCheckErrorsAreNotRemembered() throws Exception {
+        optionsStatus = 503;
+        Assert.assertFalse(isHerd());
+        Assert.assertFalse(isHerd());
+        Assert.assertEquals(2, options.get());
+    }
+
+    @Test
+    public void testMissingArtifactsAreRemembered() throws Exception {
+        Assert.assertTrue(lookUp("no.such.module", "1.0") > 0);
+        // another build, with an empty artifact cache
+        Assert.assertEquals(0, lookUp("no.such.module", "1.0"));
+    }
+
+    @Test
+    public void testExistingArtifactsAreRemembered() throws Exception {
+        int first = lookUp("hello", "1.2.1");
+        Assert.assertTrue(first > 0);
+        // another build, with an empty artifact cache, only needs to download it
+        int second = lookUp("hello", "1.2.1");
+        Assert.assertTrue("Expected fewer than " + first + " requests but got " + second, second < first);
+    }
+
+    @Test
+    public void testStaleEntriesAreRevalidated() throws Exception {
+        System.setProperty(TTL_PROPERTY, "0");
+        System.setProperty(Constants.PROP_CEYLON_CACHE_REPO, createFolder().getPath());
+        Assert.assertTrue(lookUp("hello", "1.2.1") > 0);
+        Assert.assertEquals(0, notModified.get());
+        Assert.assertTrue(lookUp("hello", "1.2.1") > 0);
+        Assert.assertTrue(notModified.get() > 0);
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        System.setProperty(TTL_PROPERTY, "0");
+        System.setProperty(NEGATIVE_TTL_PROPERTY, "0");
+        System.setProperty(Constants.PROP_CEYLON_CACHE_REPO, createFolder().getPath());
+        int first = lookUp("no.such.module", "1.0");
+        Assert.assertTrue(first > 0);
+        Assert.assertEquals(first, lookUp("no.such.module", "1.0"));
+    }
+}
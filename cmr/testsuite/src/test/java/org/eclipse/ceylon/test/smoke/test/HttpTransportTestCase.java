@@ -0,0 +1,265 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.test.smoke.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.ceylon.cmr.api.ArtifactContext;
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.api.RepositoryManagerBuilder;
+import org.eclipse.ceylon.cmr.impl.DefaultRepository;
+import org.eclipse.ceylon.cmr.impl.RemoteContentStore;
+import org.eclipse.ceylon.cmr.util.HttpTransport;
+import org.eclipse.ceylon.common.Constants;
+import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.model.cmr.ArtifactResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests that remote repositories reuse their connections and don't send
+ * too many requests at once, using a local HTTP server which records the
+ * connections it gets.
+ */
+public class HttpTransportTestCase extends AbstractTest {
+
+    private static final int LATENCY = 50; // ms per request
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private String url;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    private final List<File> folders = new ArrayList<>();
+    private String oldCacheRepo;
+    private volatile boolean slow;
+    // requests wait for each other here, if not null
+    private volatile CountDownLatch rendezvous;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        // make sure we ask the server each time
+        oldCacheRepo = System.getProperty(Constants.PROP_CEYLON_CACHE_REPO);
+        System.setProperty(Constants.PROP_CEYLON_CACHE_REPO, createFolder().getPath());
+        System.setProperty("ceylon.cmr.http.cache.ttl", "0");
+        System.setProperty("ceylon.cmr.http.cache.negative.ttl", "0");
+        url = startServer(getRepositoryRoot());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+        executor.shutdownNow();
+        for (File folder : folders) {
+            FileUtil.deleteQuietly(folder);
+        }
+        if (oldCacheRepo != null) {
+            System.setProperty(Constants.PROP_CEYLON_CACHE_REPO, oldCacheRepo);
+        } else {
+            System.clearProperty(Constants.PROP_CEYLON_CACHE_REPO);
+        }
+        System.clearProperty("ceylon.cmr.http.cache.ttl");
+        System.clearProperty("ceylon.cmr.http.cache.negative.ttl");
+        super.tearDown();
+    }
+
+    private File createFolder() throws IOException {
+        File folder = Files.createTempDirectory("ceylon-cmrtest-transport-").toFile();
+        folders.add(folder);
+        return folder;
+    }
+
+    private String startServer(final File folder) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                int current = inFlight.incrementAndGet();
+                try {
+                    int max;
+                    while ((max = maxInFlight.get()) < current && !maxInFlight.compareAndSet(max, current)) {}
+                    CountDownLatch latch = rendezvous;
+                    if (latch != null) {
+                        latch.countDown();
+                        latch.await(LATENCY * 100, TimeUnit.MILLISECONDS);
+                    }
+                    if (slow) {
+                        Thread.sleep(LATENCY);
+                    }
+                    File file = new File(folder, exchange.getRequestURI().getPath());
+                    boolean head = "HEAD".equals(exchange.getRequestMethod());
+                    if (file.isFile()) {
+                        exchange.sendResponseHeaders(200, head ? -1 : file.length());
+                        if (!head) {
+                            try (OutputStream os = exchange.getResponseBody()) {
+                                Files.copy(file.toPath(), os);
+                            }
+                        }
+                    } else {
+                        byte[] body = "Not found".getBytes("UTF-8");
+                        exchange.sendResponseHeaders(404, head ? -1 : body.length);
+                        if (!head) {
+                            try (OutputStream os = exchange.getResponseBody()) {
+                                os.write(body);
+                            }
+                        }
+                    }
+                } catch (InterruptedException x) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    inFlight.decrementAndGet();
+                    exchange.close();
+                }
+            }
+        });
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.start();
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private static int get(HttpTransport transport, URL url) throws IOException {
+        HttpURLConnection con = transport.open(url, null, 20000);
+        try {
+            int code = con.getResponseCode();
+            if (code == HttpURLConnection.HTTP_OK) {
+                try (InputStream is = con.getInputStream()) {
+                    while (is.read() != -1) {}
+                }
+            }
+            return code;
+        } finally {
+            transport.release(con);
+        }
+    }
+
+    @Test
+    public void testLookupsReuseConnections() throws Exception {
+        RepositoryManagerBuilder builder = new RepositoryManagerBuilder(createFolder(), log, false, 20000, Proxy.NO_PROXY);
+        RemoteContentStore rcs = new RemoteContentStore(url, log, false, 20000, Proxy.NO_PROXY);
+        builder.addRepository(new DefaultRepository(rcs.createRoot()));
+        RepositoryManager manager = builder.buildRepository();
+        ArtifactResult result = manager.getArtifactResult(new ArtifactContext(null, "hello", "1.2.1", ArtifactContext.CAR));
+        Assert.assertNotNull(result);
+        Assert.assertNull(manager.getArtifactResult(new ArtifactContext(null, "no.such.module", "1.0", ArtifactContext.CAR)));
+        Assert.assertTrue(requests.get() > 2);
+        // this server closes the connection after each HEAD request, so we
+        // can't expect a single one
+        Assert.assertTrue("Expected fewer than " + requests.get() + " connections but got " + clientPorts.size(),
+                clientPorts.size() < requests.get());
+    }
+
+    @Test
+    public void testErrorsReuseConnections() throws Exception {
+        HttpTransport transport = new HttpTransport(1);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals(404, get(transport, new URL(url + "/no/such/file-" + i)));
+        }
+        // the JDK may still drop an idle connection now and then
+        Assert.assertTrue("Expected fewer than 5 connections but got " + clientPorts.size(),
+                clientPorts.size() < 5);
+    }
+
+    @Test
+    public void testRequestsPerHostAreBounded() throws Exception {
+        slow = true;
+        // the first two requests wait until they are both in flight
+        rendezvous = new CountDownLatch(2);
+        final HttpTransport transport = new HttpTransport(2);
+        final URL file = new URL(url + "/hello/1.2.1/hello-1.2.1.car");
+        ExecutorService clients = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> codes = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                codes.add(clients.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        return get(transport, file);
+                    }
+                }));
+            }
+            for (Future<Integer> code : codes) {
+                Assert.assertEquals(200, code.get().intValue());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        Assert.assertEquals(16, requests.get());
+        Assert.assertEquals(0, rendezvous.getCount());
+        Assert.assertTrue("Expected at most 2 requests in flight but got " + maxInFlight.get(),
+                maxInFlight.get() <= 2);
+        Assert.assertTrue("Expected fewer than 16 connections but got " + clientPorts.size(),
+                clientPorts.size() < 16);
+    }
+
+    private static void leak(HttpTransport transport, URL url) throws IOException {
+        HttpURLConnection con = transport.open(url, null, 20000);
+        Assert.assertEquals(200, con.getResponseCode());
+        // neither closed nor released
+        Assert.assertTrue(con.getInputStream().read() != -1);
+    }
+
+    @Test
+    public void testLeakedConnectionsAreReleased() throws Exception {
+        final HttpTransport transport = new HttpTransport(1);
+        final URL file = new URL(url + "/hello/1.2.1/hello-1.2.1.car");
+        leak(transport, file);
+        // only gets a slot if the leaked connection gave its own back, and
+        // would otherwise wait for the 20s timeout
+        ExecutorService client = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> code = client.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return get(transport, file);
+                }
+            });
+            for (int i = 0; i < 100 && !code.isDone(); i++) {
+                System.gc();
+                Thread.sleep(50);
+            }
+            Assert.assertTrue("The leaked connection kept its slot", code.isDone());
+            Assert.assertEquals(200, code.get().intValue());
+        } finally {
+            client.shutdownNow();
+        }
+    }
+}
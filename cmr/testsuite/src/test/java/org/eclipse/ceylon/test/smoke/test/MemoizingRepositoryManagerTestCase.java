@@ -0,0 +1,129 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.test.smoke.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.Proxy;
+import java.nio.file.Files;
+
+import org.eclipse.ceylon.cmr.api.ArtifactContext;
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.api.RepositoryManagerBuilder;
+import org.eclipse.ceylon.cmr.impl.DefaultRepository;
+import org.eclipse.ceylon.cmr.impl.FileContentStore;
+import org.eclipse.ceylon.cmr.impl.MemoizingRepositoryManager;
+import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.model.cmr.ArtifactResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the repository manager of the compile server remembers the
+ * artifacts it found until they change.
+ */
+public class MemoizingRepositoryManagerTestCase extends AbstractTest {
+
+    private File folder;
+    private MemoizingRepositoryManager manager;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        folder = Files.createTempDirectory("ceylon-cmrtest-memo-").toFile();
+        RepositoryManager delegate = getRepositoryManagerBuilder(folder, false, 20000, Proxy.NO_PROXY).buildRepository();
+        manager = new MemoizingRepositoryManager(delegate, log);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtil.deleteQuietly(folder);
+        super.tearDown();
+    }
+
+    private static ArtifactContext context() {
+        return new ArtifactContext(null, "org.eclipse.memo", "1.0", ArtifactContext.CAR);
+    }
+
+    @Test
+    public void testRemembersArtifacts() throws Exception {
+        manager.putArtifact(context(), new ByteArrayInputStream("qwerty".getBytes()));
+        ArtifactResult result = manager.getArtifactResult(context());
+        Assert.assertNotNull(result);
+        Assert.assertSame(result, manager.getArtifactResult(context()));
+        // not the same lookup
+        ArtifactContext localOnly = context();
+        localOnly.setLocalOnly(true);
+        Assert.assertNotSame(result, manager.getArtifactResult(localOnly));
+    }
+
+    @Test
+    public void testForgetsChangedArtifacts() throws Exception {
+        manager.putArtifact(context(), new ByteArrayInputStream("qwerty".getBytes()));
+        ArtifactResult result = manager.getArtifactResult(context());
+        Assert.assertNotNull(result);
+        // changed behind our back
+        try (OutputStream os = new FileOutputStream(result.artifact())) {
+            os.write("qwertyuiop".getBytes());
+        }
+        ArtifactResult changed = manager.getArtifactResult(context());
+        Assert.assertNotNull(changed);
+        Assert.assertNotSame(result, changed);
+        Assert.assertSame(changed, manager.getArtifactResult(context()));
+        // changed through us
+        ArtifactContext replace = context();
+        replace.setForceOperation(true);
+        manager.putArtifact(replace, new ByteArrayInputStream("asdf".getBytes()));
+        Assert.assertNotSame(changed, manager.getArtifactResult(context()));
+        manager.removeArtifact(context());
+        Assert.assertNull(manager.getArtifactResult(context()));
+    }
+
+    private static File writeArtifact(File repository, String contents) throws Exception {
+        File artifact = new File(repository, "org/eclipse/memo/1.0/org.eclipse.memo-1.0.car");
+        artifact.getParentFile().mkdirs();
+        try (OutputStream os = new FileOutputStream(artifact)) {
+            os.write(contents.getBytes());
+        }
+        return artifact;
+    }
+
+    @Test
+    public void testForgetsShadowedArtifacts() throws Exception {
+        // like ./modules before ~/.ceylon/repo
+        File first = new File(folder, "first");
+        File second = new File(folder, "second");
+        RepositoryManagerBuilder builder = getRepositoryManagerBuilder(first, false, 20000, Proxy.NO_PROXY);
+        builder.addRepository(new DefaultRepository(new FileContentStore(second).createRoot()));
+        MemoizingRepositoryManager manager = new MemoizingRepositoryManager(builder.buildRepository(), log);
+        File secondArtifact = writeArtifact(second, "qwerty");
+        ArtifactResult result = manager.getArtifactResult(context());
+        Assert.assertNotNull(result);
+        Assert.assertEquals(secondArtifact.getAbsoluteFile(), result.artifact().getAbsoluteFile());
+        Assert.assertSame(result, manager.getArtifactResult(context()));
+        // now compiled into the first one
+        File firstArtifact = writeArtifact(first, "asdf");
+        ArtifactResult shadowing = manager.getArtifactResult(context());
+        Assert.assertNotNull(shadowing);
+        Assert.assertEquals(firstArtifact.getAbsoluteFile(), shadowing.artifact().getAbsoluteFile());
+        Assert.assertSame(shadowing, manager.getArtifactResult(context()));
+    }
+
+    @Test
+    public void testDoesNotRememberMissingArtifacts() throws Exception {
+        Assert.assertNull(manager.getArtifactResult(context()));
+        manager.putArtifact(context(), new ByteArrayInputStream("qwerty".getBytes()));
+        Assert.assertNotNull(manager.getArtifactResult(context()));
+    }
+}
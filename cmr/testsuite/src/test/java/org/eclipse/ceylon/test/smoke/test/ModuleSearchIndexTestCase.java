@@ -0,0 +1,174 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.test.smoke.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.ceylon.cmr.api.ModuleQuery;
+import org.eclipse.ceylon.cmr.api.ModuleSearchResult;
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.common.Constants;
+import org.eclipse.ceylon.common.FileUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that searches of local repositories see the same modules with the
+ * module search index as without it, also when other tools change the
+ * repository.
+ */
+public class ModuleSearchIndexTestCase extends AbstractTest {
+
+    private static final long AN_HOUR_AGO = System.currentTimeMillis() - 3600000;
+
+    private File dir;
+    private File repo;
+    private File jar;
+    private String oldCacheRepo;
+
+    @Before
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("module-search-index").toFile();
+        repo = new File(dir, "repo");
+        oldCacheRepo = System.getProperty(Constants.PROP_CEYLON_CACHE_REPO);
+        System.setProperty(Constants.PROP_CEYLON_CACHE_REPO, new File(dir, "cache").getPath());
+        jar = new File(getRepositoryRoot(), "test-jar/0.1/test-jar-0.1.jar");
+        addJar("test-jar", "0.1");
+        addJar("test-other", "1.0");
+        setLastModified(repo, AN_HOUR_AGO);
+    }
+
+    @After
+    public void cleanup() {
+        if (oldCacheRepo != null) {
+            System.setProperty(Constants.PROP_CEYLON_CACHE_REPO, oldCacheRepo);
+        } else {
+            System.clearProperty(Constants.PROP_CEYLON_CACHE_REPO);
+        }
+        FileUtil.delete(dir);
+    }
+
+    /**
+     * Adds a jar module to the repository, behind the back of the index.
+     */
+    private void addJar(String name, String version) throws IOException {
+        File folder = new File(repo, name + "/" + version);
+        Assert.assertTrue(folder.mkdirs());
+        Files.copy(jar.toPath(), new File(folder, name + "-" + version + ".jar").toPath());
+    }
+
+    private static void setLastModified(File file, long lastModified) {
+        if (file.isDirectory()) {
+            for (File child : file.listFiles()) {
+                setLastModified(child, lastModified);
+            }
+        }
+        Assert.assertTrue(file.setLastModified(lastModified));
+    }
+
+    private RepositoryManager getManager() throws Exception {
+        return getRepositoryManagerBuilder(repo, true, 20000, Proxy.NO_PROXY).buildRepository();
+    }
+
+    /**
+     * Returns the modules which complete the given name, with their latest
+     * version.
+     */
+    private static SortedSet<String> complete(RepositoryManager manager, String name) {
+        ModuleSearchResult result = manager.completeModules(
+                new ModuleQuery(name, ModuleQuery.Type.JVM, ModuleQuery.Retrieval.ANY));
+        SortedSet<String> modules = new TreeSet<>();
+        for (ModuleSearchResult.ModuleDetails details : result.getResults()) {
+            modules.add(details.getName() + "/" + details.getLastVersion().getVersion());
+        }
+        return modules;
+    }
+
+    @Test
+    public void testIndexIsBuilt() throws Exception {
+        RepositoryManager manager = getManager();
+        Assert.assertEquals(set("test-jar/0.1", "test-other/1.0"), complete(manager, "test"));
+        Assert.assertEquals(set("test-jar/0.1"), complete(manager, "test-j"));
+
+        File[] indexFiles = new File(dir, "cache/.module-index").listFiles();
+        Assert.assertNotNull(indexFiles);
+        Assert.assertTrue(indexFiles.length > 0);
+        // nothing but the modules in the repository itself
+        Assert.assertEquals(set("test-jar", "test-other"), new TreeSet<>(Arrays.asList(repo.list())));
+    }
+
+    @Test
+    public void testStaleIndexIsUpdated() throws Exception {
+        RepositoryManager manager = getManager();
+        Assert.assertEquals(set("test-jar/0.1", "test-other/1.0"), complete(manager, "test"));
+
+        // a new version, a new module, and a removed one
+        addJar("test-jar", "0.2");
+        addJar("test-new", "2.0");
+        FileUtil.delete(new File(repo, "test-other"));
+        Assert.assertEquals(set("test-jar/0.2", "test-new/2.0"), complete(manager, "test"));
+
+        // and once it has all settled
+        setLastModified(repo, AN_HOUR_AGO);
+        Assert.assertEquals(set("test-jar/0.2", "test-new/2.0"), complete(manager, "test"));
+        FileUtil.delete(new File(repo, "test-jar/0.2"));
+        Assert.assertEquals(set("test-jar/0.1", "test-new/2.0"), complete(getManager(), "test"));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final RepositoryManager manager = getManager();
+        final AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        RepositoryManager own = getManager();
+                        while (!done.get()) {
+                            // the original modules are always there
+                            Assert.assertTrue(complete(manager, "test").contains("test-other/1.0"));
+                            Assert.assertTrue(complete(own, "test-j").size() == 1);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (int i = 1; i <= 20; i++) {
+                addJar("test-jar", "1." + (100 + i));
+            }
+            done.set(true);
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            Assert.assertEquals(set("test-jar/1.120", "test-other/1.0"), complete(manager, "test"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.test.smoke.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.ceylon.cmr.api.ArtifactContext;
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.api.RepositoryManagerBuilder;
+import org.eclipse.ceylon.cmr.impl.DefaultRepository;
+import org.eclipse.ceylon.cmr.impl.RemoteContentStore;
+import org.eclipse.ceylon.common.Constants;
+import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.model.cmr.ArtifactResult;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests looking up several artifacts at once in remote repositories,
+ * which are stood in for by local HTTP servers that answer slowly.
+ */
+public class ParallelLookupTestCase extends AbstractTest {
+
+    private static final int LATENCY = 50; // ms per request
+
+    private static final String[][] MODULES = {
+        {"moduletest", "0.1"},
+        {"com.acme.helloworld", "1.0.0"},
+        {"hello", "1.2.1"},
+        {"hello2", "1.0.0"},
+    };
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final List<ExecutorService> executors = new ArrayList<>();
+    private final List<File> caches = new ArrayList<>();
+    private String oldCacheRepo;
+    /** The number of requests all the servers are handling */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    /**
+     * If set, requests wait until it's been counted down by as many
+     * requests as it was created with, or for ten seconds at most
+     */
+    private volatile CountDownLatch rendezvous;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        // don't let the remote metadata cache make the second lookups faster
+        oldCacheRepo = System.getProperty(Constants.PROP_CEYLON_CACHE_REPO);
+        File cacheRepo = Files.createTempDirectory("ceylon-cmrtest-cache-").toFile();
+        caches.add(cacheRepo);
+        System.setProperty(Constants.PROP_CEYLON_CACHE_REPO, cacheRepo.getPath());
+        System.setProperty("ceylon.cmr.http.cache.ttl", "0");
+        System.setProperty("ceylon.cmr.http.cache.negative.ttl", "0");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (HttpServer server : servers) {
+            server.stop(0);
+        }
+        for (ExecutorService executor : executors) {
+            executor.shutdownNow();
+        }
+        for (File cache : caches) {
+            FileUtil.deleteQuietly(cache);
+        }
+        if (oldCacheRepo != null) {
+            System.setProperty(Constants.PROP_CEYLON_CACHE_REPO, oldCacheRepo);
+        } else {
+            System.clearProperty(Constants.PROP_CEYLON_CACHE_REPO);
+        }
+        System.clearProperty("ceylon.cmr.http.cache.ttl");
+        System.clearProperty("ceylon.cmr.http.cache.negative.ttl");
+        super.tearDown();
+    }
+
+    /**
+     * Starts a server with the given latency, which serves the files of
+     * the given folder, or nothing at all if it is null.
+     */
+    private String startServer(final File folder, final int latency) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int requests = inFlight.incrementAndGet();
+                int max;
+                while ((max = maxInFlight.get()) < requests
+                        && !maxInFlight.compareAndSet(max, requests)) {
+                }
+                try {
+                    CountDownLatch latch = rendezvous;
+                    if (latch != null) {
+                        latch.countDown();
+                        latch.await(10, TimeUnit.SECONDS);
+                    }
+                    Thread.sleep(latency);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    // before we answer, so that the client can't send its
+                    // next request while we still count this one
+                    inFlight.decrementAndGet();
+                }
+                respond(exchange);
+            }
+
+            private void respond(HttpExchange exchange) throws IOException {
+                File file = folder != null ? new File(folder, exchange.getRequestURI().getPath()) : null;
+                if (file != null && file.isFile()) {
+                    boolean head = "HEAD".equals(exchange.getRequestMethod());
+                    exchange.sendResponseHeaders(200, head ? -1 : file.length());
+                    if (!head) {
+                        try (OutputStream os = exchange.getResponseBody()) {
+                            Files.copy(file.toPath(), os);
+                        }
+                    }
+                } else {
+                    exchange.sendResponseHeaders(404, -1);
+                }
+                exchange.close();
+            }
+        });
+        ExecutorService executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        executors.add(executor);
+        server.start();
+        servers.add(server);
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private RepositoryManager getRemoteRepositoryManager(String... urls) throws Exception {
+        File cache = Files.createTempDirectory("ceylon-cmrtest-cache-").toFile();
+        caches.add(cache);
+        RepositoryManagerBuilder builder = new RepositoryManagerBuilder(cache, log, false, 20000, Proxy.NO_PROXY);
+        for (String url : urls) {
+            RemoteContentStore rcs = new RemoteContentStore(url, log, false, 20000, Proxy.NO_PROXY);
+            builder.addRepository(new DefaultRepository(rcs.createRoot()));
+        }
+        return builder.buildRepository();
+    }
+
+    private static List<ArtifactContext> contexts() {
+        List<ArtifactContext> contexts = new ArrayList<>();
+        for (String[] module : MODULES) {
+            contexts.add(new ArtifactContext(null, module[0], module[1], ArtifactContext.CAR));
+        }
+        return contexts;
+    }
+
+    private static void checkResults(List<ArtifactResult> results) {
+        Assert.assertEquals(MODULES.length, results.size());
+        for (int i = 0; i < MODULES.length; i++) {
+            ArtifactResult result = results.get(i);
+            Assert.assertNotNull(MODULES[i][0], result);
+            Assert.assertEquals(MODULES[i][0], result.name());
+            Assert.assertEquals(MODULES[i][1], result.version());
+            Assert.assertTrue(result.artifact().isFile());
+        }
+    }
+
+    @Test
+    public void testBatchLookup() throws Exception {
+        String[] urls = {
+                startServer(null, LATENCY),
+                startServer(null, LATENCY),
+                startServer(getRepositoryRoot(), LATENCY)
+        };
+
+        RepositoryManager serialManager = getRemoteRepositoryManager(urls);
+        List<ArtifactResult> serialResults = new ArrayList<>();
+        for (ArtifactContext context : contexts()) {
+            serialResults.add(serialManager.getArtifactResult(context));
+        }
+        checkResults(serialResults);
+        Assert.assertEquals(1, maxInFlight.get());
+
+        // the first requests of the batch only get an answer once
+        // another request is being handled at the same time
+        rendezvous = new CountDownLatch(2);
+        maxInFlight.set(0);
+        RepositoryManager parallelManager = getRemoteRepositoryManager(urls);
+        List<ArtifactResult> parallelResults = parallelManager.getArtifactResultsBatch(contexts());
+        checkResults(parallelResults);
+        Assert.assertEquals("Requests of the batch should overlap", 0, rendezvous.getCount());
+        // every artifact is probed in every repository at most
+        int max = maxInFlight.get();
+        Assert.assertTrue("Too many requests at the same time: " + max, 
+                max >= 2 && max <= MODULES.length * urls.length);
+    }
+
+    @Test
+    public void testBatchLookupRespectsRepositoryOrder() throws Exception {
+        // both repositories have the artifacts, but the first one is slower
+        String slow = startServer(getRepositoryRoot(), 4 * LATENCY);
+        String fast = startServer(getRepositoryRoot(), 0);
+        RepositoryManager manager = getRemoteRepositoryManager(slow, fast);
+        List<ArtifactResult> results = manager.getArtifactResultsBatch(contexts());
+        checkResults(results);
+        for (ArtifactResult result : results) {
+            Assert.assertEquals(slow, result.repositoryDisplayString());
+        }
+    }
+
+    @Test
+    public void testBatchLookupMissing() throws Exception {
+        RepositoryManager manager = getRemoteRepositoryManager(
+                startServer(null, LATENCY),
+                startServer(getRepositoryRoot(), LATENCY));
+        List<ArtifactContext> contexts = contexts();
+        contexts.add(1, new ArtifactContext(null, "no.such.module", "1.0", ArtifactContext.CAR));
+        List<ArtifactResult> results = manager.getArtifactResultsBatch(contexts);
+        Assert.assertEquals(contexts.size(), results.size());
+        Assert.assertNull(results.get(1));
+        checkResults(Arrays.asList(results.get(0), results.get(2), results.get(3), results.get(4)));
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.eclipse.ceylon.compiler;
+
+import org.eclipse.ceylon.common.tool.CeylonBaseTool;
+import org.eclipse.ceylon.common.tool.Description;
+import org.eclipse.ceylon.common.tool.Option;
+import org.eclipse.ceylon.common.tool.OptionArgument;
+import org.eclipse.ceylon.common.tool.Summary;
+import org.eclipse.ceylon.common.tools.CompileServer;
+import org.eclipse.ceylon.compiler.java.tools.WarmRepositoryManagers;
+
+@Summary("Runs a server which compiles Ceylon code without starting a new JVM each time")
+@Description("Starts a compile server, which keeps running until it is stopped " +
+        "with `--stop`. While it runs, `ceylon compile` commands run by the same " +
+        "user with the same distribution are sent to it, so they don't pay for " +
+        "starting a new JVM, and reuse the modules it already resolved, as long " +
+        "as their artifacts did not change." +
+        "\n\n" +
+        "The server only accepts connections from the local machine, from " +
+        "clients which know the token it writes to the `compile-server` file " +
+        "of the user's Ceylon directory." +
+        "\n\n" +
+        "Compiles are run by the server when they use no `--cwd`, `--config` or " +
+        "`--define` options, and when the `" + CompileServer.ENABLED_PROPERTY + "` " +
+        "system property is not set to `false`.")
+public class CeylonCompileServerTool extends CeylonBaseTool {
+
+    private int port;
+    private boolean stop;
+
+    @OptionArgument(argumentName="port")
+    @Description("The port the server listens to on the loopback interface (default: any free port)")
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    @Option
+    @Description("Stops the running compile server")
+    public void setStop(boolean stop) {
+        this.stop = stop;
+    }
+
+    @Override
+    public void run() throws Exception {
+        if (stop) {
+            if (!CompileServer.stopRunning()) {
+                System.err.println(CeylonCompileMessages.msg("compile.server.not.running"));
+            }
+            return;
+        }
+        CompileServer server = new CompileServer(port);
+        System.out.println(CeylonCompileMessages.msg("compile.server.started", server.getPort()));
+        WarmRepositoryManagers.setEnabled(true);
+        try {
+            server.serve();
+        } finally {
+            WarmRepositoryManagers.setEnabled(false);
+        }
+    }
+}
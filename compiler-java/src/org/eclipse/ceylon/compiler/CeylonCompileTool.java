@@ -30,8 +30,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 
@@ -39,6 +42,7 @@ import org.eclipse.ceylon.cmr.api.ModuleQuery;
 import org.eclipse.ceylon.cmr.api.ModuleVersionDetails;
 import org.eclipse.ceylon.cmr.api.ModuleQuery.Type;
 import org.eclipse.ceylon.cmr.ceylon.ShaSigner;
+import org.eclipse.ceylon.cmr.util.JarUtils;
 import org.eclipse.ceylon.common.Backend;
 import org.eclipse.ceylon.common.Backends;
 import org.eclipse.ceylon.common.Constants;
@@ -67,6 +71,7 @@ import org.eclipse.ceylon.common.tools.SourceArgumentsResolver;
 import org.eclipse.ceylon.common.tools.SourceDependencyResolver;
 import org.eclipse.ceylon.compiler.java.launcher.Main;
 import org.eclipse.ceylon.compiler.java.launcher.Main.ExitState.CeylonState;
+import org.eclipse.ceylon.compiler.java.tools.UnitDependencies;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.Warning;
 import org.eclipse.ceylon.langtools.tools.javac.main.Main.Result;
 import org.eclipse.ceylon.langtools.tools.javac.util.Context;
@@ -374,7 +379,9 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
     }
 
     @Option(longName="incremental")
-    @Description("Enables incremental compilation.")
+    @Description("Enables incremental compilation: only the source files that changed " +
+            "since the module archives were created, and the source files that depend " +
+            "on them, are compiled again.")
     public void setIncremental(boolean incremental) {
         this.incremental = incremental;
     }
@@ -734,8 +741,17 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
         }
         
         if (incremental) {
+            // The modules we know the changed files of
+            Map<String, IncrementalModule> incrementalModules = new LinkedHashMap<String, IncrementalModule>();
+            // The dependencies between the source files of all those modules
+            UnitDependencies.Graph graph = new UnitDependencies.Graph();
+            // The source files that changed or were removed, in all those modules
+            Set<String> changedSources = new HashSet<String>();
+            // The modules we compile without knowing what changed in them
+            Set<String> changedModules = new HashSet<String>();
             next_module:
             for (String module : sar.getModules()) {
+                changedModules.add(module);
                 // Determine module version from source
                 ModuleVersionDetails mvd = getModuleVersionReader().fromSource(module);
                 if (mvd != null) {
@@ -763,7 +779,10 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
                         }
                         // Check if it has META-INF/hashes.txt
                         Properties oldHashes = getMetaInfHashes(carFile);
-                        if (oldHashes != null) {
+                        // And the dependencies between its source files
+                        Properties declarations = getMetaInfProperties(carFile, UnitDependencies.FILE_DECLARATIONS);
+                        Properties dependencies = getMetaInfProperties(carFile, UnitDependencies.FILE_DEPENDENCIES);
+                        if (oldHashes != null && declarations != null && dependencies != null) {
                             // Get the hashes for the new files
                             List<File> files = sar.getFilesByModule().get(module);
                             Properties newHashes = getFileHashes(module, files);
@@ -772,34 +791,87 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
                             if (changedFiles == null) {
                                 // This shouldn't happen, but if it does we just skip any
                                 // special treatment and compile this module normally
-                            } else if (changedFiles.isEmpty()) {
-                                // No files were changed, we shouldn't compile the module
-                                expandedModulesOrFiles.remove(module);
-                                // And we remove its files too if any were mentioned
-                                Collection<String> remove = filesToStrings(module, files);
-                                expandedModulesOrFiles.removeAll(remove);
-                            } else {
-                                if (expandedModulesOrFiles.contains(module)) {
-                                    // The module itself was mentioned on the command line
-                                    if (changedFiles.size() < files.size()) {
-                                        // There were fewer changed files than the total number
-                                        // So we remove the module
-                                        expandedModulesOrFiles.remove(module);
-                                        // And we remove its files too if any were mentioned
-                                        Collection<String> remove = filesToStrings(module, files);
-                                        expandedModulesOrFiles.removeAll(remove);
-                                        // And then we add only those files that were changed
-                                        expandedModulesOrFiles.addAll(changedFiles);
-                                    }
-                                } else {
-                                    // Separate source files were mentioned on the command line
-                                    // So we remove the unchanged files
-                                    Collection<String> unchanged = filesToStrings(module, files);
-                                    unchanged.removeAll(changedFiles);
-                                    expandedModulesOrFiles.removeAll(unchanged);
+                                continue;
+                            }
+                            graph.add(declarations, dependencies);
+                            IncrementalModule im = new IncrementalModule(module, files, getFileNames(module, files));
+                            for (String name : changedFiles) {
+                                if (name.endsWith(Constants.JAVA_SUFFIX)
+                                        || (name.endsWith(Constants.CEYLON_SUFFIX)
+                                                && oldHashes.containsKey(name)
+                                                && !graph.contains(name))) {
+                                    // We don't know what depends on this file
+                                    continue next_module;
                                 }
+                                im.compile.add(name);
                             }
+                            for (String name : declarations.stringPropertyNames()) {
+                                if (FileUtil.applyPath(allDirs(), name) == null) {
+                                    // Its declarations are gone
+                                    changedSources.add(name);
+                                }
+                            }
+                            changedSources.addAll(im.compile);
+                            incrementalModules.put(module, im);
+                            changedModules.remove(module);
+                        }
+                    }
+                }
+            }
+            // Add the files which depend on what changed, from any module
+            boolean changes = !changedSources.isEmpty() || !changedModules.isEmpty();
+            if (changes) {
+                Set<String> dependentFiles = graph.getDependentFiles(changedSources, changedModules);
+                for (IncrementalModule im : incrementalModules.values()) {
+                    for (String name : dependentFiles) {
+                        if (im.contains(name)) {
+                            im.compile.add(name);
+                        }
+                    }
+                }
+            }
+            for (IncrementalModule im : incrementalModules.values()) {
+                String module = im.name;
+                List<File> files = im.files;
+                if (im.hasJavaFiles && changes) {
+                    // We don't know what its Java files depend on, so we compile
+                    // this module normally
+                    continue;
+                }
+                Collection<String> changedFiles = new ArrayList<String>(im.compile.size());
+                for (String name : im.compile) {
+                    File full = FileUtil.applyPath(allDirs(), name);
+                    if (full != null) {
+                        changedFiles.add(full.getPath());
+                    }
+                }
+                if (changedFiles.isEmpty()) {
+                    // No files were changed, we shouldn't compile the module
+                    expandedModulesOrFiles.remove(module);
+                    // And we remove its files too if any were mentioned
+                    Collection<String> remove = filesToStrings(module, files);
+                    expandedModulesOrFiles.removeAll(remove);
+                } else {
+                    if (expandedModulesOrFiles.contains(module)) {
+                        // The module itself was mentioned on the command line
+                        if (changedFiles.size() < files.size()) {
+                            // There were fewer changed files than the total number
+                            // So we remove the module
+                            expandedModulesOrFiles.remove(module);
+                            // And we remove its files too if any were mentioned
+                            Collection<String> remove = filesToStrings(module, files);
+                            expandedModulesOrFiles.removeAll(remove);
+                            // And then we add only those files that were changed
+                            expandedModulesOrFiles.addAll(changedFiles);
                         }
+                    } else {
+                        // Separate source files were mentioned on the command line
+                        // So we remove the unchanged files
+                        Collection<String> unchanged = filesToStrings(module, files);
+                        unchanged.removeAll(changedFiles);
+                        expandedModulesOrFiles.removeAll(unchanged);
+                        // And add the ones that depend on the changed ones
+                        expandedModulesOrFiles.addAll(changedFiles);
                     }
                 }
             }
@@ -837,6 +909,55 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
         return result;
     }
     
+    /**
+     * A module we compile with --incremental, and the files we need to
+     * compile again
+     */
+    private static class IncrementalModule {
+        final String name;
+        final List<File> files;
+        final Set<String> fileNames;
+        final boolean hasJavaFiles;
+        final Set<String> compile = new LinkedHashSet<String>();
+        
+        IncrementalModule(String name, List<File> files, Set<String> fileNames) {
+            this.name = name;
+            this.files = files;
+            this.fileNames = fileNames;
+            boolean hasJavaFiles = false;
+            for (String fileName : fileNames) {
+                if (fileName.endsWith(Constants.JAVA_SUFFIX)) {
+                    hasJavaFiles = true;
+                    break;
+                }
+            }
+            this.hasJavaFiles = hasJavaFiles;
+        }
+        
+        boolean contains(String fileName) {
+            return fileNames.contains(fileName);
+        }
+    }
+    
+    private Set<String> getFileNames(String moduleName, List<File> files) {
+        Set<String> names = new HashSet<String>();
+        for (File f : files) {
+            String name = FileUtil.relativeFile(allDirs(), f.getPath());
+            names.add(handleResourceRoot(moduleName, name));
+        }
+        return names;
+    }
+    
+    private Properties getMetaInfProperties(File carFile, String fileName) {
+        try {
+            return JarUtils.getMetaInfProperties(carFile, fileName);
+        } catch (IOException e) {
+            // the module is then compiled normally
+            getLogger().warning(CeylonCompileMessages.msg("warning.incremental.unreadable", fileName, carFile, e.getMessage()));
+            return null;
+        }
+    }
+    
     private Properties getFileHashes(String moduleName, List<File> files) {
         Properties hashes = new Properties();
         for (File f : files) {
@@ -868,7 +989,7 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
                 diff.remove(name);
             }
         }
-        // And finally we create a list of applied paths, but for the
+        // And finally we create a list of their names, but for the
         // ones that were not among the old hashes (meaning they are
         // either new or they are source files that didn't result in
         // any code being generated) we  first check the file time stamp
@@ -884,7 +1005,7 @@ public class CeylonCompileTool extends OutputRepoUsingTool {
                 String hash = oldHashes.getProperty(name);
                 if (hash != null
                         || isModuleArtifactOutOfDate(carFile, moduleName, Type.JVM)) {
-                    result.add(full.getPath());
+                    result.add(name);
                 }
             } catch (IOException e) {
                 // Ignore
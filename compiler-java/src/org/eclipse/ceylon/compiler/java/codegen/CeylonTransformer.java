@@ -372,8 +372,10 @@ public class CeylonTransformer extends AbstractTransformer {
         
         ToplevelAttributesDefinitionBuilder builder = new ToplevelAttributesDefinitionBuilder(this);
         LabelVisitor lv = new LabelVisitor();
-        CeylonVisitor visitor = new CeylonVisitor(this, builder, lv, gspv);
+        DisabledOptimizationVisitor dov = new DisabledOptimizationVisitor();
+        CeylonVisitor visitor = new CeylonVisitor(this, builder, lv, dov, gspv);
         t.visit(lv);
+        t.visit(dov);
         t.visit(visitor);
         
         
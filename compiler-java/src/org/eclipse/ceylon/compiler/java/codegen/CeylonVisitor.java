@@ -79,18 +79,21 @@ public class CeylonVisitor extends Visitor {
     ClassDefinitionBuilder classBuilder;
     boolean inInitializer = false;
     final LabelVisitor lv;
+    final DisabledOptimizationVisitor dov;
     private final GetterSetterPairingVisitor getterSetterPairing;
     private Tree.CompilationUnit currentCompilationUnit = null;
     
     /** For compilation units 
-     * @param lv */
-    public CeylonVisitor(CeylonTransformer ceylonTransformer, ToplevelAttributesDefinitionBuilder topattrBuilder, LabelVisitor lv, GetterSetterPairingVisitor gspv) {
+     * @param lv
+     * @param dov */
+    public CeylonVisitor(CeylonTransformer ceylonTransformer, ToplevelAttributesDefinitionBuilder topattrBuilder, LabelVisitor lv, DisabledOptimizationVisitor dov, GetterSetterPairingVisitor gspv) {
         this.gen = ceylonTransformer;
         this.gen.visitor = this;
         this.defs = new ListBuffer<JCTree>();
         this.topattrBuilder = topattrBuilder;
         this.classBuilder = null;
         this.lv = lv;
+        this.dov = dov;
         this.getterSetterPairing = gspv;
     }
 
@@ -0,0 +1,84 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.eclipse.ceylon.compiler.java.codegen;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.ceylon.compiler.typechecker.tree.Node;
+import org.eclipse.ceylon.compiler.typechecker.tree.Tree;
+import org.eclipse.ceylon.compiler.typechecker.tree.Visitor;
+
+/**
+ * Finds the statements and declarations with a
+ * {@code @disableOptimization} compiler annotation which
+ * enclose each node of a compilation unit, so that the
+ * optimizations of an expression can be disabled on any
+ * declaration it occurs in, including toplevel and attribute
+ * declarations, whose initializers aren't transformed as
+ * statements of a block.
+ */
+public class DisabledOptimizationVisitor extends Visitor {
+
+    /** The innermost annotated statement or declaration */
+    private Tree.StatementOrArgument annotated;
+
+    /** The innermost annotated statement or declaration of each node within one */
+    private final Map<Node, Tree.StatementOrArgument> enclosing = new IdentityHashMap<>();
+
+    /** The next annotated statement or declaration out from each annotated one */
+    private final Map<Tree.StatementOrArgument, Tree.StatementOrArgument> outer = new IdentityHashMap<>();
+
+    /**
+     * Determines whether the given optimization has been disabled on
+     * any statement or declaration which encloses the given node, or
+     * on the node itself.
+     */
+    public boolean isOptimizationDisabled(Node node, Optimization optName) {
+        for (Tree.StatementOrArgument stmt = enclosing.get(node);
+                stmt != null;
+                stmt = outer.get(stmt)) {
+            if (CodegenUtil.hasCompilerAnnotationNoArgument(stmt, "disableOptimization")
+                    || CodegenUtil.hasCompilerAnnotationWithArgument(stmt,
+                            "disableOptimization", optName.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void visitAny(Node that) {
+        Tree.StatementOrArgument prev = annotated;
+        if (that instanceof Tree.StatementOrArgument
+                && CodegenUtil.hasCompilerAnnotation((Tree.StatementOrArgument)that, "disableOptimization")) {
+            if (annotated != null) {
+                outer.put((Tree.StatementOrArgument)that, annotated);
+            }
+            annotated = (Tree.StatementOrArgument)that;
+        }
+        if (annotated != null) {
+            enclosing.put(that, annotated);
+        }
+        super.visitAny(that);
+        annotated = prev;
+    }
+
+}
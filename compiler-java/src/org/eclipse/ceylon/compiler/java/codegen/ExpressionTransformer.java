@@ -1972,12 +1972,119 @@ public class ExpressionTransformer extends AbstractTransformer {
     }
     
     public JCExpression comprehensionAsSequential(Tree.Comprehension comprehension, Type expectedType) {
-        JCExpression sequential = iterableToSequential(transformComprehension(comprehension));
+        JCExpression sequential = new ComprehensionMaterialization(comprehension, null).transform();
+        if (sequential == null) {
+            sequential = iterableToSequential(transformComprehension(comprehension));
+        }
         Type elementType = comprehension.getInitialComprehensionClause().getTypeModel();
         Type sequentialType = typeFact().getSequentialType(elementType);
         return sequentialEmptiness(sequential, expectedType, sequentialType);
     }
     
+    /**
+     * Returns the invocation evaluated straight from the loops over 
+     * its only argument if it's a comprehension, like 
+     * <code>{for (x in xs) f(x)}</code>, and the invocation consumes 
+     * all its elements as soon as it's evaluated. That's the case 
+     * for the {@code Array} class of the language module, which 
+     * copies the elements into its backing array, and for the 
+     * {@code sum()}, {@code product()}, {@code max()} and 
+     * {@code min()} functions, which fold them one at a time. 
+     * Otherwise returns null.
+     */
+    private JCExpression transformEagerlyConsumedComprehension(Tree.InvocationExpression ce) {
+        Tree.Term primary = TreeUtil.unwrapExpressionUntilTerm(ce.getPrimary());
+        if (!(primary instanceof Tree.BaseTypeExpression
+                    || primary instanceof Tree.BaseMemberExpression)
+                || ce.getSmall()) {
+            return null;
+        }
+        Tree.Comprehension comprehension = getOnlyComprehensionArgument(ce);
+        if (comprehension == null) {
+            return null;
+        }
+        Declaration dec = ((Tree.MemberOrTypeExpression)primary).getDeclaration();
+        if (isArrayInstantiation(dec)) {
+            Type arrayElementType = typeFact().getIteratedType(ce.getTypeModel());
+            JCExpression array = new ComprehensionMaterialization(comprehension, arrayElementType).transform();
+            if (array == null) {
+                return null;
+            }
+            return applyErasureAndBoxing(array, ce.getTypeModel(), false, true, 
+                    CodegenUtil.getBoxingStrategy(ce), ce.getTypeModel(), 0);
+        }
+        Accumulation accumulation = Accumulation.get(dec, typeFact());
+        if (accumulation == null) {
+            return null;
+        }
+        Type valueType = ((Tree.MemberOrTypeExpression)primary).getTarget().getTypeArguments()
+                .get(((Function)dec).getTypeParameters().get(0));
+        if (valueType == null) {
+            return null;
+        }
+        return new ComprehensionAccumulation(comprehension, ce, accumulation, valueType).transform();
+    }
+    
+    /**
+     * Returns the comprehension which is the only argument of the 
+     * invocation, either in braces, or as the sequenced argument of 
+     * a named argument list, or null if there isn't one
+     */
+    private Tree.Comprehension getOnlyComprehensionArgument(Tree.InvocationExpression ce) {
+        Tree.SequencedArgument sequencedArgument = null;
+        if (ce.getPositionalArgumentList() != null) {
+            java.util.List<Tree.PositionalArgument> args = ce.getPositionalArgumentList().getPositionalArguments();
+            if (args.size() == 1 
+                    && args.get(0) instanceof Tree.ListedArgument) {
+                Tree.Term term = TreeUtil.unwrapExpressionUntilTerm(((Tree.ListedArgument)args.get(0)).getExpression());
+                if (term instanceof Tree.SequenceEnumeration) {
+                    sequencedArgument = ((Tree.SequenceEnumeration)term).getSequencedArgument();
+                }
+            }
+        } else if (ce.getNamedArgumentList() != null
+                && ce.getNamedArgumentList().getNamedArguments().isEmpty()) {
+            sequencedArgument = ce.getNamedArgumentList().getSequencedArgument();
+        }
+        if (sequencedArgument == null
+                || sequencedArgument.getPositionalArguments().size() != 1
+                || !(sequencedArgument.getPositionalArguments().get(0) instanceof Tree.Comprehension)) {
+            return null;
+        }
+        return (Tree.Comprehension)sequencedArgument.getPositionalArguments().get(0);
+    }
+    
+    /** 
+     * The functions of the language module which fold all the 
+     * elements of their stream 
+     */
+    private static enum Accumulation {
+        sum,
+        product,
+        max,
+        min;
+        
+        static Accumulation get(Declaration dec, Unit unit) {
+            if (dec instanceof Function 
+                    && dec.isToplevel()) {
+                for (Accumulation accumulation : values()) {
+                    if (dec.equals(unit.getLanguageModuleDeclaration(accumulation.name()))) {
+                        return accumulation;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+    
+    private boolean isArrayInstantiation(Declaration dec) {
+        if (dec != null && dec.isConstructor()) {
+            dec = ModelUtil.getConstructedClass(dec);
+        }
+        return dec != null 
+                && dec.isToplevel()
+                && dec.equals(typeFact().getLanguageModuleDeclaration("Array"));
+    }
+    
     private JCExpression makeTuple(Type tupleType, java.util.List<Tree.PositionalArgument> expressions) {
         if (typeFact().isEmptyType(tupleType)) {
             return makeEmpty();// A tuple terminated by empty
@@ -7604,6 +7711,399 @@ public class ExpressionTransformer extends AbstractTransformer {
             return itemVar;
         }
     }
+    
+    /**
+     * <p>Transformation of a comprehension whose elements are all 
+     * consumed as soon as it's evaluated into nested loops over the 
+     * iterators of its {@code for} clauses. For example, when its 
+     * elements are collected into a {@code Sequential}:</p>
+     * <pre>
+     * [for (x in xs) if (p(x)) f(x)]
+     * </pre>
+     * <p>becomes something like:</p>
+     * <pre>
+     * (let 
+     *     ArrayList&lt;Object&gt; $ceylontmp$elements = new ArrayList&lt;Object&gt;();
+     *     Iterator&lt;? extends X&gt; $ceylontmp$iterator = xs.iterator();
+     *     Object $ceylontmp$item;
+     *     while (!(($ceylontmp$item = $ceylontmp$iterator.next()) instanceof Finished)) {
+     *         final X x = (X)$ceylontmp$item;
+     *         if (p(x)) {
+     *             $ceylontmp$elements.add(f(x));
+     *         }
+     *     }
+     * in Util.sequentialOf($reified$Y, $ceylontmp$elements))
+     * </pre>
+     * <p>instead of an {@code AbstractIterable}, with its own 
+     * {@code AbstractIterator}, which {@code sequence()} then 
+     * iterates. What is done with each element, and what the 
+     * loops evaluate to, is up to the subclasses.</p>
+     * 
+     * <p>Only comprehensions whose {@code for} clauses all iterate 
+     * Ceylon {@code Iterable}s are transformed this way.</p>
+     */
+    abstract class ComprehensionLoops {
+        protected final Tree.Comprehension comp;
+        protected final Type elementType;
+        
+        ComprehensionLoops(Tree.Comprehension comp) {
+            this.comp = comp;
+            // get rid of anonymous types
+            this.elementType = typeFact().denotableType(
+                    comp.getInitialComprehensionClause().getTypeModel());
+        }
+        
+        /**
+         * Returns the loops over the comprehension, or null if the 
+         * optimization is disabled or doesn't apply to it.
+         */
+        public JCExpression transform() {
+            if (statementGen().isOptimizationDisabled(comp, Optimization.ComprehensionMaterialization)
+                    || !canMaterialize()) {
+                return null;
+            }
+            at(comp);
+            ListBuffer<JCStatement> stmts = new ListBuffer<JCStatement>();
+            // only now, so that the lazy form gets the same names
+            makeInit(stmts);
+            stmts.appendList(transformClause(comp.getInitialComprehensionClause()));
+            at(comp);
+            return make().LetExpr(stmts.toList(), makeResult());
+        }
+        
+        /** Declares the variables in which the elements are collected */
+        protected abstract void makeInit(ListBuffer<JCStatement> stmts);
+        
+        /** Collects the element given by the expression */
+        protected abstract List<JCStatement> transformElement(Tree.Expression expr);
+        
+        /** What the loops evaluate to, once they're done */
+        protected abstract JCExpression makeResult();
+        
+        private boolean canMaterialize() {
+            Tree.ComprehensionClause clause = comp.getInitialComprehensionClause();
+            while (clause != null) {
+                if (clause instanceof Tree.ForComprehensionClause) {
+                    Tree.ForIterator forIterator = ((Tree.ForComprehensionClause)clause).getForIterator();
+                    if (!(forIterator instanceof Tree.ValueIterator
+                            || forIterator instanceof Tree.PatternIterator)
+                            || typeFact().getIteratedType(forIterator.getSpecifierExpression().getExpression().getTypeModel()) == null) {
+                        return false;
+                    }
+                    clause = ((Tree.ForComprehensionClause)clause).getComprehensionClause();
+                } else if (clause instanceof Tree.IfComprehensionClause) {
+                    clause = ((Tree.IfComprehensionClause)clause).getComprehensionClause();
+                } else if (clause instanceof Tree.ExpressionComprehensionClause) {
+                    clause = null;
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private List<JCStatement> transformClause(Tree.ComprehensionClause clause) {
+            if (clause instanceof Tree.ForComprehensionClause) {
+                return transformForClause((Tree.ForComprehensionClause)clause);
+            } else if (clause instanceof Tree.IfComprehensionClause) {
+                Tree.IfComprehensionClause ifClause = (Tree.IfComprehensionClause)clause;
+                return new MaterializationCondList(ifClause.getConditionList().getConditions(), 
+                        ifClause.getComprehensionClause()).getResult();
+            } else {
+                at(clause);
+                return transformElement(((Tree.ExpressionComprehensionClause)clause).getExpression());
+            }
+        }
+        
+        /**
+         * Transforms a {@code for} clause into a {@code while} loop 
+         * over the iterator of its Ceylon {@code Iterable} 
+         */
+        private List<JCStatement> transformForClause(Tree.ForComprehensionClause clause) {
+            at(clause);
+            Tree.ForIterator forIterator = clause.getForIterator();
+            Tree.Expression iterableExpr = forIterator.getSpecifierExpression().getExpression();
+            Type iterType = iterableExpr.getTypeModel();
+            Type iterableType = iterType.getSupertype(typeFact().getIterableDeclaration());
+            SyntheticName iteratorVar = naming.temp("iterator");
+            SyntheticName itemVar = naming.temp("item");
+            ListBuffer<JCStatement> stmts = new ListBuffer<JCStatement>();
+            stmts.append(makeVar(iteratorVar, 
+                    IterType.CEYLON_ITERABLE.makeIteratorType(ExpressionTransformer.this, iterType), 
+                    make().Apply(null, 
+                            makeSelect(transformExpression(iterableExpr, BoxingStrategy.BOXED, iterableType), "iterator"), 
+                            List.<JCExpression>nil())));
+            stmts.append(makeVar(itemVar, make().Type(syms().objectType), null));
+            
+            ListBuffer<JCStatement> loopBody = new ListBuffer<JCStatement>();
+            List<VarDefBuilder> vdbs;
+            if (forIterator instanceof Tree.ValueIterator) {
+                Tree.Variable variable = ((Tree.ValueIterator) forIterator).getVariable();
+                vdbs = List.of(statementGen().transformVariable(variable, itemVar.makeIdent()));
+            } else {
+                Tree.Pattern pat = ((Tree.PatternIterator)forIterator).getPattern();
+                vdbs = statementGen().transformPattern(pat, itemVar.makeIdent());
+            }
+            for (VarDefBuilder vdb : vdbs) {
+                loopBody.append(vdb.build());
+            }
+            loopBody.appendList(transformClause(clause.getComprehensionClause()));
+            
+            at(clause);
+            // !(($ceylontmp$item = $ceylontmp$iterator.next()) instanceof Finished)
+            JCExpression loopCond = make().Unary(JCTree.Tag.NOT, 
+                    make().TypeTest(make().Assign(itemVar.makeIdent(), 
+                            make().Apply(null, makeSelect(iteratorVar.makeIdent(), "next"), List.<JCExpression>nil())), 
+                            makeIdent(syms().ceylonFinishedType)));
+            stmts.append(make().WhileLoop(loopCond, make().Block(0, loopBody.toList())));
+            return stmts.toList();
+        }
+        
+        /**
+         * The conditions of an {@code if} clause, within which the 
+         * rest of the comprehension is transformed.
+         */
+        class MaterializationCondList extends StatementTransformer.IfCondList {
+            private final Tree.ComprehensionClause clause;
+            
+            MaterializationCondList(java.util.List<Tree.Condition> conditions, 
+                    Tree.ComprehensionClause clause) {
+                statementGen().super(conditions, (Tree.Block)null, null, null);
+                this.clause = clause;
+            }
+            
+            @Override
+            protected List<JCStatement> transformInnermostThen(Cond cond) {
+                return transformClause(clause);
+            }
+        }
+    }
+    
+    /**
+     * Collects the elements of a comprehension into a 
+     * {@code java.util.ArrayList}, which becomes a {@code Sequential}, 
+     * or the backing array of an {@code Array}.
+     */
+    class ComprehensionMaterialization extends ComprehensionLoops {
+        /** The element type of the {@code Array}, or null for a {@code Sequential} */
+        private final Type arrayElementType;
+        private SyntheticName elementsVar;
+        
+        ComprehensionMaterialization(Tree.Comprehension comp, Type arrayElementType) {
+            super(comp);
+            this.arrayElementType = arrayElementType;
+        }
+        
+        @Override
+        protected void makeInit(ListBuffer<JCStatement> stmts) {
+            elementsVar = naming.temp("elements");
+            JCExpression elementsType = make().TypeApply(
+                    naming.makeQuotedFQIdent("java.util.ArrayList"),
+                    List.<JCExpression>of(make().Type(syms().objectType)));
+            stmts.append(makeVar(Flags.FINAL, elementsVar, elementsType, 
+                    make().NewClass(null, List.<JCExpression>nil(), 
+                            make().TypeApply(naming.makeQuotedFQIdent("java.util.ArrayList"),
+                                    List.<JCExpression>of(make().Type(syms().objectType))), 
+                            List.<JCExpression>nil(), null)));
+        }
+        
+        @Override
+        protected List<JCStatement> transformElement(Tree.Expression expr) {
+            return List.<JCStatement>of(make().Exec(make().Apply(null, 
+                    makeSelect(elementsVar.makeIdent(), "add"), 
+                    List.<JCExpression>of(transformExpression(expr, BoxingStrategy.BOXED, elementType)))));
+        }
+        
+        @Override
+        protected JCExpression makeResult() {
+            if (arrayElementType != null) {
+                return make().NewClass(null, null, 
+                        make().TypeApply(make().QualIdent(syms().ceylonArrayType.tsym), 
+                                List.<JCExpression>of(makeJavaType(arrayElementType, JT_TYPE_ARGUMENT))), 
+                        List.<JCExpression>of(makeReifiedTypeArgument(arrayElementType), 
+                                elementsVar.makeIdent()), 
+                        null);
+            }
+            return utilInvocation().sequentialOf(
+                    makeJavaType(elementType, JT_TYPE_ARGUMENT),
+                    makeReifiedTypeArgument(elementType), 
+                    elementsVar.makeIdent());
+        }
+    }
+    
+    /**
+     * <p>Folds the elements of a comprehension passed to 
+     * {@code sum()}, {@code product()}, {@code max()} or {@code min()} 
+     * into an accumulator, the way those functions do, so that 
+     * <code>sum { for (x in xs) f(x) }</code> needs neither a stream 
+     * nor a list.</p>
+     * 
+     * <p>{@code Integer} and {@code Float} accumulators are unboxed, 
+     * and {@code String}s are summed using a {@code StringBuilder}. 
+     * Any other accumulator is an {@code Object}, which is null until 
+     * the first element.</p>
+     */
+    class ComprehensionAccumulation extends ComprehensionLoops {
+        private final Tree.InvocationExpression invocation;
+        private final Accumulation accumulation;
+        private final Type valueType;
+        private final boolean unboxed;
+        private SyntheticName resultVar;
+        /** Whether there's no element yet, for an unboxed max() or min() */
+        private SyntheticName emptyVar;
+        
+        ComprehensionAccumulation(Tree.Comprehension comp, 
+                Tree.InvocationExpression invocation, 
+                Accumulation accumulation, Type valueType) {
+            super(comp);
+            this.invocation = invocation;
+            this.accumulation = accumulation;
+            this.valueType = valueType;
+            this.unboxed = (isCeylonInteger(valueType) && isCeylonInteger(elementType))
+                    || (isCeylonFloat(valueType) && isCeylonFloat(elementType));
+        }
+        
+        private boolean isStringSum() {
+            return accumulation == Accumulation.sum
+                    && isCeylonString(valueType) 
+                    && isCeylonString(elementType);
+        }
+        
+        @Override
+        protected void makeInit(ListBuffer<JCStatement> stmts) {
+            resultVar = naming.temp("result");
+            if (isStringSum()) {
+                JCExpression builderType = naming.makeQuotedFQIdent("java.lang.StringBuilder");
+                stmts.append(makeVar(Flags.FINAL, resultVar, builderType, 
+                        make().NewClass(null, List.<JCExpression>nil(), 
+                                naming.makeQuotedFQIdent("java.lang.StringBuilder"), 
+                                List.<JCExpression>nil(), null)));
+            } else if (unboxed) {
+                boolean integer = isCeylonInteger(valueType);
+                JCExpression init;
+                switch (accumulation) {
+                case sum:
+                    // -0.0 is the only Float which leaves every sum as it is
+                    init = integer ? make().Literal(0L) 
+                            : make().Unary(JCTree.Tag.NEG, make().Literal(0.0));
+                    break;
+                case product:
+                    init = integer ? make().Literal(1L) : make().Literal(1.0);
+                    break;
+                default:
+                    emptyVar = naming.temp("empty");
+                    stmts.append(makeVar(emptyVar, make().Type(syms().booleanType), makeBoolean(true)));
+                    init = integer ? make().Literal(0L) : make().Literal(0.0);
+                }
+                stmts.append(makeVar(resultVar, makeJavaType(valueType), init));
+            } else {
+                stmts.append(makeVar(resultVar, make().Type(syms().objectType), makeNull()));
+            }
+        }
+        
+        @Override
+        protected List<JCStatement> transformElement(Tree.Expression expr) {
+            if (isStringSum()) {
+                return List.<JCStatement>of(make().Exec(make().Apply(null, 
+                        makeSelect(resultVar.makeIdent(), "append"), 
+                        List.<JCExpression>of(transformExpression(expr, BoxingStrategy.UNBOXED, valueType)))));
+            }
+            if (unboxed 
+                    && (accumulation == Accumulation.sum || accumulation == Accumulation.product)) {
+                return List.<JCStatement>of(make().Exec(make().Assign(resultVar.makeIdent(), 
+                        make().Binary(accumulation == Accumulation.sum ? JCTree.Tag.PLUS : JCTree.Tag.MUL, 
+                                resultVar.makeIdent(), 
+                                transformExpression(expr, BoxingStrategy.UNBOXED, valueType)))));
+            }
+            // the element is used more than once
+            SyntheticName elementVar = naming.temp("element");
+            JCStatement element = makeVar(Flags.FINAL, elementVar, 
+                    unboxed ? makeJavaType(valueType) : make().Type(syms().objectType), 
+                    transformExpression(expr, 
+                            unboxed ? BoxingStrategy.UNBOXED : BoxingStrategy.BOXED, 
+                            valueType));
+            JCStatement accumulate;
+            if (unboxed) {
+                // max() and min() take the first element, and then 
+                // every element after a NaN
+                JCExpression cond = make().Binary(accumulation == Accumulation.max ? JCTree.Tag.GT : JCTree.Tag.LT, 
+                        elementVar.makeIdent(), resultVar.makeIdent());
+                if (isCeylonFloat(valueType)) {
+                    cond = make().Binary(JCTree.Tag.OR, 
+                            make().Binary(JCTree.Tag.NE, resultVar.makeIdent(), resultVar.makeIdent()), 
+                            cond);
+                }
+                cond = make().Binary(JCTree.Tag.OR, emptyVar.makeIdent(), cond);
+                accumulate = make().If(cond, 
+                        make().Block(0, List.<JCStatement>of(
+                                make().Exec(make().Assign(resultVar.makeIdent(), elementVar.makeIdent())),
+                                make().Exec(make().Assign(emptyVar.makeIdent(), makeBoolean(false))))), 
+                        null);
+            } else {
+                JCExpression isFirst = make().Binary(JCTree.Tag.EQ, resultVar.makeIdent(), makeNull());
+                switch (accumulation) {
+                case sum:
+                case product:
+                    // the raw types erase the parameter to the interface
+                    String operandType = accumulation == Accumulation.sum ? 
+                            "ceylon.language.Summable" : "ceylon.language.Multiplicable";
+                    accumulate = make().Exec(make().Assign(resultVar.makeIdent(), 
+                            make().Conditional(isFirst, elementVar.makeIdent(), 
+                                    make().Apply(null, 
+                                            makeSelect(make().TypeCast(naming.makeQuotedFQIdent(operandType), resultVar.makeIdent()), 
+                                                    accumulation == Accumulation.sum ? "plus" : "times"), 
+                                            List.<JCExpression>of(make().TypeCast(naming.makeQuotedFQIdent(operandType), 
+                                                    elementVar.makeIdent()))))));
+                    break;
+                default:
+                    // take the first element, and then every element 
+                    // after one which isn't equal to itself, like NaN
+                    JCExpression compared = make().TypeCast(
+                            naming.makeQuotedFQIdent("ceylon.language.Comparable"), 
+                            elementVar.makeIdent());
+                    JCExpression cond = make().Binary(JCTree.Tag.OR, isFirst, 
+                            make().Binary(JCTree.Tag.OR, 
+                                    make().Unary(JCTree.Tag.NOT, make().Apply(null, 
+                                            makeSelect(resultVar.makeIdent(), "equals"), 
+                                            List.<JCExpression>of(resultVar.makeIdent()))), 
+                                    make().Apply(null, 
+                                            makeSelect(compared, accumulation == Accumulation.max ? "largerThan" : "smallerThan"), 
+                                            List.<JCExpression>of(make().TypeCast(
+                                                    naming.makeQuotedFQIdent("ceylon.language.Comparable"), 
+                                                    resultVar.makeIdent())))));
+                    accumulate = make().If(cond, 
+                            make().Exec(make().Assign(resultVar.makeIdent(), elementVar.makeIdent())), 
+                            null);
+                }
+            }
+            return List.<JCStatement>of(element, accumulate);
+        }
+        
+        @Override
+        protected JCExpression makeResult() {
+            Type resultType = invocation.getTypeModel();
+            BoxingStrategy boxingStrategy = CodegenUtil.getBoxingStrategy(invocation);
+            if (isStringSum()) {
+                return applyErasureAndBoxing(
+                        make().Apply(null, makeSelect(resultVar.makeIdent(), "toString"), List.<JCExpression>nil()), 
+                        valueType, false, false, boxingStrategy, resultType, 0);
+            }
+            if (unboxed) {
+                if (emptyVar != null && !resultType.isSubtypeOf(valueType)) {
+                    // max() or min() of a possibly empty stream
+                    JCExpression result = make().Conditional(emptyVar.makeIdent(), makeNull(), 
+                            applyErasureAndBoxing(resultVar.makeIdent(), valueType, false, false, 
+                                    BoxingStrategy.BOXED, valueType, 0));
+                    return applyErasureAndBoxing(result, resultType, true, true, 
+                            boxingStrategy, resultType, 0);
+                }
+                return applyErasureAndBoxing(resultVar.makeIdent(), valueType, false, false, 
+                        boxingStrategy, resultType, 0);
+            }
+            return applyErasureAndBoxing(resultVar.makeIdent(), resultType, true, true, 
+                    boxingStrategy, resultType, 0);
+        }
+    }
 
     //
     // Type helper functions
@@ -7781,6 +8281,12 @@ public class ExpressionTransformer extends AbstractTransformer {
             return ret;
         // FIXME: temporary hack for bitwise operators literals
         ret = checkForBitwiseOperators(ce);
+        if(ret != null)
+            return ret;
+        ret = new IterableFusion(this, ce).transform();
+        if(ret != null)
+            return ret;
+        ret = transformEagerlyConsumedComprehension(ce);
         if(ret != null)
             return ret;
         return null;
@@ -0,0 +1,552 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.eclipse.ceylon.compiler.java.codegen;
+
+import static org.eclipse.ceylon.compiler.java.codegen.AbstractTransformer.JT_NO_PRIMITIVES;
+
+import org.eclipse.ceylon.compiler.java.codegen.AbstractTransformer.BoxingStrategy;
+import org.eclipse.ceylon.compiler.java.codegen.Naming.Substitution;
+import org.eclipse.ceylon.compiler.java.codegen.Naming.SyntheticName;
+import org.eclipse.ceylon.compiler.typechecker.tree.Tree;
+import org.eclipse.ceylon.compiler.typechecker.tree.TreeUtil;
+import org.eclipse.ceylon.compiler.typechecker.tree.Visitor;
+import org.eclipse.ceylon.langtools.tools.javac.code.Flags;
+import org.eclipse.ceylon.langtools.tools.javac.tree.JCTree;
+import org.eclipse.ceylon.langtools.tools.javac.tree.JCTree.JCExpression;
+import org.eclipse.ceylon.langtools.tools.javac.tree.JCTree.JCStatement;
+import org.eclipse.ceylon.langtools.tools.javac.util.List;
+import org.eclipse.ceylon.langtools.tools.javac.util.ListBuffer;
+import org.eclipse.ceylon.model.typechecker.model.Class;
+import org.eclipse.ceylon.model.typechecker.model.Declaration;
+import org.eclipse.ceylon.model.typechecker.model.Function;
+import org.eclipse.ceylon.model.typechecker.model.Parameter;
+import org.eclipse.ceylon.model.typechecker.model.Type;
+import org.eclipse.ceylon.model.typechecker.model.TypeDeclaration;
+import org.eclipse.ceylon.model.typechecker.model.Value;
+
+/**
+ * Fuses a chain of {@code map()} and {@code filter()} invocations on a
+ * Ceylon {@code Iterable} which ends with an invocation of
+ * {@code fold()}, {@code count()}, {@code any()} or {@code every()}
+ * into a single loop over the iterator of the original stream,
+ * instead of a lazy stream and an iterator for every stage of the
+ * chain.
+ *
+ * <p>Anonymous functions with an expression body are inlined into
+ * the loop, so that their parameters and the element passed
+ * between the stages are unboxed where possible, and the result of
+ * a {@code fold()} over {@code Integer}s or {@code Float}s is
+ * accumulated in a {@code long} or {@code double}. Any other
+ * function argument is evaluated once, before the loop, and
+ * invoked through {@code Callable.$call$()}. For example:</p>
+ * <pre>
+ * xs.map((Integer x) => x*2).filter((Integer y) => y>3).fold(0, (Integer a, Integer b) => a+b)
+ * </pre>
+ * <p>is transformed into:</p>
+ * <pre>
+ * (let {
+ *     Iterable&lt;? extends Integer, ? extends Object> $source = xs;
+ *     long $result = 0L;
+ *     Iterator&lt;? extends Integer> $iterator = $source.iterator();
+ *     Object $item;
+ *     while (!(($item = $iterator.next()) instanceof Finished)) {
+ *         final long x$0 = ((Integer)$item).longValue();
+ *         final long $element = x$0 * 2L;
+ *         final long y$1 = $element;
+ *         if (y$1 > 3L) {
+ *             final long a$2 = $result;
+ *             final long b$3 = $element;
+ *             $result = a$2 + b$3;
+ *         }
+ *     }
+ * } returning $result)
+ * </pre>
+ *
+ * <p>Only invocations of the members declared by {@code Iterable}
+ * itself are fused, and not of a refinement of them which the
+ * static type of the stream may declare. The static type of the
+ * stream must also be a final class, or a type like
+ * {@code Sequential} or {@code Range} whose instances are all of
+ * classes of the language module, so that its runtime class can't
+ * refine them either.</p>
+ */
+class IterableFusion {
+
+    /** The operations which end a fused chain */
+    private enum Terminal {
+        fold(2),
+        count(1),
+        any(1),
+        every(1);
+
+        final int arity;
+
+        Terminal(int arity) {
+            this.arity = arity;
+        }
+
+        static Terminal get(String name) {
+            for (Terminal terminal : values()) {
+                if (terminal.name().equals(name)) {
+                    return terminal;
+                }
+            }
+            return null;
+        }
+    }
+
+    /** A {@code map()} or {@code filter()} in the chain */
+    private class Stage {
+        final boolean filter;
+        final Fn fn;
+        /** The type of the elements produced by this stage */
+        final Type elementType;
+
+        Stage(boolean filter, Fn fn, Type elementType) {
+            this.filter = filter;
+            this.fn = fn;
+            this.elementType = elementType;
+        }
+    }
+
+    /** A value held in a local variable of the loop */
+    private class Operand {
+        final SyntheticName name;
+        final Type type;
+        final boolean unboxed;
+
+        Operand(SyntheticName name, Type type, boolean unboxed) {
+            this.name = name;
+            this.type = type;
+            this.unboxed = unboxed;
+        }
+
+        JCExpression make(Type expectedType, BoxingStrategy boxingStrategy) {
+            return gen.applyErasureAndBoxing(name.makeIdent(), type,
+                    gen.willEraseToObject(type), !unboxed,
+                    boxingStrategy, expectedType, 0);
+        }
+    }
+
+    /** A function argument of one of the operations in the chain */
+    private class Fn {
+        final Tree.Expression expr;
+        final Type callableType;
+        final Tree.FunctionArgument inlined;
+        SyntheticName var;
+
+        Fn(Tree.QualifiedMemberExpression qme, Tree.ListedArgument arg, int arity) {
+            this.expr = arg.getExpression();
+            this.callableType = qme.getTarget().getTypedParameter(arg.getParameter()).getFullType();
+            Tree.Term term = TreeUtil.unwrapExpressionUntilTerm(expr);
+            this.inlined = term instanceof Tree.FunctionArgument
+                    && isInlinable((Tree.FunctionArgument)term, arity) ?
+                            (Tree.FunctionArgument)term : null;
+        }
+
+        /**
+         * Evaluates the function, unless it's going to be inlined,
+         * into a local variable
+         */
+        void evaluate(ListBuffer<JCStatement> stmts) {
+            if (inlined == null) {
+                var = gen.naming.temp("fn");
+                stmts.append(gen.makeVar(Flags.FINAL, var,
+                        gen.makeJavaType(callableType, JT_NO_PRIMITIVES),
+                        gen.transformExpression(expr, BoxingStrategy.BOXED, callableType)));
+            }
+        }
+
+        /**
+         * Applies the function to the given arguments, appending the
+         * declarations of the parameters of an inlined function to
+         * the given statements.
+         */
+        JCExpression apply(ListBuffer<JCStatement> stmts,
+                List<Operand> args,
+                BoxingStrategy boxingStrategy, Type expectedType) {
+            if (inlined != null) {
+                java.util.List<Tree.Parameter> params = inlined.getParameterLists().get(0).getParameters();
+                ListBuffer<Substitution> subs = new ListBuffer<Substitution>();
+                try {
+                    for (Tree.Parameter param : params) {
+                        Value model = (Value)param.getParameterModel().getModel();
+                        Substitution sub = gen.naming.substituteAlias(model);
+                        subs.append(sub);
+                        boolean unboxed = CodegenUtil.isUnBoxed(model);
+                        stmts.append(gen.makeVar(Flags.FINAL, sub.substituted,
+                                gen.makeJavaType(model.getType(), unboxed ? 0 : JT_NO_PRIMITIVES),
+                                args.head.make(model.getType(), CodegenUtil.getBoxingStrategy(model))));
+                        args = args.tail;
+                    }
+                    return gen.transformExpression(inlined.getExpression(), boxingStrategy, expectedType);
+                } finally {
+                    for (Substitution sub : subs) {
+                        sub.close();
+                    }
+                }
+            } else {
+                ListBuffer<JCExpression> callArgs = new ListBuffer<JCExpression>();
+                for (Type paramType : gen.typeFact().getCallableArgumentTypes(callableType)) {
+                    callArgs.append(args.head.make(paramType, BoxingStrategy.BOXED));
+                    args = args.tail;
+                }
+                JCExpression call = gen.make().Apply(null,
+                        gen.makeSelect(var.makeIdent(), Naming.getCallableMethodName()),
+                        callArgs.toList());
+                Type returnType = gen.typeFact().getCallableReturnType(callableType);
+                return gen.applyErasureAndBoxing(call, returnType, true, true,
+                        boxingStrategy, expectedType, 0);
+            }
+        }
+    }
+
+    private final ExpressionTransformer gen;
+    private final Tree.InvocationExpression invocation;
+    private Tree.Term source;
+    private final ListBuffer<Stage> stages = new ListBuffer<Stage>();
+    private Terminal terminal;
+    private Tree.QualifiedMemberExpression terminalQme;
+    private java.util.List<Tree.PositionalArgument> terminalArgs;
+
+    IterableFusion(ExpressionTransformer gen, Tree.InvocationExpression invocation) {
+        this.gen = gen;
+        this.invocation = invocation;
+    }
+
+    /**
+     * Returns the fused loop, or null if the invocation doesn't end
+     * a chain which can be fused or the optimization is disabled.
+     */
+    public JCExpression transform() {
+        if (gen.statementGen().isOptimizationDisabled(invocation, Optimization.IterableFusion)
+                || !analyze()) {
+            return null;
+        }
+        gen.at(invocation);
+        ListBuffer<JCStatement> stmts = new ListBuffer<JCStatement>();
+
+        // evaluate the stream and the arguments in the order of the chain
+        Type iterableType = source.getTypeModel().getSupertype(gen.typeFact().getIterableDeclaration());
+        Type sourceElementType = gen.typeFact().denotableType(gen.typeFact().getIteratedType(iterableType));
+        SyntheticName sourceVar = gen.naming.temp("source");
+        stmts.append(gen.makeVar(Flags.FINAL, sourceVar,
+                gen.makeJavaType(iterableType, JT_NO_PRIMITIVES),
+                gen.transformExpression(source, BoxingStrategy.BOXED, iterableType)));
+        for (Stage stage : stages) {
+            stage.fn.evaluate(stmts);
+        }
+        Type resultType = invocation.getTypeModel();
+        Operand result = makeResult(stmts, resultType);
+        Fn fn = new Fn(terminalQme,
+                (Tree.ListedArgument)terminalArgs.get(terminal.arity-1),
+                terminal.arity);
+        fn.evaluate(stmts);
+
+        SyntheticName iteratorVar = gen.naming.temp("iterator");
+        SyntheticName itemVar = gen.naming.temp("item");
+        stmts.append(gen.makeVar(iteratorVar,
+                ExpressionTransformer.IterType.CEYLON_ITERABLE.makeIteratorType(gen, iterableType),
+                gen.make().Apply(null, gen.makeSelect(sourceVar.makeIdent(), "iterator"), List.<JCExpression>nil())));
+        stmts.append(gen.makeVar(itemVar, gen.make().Type(gen.syms().objectType), null));
+
+        ListBuffer<JCStatement> loopBody = new ListBuffer<JCStatement>();
+        Operand element = makeElement(loopBody,
+                gen.applyErasureAndBoxing(itemVar.makeIdent(), sourceElementType, true, true,
+                        boxingStrategy(sourceElementType), sourceElementType, 0),
+                sourceElementType);
+        transformStages(loopBody, stages.toList(), element, fn, result);
+
+        // !(($item = $iterator.next()) instanceof Finished)
+        JCExpression loopCond = gen.make().Unary(JCTree.Tag.NOT,
+                gen.make().TypeTest(gen.make().Assign(itemVar.makeIdent(),
+                        gen.make().Apply(null, gen.makeSelect(iteratorVar.makeIdent(), "next"), List.<JCExpression>nil())),
+                        gen.makeIdent(gen.syms().ceylonFinishedType)));
+        if (terminal == Terminal.any) {
+            loopCond = gen.make().Binary(JCTree.Tag.AND,
+                    gen.make().Unary(JCTree.Tag.NOT, result.name.makeIdent()), loopCond);
+        } else if (terminal == Terminal.every) {
+            loopCond = gen.make().Binary(JCTree.Tag.AND, result.name.makeIdent(), loopCond);
+        }
+        stmts.append(gen.make().WhileLoop(loopCond, gen.make().Block(0, loopBody.toList())));
+
+        return gen.make().LetExpr(stmts.toList(),
+                result.make(resultType, CodegenUtil.getBoxingStrategy(invocation)));
+    }
+
+    /** Declares the variable in which the result is accumulated */
+    private Operand makeResult(ListBuffer<JCStatement> stmts, Type resultType) {
+        SyntheticName resultVar = gen.naming.temp("result");
+        boolean unboxed;
+        JCExpression init;
+        switch (terminal) {
+        case fold:
+            // only Integer and Float accumulators are unboxed
+            unboxed = gen.isCeylonInteger(resultType) || gen.isCeylonFloat(resultType);
+            init = gen.transformExpression(((Tree.ListedArgument)terminalArgs.get(0)).getExpression(),
+                    unboxed ? BoxingStrategy.UNBOXED : BoxingStrategy.BOXED, resultType);
+            break;
+        case count:
+            unboxed = true;
+            init = gen.make().Literal(0L);
+            break;
+        default:
+            unboxed = true;
+            init = gen.makeBoolean(terminal == Terminal.every);
+        }
+        stmts.append(gen.makeVar(resultVar,
+                gen.makeJavaType(resultType, unboxed ? 0 : JT_NO_PRIMITIVES), init));
+        return new Operand(resultVar, resultType, unboxed);
+    }
+
+    private Operand makeElement(ListBuffer<JCStatement> stmts, JCExpression expr, Type type) {
+        SyntheticName var = gen.naming.temp("element");
+        BoxingStrategy boxingStrategy = boxingStrategy(type);
+        stmts.append(gen.makeVar(Flags.FINAL, var,
+                gen.makeJavaType(type, boxingStrategy == BoxingStrategy.UNBOXED ? 0 : JT_NO_PRIMITIVES),
+                expr));
+        return new Operand(var, type, boxingStrategy == BoxingStrategy.UNBOXED);
+    }
+
+    /** Elements passed between the stages are unboxed where possible */
+    private BoxingStrategy boxingStrategy(Type type) {
+        return gen.isCeylonBasicType(type) ? BoxingStrategy.UNBOXED : BoxingStrategy.BOXED;
+    }
+
+    /**
+     * Appends the given stages, and then the terminal operation,
+     * applied to the given element
+     */
+    private void transformStages(ListBuffer<JCStatement> stmts, List<Stage> stages,
+            Operand element, Fn fn, Operand result) {
+        if (stages.nonEmpty()) {
+            Stage stage = stages.head;
+            if (stage.filter) {
+                JCExpression cond = stage.fn.apply(stmts, List.of(element),
+                        BoxingStrategy.UNBOXED, gen.typeFact().getBooleanType());
+                ListBuffer<JCStatement> body = new ListBuffer<JCStatement>();
+                transformStages(body, stages.tail, element, fn, result);
+                stmts.append(gen.make().If(cond, gen.make().Block(0, body.toList()), null));
+            } else {
+                JCExpression mapped = stage.fn.apply(stmts, List.of(element),
+                        boxingStrategy(stage.elementType), stage.elementType);
+                transformStages(stmts, stages.tail,
+                        makeElement(stmts, mapped, stage.elementType), fn, result);
+            }
+            return;
+        }
+        switch (terminal) {
+        case fold:
+            stmts.append(gen.make().Exec(gen.make().Assign(result.name.makeIdent(),
+                    fn.apply(stmts, List.of(result, element),
+                            result.unboxed ? BoxingStrategy.UNBOXED : BoxingStrategy.BOXED,
+                            result.type))));
+            break;
+        case count:
+            JCExpression cond = fn.apply(stmts, List.of(element),
+                    BoxingStrategy.UNBOXED, gen.typeFact().getBooleanType());
+            stmts.append(gen.make().If(cond,
+                    gen.make().Exec(gen.make().Unary(JCTree.Tag.POSTINC, result.name.makeIdent())),
+                    null));
+            break;
+        default:
+            // the loop ends as soon as the result is known
+            stmts.append(gen.make().Exec(gen.make().Assign(result.name.makeIdent(),
+                    fn.apply(stmts, List.of(element),
+                            BoxingStrategy.UNBOXED, gen.typeFact().getBooleanType()))));
+        }
+    }
+
+    /**
+     * Finds the stream, the stages and the terminal operation of the
+     * chain which ends with the invocation, returning false if it
+     * can't be fused.
+     */
+    private boolean analyze() {
+        terminalQme = getIterableOperation(invocation);
+        if (terminalQme == null) {
+            return false;
+        }
+        terminal = Terminal.get(terminalQme.getDeclaration().getName());
+        terminalArgs = invocation.getPositionalArgumentList().getPositionalArguments();
+        if (terminal == null
+                || terminalArgs.size() != terminal.arity
+                || invocation.getSmall()) {
+            return false;
+        }
+        Tree.Term receiver = TreeUtil.unwrapExpressionUntilTerm(terminalQme.getPrimary());
+        while (receiver instanceof Tree.InvocationExpression) {
+            Tree.InvocationExpression stageInvocation = (Tree.InvocationExpression)receiver;
+            Tree.QualifiedMemberExpression stageQme = getIterableOperation(stageInvocation);
+            if (stageQme == null) {
+                break;
+            }
+            String name = stageQme.getDeclaration().getName();
+            java.util.List<Tree.PositionalArgument> args = stageInvocation.getPositionalArgumentList().getPositionalArguments();
+            if (!(name.equals("map") || name.equals("filter"))
+                    || args.size() != 1) {
+                break;
+            }
+            Tree.ListedArgument arg = (Tree.ListedArgument)args.get(0);
+            boolean filter = name.equals("filter");
+            Type elementType = filter ? null :
+                gen.typeFact().denotableType(gen.typeFact().getIteratedType(stageInvocation.getTypeModel()));
+            stages.prepend(new Stage(filter,
+                    new Fn(stageQme, arg, 1),
+                    elementType));
+            receiver = TreeUtil.unwrapExpressionUntilTerm(stageQme.getPrimary());
+        }
+        if (receiver instanceof Tree.Super
+                || receiver.getTypeModel() == null
+                || gen.typeFact().getIteratedType(receiver.getTypeModel()) == null
+                || !isClosedType(receiver.getTypeModel().resolveAliases())) {
+            return false;
+        }
+        source = receiver;
+        return true;
+    }
+
+    /**
+     * Whether the class of every instance of the given type is known,
+     * so that the members of {@code Iterable} which the typechecker
+     * resolved the chain to are the ones which would be invoked:
+     * the type is a final class, or a type of the language module
+     * whose subtypes are all in the language module, because it's
+     * sealed, or enumerated. The classes of the language module
+     * which refine these members for speed don't change what they
+     * do. An instance of any other type could be of a class which
+     * refines them, and the loop would bypass the refinement. The
+     * stages after the first are streams of the language module.
+     */
+    private static boolean isClosedType(Type type) {
+        if (type.isIntersection()) {
+            for (Type satisfiedType : type.getSatisfiedTypes()) {
+                if (isClosedType(satisfiedType)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        TypeDeclaration decl = type.getDeclaration();
+        if (decl instanceof Class
+                && (decl.isFinal() || decl.isAnonymous())) {
+            return true;
+        }
+        if (decl.isSealed()
+                && decl.getUnit() != null
+                && decl.getUnit().getPackage().getModule().isLanguageModule()) {
+            return true;
+        }
+        // unions, and types like Sequential or Empty
+        java.util.List<Type> caseTypes = type.getCaseTypes();
+        if (caseTypes == null || caseTypes.isEmpty()) {
+            return false;
+        }
+        for (Type caseType : caseTypes) {
+            if (!isClosedType(caseType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the primary of an invocation of a member of
+     * {@code Iterable}, with listed positional arguments, or null
+     */
+    private Tree.QualifiedMemberExpression getIterableOperation(Tree.InvocationExpression invocation) {
+        Tree.Term primary = TreeUtil.unwrapExpressionUntilTerm(invocation.getPrimary());
+        if (!(primary instanceof Tree.QualifiedMemberExpression)
+                || invocation.getPositionalArgumentList() == null) {
+            return null;
+        }
+        Tree.QualifiedMemberExpression qme = (Tree.QualifiedMemberExpression)primary;
+        if (!(qme.getMemberOperator() instanceof Tree.MemberOp)
+                || qme.getStaticMethodReference()
+                || !isIterableMember(qme.getDeclaration())) {
+            return null;
+        }
+        for (Tree.PositionalArgument arg : invocation.getPositionalArgumentList().getPositionalArguments()) {
+            if (!(arg instanceof Tree.ListedArgument)
+                    || ((Tree.ListedArgument)arg).getExpression() == null
+                    || arg.getParameter() == null) {
+                return null;
+            }
+        }
+        return qme;
+    }
+
+    private boolean isIterableMember(Declaration decl) {
+        return decl instanceof Function
+                && decl.getContainer() instanceof Declaration
+                && decl.getContainer().equals(gen.typeFact().getIterableDeclaration());
+    }
+
+    /**
+     * Whether the given anonymous function can be inlined into the
+     * loop: it must have a single parameter list of the given number
+     * of parameters, and a body which is an expression which doesn't
+     * declare anything that could capture them.
+     */
+    private static boolean isInlinable(Tree.FunctionArgument fn, int arity) {
+        if (fn.getExpression() == null
+                || fn.getTypeParameterList() != null
+                || fn.getParameterLists().size() != 1
+                || fn.getParameterLists().get(0).getParameters().size() != arity) {
+            return false;
+        }
+        for (Tree.Parameter param : fn.getParameterLists().get(0).getParameters()) {
+            Parameter model = param.getParameterModel();
+            if (model == null
+                    || !(model.getModel() instanceof Value)
+                    || model.getModel().isVariable()
+                    || model.isDefaulted()
+                    || model.isSequenced()) {
+                return false;
+            }
+        }
+        class DeclarationVisitor extends Visitor {
+            boolean found = false;
+            @Override
+            public void visit(Tree.Declaration that) {
+                found = true;
+            }
+            @Override
+            public void visit(Tree.FunctionArgument that) {
+                found = true;
+            }
+            @Override
+            public void visit(Tree.ObjectExpression that) {
+                found = true;
+            }
+            @Override
+            public void visit(Tree.TypedArgument that) {
+                found = true;
+            }
+            @Override
+            public void visit(Tree.Super that) {
+                found = true;
+            }
+        }
+        DeclarationVisitor visitor = new DeclarationVisitor();
+        fn.getExpression().visit(visitor);
+        return !visitor.found;
+    }
+}
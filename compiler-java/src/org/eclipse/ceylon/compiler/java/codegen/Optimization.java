@@ -32,6 +32,8 @@ public enum Optimization {
     TupleIterationStatic,
     ArrayIterationDynamic,
     TupleIterationDynamic,
+    ComprehensionMaterialization,
+    IterableFusion,
     
     PowerUnroll
 }
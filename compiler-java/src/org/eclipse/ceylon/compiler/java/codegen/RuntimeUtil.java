@@ -116,6 +116,14 @@ class RuntimeUtil {
         return makeUtilInvocation(null, "sequentialOf", List.of(reifiedType, iterable));
     }
 
+    /**
+     * Invoke {@code Util.sequentialOf($reifiedT, list)} to make a
+     * {@code Sequential} of the elements of a {@code java.util.List}
+     */
+    public JCExpression sequentialOf(JCExpression typeArg, JCExpression reifiedType, JCExpression list){
+        return makeUtilInvocation(List.of(typeArg), "sequentialOf", List.of(reifiedType, list));
+    }
+
     /**
      * Casts a <tt>ceylon.language.Sequential</tt> type to a <tt>ceylon.language.Sequence</tt> type.
      */
@@ -2590,6 +2590,20 @@ public class StatementTransformer extends AbstractTransformer {
                         "disableOptimization", optName.toString());
     }
     
+    /**
+     * Determines whether the given optimization has been disabled for 
+     * the given expression, on the command line or on any statement or 
+     * declaration which encloses it.
+     * @param node The expression to be optimized
+     * @param optName The name of the optimization
+     * @return
+     */
+    boolean isOptimizationDisabled(Node node, Optimization optName) {
+        return this.disabledOptimizations.contains(optName)
+                || gen().visitor != null
+                    && gen().visitor.dov.isOptimizationDisabled(node, optName);
+    }
+    
     private boolean isOptimizationRequired(Tree.StatementOrArgument stmt, Optimization optName) {
         return optName == null ? CodegenUtil.hasCompilerAnnotationNoArgument(stmt, "requireOptimization")
                 : CodegenUtil.hasCompilerAnnotationWithArgument(stmt, 
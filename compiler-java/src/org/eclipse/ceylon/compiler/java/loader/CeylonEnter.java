@@ -60,6 +60,7 @@ import org.eclipse.ceylon.compiler.java.tools.CeylonPhasedUnit;
 import org.eclipse.ceylon.compiler.java.tools.CeyloncFileManager;
 import org.eclipse.ceylon.compiler.java.tools.LanguageCompiler;
 import org.eclipse.ceylon.compiler.java.tools.LanguageCompiler.CompilerDelegate;
+import org.eclipse.ceylon.compiler.java.tools.UnitDependencies;
 import org.eclipse.ceylon.compiler.java.util.Util;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.AnalysisError;
 import org.eclipse.ceylon.compiler.typechecker.analyzer.UnsupportedError;
@@ -158,6 +159,7 @@ public class CeylonEnter extends Enter {
     private StatusPrinter sp;
     private boolean hasJavaAndCeylonSources;
     private LanguageCompiler compiler;
+    private UnitDependencies unitDependencies;
 
     
     protected CeylonEnter(Context context) {
@@ -188,6 +190,7 @@ public class CeylonEnter extends Enter {
         taskListener = context.get(TaskListener.class);
         sourceLanguage = SourceLanguage.instance(context);
         compiler = (LanguageCompiler) LanguageCompiler.instance(context);
+        unitDependencies = UnitDependencies.instance(context);
 
         // now superclass init
         init(context);
@@ -615,11 +618,14 @@ public class CeylonEnter extends Enter {
         ForcedCaptureVisitor fcv = new ForcedCaptureVisitor();
         
         for (PhasedUnit pu : listOfUnits) {
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progressPreparation(1, i++, size, pu);
             Unit unit = pu.getUnit();
             final CompilationUnit compilationUnit = pu.getCompilationUnit();
             compilationUnit.visit(fcv);
+            // for incremental compilation
+            unitDependencies.add(pu);
             for (Declaration d: unit.getDeclarations()) {
                 if (d instanceof TypedDeclaration 
                         && !(d instanceof Setter)
@@ -649,6 +655,7 @@ public class CeylonEnter extends Enter {
         // boxing visitor depends on boxing decl
         i=1;
         for (PhasedUnit pu : listOfUnits) {
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progressPreparation(2, i++, size, pu);
             pu.getCompilationUnit().visit(eeVisitor);
@@ -657,6 +664,7 @@ public class CeylonEnter extends Enter {
         }
         i=1;
         for (PhasedUnit pu : listOfUnits) {
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progressPreparation(3, i++, size, pu);
             pu.getCompilationUnit().visit(boxingDeclarationVisitor);
@@ -667,6 +675,7 @@ public class CeylonEnter extends Enter {
         i=1;
         // the others can run at the same time
         for (PhasedUnit pu : listOfUnits) {
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progressPreparation(4, i++, size, pu);
             CompilationUnit compilationUnit = pu.getCompilationUnit();
@@ -681,6 +690,7 @@ public class CeylonEnter extends Enter {
         
         i=1;
         for (PhasedUnit pu : listOfUnits) {
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progressPreparation(5, i++, size, pu);
             CompilationUnit compilationUnit = pu.getCompilationUnit();
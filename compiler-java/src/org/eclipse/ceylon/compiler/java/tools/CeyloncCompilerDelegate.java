@@ -85,6 +85,7 @@ public final class CeyloncCompilerDelegate implements
         int size = listOfUnits.size();
         int i=1;
         for (PhasedUnit pu : listOfUnits) {
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progress(sp, 1, i++, size, pu);
             pu.validateTree();
@@ -92,12 +93,14 @@ public final class CeyloncCompilerDelegate implements
         }
         i=1;
         for (PhasedUnit pu : listOfUnits) { 
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progress(sp, 2, i++, size, pu);
             pu.scanTypeDeclarations(); 
         } 
         i=1;
         for (PhasedUnit pu: listOfUnits) { 
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progress(sp, 3, i++, size, pu);
             pu.validateRefinement();
@@ -105,6 +108,7 @@ public final class CeyloncCompilerDelegate implements
         
         i=1;
         for (PhasedUnit pu : listOfUnits) { 
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progress(sp, 4, i++, size, pu);
             pu.analyseTypes(); 
@@ -112,6 +116,7 @@ public final class CeyloncCompilerDelegate implements
         
         i=1;
         for (PhasedUnit pu : listOfUnits) { 
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progress(sp, 5, i++, size, pu);
             pu.analyseFlow();
@@ -119,6 +124,7 @@ public final class CeyloncCompilerDelegate implements
 
         i=1;
         for (PhasedUnit pu : listOfUnits) { 
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progress(sp, 6, i++, size, pu);
             pu.analyseUsage();
@@ -127,6 +133,7 @@ public final class CeyloncCompilerDelegate implements
         i=1;
         UnknownTypeCollector utc = new UnknownTypeCollector();
         for (PhasedUnit pu : listOfUnits) { 
+            LanguageCompiler.checkCancelled();
             if(sp != null)
                 progress(sp, 7, i++, size, pu);
             pu.getCompilationUnit().visit(utc);
@@ -42,6 +42,7 @@ import java.util.Set;
 
 import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.cmr.ceylon.CeylonUtils;
+import org.eclipse.ceylon.cmr.ceylon.CeylonUtils.CeylonRepoManagerBuilder;
 import org.eclipse.ceylon.cmr.impl.CachingRepositoryManager;
 import org.eclipse.ceylon.common.FileUtil;
 import org.eclipse.ceylon.common.config.Repositories;
@@ -240,7 +241,7 @@ public class CeyloncFileManager extends JavacFileManager implements StandardJava
         String overrides = options.get(Option.CEYLONOVERRIDES);
         boolean upgradeDist = !options.getBoolean(Option.CEYLONDOWNGRADEDIST.text);
         
-        repoManager = CeylonUtils.repoManager()
+        final CeylonRepoManagerBuilder builder = CeylonUtils.repoManager()
                 .config(CompilerConfig.instance(context))
                 .cwd(getCurrentWorkingDir())
                 .upgradeDist(upgradeDist)
@@ -251,9 +252,24 @@ public class CeyloncFileManager extends JavacFileManager implements StandardJava
                 .userRepos(userRepos)
                 .outRepo(outRepo)
                 .offline(getOfflineOption())
-                .timeout(getTimeoutOption())
-                .logger(getLogger())
-                .buildManager();
+                .timeout(getTimeoutOption());
+        
+        if (WarmRepositoryManagers.isEnabled()) {
+            // in a compile server we reuse the manager of previous compiles
+            // which had the same settings
+            String settings = getCurrentWorkingDir() + "\n" + upgradeDist + "\n" + overrides
+                    + "\n" + systemRepo + "\n" + cacheRepo + "\n" + getNoDefaultRepos()
+                    + "\n" + userRepos + "\n" + outRepo + "\n" + getOfflineOption()
+                    + "\n" + getTimeoutOption() + "\n" + CompilerConfig.instance(context);
+            repoManager = WarmRepositoryManagers.get(settings, getLogger(), new WarmRepositoryManagers.Factory() {
+                @Override
+                public RepositoryManager create(Logger log) {
+                    return builder.logger(log).buildManager();
+                }
+            });
+        } else {
+            repoManager = builder.logger(getLogger()).buildManager();
+        }
         
         return repoManager;
     }
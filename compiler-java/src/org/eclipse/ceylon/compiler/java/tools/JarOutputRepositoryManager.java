@@ -26,13 +26,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
-import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 
@@ -40,8 +38,8 @@ import org.eclipse.ceylon.cmr.api.ArtifactContext;
 import org.eclipse.ceylon.cmr.api.ArtifactCreator;
 import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.cmr.ceylon.CeylonUtils;
-import org.eclipse.ceylon.cmr.impl.IOUtils;
 import org.eclipse.ceylon.cmr.impl.ShaSigner;
+import org.eclipse.ceylon.cmr.util.ArchiveWriter;
 import org.eclipse.ceylon.cmr.util.JarUtils;
 import org.eclipse.ceylon.cmr.util.JarUtils.JarEntryFilter;
 import org.eclipse.ceylon.common.Constants;
@@ -134,13 +132,14 @@ public class JarOutputRepositoryManager {
         * Since this can be added at any point via a call to
         * getJavaFileObject() we have to:
         * 
-        * * Write manifest.jar to hold just the manifest as and when it gets added
-        * * Write the rest of the generated files to rest.jar
-        * * Then on close() we generate a final.jar by copying the entries from
-        *   - manifest.jar and then
-        *   - rest.jar
-        *   - and then stuff from original.car
-        * * And finally rename final.jar to original.car
+        * * Write the generated files to a temporary folder, and keep the
+        *   manifest in memory as and when it gets added
+        * * Then on close() we generate a final.car with an ArchiveWriter,
+        *   which deflates the new entries in parallel, from
+        *   - the manifest and then
+        *   - the temporary folder
+        *   - and then stuff from original.car, copied without inflating it
+        * * And finally publish final.car with the SHA1 computed while writing it
         */
         private static final String META_INF = "META-INF";
         private static final String FILE_MAPPING = META_INF + "/mapping.txt";
@@ -183,6 +182,7 @@ public class JarOutputRepositoryManager {
         private Log log;
         private JdkProvider jdkProvider;
         private Map<ClassOrInterface, Set<Class>> services;
+        private UnitDependencies unitDependencies;
         private boolean validModule;
 
         public ProgressiveJar(RepositoryManager repoManager, Module module, Log log, 
@@ -213,6 +213,7 @@ public class JarOutputRepositoryManager {
             this.writeMavenManifest = !options.isSet(Option.CEYLONNOPOM) && !module.isDefaultModule();
             this.writeJava9Module= options.isSet(Option.CEYLONJIGSAW) && !module.isDefaultModule();
             this.services = module.getServices();
+            this.unitDependencies = UnitDependencies.instance(ceyloncFileManager.getContext());
             
             // Determine the special path that signals that the files it contains
             // should be moved to the root of the output JAR/CAR
@@ -254,6 +255,14 @@ public class JarOutputRepositoryManager {
             return JarUtils.getMetaInfProperties(originalJarFile, FILE_HASHES);
         }
 
+        private Properties getPreviousDeclarations() throws IOException {
+            return JarUtils.getMetaInfProperties(originalJarFile, UnitDependencies.FILE_DECLARATIONS);
+        }
+
+        private Properties getPreviousDependencies() throws IOException {
+            return JarUtils.getMetaInfProperties(originalJarFile, UnitDependencies.FILE_DEPENDENCIES);
+        }
+
         private Manifest getPreviousManifest() throws IOException {
             JarFile jarFile = JarUtils.validJar(originalJarFile);
             if (jarFile != null) {
@@ -297,7 +306,7 @@ public class JarOutputRepositoryManager {
 
                 // Add META-INF/mapping.txt
                 Properties previousMapping = getPreviousMapping();
-                JarEntryFilter jarFilter = getJarFilter(previousMapping, copiedSourceFiles);
+                final JarEntryFilter jarFilter = getJarFilter(previousMapping, copiedSourceFiles);
                 writeMappingJarEntry(outputJarTempFolder, previousMapping, jarFilter);
                 
                 // Write services to the META-INF/services
@@ -309,23 +318,55 @@ public class JarOutputRepositoryManager {
                 // Add META-INF/hashes.txt
                 writeHashesJarEntry(outputJarTempFolder);
                 
-                // Now add the old jar remains
-                if (originalJarFile != null && JarUtils.isValidJar(originalJarFile)) {
-                    addOriginalJarFiles(outputJarTempFolder, originalJarFile, jarFilter);
+                // Add META-INF/declarations.txt and META-INF/dependencies.txt
+                writeDependenciesJarEntries(outputJarTempFolder, copiedSourceFiles);
+                
+                File finalCarFile = File.createTempFile("ceylon-", ".car");
+                try {
+                    boolean hasOriginalJar = originalJarFile != null && JarUtils.isValidJar(originalJarFile);
+                    ArchiveWriter car = new ArchiveWriter(finalCarFile);
+                    try {
+                        if (manifestObject != null) {
+                            car.addManifest(manifestObject);
+                        } else if (hasOriginalJar) {
+                            // keep the previous manifest first
+                            addOriginalJarFiles(car, originalJarFile, new JarEntryFilter() {
+                                @Override
+                                public boolean avoid(String entryFullName) {
+                                    return jarFilter.avoid(entryFullName)
+                                            || !(entryFullName.equals("META-INF/")
+                                                    || entryFullName.equals("META-INF/MANIFEST.MF"));
+                                }
+                            });
+                        }
+                        car.addFolder(outputJarTempFolder, "");
+                        // Now add the old jar remains, as they are
+                        if (hasOriginalJar) {
+                            addOriginalJarFiles(car, originalJarFile, jarFilter);
+                        }
+                    } finally {
+                        car.close();
+                    }
+
+                    // We only publish the final .car file if we found a module descriptor.
+                    // Otherwise something has gone seriously wrong during compilation and
+                    // we would be generating output that does more harm than good
+                    if (validModule) {
+                        boolean verbose = options.get(Option.VERBOSE) != null;
+                        File sha1File;
+                        if (options.isSet(Option.CEYLONPACK200)) {
+                            JarUtils.repack(finalCarFile, cmrLog);
+                            sha1File = ShaSigner.sign(finalCarFile, cmrLog, verbose);
+                        } else {
+                            sha1File = ShaSigner.sign(finalCarFile, car.getSha1(), cmrLog, verbose);
+                        }
+                        JarUtils.publish(finalCarFile, sha1File, carContext, repoManager, cmrLog);
+                    }
+                } finally {
+                    finalCarFile.delete();
                 }
 
-                // We only create the final .car file if we found a module descriptor.
-                // Otherwise something has gone seriously wrong during compilation and
-                // we would be generating output that does more harm than good
                 if (validModule) {
-                    File finalCarFile = IOUtils.zipFolder(manifestObject, outputJarTempFolder);
-                
-                    if (options.isSet(Option.CEYLONPACK200)) {
-                        JarUtils.repack(finalCarFile, cmrLog);
-                    }
-                    File sha1File = ShaSigner.sign(finalCarFile, cmrLog, options.get(Option.VERBOSE) != null);
-                    JarUtils.publish(finalCarFile, sha1File, carContext, repoManager, cmrLog);
-                    
                     String info;
                     if(module.isDefaultModule())
                         info = module.getNameAsString();
@@ -347,35 +388,19 @@ public class JarOutputRepositoryManager {
             }
         }
 
-        private void addOriginalJarFiles(File outputJarTempFolder, File originalJarFile, JarEntryFilter filter) throws IOException {
-            try (JarFile j = new JarFile(originalJarFile)) {
-                Enumeration<JarEntry> inEntries = j.entries();
-                while (inEntries.hasMoreElements()) {
-                    JarEntry entry = inEntries.nextElement();
-                    String name = entry.getName();
+        private void addOriginalJarFiles(ArchiveWriter car, File originalJarFile, final JarEntryFilter filter) throws IOException {
+            car.copyFrom(originalJarFile, new ArchiveWriter.EntryVisitor() {
+                @Override
+                public boolean accept(String name, boolean directory) {
                     // is the file a module descriptor?
                     if (name.equals(QUOTED_MODULE_DESCRIPTOR)
                             || name.endsWith("/" + QUOTED_MODULE_DESCRIPTOR)) {
                         // Mark this module as being valid (enough)
                         validModule = true;
                     }
-                    if (filter != null && filter.avoid(name)) {
-                        continue;
-                    }
-                    File targetFile = new File(outputJarTempFolder, name);
-                    if (!targetFile.exists()) {// first in wins
-                        if(entry.isDirectory())
-                            FileUtil.mkdirs(targetFile);
-                        else{
-                            FileUtil.mkdirs(targetFile.getParentFile());
-                            try (InputStream in = j.getInputStream(entry);
-                                 OutputStream out = new FileOutputStream(targetFile)) {
-                                JarUtils.copy(in, out);
-                            }
-                        }
-                    }
+                    return filter == null || !filter.avoid(name);
                 }
-            }
+            });
         }
 
         private JarUtils.JarEntryFilter getJarFilter(final Properties previousMapping, final Set<String> copiedSourceFiles) {
@@ -394,6 +419,8 @@ public class JarOutputRepositoryManager {
                             || entryFullName.equals(FILE_MAPPING)
                             || entryFullName.equals(FILE_ERRORS)
                             || entryFullName.equals(FILE_HASHES)
+                            || entryFullName.equals(UnitDependencies.FILE_DECLARATIONS)
+                            || entryFullName.equals(UnitDependencies.FILE_DEPENDENCIES)
                             || (writeOsgiManifest && OsgiUtil.OsgiManifest.isManifestFileName(entryFullName))
                             || (writeMavenManifest && MavenPomUtil.isMavenDescriptor(entryFullName, module));
                     }
@@ -563,6 +590,65 @@ public class JarOutputRepositoryManager {
             }
         }
         
+        /** 
+         * Add {@code META-INF/declarations.txt} and {@code META-INF/dependencies.txt}
+         * entries which record the toplevel declarations of each source file
+         * and the toplevel declarations it depends on
+         */
+        private void writeDependenciesJarEntries(File outputFolder, Set<String> copiedSourceFiles) throws IOException {
+            Properties newDeclarations = new Properties();
+            Properties newDependencies = new Properties();
+            // Add the entries for the source files we typechecked
+            for (Map.Entry<String, Set<String>> entry : unitDependencies.getDeclarations(module).entrySet()) {
+                String sourcePath = JarUtils.toPlatformIndependentPath(srcCreator.getPaths(), entry.getKey());
+                newDeclarations.setProperty(sourcePath, UnitDependencies.toProperty(entry.getValue()));
+            }
+            for (Map.Entry<String, Set<String>> entry : unitDependencies.getDependencies(module).entrySet()) {
+                String sourcePath = JarUtils.toPlatformIndependentPath(srcCreator.getPaths(), entry.getKey());
+                newDependencies.setProperty(sourcePath, UnitDependencies.toProperty(entry.getValue()));
+            }
+            // Add the previous entries of the source files that we didn't compile
+            // again and that still exist
+            Properties previousDeclarations = getPreviousDeclarations();
+            Properties previousDependencies = getPreviousDependencies();
+            if (previousDeclarations != null && previousDependencies != null) {
+                for (String sourceFile : previousDeclarations.stringPropertyNames()) {
+                    if (!newDeclarations.containsKey(sourceFile)
+                            && !copiedSourceFiles.contains(sourceFile)
+                            && FileUtil.applyPath(srcCreator.getPaths(), sourceFile) != null) {
+                        newDeclarations.setProperty(sourceFile, previousDeclarations.getProperty(sourceFile));
+                        String dependencies = previousDependencies.getProperty(sourceFile);
+                        if (dependencies != null) {
+                            newDependencies.setProperty(sourceFile, dependencies);
+                        }
+                    }
+                }
+            }
+            // Write the files to the Jar
+            FileUtil.mkdirs(new File(outputFolder, META_INF));
+            writeDependenciesFile(outputFolder, UnitDependencies.FILE_DECLARATIONS, newDeclarations, 
+                    "List of source files and their toplevel declarations");
+            writeDependenciesFile(outputFolder, UnitDependencies.FILE_DEPENDENCIES, newDependencies, 
+                    "List of source files and the toplevel declarations they depend on");
+        }
+        
+        /**
+         * Writes one of the dependency entries. Without it the next
+         * {@code --incremental} compilation compiles the whole module,
+         * so not being able to write it is only a warning.
+         */
+        private void writeDependenciesFile(File outputFolder, String fileName, Properties properties, String comment) {
+            File file = new File(outputFolder, fileName);
+            try (OutputStream os = new FileOutputStream(file)) {
+                properties.store(os, comment);
+            } catch(IOException e) {
+                // don't leave a partial file which would end up in the archive
+                file.delete();
+                cmrLog.warning("Could not write " + fileName + " of module " + module.getNameAsString() 
+                        + ": " + e.getMessage());
+            }
+        }
+        
         public JavaFileObject getJavaFileObject(String fileName, File sourceFile) {
             String quotedFileName = JVMModuleUtil.quoteJavaKeywordsInFilename(fileName);
             String entryName = handleResourceRoot(quotedFileName);
@@ -100,6 +100,7 @@ import org.eclipse.ceylon.langtools.tools.javac.tree.JCTree.JCCompilationUnit;
 import org.eclipse.ceylon.langtools.tools.javac.util.Abort;
 import org.eclipse.ceylon.langtools.tools.javac.util.Context;
 import org.eclipse.ceylon.langtools.tools.javac.util.Convert;
+import org.eclipse.ceylon.langtools.tools.javac.util.FatalError;
 import org.eclipse.ceylon.langtools.tools.javac.util.List;
 import org.eclipse.ceylon.langtools.tools.javac.util.Options;
 import org.eclipse.ceylon.langtools.tools.javac.util.Pair;
@@ -208,6 +209,16 @@ public class LanguageCompiler extends JavaCompiler {
         return statusPrinter;
     }
 
+    /**
+     * Stops the compilation if its thread was interrupted, which is how the
+     * compile server cancels the compile of a client which went away. We
+     * check between phases, and between the units or classes of a phase.
+     */
+    public static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted())
+            throw new FatalError("Compilation cancelled");
+    }
+
     /** Get the JavaCompiler instance for this context. */
     public static JavaCompiler instance(Context context) {
         Options options = Options.instance(context);
@@ -416,6 +427,7 @@ public class LanguageCompiler extends JavaCompiler {
     }
     
     private JCCompilationUnit ceylonParse(JavaFileObject filename, CharSequence readSource) {
+        checkCancelled();
         if(ceylonEnter.hasRun())
             throw new RunTwiceException("Trying to load new source file after CeylonEnter has been called: "+filename);
         try {
@@ -783,6 +795,7 @@ public class LanguageCompiler extends JavaCompiler {
 
     @Override
     protected boolean shouldStop(CompileState cs) {
+        checkCancelled();
         CompileState shouldStopPolicy = (unrecoverableError())
                 ? shouldStopPolicyIfError
                 : shouldStopPolicyIfNoError;
@@ -0,0 +1,238 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.eclipse.ceylon.compiler.java.tools;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.eclipse.ceylon.compiler.typechecker.context.PhasedUnit;
+import org.eclipse.ceylon.compiler.typechecker.util.UnitDependencyVisitor;
+import org.eclipse.ceylon.langtools.tools.javac.util.Context;
+import org.eclipse.ceylon.model.typechecker.model.Module;
+import org.eclipse.ceylon.model.typechecker.model.Unit;
+
+/**
+ * The dependencies between the source files of the modules we compile,
+ * which we record in their archives for incremental compilation.
+ *
+ * Each archive has a {@code META-INF/declarations.txt} entry which lists
+ * the toplevel declarations of each of its source files, and a
+ * {@code META-INF/dependencies.txt} entry which lists the toplevel
+ * declarations of other source files, of any module, that each of its
+ * source files depends on. When a source file changes, the files which
+ * depend on one of its declarations, directly or through other files,
+ * need to be compiled again.
+ */
+public class UnitDependencies {
+
+    public static final String FILE_DECLARATIONS = "META-INF/declarations.txt";
+    public static final String FILE_DEPENDENCIES = "META-INF/dependencies.txt";
+
+    private static final String SEPARATOR = ",";
+
+    private static final Context.Key<UnitDependencies> unitDependenciesKey = new Context.Key<UnitDependencies>();
+
+    public static UnitDependencies instance(Context context) {
+        UnitDependencies instance = context.get(unitDependenciesKey);
+        if (instance == null) {
+            instance = new UnitDependencies();
+            context.put(unitDependenciesKey, instance);
+        }
+        return instance;
+    }
+
+    /** The declarations and dependencies of each typechecked source file, by module */
+    private final Map<Module, Map<String, Set<String>>> declarations = new HashMap<Module, Map<String, Set<String>>>();
+    private final Map<Module, Map<String, Set<String>>> dependencies = new HashMap<Module, Map<String, Set<String>>>();
+
+    private UnitDependencies() {
+    }
+
+    /**
+     * Records the declarations and dependencies of the given typechecked
+     * unit.
+     */
+    public void add(PhasedUnit phasedUnit) {
+        Unit unit = phasedUnit.getUnit();
+        Module module = unit.getPackage().getModule();
+        UnitDependencyVisitor visitor = new UnitDependencyVisitor(unit);
+        phasedUnit.getCompilationUnit().visit(visitor);
+        String path = unit.getFullPath();
+        get(declarations, module).put(path, UnitDependencyVisitor.getDeclarations(unit));
+        get(dependencies, module).put(path, visitor.getDependencies());
+    }
+
+    private static Map<String, Set<String>> get(Map<Module, Map<String, Set<String>>> map, Module module) {
+        Map<String, Set<String>> result = map.get(module);
+        if (result == null) {
+            result = new HashMap<String, Set<String>>();
+            map.put(module, result);
+        }
+        return result;
+    }
+
+    /**
+     * The toplevel declarations of each typechecked source file of the given
+     * module, by full path.
+     */
+    public Map<String, Set<String>> getDeclarations(Module module) {
+        Map<String, Set<String>> result = declarations.get(module);
+        return result != null ? result : Collections.<String, Set<String>>emptyMap();
+    }
+
+    /**
+     * The toplevel declarations each typechecked source file of the given
+     * module depends on, by full path.
+     */
+    public Map<String, Set<String>> getDependencies(Module module) {
+        Map<String, Set<String>> result = dependencies.get(module);
+        return result != null ? result : Collections.<String, Set<String>>emptyMap();
+    }
+
+    public static String toProperty(Set<String> names) {
+        StringBuilder result = new StringBuilder();
+        for (String name : names) {
+            if (result.length() > 0)
+                result.append(SEPARATOR);
+            result.append(name);
+        }
+        return result.toString();
+    }
+
+    public static Set<String> fromProperty(String value) {
+        Set<String> result = new LinkedHashSet<String>();
+        if (value != null) {
+            for (String name : value.split(SEPARATOR)) {
+                if (!name.isEmpty())
+                    result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The dependency graph of the source files of several modules, read
+     * back from their archives.
+     */
+    public static class Graph {
+        /** The source files which depend on each declaration */
+        private final Map<String, Set<String>> dependentFiles = new HashMap<String, Set<String>>();
+        /** The declarations of each source file */
+        private final Map<String, Set<String>> fileDeclarations = new HashMap<String, Set<String>>();
+
+        /**
+         * Adds the {@code META-INF/declarations.txt} and
+         * {@code META-INF/dependencies.txt} entries of a module archive.
+         */
+        public void add(Properties declarations, Properties dependencies) {
+            for (String file : declarations.stringPropertyNames()) {
+                Set<String> names = fromProperty(declarations.getProperty(file));
+                fileDeclarations.put(file, names);
+            }
+            for (String file : dependencies.stringPropertyNames()) {
+                for (String name : fromProperty(dependencies.getProperty(file))) {
+                    put(dependentFiles, name, file);
+                }
+            }
+        }
+
+        private static void put(Map<String, Set<String>> map, String key, String value) {
+            Set<String> values = map.get(key);
+            if (values == null) {
+                values = new HashSet<String>();
+                map.put(key, values);
+            }
+            values.add(value);
+        }
+
+        /**
+         * Returns true if we know the declarations of the given source file.
+         */
+        public boolean contains(String file) {
+            return fileDeclarations.containsKey(file);
+        }
+
+        /**
+         * Returns the source files which need to be compiled again because
+         * the given source files changed, or were removed, and because the
+         * given modules are compiled again without us knowing what changed
+         * in them. The result doesn't include the changed files themselves.
+         */
+        public Set<String> getDependentFiles(Collection<String> changedFiles, Collection<String> changedModules) {
+            Set<String> result = new HashSet<String>();
+            Set<String> seenDeclarations = new HashSet<String>();
+            Deque<String> queue = new ArrayDeque<String>();
+            for (String file : changedFiles) {
+                addDeclarations(file, seenDeclarations, queue);
+            }
+            if (!changedModules.isEmpty()) {
+                for (String name : dependentFiles.keySet()) {
+                    if (isInModules(name, changedModules) && seenDeclarations.add(name)) {
+                        queue.add(name);
+                    }
+                }
+            }
+            while (!queue.isEmpty()) {
+                Set<String> files = dependentFiles.get(queue.poll());
+                if (files == null)
+                    continue;
+                for (String file : files) {
+                    if (!changedFiles.contains(file) && result.add(file)) {
+                        // its own dependents may depend on what it inferred
+                        addDeclarations(file, seenDeclarations, queue);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private void addDeclarations(String file, Set<String> seenDeclarations, Deque<String> queue) {
+            Set<String> names = fileDeclarations.get(file);
+            if (names == null)
+                return;
+            for (String name : names) {
+                if (seenDeclarations.add(name)) {
+                    queue.add(name);
+                }
+            }
+        }
+
+        private static boolean isInModules(String name, Collection<String> modules) {
+            int sep = name.indexOf("::");
+            String pkg = sep >= 0 ? name.substring(0, sep) : name;
+            for (String module : modules) {
+                if (Module.DEFAULT_MODULE_NAME.equals(module)
+                        // packages of the default module can have any name
+                        || pkg.equals(module) || pkg.startsWith(module + ".")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ *
+ * This particular file is subject to the "Classpath" exception as provided in the
+ * LICENSE file that accompanied this code.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.eclipse.ceylon.compiler.java.tools;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.impl.MemoizingRepositoryManager;
+import org.eclipse.ceylon.common.log.Logger;
+
+/**
+ * Keeps the lookup repository managers of a compile server between
+ * compiles, so that the modules they found don't need to be resolved again.
+ * Managers are shared by compiles which use the same repository settings,
+ * and log to the compile that is using them. Only enabled by the compile
+ * server, which runs one compile at a time.
+ */
+public final class WarmRepositoryManagers {
+
+    /**
+     * Creates a repository manager which logs to the given logger.
+     */
+    public interface Factory {
+        RepositoryManager create(Logger log);
+    }
+
+    private static final int MAX_MANAGERS = 16;
+
+    /**
+     * Sends the logs of a shared manager to the compile using it.
+     */
+    private static final class ForwardingLogger implements Logger {
+        private volatile Logger target;
+
+        @Override
+        public void error(String str) {
+            target.error(str);
+        }
+
+        @Override
+        public void warning(String str) {
+            target.warning(str);
+        }
+
+        @Override
+        public void info(String str) {
+            target.info(str);
+        }
+
+        @Override
+        public void debug(String str) {
+            target.debug(str);
+        }
+    }
+
+    private static final class WarmManager {
+        private final MemoizingRepositoryManager manager;
+        private final ForwardingLogger log;
+
+        WarmManager(MemoizingRepositoryManager manager, ForwardingLogger log) {
+            this.manager = manager;
+            this.log = log;
+        }
+    }
+
+    private static volatile boolean enabled;
+
+    private static final Map<String, WarmManager> managers = new LinkedHashMap<String, WarmManager>(16, 0.75f, true) {
+        private static final long serialVersionUID = 2526640719627414516L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WarmManager> eldest) {
+            return size() > MAX_MANAGERS;
+        }
+    };
+
+    private WarmRepositoryManagers() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        WarmRepositoryManagers.enabled = enabled;
+        if (!enabled) {
+            clear();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the manager for the given repository settings, logging to the
+     * given logger, creating it with the given factory if we don't have one
+     * yet.
+     */
+    public static RepositoryManager get(String settings, Logger log, Factory factory) {
+        synchronized (managers) {
+            WarmManager entry = managers.get(settings);
+            if (entry == null) {
+                ForwardingLogger forwardingLog = new ForwardingLogger();
+                forwardingLog.target = log;
+                entry = new WarmManager(new MemoizingRepositoryManager(factory.create(forwardingLog), forwardingLog), forwardingLog);
+                managers.put(settings, entry);
+            } else {
+                entry.log.target = log;
+            }
+            return entry.manager;
+        }
+    }
+
+    /**
+     * Forgets all the managers we kept.
+     */
+    public static void clear() {
+        synchronized (managers) {
+            managers.clear();
+        }
+    }
+}
@@ -47,6 +47,7 @@ import org.eclipse.ceylon.compiler.java.test.language.LanguageSuite;
 import org.eclipse.ceylon.compiler.java.test.languagesatisfaction.LanguageSatisfactionSuite;
 import org.eclipse.ceylon.compiler.java.test.metamodel.MetamodelTests;
 import org.eclipse.ceylon.compiler.java.test.misc.MiscTests;
+import org.eclipse.ceylon.compiler.java.test.misc.ParallelTypeCheckerTests;
 import org.eclipse.ceylon.compiler.java.test.model.ModelLoaderTests;
 import org.eclipse.ceylon.compiler.java.test.model.TypeParserTests;
 import org.eclipse.ceylon.compiler.java.test.model.ValueTypeTests;
@@ -108,6 +109,7 @@ import org.junit.runners.Suite.SuiteClasses;
     EeTests.class,
     
     MiscTests.class,
+    ParallelTypeCheckerTests.class,
     CeylonDocToolTests.class,
     CompilerToolsTests.class,
     CMRTests.class,
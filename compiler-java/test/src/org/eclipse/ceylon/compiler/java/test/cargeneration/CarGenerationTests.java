@@ -27,21 +27,25 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
 
+import org.eclipse.ceylon.cmr.util.JarUtils;
 import org.eclipse.ceylon.compiler.java.test.CompilerError;
 import org.eclipse.ceylon.compiler.java.test.CompilerTests;
 import org.eclipse.ceylon.compiler.java.test.ErrorCollector;
 import org.eclipse.ceylon.compiler.java.tools.CeyloncTaskImpl;
 import org.eclipse.ceylon.compiler.java.tools.MetaInfServices;
+import org.eclipse.ceylon.compiler.java.tools.UnitDependencies;
 import org.eclipse.ceylon.javax.tools.Diagnostic;
 import org.junit.Test;
 
@@ -448,4 +452,49 @@ public class CarGenerationTests extends CompilerTests {
         assertEquals(1, services.size());
     }
     
+    /** Dependencies between source files, for incremental compilation */
+    @Test
+    public void testCarUnitDependencies() throws IOException {
+        testCarWithServicesGreet();
+        
+        File carFile = getModuleArchive("services", "1.0");
+        Properties declarations = JarUtils.getMetaInfProperties(carFile, UnitDependencies.FILE_DECLARATIONS);
+        Properties dependencies = JarUtils.getMetaInfProperties(carFile, UnitDependencies.FILE_DEPENDENCIES);
+        assertNotNull(declarations);
+        assertNotNull(dependencies);
+        assertEquals("services::Greeter", declarations.getProperty("services/Greeter.ceylon"));
+        assertEquals("services::Bonjour", declarations.getProperty("services/Bonjour.ceylon"));
+        assertEquals("", dependencies.getProperty("services/Greeter.ceylon"));
+        assertEquals("services::Greeter", dependencies.getProperty("services/Bonjour.ceylon"));
+        assertEquals("services::Greeter", dependencies.getProperty("services/HelloWorld.ceylon"));
+        
+        // then compile a single new file
+        ErrorCollector ec = new ErrorCollector();
+        List<String> options = new LinkedList<String>(defaultOptions);
+        options.add("-src");
+        options.add(getPackagePath() + "services/greet2/source");
+        CeyloncTaskImpl task = getCompilerTask(options, 
+                ec,
+                "services/greet2/source/services/Gday.ceylon");
+        assertTrue(task.call());
+        
+        // we must have kept what we knew about the other files which still
+        // exist, but not about Bonjour.ceylon which isn't in that source path
+        declarations = JarUtils.getMetaInfProperties(carFile, UnitDependencies.FILE_DECLARATIONS);
+        dependencies = JarUtils.getMetaInfProperties(carFile, UnitDependencies.FILE_DEPENDENCIES);
+        assertEquals("services::Gday", declarations.getProperty("services/Gday.ceylon"));
+        assertEquals("services::HelloWorld", declarations.getProperty("services/HelloWorld.ceylon"));
+        assertNull(declarations.getProperty("services/Bonjour.ceylon"));
+        assertEquals("services::Greeter", dependencies.getProperty("services/Gday.ceylon"));
+        
+        UnitDependencies.Graph graph = new UnitDependencies.Graph();
+        graph.add(declarations, dependencies);
+        Set<String> dependents = graph.getDependentFiles(Arrays.asList("services/Greeter.ceylon"), Collections.<String>emptySet());
+        assertContains(dependents, "services/HelloWorld.ceylon");
+        assertContains(dependents, "services/Gday.ceylon");
+        assertEquals(2, dependents.size());
+        assertTrue(graph.getDependentFiles(Arrays.asList("services/Gday.ceylon"), Collections.<String>emptySet()).isEmpty());
+        assertEquals(2, graph.getDependentFiles(Collections.<String>emptySet(), Arrays.asList("services")).size());
+    }
+    
 }
@@ -552,6 +552,19 @@ public class ExpressionTests2 extends CompilerTests {
         compareWithJavaSourceNoOpt("invoke/SpreadArguments");
     }
     
+    @Test
+    public void testInvIterableFusion(){
+        compareWithJavaSource("invoke/IterableFusion");
+        compileAndRun(
+                "org.eclipse.ceylon.compiler.java.test.expression.invoke.iterableFusionRun", 
+                "invoke/IterableFusionRun.ceylon");
+    }
+    
+    @Test
+    public void testInvIterableFusionNoOpt(){
+        compareWithJavaSourceNoOpt("invoke/IterableFusion");
+    }
+    
     @Test
     public void testLetExpression(){
         compareWithJavaSource("let/Let");
@@ -238,4 +238,12 @@ public class ComprehensionTests extends CompilerTests {
         compareWithJavaSource("ComprehensionMemberQual");
     }
 
+    @Test
+    public void testComprehensionEagerConsumers() {
+        compareWithJavaSource("EagerConsumers");
+        compileAndRun(
+                "org.eclipse.ceylon.compiler.java.test.expression.comprehensions.eagerConsumersRun", 
+                "EagerConsumersRun.ceylon");
+    }
+
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the authors tag. All rights reserved.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License version 2.
+ * 
+ * This particular file is subject to the "Classpath" exception as provided in the 
+ * LICENSE file that accompanied this code.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU General Public License for more details.
+ * You should have received a copy of the GNU General Public License,
+ * along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.eclipse.ceylon.compiler.java.test.misc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.ceylon.cmr.api.RepositoryManager;
+import org.eclipse.ceylon.cmr.ceylon.CeylonUtils;
+import org.eclipse.ceylon.compiler.typechecker.TypeChecker;
+import org.eclipse.ceylon.compiler.typechecker.TypeCheckerBuilder;
+import org.eclipse.ceylon.compiler.typechecker.context.PhasedUnit;
+import org.eclipse.ceylon.compiler.typechecker.io.cmr.impl.LeakingLogger;
+import org.eclipse.ceylon.compiler.typechecker.tree.Message;
+import org.eclipse.ceylon.compiler.typechecker.tree.Node;
+import org.eclipse.ceylon.compiler.typechecker.tree.Visitor;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the type checker reports exactly the same
+ * errors, in the same order, when it runs its phases with
+ * many more threads than there are cores, as when it runs
+ * them sequentially.
+ */
+public class ParallelTypeCheckerTests {
+
+    private static final int RUNS = 3;
+
+    @Test
+    public void testParallelPhasesAreDeterministic() {
+        List<String> sequentialErrors = typeCheck(1);
+        Assert.assertFalse(sequentialErrors.isEmpty());
+        int parallelism = 
+                Math.max(16, 4 * Runtime.getRuntime().availableProcessors());
+        for (int run = 1; run <= RUNS; run++) {
+            Assert.assertEquals("Errors of run " + run + 
+                    " with parallelism " + parallelism, 
+                    sequentialErrors, typeCheck(parallelism));
+        }
+    }
+
+    private static List<String> typeCheck(int parallelism) {
+        RepositoryManager repositoryManager = CeylonUtils.repoManager()
+                .systemRepo("../dist/dist/repo")
+                .logger(new LeakingLogger())
+                .buildManager();
+        TypeChecker typeChecker = new TypeCheckerBuilder()
+                .verbose(false)
+                .parallelism(parallelism)
+                .addSrcDirectory(new File("../typechecker/test/main"))
+                .setRepositoryManager(repositoryManager)
+                .getTypeChecker();
+        typeChecker.process(true);
+        final List<String> errors = new ArrayList<String>();
+        for (final PhasedUnit pu: 
+                typeChecker.getPhasedUnits().getPhasedUnits()) {
+            pu.getCompilationUnit().visit(new Visitor() {
+                @Override
+                public void visitAny(Node that) {
+                    for (Message error: that.getErrors()) {
+                        errors.add(pu.getPathRelativeToSrcDir() + 
+                                ":" + that.getLocation() + 
+                                ": " + error.getMessage());
+                    }
+                    super.visitAny(that);
+                }
+            });
+        }
+        return errors;
+    }
+}
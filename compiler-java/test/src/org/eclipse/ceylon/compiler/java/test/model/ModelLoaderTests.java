@@ -1274,6 +1274,64 @@ public class ModelLoaderTests extends CompilerTests {
         }, Arrays.asList("-verbose:loader"));
     }
 
+    @Test
+    public void parallelRuntimeLoader(){
+        verifyRuntimeClassLoading(new RunnableTest(){
+            @Override
+            public void test(final ModelLoader loader) {
+                final Module languageModule = loader.getLoadedModule(AbstractModelLoader.CEYLON_LANGUAGE, Versions.CEYLON_VERSION_NUMBER);
+                Assert.assertNotNull(languageModule);
+                final int threads = 8;
+                List<Callable<Set<String>>> tasks = new ArrayList<Callable<Set<String>>>(threads);
+                for(int i=0;i<threads;i++){
+                    final int offset = i;
+                    tasks.add(new Callable<Set<String>>(){
+                        @Override
+                        public Set<String> call() throws Exception {
+                            Set<String> seen = new TreeSet<String>();
+                            Package p = languageModule.getDirectPackage(AbstractModelLoader.CEYLON_LANGUAGE);
+                            Assert.assertNotNull(p);
+                            List<Declaration> members = new ArrayList<Declaration>(p.getMembers());
+                            // start each thread at a different declaration so that
+                            // they complete different declarations at the same time
+                            for(int j=0;j<members.size();j++){
+                                Declaration decl = members.get((j + offset * members.size() / threads) % members.size());
+                                // that causes model loading
+                                StringBuilder sb = new StringBuilder(decl.getQualifiedNameString());
+                                if(decl instanceof TypeDeclaration){
+                                    TypeDeclaration type = (TypeDeclaration) decl;
+                                    sb.append(" extends ").append(type.getExtendedType());
+                                    sb.append(" satisfies ").append(type.getSatisfiedTypes());
+                                    sb.append(" members ").append(type.getMembers().size());
+                                }else if(decl instanceof TypedDeclaration){
+                                    sb.append(" : ").append(((TypedDeclaration) decl).getType());
+                                }
+                                seen.add(sb.toString());
+                            }
+                            return seen;
+                        }
+                    });
+                }
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES, new ArrayBlockingQueue<Runnable>(threads));
+                try {
+                    List<Future<Set<String>>> futures = executor.invokeAll(tasks);
+                    Set<String> expected = futures.get(0).get();
+                    Assert.assertFalse(expected.isEmpty());
+                    // every thread must see the same model
+                    for(Future<Set<String>> f : futures){
+                        Assert.assertEquals(expected, f.get());
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    executor.shutdown();
+                }
+            }
+        });
+    }
+
     @Ignore("This is the single-threaded version of parallelLoader that loads the JDK entirely to benchmark the model loader")
     @Test
     public void jdkModelLoaderSpeedTest(){
@@ -17,7 +17,6 @@ import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Arrays;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -29,8 +28,6 @@ import java.util.Set;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import org.eclipse.ceylon.cmr.api.ArtifactContext;
 import org.eclipse.ceylon.cmr.api.ArtifactOverrides;
@@ -63,6 +60,7 @@ import org.eclipse.ceylon.model.cmr.PathFilter;
 import org.eclipse.ceylon.model.cmr.RepositoryException;
 import org.eclipse.ceylon.model.cmr.JDKUtils.JDK;
 import org.eclipse.ceylon.model.loader.ClassFileUtil;
+import org.eclipse.ceylon.model.loader.JarTOC;
 import org.eclipse.ceylon.model.loader.Java9ModuleReader;
 import org.eclipse.ceylon.model.loader.NamingBase;
 import org.eclipse.ceylon.model.loader.OsgiUtil;
@@ -421,21 +419,16 @@ public class Main {
             initJars();
         }
         
-        private List<ZipEntry> findEntries(ZipFile zipFile, String startFolder, String entryName) {
-            List<ZipEntry> result = new LinkedList<ZipEntry>();
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                String name = entry.getName();
-                if (name.startsWith(startFolder) && name.endsWith(entryName)) {
-                    result.add(entry);
-                }
-            }
-            return result;
+        private List<String> findEntries(JarTOC toc, String startFolder, String entryName) {
+            return toc.getNames(startFolder, entryName);
         }
 
-        private ModuleSpec moduleFromEntry(ZipEntry entry) {
-            String fullName = entry.getName();
+        private String getEntry(JarTOC toc, String entryName) {
+            return toc.contains(entryName) ? entryName : null;
+        }
+
+        private ModuleSpec moduleFromEntry(String entry) {
+            String fullName = entry;
             if (fullName.startsWith(METAINF_JBOSSMODULES)) {
                 fullName = fullName.substring(METAINF_JBOSSMODULES.length());
             }
@@ -565,172 +558,164 @@ public class Main {
         }
         
         private Module initJar(File file) throws IOException {
-            ZipFile zipFile = new ZipFile(file);
-            try{
-                // Try Ceylon module first
-                List<ZipEntry> moduleDescriptors = findEntries(zipFile, "", NamingBase.MODULE_DESCRIPTOR_CLASS_NAME+".class");
-                if(moduleDescriptors.size() == 1) {
-                    try {
-                        return loadCeylonModuleCar(file, zipFile, moduleDescriptors.get(0), null, null);
-                    } catch (IOException ex) {
-                        // Ignore
-                    }
+            JarTOC toc = JarTOC.get(file);
+            // Try Ceylon module first
+            List<String> moduleDescriptors = findEntries(toc, "", NamingBase.MODULE_DESCRIPTOR_CLASS_NAME+".class");
+            if(moduleDescriptors.size() == 1) {
+                try {
+                    return loadCeylonModuleCar(file, toc, moduleDescriptors.get(0), null, null);
+                } catch (IOException ex) {
+                    // Ignore
                 }
-                
-                // Try JBoss modules next
-                List<ZipEntry> moduleXmls = findEntries(zipFile, METAINF_JBOSSMODULES, MODULE_XML);
-                if(moduleXmls.size() == 1) {
-                    ModuleSpec mod = moduleFromEntry(moduleXmls.get(0));
-                    if (mod != null) {
-                        return loadJBossModuleXmlJar(file, zipFile, moduleXmls.get(0), mod.getName(), mod.getVersion());
-                    }
+            }
+            
+            // Try JBoss modules next
+            List<String> moduleXmls = findEntries(toc, METAINF_JBOSSMODULES, MODULE_XML);
+            if(moduleXmls.size() == 1) {
+                ModuleSpec mod = moduleFromEntry(moduleXmls.get(0));
+                if (mod != null) {
+                    return loadJBossModuleXmlJar(file, toc, moduleXmls.get(0), mod.getName(), mod.getVersion());
                 }
-                List<ZipEntry> moduleProperties = findEntries(zipFile, METAINF_JBOSSMODULES, MODULE_PROPERTIES);
-                if(moduleProperties.size() == 1) {
-                    ModuleSpec mod = moduleFromEntry(moduleProperties.get(0));
-                    if (mod != null) {
-                        return loadJBossModulePropertiesJar(file, zipFile, moduleProperties.get(0), mod.getName(), mod.getVersion());
-                    }
+            }
+            List<String> moduleProperties = findEntries(toc, METAINF_JBOSSMODULES, MODULE_PROPERTIES);
+            if(moduleProperties.size() == 1) {
+                ModuleSpec mod = moduleFromEntry(moduleProperties.get(0));
+                if (mod != null) {
+                    return loadJBossModulePropertiesJar(file, toc, moduleProperties.get(0), mod.getName(), mod.getVersion());
                 }
-                // For Jars that come from Herd, we only have external descriptors
-                File moduleXmlExternalDescriptor = new File(file.getParentFile(), MODULE_XML);
-                if(moduleXmlExternalDescriptor.exists()){
-                    ModuleSpec mod = moduleFromCeylonRepoFile(file);
-                    if(mod != null){
-                        return loadFromResolver(file, moduleXmlExternalDescriptor, XmlDependencyResolver.INSTANCE, 
-                                mod.getName(), mod.getVersion(), Type.JBOSS_MODULES);
-                    }
+            }
+            // For Jars that come from Herd, we only have external descriptors
+            File moduleXmlExternalDescriptor = new File(file.getParentFile(), MODULE_XML);
+            if(moduleXmlExternalDescriptor.exists()){
+                ModuleSpec mod = moduleFromCeylonRepoFile(file);
+                if(mod != null){
+                    return loadFromResolver(file, moduleXmlExternalDescriptor, XmlDependencyResolver.INSTANCE, 
+                            mod.getName(), mod.getVersion(), Type.JBOSS_MODULES);
                 }
-                File modulePropertiesExternalDescriptor = new File(file.getParentFile(), MODULE_PROPERTIES);
-                if(modulePropertiesExternalDescriptor.exists()){
-                    ModuleSpec mod = moduleFromCeylonRepoFile(file);
-                    if(mod != null){
-                        return loadFromResolver(file, modulePropertiesExternalDescriptor, PropertiesDependencyResolver.INSTANCE, 
-                                mod.getName(), mod.getVersion(), Type.JBOSS_MODULES);
-                    }
+            }
+            File modulePropertiesExternalDescriptor = new File(file.getParentFile(), MODULE_PROPERTIES);
+            if(modulePropertiesExternalDescriptor.exists()){
+                ModuleSpec mod = moduleFromCeylonRepoFile(file);
+                if(mod != null){
+                    return loadFromResolver(file, modulePropertiesExternalDescriptor, PropertiesDependencyResolver.INSTANCE, 
+                            mod.getName(), mod.getVersion(), Type.JBOSS_MODULES);
                 }
+            }
 
-                // Java 9 module
-                List<ZipEntry> java9Module = findEntries(zipFile, "", JAVA9_MODULE);
-                if(java9Module.size() == 1) {
-                    return loadJava9ModuleJar(file, zipFile, java9Module.get(0), null, null);
-                }
+            // Java 9 module
+            List<String> java9Module = findEntries(toc, "", JAVA9_MODULE);
+            if(java9Module.size() == 1) {
+                return loadJava9ModuleJar(file, toc, java9Module.get(0), null, null);
+            }
 
-                // try Maven
-                List<ZipEntry> mavenDescriptors = findEntries(zipFile, METAINF_MAVEN, POM_XML);
-                if(mavenDescriptors.size() == 1 && MavenResolver != null) {
-                    return loadMavenJar(file, zipFile, mavenDescriptors.get(0), null, null);
-                }
-                // alternately, try an external pom (for example javax.servlet has no 
-                // internal pom, but has crap OSGi metadata, and a valid external pom).
-                // If the jar comes straight out of a Maven repo/cache we may have an 
-                // external pom file
-                if(file.getName().endsWith(".jar")){
-                    File externalDescriptor = new File(file.getParentFile(), file.getName().substring(0, file.getName().length()-4)+".pom");
-                    if(externalDescriptor.exists()){
-                        return loadMavenJar(file, externalDescriptor, null, null);
-                    }
-                }
-                
-                // last OSGi
-                ZipEntry osgiProperties = zipFile.getEntry(JarFile.MANIFEST_NAME);
-                if(osgiProperties != null){
-                    Module module = loadOsgiJar(file, zipFile, osgiProperties, null, null);
-                    // it's possible we have a MANIFEST but not for the module we're looking for
-                    if(module != null)
-                        return module;
-                }
-                
-                if (moduleDescriptors.isEmpty() && moduleXmls.isEmpty() && moduleProperties.isEmpty()
-                        && mavenDescriptors.isEmpty() && osgiProperties == null) {
-                    // There's nothing we can retrieve from this jar
-                    // let's return a dummy module so the jar will
-                    // get removed from the list of potentials at least
-                    return NO_MODULE;
+            // try Maven
+            List<String> mavenDescriptors = findEntries(toc, METAINF_MAVEN, POM_XML);
+            if(mavenDescriptors.size() == 1 && MavenResolver != null) {
+                return loadMavenJar(file, toc, mavenDescriptors.get(0), null, null);
+            }
+            // alternately, try an external pom (for example javax.servlet has no 
+            // internal pom, but has crap OSGi metadata, and a valid external pom).
+            // If the jar comes straight out of a Maven repo/cache we may have an 
+            // external pom file
+            if(file.getName().endsWith(".jar")){
+                File externalDescriptor = new File(file.getParentFile(), file.getName().substring(0, file.getName().length()-4)+".pom");
+                if(externalDescriptor.exists()){
+                    return loadMavenJar(file, externalDescriptor, null, null);
                 }
-                
-                // not found
-                return null;
-            }finally{
-                zipFile.close();
             }
+            
+            // last OSGi
+            String osgiProperties = getEntry(toc, JarFile.MANIFEST_NAME);
+            if(osgiProperties != null){
+                Module module = loadOsgiJar(file, toc, osgiProperties, null, null);
+                // it's possible we have a MANIFEST but not for the module we're looking for
+                if(module != null)
+                    return module;
+            }
+            
+            if (moduleDescriptors.isEmpty() && moduleXmls.isEmpty() && moduleProperties.isEmpty()
+                    && mavenDescriptors.isEmpty() && osgiProperties == null) {
+                // There's nothing we can retrieve from this jar
+                // let's return a dummy module so the jar will
+                // get removed from the list of potentials at least
+                return NO_MODULE;
+            }
+            
+            // not found
+            return null;
         }
         
         private Module loadJar(File file, String name, String version) throws IOException {
-            ZipFile zipFile = new ZipFile(file);
-            try{
-                // Modules that have a : MUST be Maven modules
-                int mavenSeparator = name.indexOf(":");
-                if(mavenSeparator != -1){
-                    String groupId = name.substring(0, mavenSeparator);
-                    String artifactId = name.substring(mavenSeparator+1);
+            JarTOC toc = JarTOC.get(file);
+            // Modules that have a : MUST be Maven modules
+            int mavenSeparator = name.indexOf(":");
+            if(mavenSeparator != -1){
+                String groupId = name.substring(0, mavenSeparator);
+                String artifactId = name.substring(mavenSeparator+1);
+                String descriptorPath = String.format("META-INF/maven/%s/%s/pom.xml", groupId, artifactId);
+                String mavenDescriptor = getEntry(toc, descriptorPath);
+                if(mavenDescriptor != null){
+                    return loadMavenJar(file, toc, mavenDescriptor, name, version);
+                }
+                // If the jar comes straight out of a Maven repo/cache we may have an external pom file
+                String externalDescriptorPath = String.format("%s-%s.pom", artifactId, version);
+                File externalDescriptor = new File(file.getParentFile(), externalDescriptorPath);
+                if(externalDescriptor.exists()){
+                    return loadMavenJar(file, externalDescriptor, name, version);
+                }
+            }
+            
+            // Try Ceylon module first
+            String ceylonPath = name.replace('.', '/');
+            String moduleDescriptor = getEntry(toc, ceylonPath+"/"+NamingBase.MODULE_DESCRIPTOR_CLASS_NAME+".class");
+            if(moduleDescriptor != null)
+                return loadCeylonModuleCar(file, toc, moduleDescriptor, name, version);
+            
+            // JBoss modules next
+            String moduleXml = getEntry(toc, "META-INF/jbossmodules/"+ceylonPath+"/"+version+"/module.xml");
+            if(moduleXml != null)
+                return loadJBossModuleXmlJar(file, toc, moduleXml, name, version);
+            String moduleProperties = getEntry(toc, "META-INF/jbossmodules/"+ceylonPath+"/"+version+"/module.properties");
+            if(moduleProperties != null)
+                return loadJBossModulePropertiesJar(file, toc, moduleProperties, name, version);
+            
+            // try other combinations for Maven
+            if(MavenResolver != null){
+                // the case with : has already been taken care of first
+                int lastDot = name.lastIndexOf('.');
+                while(lastDot != -1){
+                    String groupId = name.substring(0, lastDot);
+                    String artifactId = name.substring(lastDot+1);
                     String descriptorPath = String.format("META-INF/maven/%s/%s/pom.xml", groupId, artifactId);
-                    ZipEntry mavenDescriptor = zipFile.getEntry(descriptorPath);
+                    String mavenDescriptor = getEntry(toc, descriptorPath);
                     if(mavenDescriptor != null){
-                        return loadMavenJar(file, zipFile, mavenDescriptor, name, version);
-                    }
-                    // If the jar comes straight out of a Maven repo/cache we may have an external pom file
-                    String externalDescriptorPath = String.format("%s-%s.pom", artifactId, version);
-                    File externalDescriptor = new File(file.getParentFile(), externalDescriptorPath);
-                    if(externalDescriptor.exists()){
-                        return loadMavenJar(file, externalDescriptor, name, version);
-                    }
-                }
-                
-                // Try Ceylon module first
-                String ceylonPath = name.replace('.', '/');
-                ZipEntry moduleDescriptor = zipFile.getEntry(ceylonPath+"/"+NamingBase.MODULE_DESCRIPTOR_CLASS_NAME+".class");
-                if(moduleDescriptor != null)
-                    return loadCeylonModuleCar(file, zipFile, moduleDescriptor, name, version);
-                
-                // JBoss modules next
-                ZipEntry moduleXml = zipFile.getEntry("META-INF/jbossmodules/"+ceylonPath+"/"+version+"/module.xml");
-                if(moduleXml != null)
-                    return loadJBossModuleXmlJar(file, zipFile, moduleXml, name, version);
-                ZipEntry moduleProperties = zipFile.getEntry("META-INF/jbossmodules/"+ceylonPath+"/"+version+"/module.properties");
-                if(moduleProperties != null)
-                    return loadJBossModulePropertiesJar(file, zipFile, moduleProperties, name, version);
-                
-                // try other combinations for Maven
-                if(MavenResolver != null){
-                    // the case with : has already been taken care of first
-                    int lastDot = name.lastIndexOf('.');
-                    while(lastDot != -1){
-                        String groupId = name.substring(0, lastDot);
-                        String artifactId = name.substring(lastDot+1);
-                        String descriptorPath = String.format("META-INF/maven/%s/%s/pom.xml", groupId, artifactId);
-                        ZipEntry mavenDescriptor = zipFile.getEntry(descriptorPath);
-                        if(mavenDescriptor != null){
-                            return loadMavenJar(file, zipFile, mavenDescriptor, name, version);
-                        }
-                        lastDot = name.lastIndexOf('.', lastDot - 1);
+                        return loadMavenJar(file, toc, mavenDescriptor, name, version);
                     }
+                    lastDot = name.lastIndexOf('.', lastDot - 1);
                 }
-                
-                // Java 9 module
-                List<ZipEntry> java9Module = findEntries(zipFile, "", JAVA9_MODULE);
-                if(java9Module.size() == 1) {
-                    return loadJava9ModuleJar(file, zipFile, java9Module.get(0), name, version);
-                }
+            }
+            
+            // Java 9 module
+            List<String> java9Module = findEntries(toc, "", JAVA9_MODULE);
+            if(java9Module.size() == 1) {
+                return loadJava9ModuleJar(file, toc, java9Module.get(0), name, version);
+            }
 
-                // last OSGi
-                ZipEntry osgiProperties = zipFile.getEntry(JarFile.MANIFEST_NAME);
-                if(osgiProperties != null){
-                    Module module = loadOsgiJar(file, zipFile, osgiProperties, name, version);
-                    // it's possible we have a MANIFEST but not for the module we're looking for
-                    if(module != null)
-                        return module;
-                }
-                
-                // not found
-                return null;
-            }finally{
-                zipFile.close();
+            // last OSGi
+            String osgiProperties = getEntry(toc, JarFile.MANIFEST_NAME);
+            if(osgiProperties != null){
+                Module module = loadOsgiJar(file, toc, osgiProperties, name, version);
+                // it's possible we have a MANIFEST but not for the module we're looking for
+                if(module != null)
+                    return module;
             }
+            
+            // not found
+            return null;
         }
 
-        private Module loadCeylonModuleCar(File file, ZipFile zipFile, ZipEntry moduleDescriptor, String name, String version) throws IOException {
-            InputStream inputStream = zipFile.getInputStream(moduleDescriptor);
+        private Module loadCeylonModuleCar(File file, JarTOC toc, String moduleDescriptor, String name, String version) throws IOException {
+            InputStream inputStream = toc.getInputStream(moduleDescriptor);
             try{
                     ClassFile classFile = ClassFile.read(inputStream);
                     RuntimeAnnotations_attribute annotationsAttribute = (RuntimeAnnotations_attribute) classFile.getAttribute(Attribute.RuntimeVisibleAnnotations);
@@ -847,19 +832,19 @@ public class Main {
             }
         }
 
-        private Module loadJBossModulePropertiesJar(File file, ZipFile zipFile, ZipEntry moduleProperties, String name, String version) throws IOException {
-            return loadJBossModuleJar(file, zipFile, moduleProperties, PropertiesDependencyResolver.INSTANCE, name, version);
+        private Module loadJBossModulePropertiesJar(File file, JarTOC toc, String moduleProperties, String name, String version) throws IOException {
+            return loadJBossModuleJar(file, toc, moduleProperties, PropertiesDependencyResolver.INSTANCE, name, version);
         }
 
-        private Module loadJBossModuleJar(File file, ZipFile zipFile, ZipEntry moduleDescriptor, 
+        private Module loadJBossModuleJar(File file, JarTOC toc, String moduleDescriptor, 
                 DependencyResolver dependencyResolver, String name, String version) throws IOException {
-            return loadFromResolver(file, zipFile, moduleDescriptor, dependencyResolver, name, version, Type.JBOSS_MODULES);
+            return loadFromResolver(file, toc, moduleDescriptor, dependencyResolver, name, version, Type.JBOSS_MODULES);
         }
         
-        private Module loadFromResolver(File file, ZipFile zipFile, ZipEntry moduleDescriptor, 
+        private Module loadFromResolver(File file, JarTOC toc, String moduleDescriptor, 
                                         DependencyResolver dependencyResolver, String name, String version,
                                         Type moduleType) throws IOException {
-            InputStream inputStream = zipFile.getInputStream(moduleDescriptor);
+            InputStream inputStream = toc.getInputStream(moduleDescriptor);
             try{
                     return loadFromResolver(file, inputStream, dependencyResolver, name, version, moduleType);
             }finally{
@@ -903,14 +888,14 @@ public class Main {
                 return null;
         }
 
-        private Module loadJBossModuleXmlJar(File file, ZipFile zipFile, ZipEntry moduleXml, String name, String version) throws IOException {
-            return loadJBossModuleJar(file, zipFile, moduleXml, XmlDependencyResolver.INSTANCE, name, version);
+        private Module loadJBossModuleXmlJar(File file, JarTOC toc, String moduleXml, String name, String version) throws IOException {
+            return loadJBossModuleJar(file, toc, moduleXml, XmlDependencyResolver.INSTANCE, name, version);
         }
 
-        private Module loadMavenJar(File file, ZipFile zipFile, ZipEntry moduleDescriptor, String name, String version) throws IOException {
+        private Module loadMavenJar(File file, JarTOC toc, String moduleDescriptor, String name, String version) throws IOException {
             if(MavenResolver == null)
                 return null;
-            return loadFromResolver(file, zipFile, moduleDescriptor, MavenResolver, name, version, Type.MAVEN);
+            return loadFromResolver(file, toc, moduleDescriptor, MavenResolver, name, version, Type.MAVEN);
         }
 
         private Module loadMavenJar(File file, File moduleDescriptor, String name, String version) throws IOException {
@@ -923,18 +908,18 @@ public class Main {
             return new Module("default", null, null, null, Type.CEYLON, file);
         }
 
-        private Module loadJava9ModuleJar(File file, ZipFile zipFile, ZipEntry moduleDescriptor, String name, String version) throws IOException {
-            Java9Module java9Module = Java9ModuleReader.getJava9Module(zipFile, moduleDescriptor);
+        private Module loadJava9ModuleJar(File file, JarTOC toc, String moduleDescriptor, String name, String version) throws IOException {
+            Java9Module java9Module = Java9ModuleReader.getJava9Module(toc.getInputStream(moduleDescriptor));
             if(java9Module != null)
                 return new Module(java9Module.name, java9Module.version, null, null, Type.JAVA9, file);
             // or throw?
             return null;
         }
         
-        private Module loadOsgiJar(File file, ZipFile zipFile, ZipEntry moduleDescriptor, String name, String version) throws IOException {
+        private Module loadOsgiJar(File file, JarTOC toc, String moduleDescriptor, String name, String version) throws IOException {
             String label = null;
             // first verify that it is indeed for the module we're looking for
-            InputStream inputStream = zipFile.getInputStream(moduleDescriptor);
+            InputStream inputStream = toc.getInputStream(moduleDescriptor);
             try{
                 Manifest manifest = new Manifest(inputStream);
                 if (OsgiUtil.DefaultModuleManifest.isDefaultModule(manifest)) {
@@ -955,7 +940,7 @@ public class Main {
             }finally{
                 inputStream.close();
             }
-            return loadFromResolver(file, zipFile, moduleDescriptor, OSGiDependencyResolver.INSTANCE, name, version, Type.OSGi);
+            return loadFromResolver(file, toc, moduleDescriptor, OSGiDependencyResolver.INSTANCE, name, version, Type.OSGi);
         }
     }
     
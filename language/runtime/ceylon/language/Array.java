@@ -104,6 +104,8 @@ public final class Array<Element>
     private final TypeDescriptor $reifiedElement;
     /** The element type, for switching */
     private final ArrayType elementType;
+    /** The canonical descriptor of this array's type, once asked for */
+    private transient TypeDescriptor $cachedType;
 
     
     @Ignore(handWritten = true)
@@ -121,6 +123,17 @@ public final class Array<Element>
                 createArrayFromIterable($reifiedElement, elements));
     }
     
+    /**
+     * Create an array of the given elements, which have 
+     * already been collected, for example by a comprehension.
+     */
+    @Ignore
+    public Array(@Ignore final TypeDescriptor $reifiedElement, 
+            final java.util.List<?> elements) {
+        this($reifiedElement, 
+                createArrayFromJavaList($reifiedElement, elements));
+    }
+    
     @Ignore
     public static final Array.ofSize_ ofSize_ = null;
     
@@ -174,6 +187,13 @@ public final class Array<Element>
             list.add((Element) elem);
         }
         
+        return createArrayFromJavaList($reifiedElement, list);
+    }
+    
+    private static java.lang.Object createArrayFromJavaList(
+            final TypeDescriptor $reifiedElement,
+            final java.util.List<?> list) {
+        
         final int size = list.size();
         
         switch (elementType($reifiedElement)) {
@@ -2110,7 +2130,14 @@ public final class Array<Element>
     @Override
     @Ignore
     public TypeDescriptor $getType$() {
-        return TypeDescriptor.klass(Array.class, $reifiedElement);
+        // racy, but every thread computes the same canonical descriptor
+        TypeDescriptor type = $cachedType;
+        if (type == null) {
+            type = TypeDescriptor.intern(
+                    TypeDescriptor.klass(Array.class, $reifiedElement));
+            $cachedType = type;
+        }
+        return type;
     }
     
     @Override
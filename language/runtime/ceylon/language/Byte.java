@@ -73,9 +73,23 @@ public final class Byte implements
         this.value = value;
     }
     
+    @Ignore
+    private static final Byte[] CACHE = new Byte[256];
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new Byte((byte) i);
+        }
+    }
+
+    /**
+     * Returns the box for the given value. Every byte value 
+     * is cached, so boxing never allocates. Boxes created 
+     * with the constructor are distinct instances, so never 
+     * depend on the identity of boxes.
+     */
     @Ignore
     public static Byte instance(byte value) {
-        return new Byte(value);
+        return CACHE[value & 0xFF];
     }
     
     @Ignore
@@ -122,7 +136,7 @@ public final class Byte implements
     @Transient
     @Override
     public Byte getNegated() {
-        return new Byte((byte)-value);
+        return instance((byte)-value);
     }
 
     @Ignore
@@ -132,7 +146,7 @@ public final class Byte implements
 
     @Override
     public Byte plus(@Name("other") Byte other) {
-        return new Byte((byte) (value+other.value));
+        return instance((byte) (value+other.value));
     }
 
     @Ignore
@@ -143,7 +157,7 @@ public final class Byte implements
     @Ignore
     @Override
     public Byte minus(@Name("other") Byte other) {
-        return new Byte((byte) (value-other.value));
+        return instance((byte) (value-other.value));
     }
 
     @Ignore
@@ -153,7 +167,7 @@ public final class Byte implements
 
     @Override
     public Byte and(@Name("other") Byte other) {
-        return new Byte((byte) (value & other.value));
+        return instance((byte) (value & other.value));
     }
 
     @Ignore
@@ -163,7 +177,7 @@ public final class Byte implements
 
     @Override
     public Byte or(@Name("other") Byte other) {
-        return new Byte((byte) (value | other.value));
+        return instance((byte) (value | other.value));
     }
 
     @Ignore
@@ -173,7 +187,7 @@ public final class Byte implements
 
     @Override
     public Byte xor(@Name("other") Byte other) {
-        return new Byte((byte) (value ^ other.value));
+        return instance((byte) (value ^ other.value));
     }
 
     @Ignore
@@ -184,7 +198,7 @@ public final class Byte implements
     @Override
     @Transient
     public Byte getNot() {
-        return new Byte((byte) ~value);
+        return instance((byte) ~value);
     }
     
     @Ignore
@@ -195,7 +209,7 @@ public final class Byte implements
     @Override
     @AliasesAnnotation$annotation$(aliases = "leftShift")
     public Byte leftLogicalShift(@Name("shift") long shift) {
-        return new Byte((byte) (value<<(shift&7)));
+        return instance((byte) (value<<(shift&7)));
     }
 
     @Ignore
@@ -205,7 +219,7 @@ public final class Byte implements
 
     @Override
     public Byte rightArithmeticShift(@Name("shift") long shift) {
-        return new Byte((byte) (value>>(shift&7)));
+        return instance((byte) (value>>(shift&7)));
     }
 
     @Ignore
@@ -216,7 +230,7 @@ public final class Byte implements
     @Override
     @AliasesAnnotation$annotation$(aliases = "rightShift")
     public Byte rightLogicalShift(@Name("shift") long shift) {
-        return new Byte((byte) ((0xff&value)>>>(shift&7)));
+        return instance((byte) ((0xff&value)>>>(shift&7)));
     }
 
     @Ignore
@@ -230,7 +244,7 @@ public final class Byte implements
             return this;
         }
         int mask = 1 << index;
-        return new Byte((byte) ((0xff&value) & ~mask));
+        return instance((byte) ((0xff&value) & ~mask));
     }
 
     @Ignore
@@ -248,7 +262,7 @@ public final class Byte implements
             return this;
         }
         int mask = 1 << index;
-        return new Byte((byte) ((0xff&value) ^ mask));
+        return instance((byte) ((0xff&value) ^ mask));
     }
 
     @Ignore
@@ -281,7 +295,7 @@ public final class Byte implements
         int masked = bit ? 
                 (0xff&value) | mask : 
                 (0xff&value) & ~mask;
-        return new Byte((byte) masked);
+        return instance((byte) masked);
     }
 
     @Ignore
@@ -362,7 +376,7 @@ public final class Byte implements
     @Override
     @Transient
     public Byte getPredecessor() {
-        return new Byte((byte) (value-1));
+        return instance((byte) (value-1));
     }
     
     @Ignore
@@ -373,7 +387,7 @@ public final class Byte implements
     @Override
     @Transient
     public Byte getSuccessor() {
-        return new Byte((byte) (value+1));
+        return instance((byte) (value+1));
     }
     
     @Ignore
@@ -405,7 +419,7 @@ public final class Byte implements
 
     @Override
     public Byte neighbour(@Name("offset") long offset) {
-        return new Byte(((byte) (value + offset)));
+        return instance((byte) (value + offset));
     }
     
     @Ignore
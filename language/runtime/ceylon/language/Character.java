@@ -62,8 +62,26 @@ public final class Character
         throw Util.makeUnimplementedMixinAccessException();
     }
 
+    @Ignore
+    private static final Character[] CACHE = new Character[1024];
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new Character(i);
+        }
+    }
+
+    /**
+     * Returns the box for the given code point. Boxes for 
+     * code points below 1024 are cached, so boxing them does 
+     * not allocate and returns identical instances. Other 
+     * code points are boxed to new instances, so never depend 
+     * on the identity of boxes.
+     */
     @Ignore
     public static Character instance(int c) {
+        if (c >= 0 && c < CACHE.length) {
+            return CACHE[c];
+        }
         return new Character(c);
     }
 
@@ -230,7 +248,7 @@ public final class Character
     @Override
     @Transient
     public Character getPredecessor() {
-        return new Character(getPredecessor(codePoint));
+        return instance(getPredecessor(codePoint));
     }
 
     @Ignore
@@ -241,7 +259,7 @@ public final class Character
     @Override
     @Transient
     public Character getSuccessor() {
-        return new Character(getSuccessor(codePoint));
+        return instance(getSuccessor(codePoint));
     }
 
     @Ignore
@@ -346,8 +346,34 @@ public final class Integer
         throw Util.makeUnimplementedMixinAccessException();
     }
 
+    @Ignore
+    private static final int CACHE_LOW = -128;
+    @Ignore
+    private static final int CACHE_HIGH = 
+            Math.max(1023, java.lang.Integer.getInteger(
+                    "ceylon.language.Integer.cache.high", 1023));
+    @Ignore
+    private static final Integer[] CACHE = 
+            new Integer[CACHE_HIGH - CACHE_LOW + 1];
+    static {
+        for (int i = 0; i < CACHE.length; i++) {
+            CACHE[i] = new Integer(i + CACHE_LOW);
+        }
+    }
+
+    /**
+     * Returns the box for the given value. Boxes for values 
+     * from -128 to 1023 are cached (the upper bound may be 
+     * raised with the {@code ceylon.language.Integer.cache.high} 
+     * system property), so boxing them does not allocate and 
+     * returns identical instances. Other values are boxed to 
+     * new instances, so never depend on the identity of boxes.
+     */
     @Ignore
     public static Integer instance(long l) {
+        if (l >= CACHE_LOW && l <= CACHE_HIGH) {
+            return CACHE[(int) l - CACHE_LOW];
+        }
         return new Integer(l);
     }
 
@@ -261,15 +261,108 @@ public final class String
     @TypeInfo("ceylon.language::Integer")
     @AliasesAnnotation$annotation$(aliases = "length")
     public long getSize() {
-        //TODO: should we cache this value in an instvar?
-        // But remember that we'll mostly be using the static verion
-        // of this method! So an instvar won't help much.
-        return value.codePointCount(0, value.length());
+        return getSize(value);
     }
 
     @Ignore
     public static long getSize(java.lang.String value) {
-        return value.codePointCount(0, value.length());
+        int length = value.length();
+        return hasSurrogates(value) ? 
+                value.codePointCount(0, length) : 
+                length;
+    }
+
+    /**
+     * Strings shorter than this are simply scanned for
+     * surrogates, instead of being looked up in the cache.
+     */
+    private static final int SURROGATES_CACHE_MIN_LENGTH = 64;
+    
+    /**
+     * Whether the long strings most recently indexed
+     * contain surrogates, by identity hash code. Since we 
+     * mostly use the static methods, the answer can't be
+     * kept in an instance of this class. The strings are
+     * weakly referenced, so that the cache doesn't keep
+     * large strings alive, and entries are immutable, so
+     * that threads may race to replace them.
+     */
+    private static final SurrogatesEntry[] surrogatesCache = 
+            new SurrogatesEntry[256];
+    
+    private static final class SurrogatesEntry 
+            extends java.lang.ref.WeakReference<java.lang.String> {
+        final boolean surrogates;
+        SurrogatesEntry(java.lang.String value, boolean surrogates) {
+            super(value);
+            this.surrogates = surrogates;
+        }
+    }
+    
+    /**
+     * Does the given string contain any surrogate 
+     * characters? If not, which is the usual case, each 
+     * character is a code point, and indexing the string 
+     * by code point doesn't require counting code points.
+     */
+    private static boolean hasSurrogates(java.lang.String value) {
+        if (value.length() < SURROGATES_CACHE_MIN_LENGTH) {
+            return scanSurrogates(value);
+        }
+        int slot = System.identityHashCode(value) 
+                & (surrogatesCache.length-1);
+        SurrogatesEntry entry = surrogatesCache[slot];
+        if (entry != null && entry.get() == value) {
+            return entry.surrogates;
+        }
+        boolean surrogates = scanSurrogates(value);
+        surrogatesCache[slot] = 
+                new SurrogatesEntry(value, surrogates);
+        return surrogates;
+    }
+    
+    private static boolean scanSurrogates(java.lang.String value) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            if (java.lang.Character.isSurrogate(value.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * {@link java.lang.String#offsetByCodePoints(int, int)},
+     * without counting code points when there are no 
+     * surrogates.
+     */
+    private static int offsetByCodePoints(java.lang.String value, 
+            int index, int codePointOffset) {
+        if (hasSurrogates(value)) {
+            return value.offsetByCodePoints(index, codePointOffset);
+        }
+        int offset = index + codePointOffset;
+        if (index < 0 || index > value.length() 
+                || offset < 0 || offset > value.length()) {
+            throw new IndexOutOfBoundsException();
+        }
+        return offset;
+    }
+    
+    /**
+     * {@link java.lang.String#codePointCount(int, int)},
+     * without counting code points when there are no 
+     * surrogates.
+     */
+    private static int codePointCount(java.lang.String value, 
+            int beginIndex, int endIndex) {
+        if (hasSurrogates(value)) {
+            return value.codePointCount(beginIndex, endIndex);
+        }
+        if (beginIndex < 0 || endIndex > value.length() 
+                || beginIndex > endIndex) {
+            throw new IndexOutOfBoundsException();
+        }
+        return endIndex - beginIndex;
     }
 
     @Override
@@ -336,7 +429,7 @@ public final class String
         int index = Util.toInt(key);
         int codePoint;
         try {
-            int offset = value.offsetByCodePoints(value.length(), -index-1);
+            int offset = offsetByCodePoints(value, value.length(), -index-1);
             codePoint = value.codePointAt(offset);
         }
         catch (IndexOutOfBoundsException e) {
@@ -356,7 +449,7 @@ public final class String
         int index = Util.toInt(key);
         int codePoint;
         try {
-            int offset = value.offsetByCodePoints(0, index);
+            int offset = offsetByCodePoints(value, 0, index);
             codePoint = value.codePointAt(offset);
         }
         catch (IndexOutOfBoundsException e) {
@@ -403,7 +496,7 @@ public final class String
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public static Sequential<? extends ceylon.language.Integer> 
     getKeys(java.lang.String value) {
-        long size = value.codePointCount(0, value.length());
+        long size = codePointCount(value, 0, value.length());
         if (size==0) {
             return (Sequential) empty_.get_();
         }
@@ -480,7 +573,7 @@ public final class String
         }
         int start;
         try {
-            start = value.offsetByCodePoints(0, (int)from);
+            start = offsetByCodePoints(value, 0, (int)from);
         }
         catch (IndexOutOfBoundsException e) {
             return false;
@@ -506,7 +599,7 @@ public final class String
         try {
             int offset;
             try {
-                offset = value.offsetByCodePoints(0, (int)index);
+                offset = offsetByCodePoints(value, 0, (int)index);
             }
             catch (IndexOutOfBoundsException e) {
                 return false;
@@ -560,7 +653,7 @@ public final class String
                     int offset;
                     {
                         try {
-                            offset = value.offsetByCodePoints(0, start);
+                            offset = offsetByCodePoints(value, 0, start);
                         }
                         catch (IndexOutOfBoundsException e) {
                             offset = value.length();
@@ -576,7 +669,7 @@ public final class String
                             if (result<0) {
                                 return finished_.get_();
                             }
-                            index += value.codePointCount(offset, result);
+                            index += codePointCount(value, offset, result);
                             long c = index;
                             offset = result + len;
                             if (index>=stop) {
@@ -598,7 +691,7 @@ public final class String
                 int index = start;
                 int offset;
                 try {
-                    offset = value.offsetByCodePoints(0, start);
+                    offset = offsetByCodePoints(value, 0, start);
                 }
                 catch (IndexOutOfBoundsException e) {
                     return 0;
@@ -609,7 +702,7 @@ public final class String
                     if (result<0) {
                         return size;
                     }
-                    index += value.codePointCount(offset, result);
+                    index += codePointCount(value, offset, result);
                     offset = result + len;
                     if (index>=stop) {
                         return size;
@@ -651,7 +744,7 @@ public final class String
             String string = (String) sublist;
             int offset;
             try {
-                offset = value.offsetByCodePoints(0, (int)from);
+                offset = offsetByCodePoints(value, 0, (int)from);
             }
             catch (IndexOutOfBoundsException e) {
                 return value.isEmpty();
@@ -688,7 +781,7 @@ public final class String
             try {
                 int offset;
                 try {
-                    offset = value.offsetByCodePoints(0, (int)index);
+                    offset = offsetByCodePoints(value, 0, (int)index);
                 }
                 catch (IndexOutOfBoundsException e) {
                     return sublist.getEmpty();
@@ -748,7 +841,7 @@ public final class String
                     int offset;
                     {
                         try {
-                            offset = value.offsetByCodePoints(0, start);
+                            offset = offsetByCodePoints(value, 0, start);
                         }
                         catch (IndexOutOfBoundsException e) {
                             offset = value.length();
@@ -761,7 +854,7 @@ public final class String
                             if (result<0) {
                                 return finished_.get_();
                             }
-                            index += value.codePointCount(offset, result);
+                            index += codePointCount(value, offset, result);
                             long i = index;
                             offset = result + len;
                             index++; 
@@ -778,7 +871,7 @@ public final class String
                 }
                 int offset;
                 try {
-                    offset = value.offsetByCodePoints(0, start);
+                    offset = offsetByCodePoints(value, 0, start);
                 }
                 catch (IndexOutOfBoundsException e) {
                     return 0;
@@ -831,7 +924,7 @@ public final class String
             String string = (String) sublist;
             int start;
             try {
-                start = value.offsetByCodePoints(0, (int)from);
+                start = offsetByCodePoints(value, 0, (int)from);
             }
             catch (IndexOutOfBoundsException iobe) {
                 return null;
@@ -839,7 +932,7 @@ public final class String
             int index = value.indexOf(string.value, start);
             if (index >= 0) {
                 return Integer.instance(from + 
-                        value.codePointCount(start, index));
+                        codePointCount(value, start, index));
             } else {
                 return null;
             }
@@ -882,7 +975,7 @@ public final class String
             int start;
             try {
                 start = 
-                        value.offsetByCodePoints(value.length(), 
+                        offsetByCodePoints(value, value.length(), 
                                 -(int)from 
                                 - Util.toInt(sublist.getSize()));
             }
@@ -892,7 +985,7 @@ public final class String
             int index = value.lastIndexOf(string.value, start);
             if (index >= 0) {
                 return Integer.instance(
-                        value.codePointCount(0, index));
+                        codePointCount(value, 0, index));
             }
             else {
                 return null;
@@ -942,14 +1035,14 @@ public final class String
         }
         int start;
         try {
-            start = value.offsetByCodePoints(0, (int)from);
+            start = offsetByCodePoints(value, 0, (int)from);
         }
         catch (java.lang.IndexOutOfBoundsException e) {
             return null;
         }
         int index = value.indexOf(element, start);
         if (index >= 0) {
-            int result = value.codePointCount(start, index);
+            int result = codePointCount(value, start, index);
             if (result>=length) {
                 return null;
             }
@@ -995,7 +1088,7 @@ public final class String
         int start;
         try {
             start = 
-                    value.offsetByCodePoints(value.length(), 
+                    offsetByCodePoints(value, value.length(), 
                             -(int)from - 1);
         }
         catch (java.lang.IndexOutOfBoundsException e) {
@@ -1004,12 +1097,12 @@ public final class String
         int index = value.lastIndexOf(element, start);
         if (index >= 0) {
             int dist = 
-                    value.codePointCount(index, start);
+                    codePointCount(value, index, start);
             if (dist>=length) {
                 return null;
             }
             return Integer.instance( 
-                    value.codePointCount(0, index));
+                    codePointCount(value, 0, index));
         }
         else {
             return null;
@@ -1056,7 +1149,7 @@ public final class String
                 this.to = to - from;
                 try {
                     this.start =
-                            value.offsetByCodePoints(offset, 
+                            offsetByCodePoints(value, offset, 
                                     Util.toInt(from));
                 }
                 catch (IndexOutOfBoundsException e) {
@@ -1075,7 +1168,7 @@ public final class String
             if (index>to || index<0) return null;
             try {
                 int offset =
-                        value.offsetByCodePoints(start, 
+                        offsetByCodePoints(value, start, 
                                 Util.toInt(index));
                 return Character.instance(
                         value.codePointAt(offset));
@@ -1099,7 +1192,7 @@ public final class String
         @Override
         public long getSize() {
             return Math.min(
-                    value.codePointCount(start, value.length()),
+                    codePointCount(value, start, value.length()),
                     to+1);
         }
 
@@ -1130,7 +1223,7 @@ public final class String
         public boolean contains(java.lang.Object element) {
             if (element instanceof Character) {
                 int index = value.indexOf(((Character)element).codePoint, start);
-                return index>=0 && value.codePointCount(start, index) <= to;
+                return index>=0 && codePointCount(value, start, index) <= to;
             }
             else {
                 return false;
@@ -1278,7 +1371,7 @@ public final class String
             return false;
         }
         try {
-            value.offsetByCodePoints(0, (int)length+1);
+            offsetByCodePoints(value, 0, (int)length+1);
             return true;
         }
         catch (IndexOutOfBoundsException iobe) {
@@ -1293,7 +1386,7 @@ public final class String
             return false;
         }
         try {
-            value.offsetByCodePoints(0, (int)length+1);
+            offsetByCodePoints(value, 0, (int)length+1);
             return true;
         }
         catch (IndexOutOfBoundsException iobe) {
@@ -1307,7 +1400,7 @@ public final class String
             return true;
         }
         try {
-            value.offsetByCodePoints(0, (int)length);
+            offsetByCodePoints(value, 0, (int)length);
             return false;
         }
         catch (IndexOutOfBoundsException iobe) {
@@ -1322,7 +1415,7 @@ public final class String
             return true;
         }
         try {
-            value.offsetByCodePoints(0, (int)length);
+            offsetByCodePoints(value, 0, (int)length);
             return false;
         }
         catch (IndexOutOfBoundsException iobe) {
@@ -1455,7 +1548,7 @@ public final class String
         } else if (length >= getSize(value)) {
             return value;
         } else {
-            int offset = value.offsetByCodePoints(0, Util.toInt(length));
+            int offset = offsetByCodePoints(value, 0, Util.toInt(length));
             return value.substring(0, offset);
         }
     }
@@ -1473,7 +1566,7 @@ public final class String
         } else if (length >= getSize(value)) {
             return value;
         } else {
-            int offset = value.offsetByCodePoints(0, 
+            int offset = offsetByCodePoints(value, 0, 
                     Util.toInt(value.length()-length));
             return value.substring(offset, value.length());
         }
@@ -1536,7 +1629,7 @@ public final class String
         }
         int start;
         try {
-            start = value.offsetByCodePoints(0, Util.toInt(from));
+            start = offsetByCodePoints(value, 0, Util.toInt(from));
         }
         catch (IndexOutOfBoundsException ioobe) {
             return "";
@@ -1546,7 +1639,7 @@ public final class String
         }
         int end;
         try {
-            end = value.offsetByCodePoints(start, Util.toInt(length));
+            end = offsetByCodePoints(value, start, Util.toInt(length));
         }
         catch (IndexOutOfBoundsException ioobe) {
             return value.substring(start);
@@ -1603,7 +1696,7 @@ public final class String
         }
         int start;
         try {
-            start = value.offsetByCodePoints(0, Util.toInt(from));
+            start = offsetByCodePoints(value, 0, Util.toInt(from));
         }
         catch (IndexOutOfBoundsException ioobe) {
             return "";
@@ -1666,7 +1759,7 @@ public final class String
         }
         int end;
         try {
-            end = value.offsetByCodePoints(0, Util.toInt(to+1));
+            end = offsetByCodePoints(value, 0, Util.toInt(to+1));
         }
         catch (IndexOutOfBoundsException ioobe) {
             return value;
@@ -1694,7 +1787,7 @@ public final class String
         long begin = from < 0 ? 0 : from;
         int start;
         try {
-            start = value.offsetByCodePoints(0, Util.toInt(begin));
+            start = offsetByCodePoints(value, 0, Util.toInt(begin));
         }
         catch (IndexOutOfBoundsException ioobe) {
             return "";
@@ -1706,7 +1799,7 @@ public final class String
         else {
             int end;
             try {
-                end = value.offsetByCodePoints(start, Util.toInt(to+1 - begin));
+                end = offsetByCodePoints(value, start, Util.toInt(to+1 - begin));
             }
             catch (IndexOutOfBoundsException ioobe) {
                 return value.substring(start);
@@ -2020,7 +2113,7 @@ public final class String
         }
         else {
             int intIndex =
-                    value.offsetByCodePoints(0, 
+                    offsetByCodePoints(value, 0, 
                             Util.toInt(index));
             first = value.substring(0,intIndex);
             second = value.substring(intIndex);
@@ -2200,26 +2293,26 @@ public final class String
     @Override
     public String getRest() {
         return value.isEmpty() ? this :
-            instance(value.substring(value.offsetByCodePoints(0, 1)));
+            instance(value.substring(offsetByCodePoints(value, 0, 1)));
     }
 
     @Override
     public String getExceptLast() {
         return value.isEmpty() ? this :
-            instance(value.substring(0, value.offsetByCodePoints(value.length(), -1)));
+            instance(value.substring(0, offsetByCodePoints(value, value.length(), -1)));
     }
 
     @Ignore
     public static java.lang.String getRest(java.lang.String value) {
         return value.isEmpty() ? "" :
-            value.substring(value.offsetByCodePoints(0, 1));
+            value.substring(offsetByCodePoints(value, 0, 1));
     }
     
     @Ignore
     public static java.lang.String 
     getExceptLast(java.lang.String value) {
         return value.isEmpty() ? "" :
-            value.substring(0, value.offsetByCodePoints(value.length(), -1));
+            value.substring(0, offsetByCodePoints(value, value.length(), -1));
     }
 
     @Transient
@@ -2367,7 +2460,7 @@ public final class String
             Character ch = Character.instance(codePoint);
             offset -= java.lang.Character.charCount(codePoint);
             if (f.$call$(ch).booleanValue()) {
-                int index = value.codePointCount(0, offset);
+                int index = codePointCount(value, 0, offset);
                 return new Entry<Integer,Character>(
                         Integer.$TypeDescriptor$, Character.$TypeDescriptor$,
                         Integer.instance(index), ch);
@@ -2522,7 +2615,7 @@ public final class String
             int cp = value.codePointBefore(offset);
             offset-=java.lang.Character.charCount(cp);
             if (fun.$call$(Character.instance(cp)).booleanValue()) {
-                int index = value.codePointCount(0, offset);
+                int index = codePointCount(value, 0, offset);
                 return Integer.instance(index);
             }
         }
@@ -3082,7 +3175,7 @@ public final class String
         try {
             if (destination.toArray() instanceof int[]) {
                 int[] array = (int[]) destination.toArray();
-                for (int index = value.offsetByCodePoints(0,src); 
+                for (int index = offsetByCodePoints(value, 0,src); 
                         count<length;) {
                     int codePoint = value.codePointAt(index);
                     array[count+dest] = codePoint;
@@ -3091,7 +3184,7 @@ public final class String
                 }
             } else {
                 java.lang.Object[] array = (java.lang.Object[]) destination.toArray();
-                for (int index = value.offsetByCodePoints(0,src); 
+                for (int index = offsetByCodePoints(value, 0,src); 
                         count<length;) {
                     int codePoint = value.codePointAt(index);
                     array[count+dest] = Character.instance(codePoint);
@@ -3621,7 +3714,7 @@ public final class String
         }
         int start;
         try {
-            start = value.offsetByCodePoints(0, (int)from);
+            start = offsetByCodePoints(value, 0, (int)from);
         }
         catch (IndexOutOfBoundsException iobe) {
             return -1;
@@ -3664,7 +3757,7 @@ public final class String
         }
         int start;
         try {
-            start = value.offsetByCodePoints(0, (int)to);
+            start = offsetByCodePoints(value, 0, (int)to);
         }
         catch (IndexOutOfBoundsException iobe) {
             return lastIndexOf(value, string);
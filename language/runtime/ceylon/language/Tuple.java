@@ -534,7 +534,7 @@ public final class Tuple<Element, First extends Element,
                 cachedType = $cachedType;
                 type = cachedType!=null ? cachedType.get() : null;
                 if (type==null) {
-                    type = computeType();
+                    type = TypeDescriptor.intern(computeType());
                     $cachedType = new SoftReference<TypeDescriptor>(type);
                 }
             }
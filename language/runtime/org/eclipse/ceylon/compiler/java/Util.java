@@ -1458,6 +1458,27 @@ public class Util {
     }
     
     
+    /** 
+     * <p>Return {@link empty_#getEmpty$ empty} or an 
+     * {@link ArraySequence} of the given elements, which is what 
+     * {@code Iterable.sequence()} returns for a stream of the same 
+     * elements.</p>
+     * 
+     * <p>This is used for comprehensions which are materialized 
+     * by appending their elements to a list, instead of 
+     * iterating an {@code Iterable}.</p>
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public static <T> Sequential<? extends T> sequentialOf(
+            TypeDescriptor $reifiedT, 
+            java.util.List<?> elements) {
+        if (elements.isEmpty()) {
+            return (Sequential)empty_.get_();
+        }
+        return new ArraySequence<T>($reifiedT, 
+                new Array<T>($reifiedT, elements));
+    }
+    
     /**
      * Returns a runtime exception. To be used by implementors 
      * of mixin methods used to access super-interfaces $impl fields
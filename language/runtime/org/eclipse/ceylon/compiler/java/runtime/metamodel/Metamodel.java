@@ -15,14 +15,13 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.ceylon.common.ModuleUtil;
 import org.eclipse.ceylon.common.NonNull;
@@ -142,20 +141,30 @@ public class Metamodel {
 
     private static RuntimeModuleManager moduleManager;
     
-    // FIXME: this will need better thinking in terms of memory usage
-    private static Map<java.lang.Class<?>, ceylon.language.meta.declaration.NestableDeclaration> classToDeclaration
-    = new HashMap<java.lang.Class<?>, ceylon.language.meta.declaration.NestableDeclaration>();
+    // These caches are read without holding the lock, but only written
+    // while holding it, so that we never create two metamodels for the
+    // same thing. Classes, declarations and type descriptors are weakly 
+    // referenced so that the caches don't keep them, or the class 
+    // loaders of their modules, alive on their own. Since the metamodels
+    // and types we map them to reference them in turn, they are not 
+    // strongly referenced either: declaration metamodels and types are 
+    // softly referenced, and the metamodels of classes are kept alive 
+    // by typeCheckModelToRuntimeModel. The package and module keys are 
+    // owned by the module manager, and referenced by their metamodels 
+    // anyway, so they are only released on reset.
+    private static final WeakKeyCache<java.lang.Class<?>, ceylon.language.meta.declaration.NestableDeclaration> classToDeclaration
+        = new WeakKeyCache<java.lang.Class<?>, ceylon.language.meta.declaration.NestableDeclaration>(false);
     
-    private static Map<org.eclipse.ceylon.model.typechecker.model.Declaration, Object> typeCheckModelToRuntimeModel
-        = new HashMap<org.eclipse.ceylon.model.typechecker.model.Declaration, Object>();
+    private static final WeakKeyCache<org.eclipse.ceylon.model.typechecker.model.Declaration, Object> typeCheckModelToRuntimeModel
+        = new WeakKeyCache<org.eclipse.ceylon.model.typechecker.model.Declaration, Object>(true);
 
-    private static Map<org.eclipse.ceylon.model.typechecker.model.Package, org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl> typeCheckPackagesToRuntimeModel
-        = new HashMap<org.eclipse.ceylon.model.typechecker.model.Package, org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl>();
+    private static final Map<org.eclipse.ceylon.model.typechecker.model.Package, org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl> typeCheckPackagesToRuntimeModel
+        = new ConcurrentHashMap<org.eclipse.ceylon.model.typechecker.model.Package, org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl>();
 
-    private static Map<org.eclipse.ceylon.model.typechecker.model.Module, org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.ModuleImpl> typeCheckModulesToRuntimeModel
-        = new HashMap<org.eclipse.ceylon.model.typechecker.model.Module, org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.ModuleImpl>();
+    private static final Map<org.eclipse.ceylon.model.typechecker.model.Module, org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.ModuleImpl> typeCheckModulesToRuntimeModel
+        = new ConcurrentHashMap<org.eclipse.ceylon.model.typechecker.model.Module, org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.ModuleImpl>();
 
-    private static Map<TypeDescriptor,Type> typeDescriptorToProducedType = new WeakHashMap<TypeDescriptor,Type>();
+    private static final WeakKeyCache<TypeDescriptor,Type> typeDescriptorToProducedType = new WeakKeyCache<TypeDescriptor,Type>(true);
 
     private static final TypeDescriptor TD_ClosedTypeOfAnything
         = TypeDescriptor.klass(ceylon.language.meta.model.Type.class, ceylon.language.Anything.$TypeDescriptor$);
@@ -195,6 +204,7 @@ public class Metamodel {
         typeCheckModulesToRuntimeModel.clear();
         typeCheckPackagesToRuntimeModel.clear();
         typeDescriptorToProducedType.clear();
+        TypeDescriptor.resetSubtypeCache();
     }
     
     // This is only used in tests
@@ -362,12 +372,14 @@ public class Metamodel {
     }
 
     public static Type getProducedType(TypeDescriptor reifiedType) {
-        Type producedType;
+        Type producedType = typeDescriptorToProducedType.get(reifiedType);
+        if(producedType != null)
+            return producedType;
         synchronized(getLock()){
             producedType = typeDescriptorToProducedType.get(reifiedType);
             if(producedType == null){
-                producedType = reifiedType.toType(moduleManager);
-                typeDescriptorToProducedType.put(reifiedType, producedType);
+                producedType = typeDescriptorToProducedType.putIfAbsent(reifiedType, 
+                        reifiedType.toType(moduleManager));
             }
         }
         return producedType;
@@ -382,6 +394,9 @@ public class Metamodel {
     }
     
     public static <R> R getOrCreateMetamodel(org.eclipse.ceylon.model.typechecker.model.Declaration declaration){
+        Object cached = typeCheckModelToRuntimeModel.get(declaration);
+        if(cached != null)
+            return (R)cached;
         synchronized(getLock()){
             Object ret = typeCheckModelToRuntimeModel.get(declaration);
             if(ret == null){
@@ -434,7 +449,7 @@ public class Metamodel {
                 }else{
                     throw Metamodel.newModelError("Declaration type not supported yet: "+declaration);
                 }
-                typeCheckModelToRuntimeModel.put(declaration, ret);
+                ret = typeCheckModelToRuntimeModel.putIfAbsent(declaration, ret);
             }
             return (R)ret;
         }
@@ -458,6 +473,9 @@ public class Metamodel {
     }
 
     public static org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl getOrCreateMetamodel(org.eclipse.ceylon.model.typechecker.model.Package declaration){
+        org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl cached = typeCheckPackagesToRuntimeModel.get(declaration);
+        if(cached != null)
+            return cached;
         synchronized(getLock()){
             org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.PackageImpl ret = typeCheckPackagesToRuntimeModel.get(declaration);
             if(ret == null){
@@ -481,6 +499,9 @@ public class Metamodel {
             String namespace,
             org.eclipse.ceylon.model.typechecker.model.Module declaration,
             Set<org.eclipse.ceylon.model.typechecker.model.Module> visitedModules, boolean optional){
+        org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.ModuleImpl cached = typeCheckModulesToRuntimeModel.get(declaration);
+        if(cached != null)
+            return cached;
         synchronized(getLock()){
             org.eclipse.ceylon.compiler.java.runtime.metamodel.decl.ModuleImpl ret = typeCheckModulesToRuntimeModel.get(declaration);
             if(ret == null){
@@ -1371,6 +1392,9 @@ public class Metamodel {
      * In theory this can only be used for ClassOrInterface or TypeAlias.
      */
     public static ceylon.language.meta.declaration.NestableDeclaration getOrCreateMetamodel(java.lang.Class<?> klass){
+        ceylon.language.meta.declaration.NestableDeclaration cached = classToDeclaration.get(klass);
+        if(cached != null)
+            return cached;
         synchronized(getLock()){
             ceylon.language.meta.declaration.NestableDeclaration result = classToDeclaration.get(klass);
             if (result == null) {
@@ -1381,7 +1405,7 @@ public class Metamodel {
                         (org.eclipse.ceylon.model.typechecker.model.TypeDeclaration) 
                             moduleManager.getModelLoader().getDeclaration(module, typeName, DeclarationType.TYPE);
                 result = (ceylon.language.meta.declaration.NestableDeclaration) getOrCreateMetamodel(decl);
-                classToDeclaration.put(klass, result);
+                result = classToDeclaration.putIfAbsent(klass, result);
             }
             return result;
         }
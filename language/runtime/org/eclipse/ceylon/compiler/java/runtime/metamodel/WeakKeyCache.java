@@ -0,0 +1,191 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.java.runtime.metamodel;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A concurrent cache with weakly referenced keys, compared with
+ * {@link Object#equals(Object)}, like a concurrent
+ * {@link java.util.WeakHashMap}. Reads never block. 
+ *
+ * Values are weakly or softly referenced too, so that a value 
+ * which references its own key doesn't keep its entry alive. 
+ * Weak values are for values which something else keeps alive 
+ * for as long as they are needed, soft values for values which
+ * are only referenced by the cache. Entries whose key or value 
+ * has been collected are removed on the next write.
+ */
+class WeakKeyCache<K,V> {
+
+    private final ConcurrentMap<Object,Reference<V>> map = 
+            new ConcurrentHashMap<Object,Reference<V>>();
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+    private final boolean softValues;
+
+    WeakKeyCache(boolean softValues) {
+        this.softValues = softValues;
+    }
+
+    /**
+     * A reference to a value, which knows the key of its entry.
+     */
+    private interface ValueReference {
+        Object getKey();
+    }
+
+    private static final class WeakValue<V> 
+            extends WeakReference<V> implements ValueReference {
+        private final Object key;
+
+        WeakValue(Object key, V value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        @Override
+        public Object getKey() {
+            return key;
+        }
+    }
+
+    private static final class SoftValue<V> 
+            extends SoftReference<V> implements ValueReference {
+        private final Object key;
+
+        SoftValue(Object key, V value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        @Override
+        public Object getKey() {
+            return key;
+        }
+    }
+
+    private static final class WeakKey<K> extends WeakReference<K> {
+        private final int hash;
+
+        WeakKey(K key, ReferenceQueue<Object> queue) {
+            super(key, queue);
+            hash = key.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            Object key = get();
+            if (key == null) {
+                // a collected key is only equal to itself
+                return false;
+            }
+            if (obj instanceof WeakKey) {
+                return key.equals(((WeakKey<?>) obj).get());
+            }
+            if (obj instanceof LookupKey) {
+                return key.equals(((LookupKey) obj).key);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A key for lookups, which we don't need to register with the
+     * reference queue.
+     */
+    private static final class LookupKey {
+        private final Object key;
+
+        LookupKey(Object key) {
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof WeakKey) {
+                return obj.equals(this);
+            }
+            return obj instanceof LookupKey
+                    && key.equals(((LookupKey) obj).key);
+        }
+    }
+
+    V get(K key) {
+        Reference<V> ref = map.get(new LookupKey(key));
+        return ref != null ? ref.get() : null;
+    }
+
+    /**
+     * Caches the given value unless there is already a value for
+     * the key, and returns the cached value.
+     */
+    V putIfAbsent(K key, V value) {
+        expungeStaleEntries();
+        WeakKey<K> weakKey = new WeakKey<K>(key, queue);
+        Reference<V> ref = softValues ? 
+                new SoftValue<V>(weakKey, value, queue) : 
+                new WeakValue<V>(weakKey, value, queue);
+        while (true) {
+            Reference<V> existingRef = map.putIfAbsent(weakKey, ref);
+            if (existingRef == null) {
+                return value;
+            }
+            V existing = existingRef.get();
+            if (existing != null) {
+                return existing;
+            }
+            // the value was collected, but its entry is still there
+            if (map.replace(weakKey, existingRef, ref)) {
+                return value;
+            }
+        }
+    }
+
+    void clear() {
+        expungeStaleEntries();
+        map.clear();
+    }
+
+    int size() {
+        expungeStaleEntries();
+        return map.size();
+    }
+
+    private void expungeStaleEntries() {
+        Reference<?> ref;
+        while ((ref = queue.poll()) != null) {
+            if (ref instanceof ValueReference) {
+                // unless the entry has a new value already
+                map.remove(((ValueReference) ref).getKey(), ref);
+            }
+            else {
+                map.remove(ref);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.java.runtime.model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the results of the subtype tests that
+ * {@link TypeDescriptor#is(TypeDescriptor)} has to do on the
+ * typechecker model, keyed by the pair of type descriptors.
+ * Reads never block.
+ *
+ * Generated code creates new descriptors for most tests, so
+ * the keys don't reference the descriptors, but what they're 
+ * made of: their {@link TypeDescriptor#shapeTo(List) shape}, 
+ * with weak references to the classes in it. An entry lives 
+ * as long as its classes, whatever happens to the descriptors
+ * it was made from, and doesn't keep the classes, or their 
+ * class loaders, alive. Entries with a collected class are 
+ * removed on the next write.
+ *
+ * The cache is bounded: when it is full it is simply emptied,
+ * since the same few pairs of types tend to be tested over and
+ * over again. The maximum size can be set with the
+ * {@value #SIZE_PROPERTY} system property, and 0 disables the
+ * cache.
+ */
+final class SubtypeCache {
+
+    static final String SIZE_PROPERTY = "ceylon.language.TypeDescriptor.cache.size";
+
+    private static final int MAXIMUM_SIZE = Integer.getInteger(SIZE_PROPERTY, 4096);
+
+    private static final ConcurrentMap<Key,Boolean> results =
+            new ConcurrentHashMap<Key,Boolean>();
+    private static final ReferenceQueue<java.lang.Class<?>> queue =
+            new ReferenceQueue<java.lang.Class<?>>();
+
+    /**
+     * A reference to one of the classes of a key, which knows
+     * the key to remove when the class is collected.
+     */
+    private static final class ClassReference 
+            extends WeakReference<java.lang.Class<?>> {
+        private final Key key;
+
+        ClassReference(java.lang.Class<?> klass, Key key) {
+            super(klass, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * The shapes of the instance type and of the type, one after
+     * the other. The classes in the shape of a key in the cache 
+     * are weakly referenced, and those of a key for lookups are 
+     * not.
+     */
+    private static final class Key {
+        private final Object[] shape;
+        private final int hash;
+
+        Key(TypeDescriptor instanceType, TypeDescriptor type) {
+            List<Object> shape = new ArrayList<Object>();
+            instanceType.shapeTo(shape);
+            type.shapeTo(shape);
+            this.shape = shape.toArray();
+            int hash = 1;
+            for (Object part : this.shape) {
+                hash = 31 * hash + (part instanceof java.lang.Class ? 
+                        System.identityHashCode(part) : part.hashCode());
+            }
+            this.hash = hash;
+        }
+
+        /** Makes this key weakly reference its classes */
+        Key weaken() {
+            for (int i = 0; i < shape.length; i++) {
+                if (shape[i] instanceof java.lang.Class) {
+                    shape[i] = new ClassReference((java.lang.Class<?>) shape[i], this);
+                }
+            }
+            return this;
+        }
+
+        private static Object get(Object part) {
+            return part instanceof ClassReference ? 
+                    ((ClassReference) part).get() : part;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (hash != other.hash 
+                    || shape.length != other.shape.length) {
+                return false;
+            }
+            for (int i = 0; i < shape.length; i++) {
+                Object part = get(shape[i]);
+                if (part == null) {
+                    // a collected key is only equal to itself
+                    return false;
+                }
+                Object otherPart = get(other.shape[i]);
+                if (part instanceof java.lang.Class ? 
+                        part != otherPart : !part.equals(otherPart)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private SubtypeCache() {}
+
+    /**
+     * Returns whether the instance type is a subtype of the given
+     * type, if we know, or null.
+     */
+    static Boolean get(TypeDescriptor instanceType, TypeDescriptor type) {
+        if (MAXIMUM_SIZE <= 0) {
+            return null;
+        }
+        return results.get(new Key(instanceType, type));
+    }
+
+    static void put(TypeDescriptor instanceType, TypeDescriptor type,
+            boolean isSubtype) {
+        if (MAXIMUM_SIZE <= 0) {
+            return;
+        }
+        expungeStaleEntries();
+        if (results.size() >= MAXIMUM_SIZE) {
+            results.clear();
+        }
+        results.put(new Key(instanceType, type).weaken(), isSubtype);
+    }
+
+    static void clear() {
+        expungeStaleEntries();
+        results.clear();
+    }
+
+    static int size() {
+        expungeStaleEntries();
+        return results.size();
+    }
+
+    private static void expungeStaleEntries() {
+        Reference<? extends java.lang.Class<?>> ref;
+        while ((ref = queue.poll()) != null) {
+            // several classes of a key may have been collected
+            results.remove(((ClassReference) ref).key);
+        }
+    }
+}
@@ -91,6 +91,14 @@ public abstract class TypeDescriptor
     
     protected abstract void stringTo(StringBuilder sb);
     
+    /**
+     * Appends what this descriptor is made of, including the 
+     * classes it refers to, to the given shape, for the keys of 
+     * {@link SubtypeCache}. Descriptors with equal shapes are 
+     * equal.
+     */
+    abstract void shapeTo(List<Object> shape);
+    
     /**
      * Returns a hashcode for the given elements 
      * computed so that the order of the elements doesn't matter
@@ -168,6 +176,18 @@ public abstract class TypeDescriptor
             }
         }
         
+        /** Appends the type arguments */
+        void typeArgumentsShapeTo(List<Object> shape) {
+            shape.add(typeArguments.length);
+            shape.add(useSiteVariance.length);
+            for(int i=0;i<typeArguments.length;i++){
+                if (useSiteVariance != NO_VARIANCE) {
+                    shape.add(useSiteVariance[i]);
+                }
+                typeArguments[i].shapeTo(shape);
+            }
+        }
+        
         protected Type applyUseSiteVariance(TypeDeclaration decl, Type type) {
             // apply use site variance if required
             if(useSiteVariance.length != 0 && 
@@ -202,7 +222,7 @@ public abstract class TypeDescriptor
         
         private static final long serialVersionUID = -490491495105002855L;
         
-        private int memoizedHash;
+        private transient int memoizedHash;
         protected final java.lang.Class<?> klass;
 
         public Class(java.lang.Class<?> klass, Variance[] useSiteVariance, TypeDescriptor[] typeArguments){
@@ -305,6 +325,13 @@ public abstract class TypeDescriptor
             return memoizedHash;
         }
         
+        @Override
+        void shapeTo(List<Object> shape) {
+            shape.add("class");
+            shape.add(klass);
+            typeArgumentsShapeTo(shape);
+        }
+        
         @Override
         protected void stringTo(StringBuilder sb) {
             String className = klass.getName();
@@ -446,7 +473,7 @@ public abstract class TypeDescriptor
         // only set when requested
         private TypeDescriptor elementUnion;
         private TypeDescriptor rest;
-        private int memoizedHash;
+        private transient int memoizedHash;
 
         public Tuple(boolean variadic, boolean atLeastOne, int firstDefaulted, TypeDescriptor[] elements) {
             super(ceylon.language.Tuple.class, NO_VARIANCE, null);
@@ -511,6 +538,18 @@ public abstract class TypeDescriptor
             }
             return  memoizedHash;
         }
+        
+        @Override
+        void shapeTo(List<Object> shape) {
+            shape.add("tuple");
+            shape.add(variadic);
+            shape.add(atLeastOne);
+            shape.add(firstDefaulted);
+            shape.add(elements.length);
+            for (TypeDescriptor element : elements) {
+                element.shapeTo(shape);
+            }
+        }
 
         @Override
         public boolean is(TypeDescriptor instanceType) {
@@ -620,7 +659,7 @@ public abstract class TypeDescriptor
         private final String name;
         private final java.lang.Class<?> klass;
         private final boolean local;
-        private int memoizedHash;
+        private transient int memoizedHash;
         
         /**
          * For members
@@ -738,6 +777,13 @@ public abstract class TypeDescriptor
             return  memoizedHash;
         }
         
+        @Override
+        void shapeTo(List<Object> shape) {
+            shape.add("functionorvalue");
+            shape.add(name != null ? name : klass);
+            typeArgumentsShapeTo(shape);
+        }
+        
         @Override
         public void stringTo(StringBuilder b) {
             if(klass != null)
@@ -789,6 +835,13 @@ public abstract class TypeDescriptor
             return ret;
         }
         
+        @Override
+        void shapeTo(List<Object> shape) {
+            shape.add("member");
+            container.shapeTo(shape);
+            member.shapeTo(shape);
+        }
+        
         @Override
         public void stringTo(StringBuilder sb) {
             container.stringTo(sb);
@@ -832,6 +885,11 @@ public abstract class TypeDescriptor
             return false;
         }
         
+        @Override
+        protected Object readResolve() {
+            return NothingType;
+        }
+        
         @Override
         public boolean equals(Object obj) {
             return obj == this;
@@ -843,6 +901,11 @@ public abstract class TypeDescriptor
             ret = 37 * ret + "nothing".hashCode();
             return ret;
         }
+        
+        @Override
+        void shapeTo(List<Object> shape) {
+            shape.add("nothing");
+        }
 
         @Override
         public Type toType(RuntimeModuleManager moduleManager) {
@@ -908,6 +971,20 @@ public abstract class TypeDescriptor
             }
             return true;
         }
+        
+        /** 
+         * Appends the members in order, so that the same union or 
+         * intersection with its members in another order has 
+         * another shape
+         */
+        @Override
+        final void shapeTo(List<Object> shape) {
+            shape.add(getSep());
+            shape.add(members.length);
+            for (TypeDescriptor member : members) {
+                member.shapeTo(shape);
+            }
+        }
 
         protected abstract char getSep();
         
@@ -1183,6 +1260,26 @@ public abstract class TypeDescriptor
     //
     // Factory methods
     
+    /**
+     * Returns the canonical descriptor equal to the given one, so
+     * that equal descriptors can be compared with <tt>==</tt>.
+     * Interning costs a hash and a table lookup, so the factory
+     * methods don't do it: only intern descriptors which are
+     * kept, such as the ones {@code Array} and {@code Tuple} 
+     * cache for {@code $getType$()}, and deserialized ones.
+     */
+    public static TypeDescriptor intern(TypeDescriptor descriptor) {
+        return TypeDescriptorInterner.intern(descriptor);
+    }
+    
+    /**
+     * Objects deserialized from the same stream, or from different
+     * streams, share their descriptors.
+     */
+    protected Object readResolve() {
+        return intern(this);
+    }
+    
     public static TypeDescriptor member(TypeDescriptor container, TypeDescriptor member){
         return new Member(container, member);
     }
@@ -1529,7 +1626,24 @@ public abstract class TypeDescriptor
     }
 
     public boolean is(TypeDescriptor instanceType) {
-        return this==instanceType ||
-                getProducedType(instanceType).isSubtypeOf(getProducedType(this));
+        if (this==instanceType) {
+            return true;
+        }
+        Boolean cached = SubtypeCache.get(instanceType, this);
+        if (cached != null) {
+            return cached;
+        }
+        boolean result = getProducedType(instanceType).isSubtypeOf(getProducedType(this));
+        SubtypeCache.put(instanceType, this, result);
+        return result;
+    }
+    
+    /**
+     * Forgets the results of the subtype tests done by 
+     * {@link #is(TypeDescriptor)}, which depend on the
+     * loaded modules.
+     */
+    public static void resetSubtypeCache() {
+        SubtypeCache.clear();
     }
 }
@@ -0,0 +1,134 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.java.runtime.model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonicalizes type descriptors, so that equal descriptors
+ * passed to {@link TypeDescriptor#intern(TypeDescriptor)} are
+ * the same instance, and can mostly be compared with <tt>==</tt>.
+ * Reads never block.
+ *
+ * The canonical descriptors are weakly referenced, so that the
+ * table doesn't keep them, or the classes they refer to, alive.
+ */
+final class TypeDescriptorInterner {
+
+    private static final ConcurrentMap<Object,Entry> table =
+            new ConcurrentHashMap<Object,Entry>();
+    private static final ReferenceQueue<TypeDescriptor> queue =
+            new ReferenceQueue<TypeDescriptor>();
+
+    private static final class Entry extends WeakReference<TypeDescriptor> {
+        private final int hash;
+
+        Entry(TypeDescriptor descriptor) {
+            super(descriptor, queue);
+            hash = descriptor.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            TypeDescriptor descriptor = get();
+            if (descriptor == null) {
+                // a collected descriptor is only equal to itself
+                return false;
+            }
+            if (obj instanceof Entry) {
+                return descriptor.equals(((Entry) obj).get());
+            }
+            if (obj instanceof LookupKey) {
+                return descriptor.equals(((LookupKey) obj).descriptor);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A key for lookups, which we don't need to register with the
+     * reference queue.
+     */
+    private static final class LookupKey {
+        private final TypeDescriptor descriptor;
+
+        LookupKey(TypeDescriptor descriptor) {
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        public int hashCode() {
+            return descriptor.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof Entry) {
+                return obj.equals(this);
+            }
+            return obj instanceof LookupKey
+                    && descriptor.equals(((LookupKey) obj).descriptor);
+        }
+    }
+
+    private TypeDescriptorInterner() {}
+
+    /**
+     * Returns the canonical descriptor equal to the given one,
+     * which becomes the canonical descriptor if there is none yet.
+     */
+    static TypeDescriptor intern(TypeDescriptor descriptor) {
+        Entry entry = table.get(new LookupKey(descriptor));
+        if (entry != null) {
+            TypeDescriptor canonical = entry.get();
+            if (canonical != null) {
+                return canonical;
+            }
+        }
+        expungeStaleEntries();
+        Entry newEntry = new Entry(descriptor);
+        while (true) {
+            Entry existing = table.putIfAbsent(newEntry, newEntry);
+            if (existing == null) {
+                return descriptor;
+            }
+            TypeDescriptor canonical = existing.get();
+            if (canonical != null) {
+                return canonical;
+            }
+            // collected since we looked it up
+            table.remove(existing, existing);
+        }
+    }
+
+    static int size() {
+        expungeStaleEntries();
+        return table.size();
+    }
+
+    private static void expungeStaleEntries() {
+        Reference<? extends TypeDescriptor> ref;
+        while ((ref = queue.poll()) != null) {
+            table.remove(ref, ref);
+        }
+    }
+}
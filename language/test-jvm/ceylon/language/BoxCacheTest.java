@@ -0,0 +1,54 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package ceylon.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class BoxCacheTest {
+
+    @Test
+    public void testIntegerCache() {
+        for (long l = -128; l <= 1023; l++) {
+            Integer box = Integer.instance(l);
+            assertEquals(l, box.longValue());
+            assertSame(box, Integer.instance(l));
+        }
+        assertEquals(Integer.instance(-129), Integer.instance(-129));
+        assertEquals(Integer.instance(1L<<40), Integer.instance(1L<<40));
+        assertEquals(1L<<40, Integer.instance(1L<<40).longValue());
+        assertEquals(Long.MIN_VALUE, Integer.instance(Long.MIN_VALUE).longValue());
+        assertSame(Integer.instance(3), Integer.instance(1).plus(Integer.instance(2)));
+    }
+
+    @Test
+    public void testCharacterCache() {
+        for (int c = 0; c < 1024; c++) {
+            Character box = Character.instance(c);
+            assertEquals(c, box.intValue());
+            assertSame(box, Character.instance(c));
+        }
+        assertEquals(Character.instance(0x1F600), Character.instance(0x1F600));
+        assertEquals(0x1F600, Character.instance(0x1F600).intValue());
+        assertSame(Character.instance('b'), Character.instance('a').getSuccessor());
+    }
+
+    @Test
+    public void testByteCache() {
+        for (int b = java.lang.Byte.MIN_VALUE; b <= java.lang.Byte.MAX_VALUE; b++) {
+            Byte box = Byte.instance((byte) b);
+            assertEquals((byte) b, box.byteValue());
+            assertSame(box, Byte.instance((byte) b));
+        }
+        assertSame(Byte.instance((byte) 3), Byte.instance((byte) 1).plus(Byte.instance((byte) 2)));
+    }
+}
@@ -11,17 +11,22 @@ package ceylon.language;
 
 import org.eclipse.ceylon.compiler.java.ArrayBuilderTest;
 import org.eclipse.ceylon.compiler.java.TypeDescriptorTest;
+import org.eclipse.ceylon.compiler.java.runtime.metamodel.WeakKeyCacheTest;
+import org.eclipse.ceylon.compiler.java.runtime.model.SubtypeCacheTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class) 
 @SuiteClasses({
+    BoxCacheTest.class,
     FloatTest.class,
     IntegerTest.class,
     ArrayBuilderTest.class,
     TypeDescriptorTest.class,
-    PrimitiveArrayIterableTest.class
+    PrimitiveArrayIterableTest.class,
+    WeakKeyCacheTest.class,
+    SubtypeCacheTest.class
 })
 public class LanguageUnitTestSuite {
 
@@ -13,6 +13,7 @@ import org.eclipse.ceylon.compiler.java.runtime.model.TypeDescriptor;
 import org.junit.Assert;
 import org.junit.Test;
 
+import ceylon.language.Array;
 import ceylon.language.Empty;
 import ceylon.language.Float;
 import ceylon.language.Integer;
@@ -190,4 +191,65 @@ public class TypeDescriptorTest {
         Assert.assertTrue(intThenIntOrStringTuple2 instanceof TypeDescriptor.Class);
         Assert.assertEquals(intThenIntOrStringTuple, intThenIntOrStringTuple2);
 }
+
+    @Test
+    public void testInterning() throws Exception {
+        Assert.assertSame(TypeDescriptor.intern(TypeDescriptor.klass(Sequential.class, Integer.$TypeDescriptor$)), 
+                          TypeDescriptor.intern(TypeDescriptor.klass(Sequential.class, Integer.$TypeDescriptor$)));
+        Assert.assertSame(TypeDescriptor.intern(TypeDescriptor.union(String.$TypeDescriptor$, Integer.$TypeDescriptor$)), 
+                          TypeDescriptor.intern(TypeDescriptor.union(Integer.$TypeDescriptor$, String.$TypeDescriptor$)));
+        Assert.assertSame(TypeDescriptor.intern(TypeDescriptor.tuple(false, false, -1, Integer.$TypeDescriptor$)), 
+                          TypeDescriptor.intern(TypeDescriptor.klass(Tuple.class, Integer.$TypeDescriptor$, Integer.$TypeDescriptor$, Empty.$TypeDescriptor$)));
+        Assert.assertNotSame(TypeDescriptor.intern(TypeDescriptor.klass(Sequential.class, Integer.$TypeDescriptor$)), 
+                             TypeDescriptor.intern(TypeDescriptor.klass(Sequential.class, String.$TypeDescriptor$)));
+        // the factory methods don't intern
+        Assert.assertNotSame(TypeDescriptor.klass(Sequential.class, Integer.$TypeDescriptor$), 
+                             TypeDescriptor.klass(Sequential.class, Integer.$TypeDescriptor$));
+        
+        TypeDescriptor sequentialOfIntegers = TypeDescriptor.intern(TypeDescriptor.klass(Sequential.class, Integer.$TypeDescriptor$));
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        try (java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(bytes)) {
+            out.writeObject(sequentialOfIntegers);
+            out.writeObject(TypeDescriptor.NothingType);
+        }
+        try (java.io.ObjectInputStream in = new java.io.ObjectInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray()))) {
+            Assert.assertSame(sequentialOfIntegers, in.readObject());
+            Assert.assertSame(TypeDescriptor.NothingType, in.readObject());
+        }
+    }
+
+    @Test
+    public void testGetTypeInterned(){
+        Assert.assertSame(new Array<Integer>(Integer.$TypeDescriptor$, 1, Integer.instance(0)).$getType$(), 
+                          new Array<Integer>(Integer.$TypeDescriptor$, 2, Integer.instance(1)).$getType$());
+        Tuple<Integer,Integer,Sequential<? extends Integer>> tuple = 
+                new Tuple<Integer,Integer,Sequential<? extends Integer>>(Integer.$TypeDescriptor$, new java.lang.Object[] { Integer.instance(1) });
+        Assert.assertSame(tuple.$getType$(), tuple.$getType$());
+        Assert.assertSame(tuple.$getType$(), 
+                new Tuple<Integer,Integer,Sequential<? extends Integer>>(Integer.$TypeDescriptor$, new java.lang.Object[] { Integer.instance(2) }).$getType$());
+    }
+
+    @Test
+    public void testGenericIsRepeated(){
+        TypeDescriptor intTuple = TypeDescriptor.tuple(false, false, -1, Integer.$TypeDescriptor$);
+        TypeDescriptor intOrStringTuple = TypeDescriptor.tuple(false, false, -1, Integer.$TypeDescriptor$, String.$TypeDescriptor$);
+        TypeDescriptor intSequential = TypeDescriptor.klass(Sequential.class, Integer.$TypeDescriptor$);
+        TypeDescriptor stringSequential = TypeDescriptor.klass(Sequential.class, String.$TypeDescriptor$);
+        TypeDescriptor intOrStringSequence = TypeDescriptor.klass(Sequence.class, 
+                TypeDescriptor.union(Integer.$TypeDescriptor$, String.$TypeDescriptor$));
+        // the results of the second and later tests come from the cache, 
+        // also for equal descriptors which are not the same instance
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(intSequential.is(intTuple));
+            Assert.assertTrue(TypeDescriptor.klass(Sequential.class, Integer.$TypeDescriptor$).is(
+                    TypeDescriptor.tuple(false, false, -1, Integer.$TypeDescriptor$)));
+            Assert.assertFalse(stringSequential.is(intTuple));
+            Assert.assertFalse(intSequential.is(intOrStringTuple));
+            Assert.assertTrue(intOrStringSequence.is(intOrStringTuple));
+            Assert.assertFalse(intTuple.is(intSequential));
+        }
+        TypeDescriptor.resetSubtypeCache();
+        Assert.assertTrue(intSequential.is(intTuple));
+        Assert.assertFalse(stringSequential.is(intTuple));
+    }
 }
@@ -0,0 +1,108 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.java.runtime.metamodel;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class WeakKeyCacheTest {
+
+    /** A value which references its own key */
+    private static final class Value {
+        final Object key;
+        Value(Object key) {
+            this.key = key;
+        }
+    }
+
+    private static void collect(WeakKeyCache<?,?> cache) {
+        for (int i = 0; i < 50 && cache.size() > 0; i++) {
+            System.gc();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Test
+    public void testValueReferencingKeyIsReleased() {
+        WeakKeyCache<Object,Value> cache = new WeakKeyCache<Object,Value>(false);
+        Object key = new Object();
+        Value value = new Value(key);
+        Assert.assertSame(value, cache.putIfAbsent(key, value));
+        Assert.assertSame(value, cache.get(key));
+        Assert.assertSame(value, cache.putIfAbsent(key, new Value(key)));
+        key = null;
+        value = null;
+        collect(cache);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testWeakValueIsReleased() {
+        WeakKeyCache<Object,Value> cache = new WeakKeyCache<Object,Value>(false);
+        Object key = new Object();
+        cache.putIfAbsent(key, new Value(key));
+        collect(cache);
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNull(cache.get(key));
+        // a new value can be cached for the same key
+        Value value = new Value(key);
+        Assert.assertSame(value, cache.putIfAbsent(key, value));
+        Assert.assertSame(value, cache.get(key));
+    }
+
+    @Test
+    public void testSoftValueIsKept() {
+        WeakKeyCache<Object,Value> cache = new WeakKeyCache<Object,Value>(true);
+        Object key = new Object();
+        Value value = new Value(key);
+        cache.putIfAbsent(key, value);
+        value = null;
+        System.gc();
+        // only released when memory runs low
+        Assert.assertNotNull(cache.get(key));
+    }
+
+    @Test
+    public void testSoftValueReferencingClassLoaderIsReleased() {
+        WeakKeyCache<Object,Value> cache = new WeakKeyCache<Object,Value>(true);
+        ClassLoader loader = new URLClassLoader(new URL[0], null);
+        Object key = Proxy.getProxyClass(loader, Runnable.class);
+        cache.putIfAbsent(key, new Value(key));
+        Assert.assertEquals(1, cache.size());
+        
+        WeakReference<ClassLoader> ref = new WeakReference<ClassLoader>(loader);
+        loader = null;
+        key = null;
+        // soft references are all cleared before an OutOfMemoryError
+        try {
+            List<long[]> hog = new ArrayList<long[]>();
+            while (true) {
+                hog.add(new long[Integer.MAX_VALUE - 8]);
+            }
+        } catch (OutOfMemoryError e) {
+            // expected
+        }
+        collect(cache);
+        Assert.assertNull(ref.get());
+        Assert.assertEquals(0, cache.size());
+    }
+}
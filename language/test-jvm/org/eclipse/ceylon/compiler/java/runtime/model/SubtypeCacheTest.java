@@ -0,0 +1,81 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.java.runtime.model;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import ceylon.language.Integer;
+import ceylon.language.Iterable;
+import ceylon.language.Null;
+import ceylon.language.Sequential;
+
+public class SubtypeCacheTest {
+
+    @Test
+    public void testClassLoaderIsReleased() {
+        SubtypeCache.clear();
+        ClassLoader loader = new URLClassLoader(new URL[0], null);
+        java.lang.Class<?> klass = Proxy.getProxyClass(loader, Runnable.class);
+        TypeDescriptor type = TypeDescriptor.klass(klass);
+        SubtypeCache.put(type, Integer.$TypeDescriptor$, false);
+        SubtypeCache.put(Integer.$TypeDescriptor$, type, false);
+        Assert.assertEquals(Boolean.FALSE, SubtypeCache.get(type, Integer.$TypeDescriptor$));
+        Assert.assertEquals(Boolean.FALSE, 
+                SubtypeCache.get(TypeDescriptor.klass(klass), Integer.$TypeDescriptor$));
+        Assert.assertNull(SubtypeCache.get(type, type));
+        Assert.assertEquals(2, SubtypeCache.size());
+        
+        WeakReference<ClassLoader> ref = new WeakReference<ClassLoader>(loader);
+        loader = null;
+        klass = null;
+        type = null;
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        Assert.assertNull(ref.get());
+        Assert.assertEquals(0, SubtypeCache.size());
+    }
+
+    @Test
+    public void testNewDescriptorsHit() {
+        SubtypeCache.clear();
+        SubtypeCache.put(sequentialOfIntegers(), iterableOfIntegers(), true);
+        // nothing references the descriptors the entry was made from
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        Assert.assertEquals(Boolean.TRUE, 
+                SubtypeCache.get(sequentialOfIntegers(), iterableOfIntegers()));
+        Assert.assertNull(SubtypeCache.get(iterableOfIntegers(), sequentialOfIntegers()));
+        Assert.assertNull(SubtypeCache.get(sequentialOfIntegers(), 
+                TypeDescriptor.union(Null.$TypeDescriptor$, iterableOfIntegers())));
+        Assert.assertEquals(1, SubtypeCache.size());
+    }
+
+    private static TypeDescriptor sequentialOfIntegers() {
+        return TypeDescriptor.klass(Sequential.class, Integer.$TypeDescriptor$);
+    }
+
+    private static TypeDescriptor iterableOfIntegers() {
+        return TypeDescriptor.klass(Iterable.class, Integer.$TypeDescriptor$, Null.$TypeDescriptor$);
+    }
+}
@@ -29,6 +29,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.ceylon.common.Backend;
 import org.eclipse.ceylon.common.Backends;
@@ -361,22 +362,26 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
         return new SimpleReflType(name, SimpleReflType.Module.CEYLON, TypeKind.DECLARED);
     }
 
-    protected Map<String, Declaration> valueDeclarationsByName = new HashMap<String, Declaration>();
-    protected Map<String, Declaration> typeDeclarationsByName = new HashMap<String, Declaration>();
-    protected Map<String, Unit> unitsByPackage = new HashMap<String, Unit>();
+    // the caches below are concurrent so that they can be read without holding
+    // the model loader lock, but they are only ever modified while holding it
+    protected Map<String, Declaration> valueDeclarationsByName = new ConcurrentHashMap<String, Declaration>();
+    protected Map<String, Declaration> typeDeclarationsByName = new ConcurrentHashMap<String, Declaration>();
+    protected Map<String, Unit> unitsByPackage = new ConcurrentHashMap<String, Unit>();
     protected TypeParser typeParser;
     /** 
      * The type factory 
      * (<strong>should not be used while completing a declaration</strong>)
      */
     protected Unit typeFactory;
-    protected final Set<String> loadedPackages = new HashSet<String>();
-    protected final Map<String,LazyPackage> packagesByName = new HashMap<String,LazyPackage>();
+    protected final Set<String> loadedPackages = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+    protected final Map<String,LazyPackage> packagesByName = new ConcurrentHashMap<String,LazyPackage>();
     protected boolean packageDescriptorsNeedLoading = false;
     protected boolean isBootstrap;
     private ModuleManager moduleManager;
     protected Modules modules;
-    protected Map<String, ClassMirror> classMirrorCache = new HashMap<String, ClassMirror>();
+    protected Map<String, ClassMirror> classMirrorCache = new ConcurrentHashMap<String, ClassMirror>();
+    /** The cache keys of the class mirrors we looked up but did not find */
+    protected Set<String> missingClassMirrors = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
     protected boolean binaryCompatibilityErrorRaised = false;
     protected Timer timer;
     private Map<String,LazyPackage> modulelessPackages = new HashMap<String,LazyPackage>();
@@ -464,10 +469,36 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
         return true;
     }
 
+    /**
+     * For subclassers to invalidate cached class mirrors. Defaults to false.
+     * Always called while holding the model loader lock.
+     */
     public boolean searchAgain(ClassMirror cachedMirror, Module module, String name) {
         return false;
     }
     
+    private Boolean searchesAgain;
+    
+    /**
+     * True if this loader overrides searchAgain(ClassMirror, Module, String),
+     * in which case cached class mirrors can't be returned without taking
+     * the lock.
+     */
+    private boolean searchesAgain() {
+        Boolean result = searchesAgain;
+        if(result == null){
+            try {
+                result = getClass().getMethod("searchAgain", 
+                        ClassMirror.class, Module.class, String.class)
+                        .getDeclaringClass() != AbstractModelLoader.class;
+            } catch (NoSuchMethodException e) {
+                result = true;
+            }
+            searchesAgain = result;
+        }
+        return result;
+    }
+    
     public boolean searchAgain(Declaration cachedDeclaration, LazyPackage lazyPackage, String name) {
         return false;
     }
@@ -481,6 +512,13 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
      * @return a ClassMirror for the specified class, or null if not found.
      */
     public final ClassMirror lookupClassMirror(final Module theModule, final String theName) {
+        // fast path: found mirrors can be returned without taking the lock,
+        // unless we may have to search for them again
+        if(theModule != null && !searchesAgain()){
+            ClassMirror cachedMirror = classMirrorCache.get(cacheKeyByModule(theModule, theName));
+            if(cachedMirror != null)
+                return cachedMirror;
+        }
         return synchronizedCall(new Callable<ClassMirror>(){
             @Override
             public ClassMirror call() throws Exception {
@@ -517,16 +555,21 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
                         module = getLanguageModule();
                     }
                     String cacheKey = cacheKeyByModule(module, name);
-                    // we use containsKey to be able to cache null results
-                    if(classMirrorCache.containsKey(cacheKey)) {
-                        ClassMirror cachedMirror = classMirrorCache.get(cacheKey);
+                    ClassMirror cachedMirror = classMirrorCache.get(cacheKey);
+                    // we also cache null results
+                    if(cachedMirror != null || missingClassMirrors.contains(cacheKey)) {
                         if (! searchAgain(cachedMirror, module, name)) {
                             return cachedMirror;
                         }
                     }
                     ClassMirror mirror = lookupNewClassMirror(module, name);
-                    // we even cache null results
-                    classMirrorCache.put(cacheKey, mirror);
+                    if(mirror != null){
+                        classMirrorCache.put(cacheKey, mirror);
+                        missingClassMirrors.remove(cacheKey);
+                    }else{
+                        classMirrorCache.remove(cacheKey);
+                        missingClassMirrors.add(cacheKey);
+                    }
                     return mirror;
                 }finally{
                     timer.stopIgnore(TIMER_MODEL_LOADER_CATEGORY);
@@ -1237,14 +1280,22 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
             key = key + "$header";
         }
         if(type == ClassType.OBJECT){
-            typeDeclarationsByName.put(key, getByType(decls, Class.class));
-            valueDeclarationsByName.put(key, getByType(decls, Value.class));
+            putDeclaration(typeDeclarationsByName, key, getByType(decls, Class.class));
+            putDeclaration(valueDeclarationsByName, key, getByType(decls, Value.class));
         }else {
             Map<String, Declaration> declarationCache = getCacheByType(type, declarationType);
-            declarationCache.put(key, decl);
+            putDeclaration(declarationCache, key, decl);
         }
     }
     
+    private static void putDeclaration(Map<String, Declaration> declarationCache, String key, Declaration decl) {
+        // concurrent maps do not support null values
+        if(decl != null)
+            declarationCache.put(key, decl);
+        else
+            declarationCache.remove(key);
+    }
+    
     private Map<String, Declaration> getCacheByType(ClassType type, DeclarationType declarationType) {
         Map<String, Declaration> declarationCache = null;
         switch(type){
@@ -2127,6 +2178,9 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
     // Packages
     
     public LazyPackage findExistingPackage(final Module theModule, final String thePkgName) {
+        LazyPackage loadedPkg = findLoadedPackage(theModule, thePkgName);
+        if(loadedPkg != null)
+            return loadedPkg;
         return synchronizedCall(new Callable<LazyPackage>() {
             @Override
             public LazyPackage call() throws Exception {
@@ -2160,6 +2214,17 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
         return pkg;
     }
     
+    /**
+     * Returns the cached package if its descriptor is fully loaded, which
+     * we can check without holding the model loader lock.
+     */
+    private LazyPackage findLoadedPackage(Module module, String pkgName) {
+        LazyPackage pkg = findCachedPackage(module, JVMModuleUtil.quoteJavaKeywords(pkgName));
+        if(pkg != null && pkg.isDescriptorComplete())
+            return pkg;
+        return null;
+    }
+    
     private LazyPackage findCachedPackage(Module module, String quotedPkgName) {
         LazyPackage pkg = packagesByName.get(cacheKeyByModule(module, quotedPkgName));
         if(pkg != null){
@@ -2173,6 +2238,9 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
     }
 
     public LazyPackage findOrCreatePackage(final Module module, final String pkgName)  {
+        LazyPackage loadedPkg = findLoadedPackage(module, pkgName);
+        if(loadedPkg != null)
+            return loadedPkg;
         return synchronizedCall(new Callable<LazyPackage>() {
             @Override
             public LazyPackage call() throws Exception {
@@ -2226,6 +2294,15 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
     }
 
     private void loadPackageDescriptor(LazyPackage pkg) {
+        try{
+            loadPackageDescriptorInternal(pkg);
+        }finally{
+            if(pkg.isDescriptorLoaded())
+                pkg.setDescriptorComplete(true);
+        }
+    }
+    
+    private void loadPackageDescriptorInternal(LazyPackage pkg) {
         if(!pkg.getModule().isAvailable())
             lazyLoadModule(pkg.getModule());
         // Consider the descriptor loaded, we're not going to change our mind
@@ -6352,6 +6429,7 @@ public abstract class AbstractModelLoader implements ModelCompleter, ModelLoader
                 for (String keyToRemove : keysToRemove) {
                     classMirrorCache.remove(keyToRemove);
                 }
+                missingClassMirrors.clear();
             }
         });
     }
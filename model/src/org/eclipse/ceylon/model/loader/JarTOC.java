@@ -0,0 +1,505 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.loader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Table of contents of a jar, car or zip file, read straight from its
+ * central directory, without opening a {@link ZipFile} or creating an entry
+ * object per file.
+ *
+ * The entry names are kept as UTF-8 in a single sorted byte array, so that
+ * lookups and prefix queries are binary searches, and the TOC of an archive
+ * is shared by everyone who asks for it as long as the file keeps the same
+ * size and modification date. Archives we can't read that way, such as
+ * Zip64 ones, are read with {@link ZipFile} instead.
+ *
+ * We read the central directory into the heap rather than mapping it: a
+ * mapping can't be released before the garbage collector gets to it, and
+ * keeps the archive locked on Windows until then.
+ */
+public final class JarTOC {
+
+    private static final int MAX_CACHED = 1024;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int END_HEADER = 0x06054b50;
+    private static final int END_HEADER_SIZE = 22;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private static final ConcurrentMap<String, JarTOC> cache = new ConcurrentHashMap<String, JarTOC>();
+
+    private final File file;
+    private final long size;
+    private final long lastModified;
+    // entry names in UTF-8, sorted and concatenated
+    private final byte[] names;
+    // start of each name in names, plus the end of the last one
+    private final int[] nameOffsets;
+    // where to find the contents, or null if we need a ZipFile for that
+    private final long[] localHeaderOffsets;
+    private final int[] compressedSizes;
+    private final int[] uncompressedSizes;
+
+    private JarTOC(File file, long size, long lastModified,
+            byte[] names, int[] nameOffsets,
+            long[] localHeaderOffsets, int[] compressedSizes, int[] uncompressedSizes) {
+        this.file = file;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.names = names;
+        this.nameOffsets = nameOffsets;
+        this.localHeaderOffsets = localHeaderOffsets;
+        this.compressedSizes = compressedSizes;
+        this.uncompressedSizes = uncompressedSizes;
+    }
+
+    /**
+     * Returns the TOC of the given archive, which is only read again if the
+     * archive changed since the last time we were asked.
+     */
+    public static JarTOC get(File file) throws IOException {
+        String key = file.getAbsolutePath();
+        long size = file.length();
+        long lastModified = file.lastModified();
+        JarTOC toc = cache.get(key);
+        if(toc != null && toc.size == size && toc.lastModified == lastModified)
+            return toc;
+        toc = read(file, size, lastModified);
+        if(cache.size() >= MAX_CACHED)
+            cache.clear();
+        cache.put(key, toc);
+        return toc;
+    }
+
+    private static JarTOC read(File file, long size, long lastModified) throws IOException {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()){
+            JarTOC toc = readCentralDirectory(file, size, lastModified, channel);
+            if(toc != null)
+                return toc;
+        }catch(BufferUnderflowException | IndexOutOfBoundsException x){
+            // let ZipFile tell us what's wrong with it
+        }
+        return readWithZipFile(file, size, lastModified);
+    }
+
+    /**
+     * Returns null if this is not an archive we can read ourselves.
+     */
+    private static JarTOC readCentralDirectory(File file, long size, long lastModified, FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if(fileSize < END_HEADER_SIZE)
+            return null;
+        // the end header is followed by a comment of up to 64K
+        long tailStart = Math.max(0, fileSize - END_HEADER_SIZE - 0xFFFF);
+        ByteBuffer tail = read(channel, tailStart, (int)(fileSize - tailStart));
+        int end = -1;
+        for(int i = tail.limit() - END_HEADER_SIZE; i >= 0; i--){
+            if(tail.getInt(i) == END_HEADER
+                    && i + END_HEADER_SIZE + (tail.getShort(i + 20) & 0xFFFF) == tail.limit()){
+                end = i;
+                break;
+            }
+        }
+        if(end == -1)
+            return null;
+        int count = tail.getShort(end + 10) & 0xFFFF;
+        long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        if(count == 0xFFFF || directorySize == 0xFFFFFFFFL || directoryOffset == 0xFFFFFFFFL)
+            return null; // Zip64
+        // allow for data in front of the archive, such as a launcher script
+        long directoryStart = tailStart + end - directorySize;
+        long base = directoryStart - directoryOffset;
+        if(directoryStart < 0 || base < 0 || directorySize > Integer.MAX_VALUE)
+            return null;
+        ByteBuffer directory = read(channel, directoryStart, (int)directorySize);
+
+        final int[] nameStarts = new int[count];
+        final int[] nameLengths = new int[count];
+        long[] headerOffsets = new long[count];
+        int[] compressed = new int[count];
+        int[] uncompressed = new int[count];
+        int position = 0;
+        int namesLength = 0;
+        for(int i=0;i<count;i++){
+            if(directory.getInt(position) != CENTRAL_HEADER)
+                return null;
+            compressed[i] = directory.getInt(position + 20);
+            uncompressed[i] = directory.getInt(position + 24);
+            int nameLength = directory.getShort(position + 28) & 0xFFFF;
+            int extraLength = directory.getShort(position + 30) & 0xFFFF;
+            int commentLength = directory.getShort(position + 32) & 0xFFFF;
+            headerOffsets[i] = base + (directory.getInt(position + 42) & 0xFFFFFFFFL);
+            nameStarts[i] = position + CENTRAL_HEADER_SIZE;
+            nameLengths[i] = nameLength;
+            namesLength += nameLength;
+            position += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        // copy the names out of the directory so we don't keep it alive
+        final byte[] rawNames = new byte[namesLength];
+        int offset = 0;
+        for(int i=0;i<count;i++){
+            directory.position(nameStarts[i]);
+            directory.get(rawNames, offset, nameLengths[i]);
+            nameStarts[i] = offset;
+            offset += nameLengths[i];
+        }
+
+        Integer[] order = sortedOrder(count, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareBytes(rawNames, nameStarts[a], nameLengths[a], rawNames, nameStarts[b], nameLengths[b]);
+            }
+        });
+        // lay the names out in order, dropping duplicates, and keep the first
+        // entry of each name like ZipFile does
+        byte[] names = new byte[namesLength];
+        int[] nameOffsets = new int[count + 1];
+        long[] sortedHeaderOffsets = new long[count];
+        int[] sortedCompressed = new int[count];
+        int[] sortedUncompressed = new int[count];
+        int n = 0;
+        offset = 0;
+        for(int k=0;k<count;k++){
+            int i = order[k];
+            if(n > 0 && compareBytes(rawNames, nameStarts[i], nameLengths[i],
+                    names, nameOffsets[n-1], offset - nameOffsets[n-1]) == 0)
+                continue;
+            System.arraycopy(rawNames, nameStarts[i], names, offset, nameLengths[i]);
+            nameOffsets[n] = offset;
+            sortedHeaderOffsets[n] = headerOffsets[i];
+            sortedCompressed[n] = compressed[i];
+            sortedUncompressed[n] = uncompressed[i];
+            offset += nameLengths[i];
+            n++;
+        }
+        nameOffsets[n] = offset;
+        if(n != count){
+            nameOffsets = Arrays.copyOf(nameOffsets, n + 1);
+            sortedHeaderOffsets = Arrays.copyOf(sortedHeaderOffsets, n);
+            sortedCompressed = Arrays.copyOf(sortedCompressed, n);
+            sortedUncompressed = Arrays.copyOf(sortedUncompressed, n);
+        }
+        return new JarTOC(file, size, lastModified, names, nameOffsets,
+                sortedHeaderOffsets, sortedCompressed, sortedUncompressed);
+    }
+
+    private static JarTOC readWithZipFile(File file, long size, long lastModified) throws IOException {
+        List<byte[]> entries = new ArrayList<byte[]>();
+        try(ZipFile zf = new ZipFile(file)){
+            Enumeration<? extends ZipEntry> e = zf.entries();
+            while(e.hasMoreElements()){
+                entries.add(e.nextElement().getName().getBytes(UTF8));
+            }
+        }
+        final byte[][] rawNames = entries.toArray(new byte[entries.size()][]);
+        Integer[] order = sortedOrder(rawNames.length, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareBytes(rawNames[a], 0, rawNames[a].length, rawNames[b], 0, rawNames[b].length);
+            }
+        });
+        int namesLength = 0;
+        for(byte[] name : rawNames)
+            namesLength += name.length;
+        byte[] names = new byte[namesLength];
+        int[] nameOffsets = new int[rawNames.length + 1];
+        int n = 0;
+        int offset = 0;
+        for(int k=0;k<rawNames.length;k++){
+            byte[] name = rawNames[order[k]];
+            if(n > 0 && compareBytes(name, 0, name.length, names, nameOffsets[n-1], offset - nameOffsets[n-1]) == 0)
+                continue;
+            System.arraycopy(name, 0, names, offset, name.length);
+            nameOffsets[n++] = offset;
+            offset += name.length;
+        }
+        nameOffsets[n] = offset;
+        return new JarTOC(file, size, lastModified, names, Arrays.copyOf(nameOffsets, n + 1), null, null, null);
+    }
+
+    private static Integer[] sortedOrder(int count, Comparator<Integer> comparator) {
+        Integer[] order = new Integer[count];
+        for(int i=0;i<count;i++)
+            order[i] = i;
+        Arrays.sort(order, comparator);
+        return order;
+    }
+
+    /**
+     * Compares as unsigned bytes, which for UTF-8 is the same as comparing
+     * code points.
+     */
+    private static int compareBytes(byte[] a, int aStart, int aLength, byte[] b, int bStart, int bLength) {
+        int length = Math.min(aLength, bLength);
+        for(int i=0;i<length;i++){
+            int diff = (a[aStart + i] & 0xFF) - (b[bStart + i] & 0xFF);
+            if(diff != 0)
+                return diff;
+        }
+        return aLength - bLength;
+    }
+
+    /**
+     * Returns the index of the first name which is not less than the given
+     * one.
+     */
+    private int lowerBound(byte[] name) {
+        int low = 0;
+        int high = size();
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(compareBytes(names, nameOffsets[mid], nameOffsets[mid+1] - nameOffsets[mid], name, 0, name.length) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    private int indexOf(String name) {
+        byte[] bytes = name.getBytes(UTF8);
+        int i = lowerBound(bytes);
+        if(i < size()
+                && compareBytes(names, nameOffsets[i], nameOffsets[i+1] - nameOffsets[i], bytes, 0, bytes.length) == 0)
+            return i;
+        return -1;
+    }
+
+    private boolean startsWith(int i, byte[] prefix) {
+        int start = nameOffsets[i];
+        if(nameOffsets[i+1] - start < prefix.length)
+            return false;
+        for(int j=0;j<prefix.length;j++){
+            if(names[start + j] != prefix[j])
+                return false;
+        }
+        return true;
+    }
+
+    private String getName(int i) {
+        return new String(names, nameOffsets[i], nameOffsets[i+1] - nameOffsets[i], UTF8);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns true if the archive still has the size and modification date
+     * it had when we read this TOC.
+     */
+    public boolean isCurrent() {
+        return file.length() == size && file.lastModified() == lastModified;
+    }
+
+    /**
+     * The number of entries, folders included.
+     */
+    public int size() {
+        return nameOffsets.length - 1;
+    }
+
+    /**
+     * Returns true if there is an entry with that name. Folder names end with
+     * a slash.
+     */
+    public boolean contains(String name) {
+        return indexOf(name) != -1;
+    }
+
+    /**
+     * Returns the names of all the entries, in order.
+     */
+    public List<String> getNames() {
+        return getNames("");
+    }
+
+    /**
+     * Returns the names of the entries which start with the given prefix, in
+     * order.
+     */
+    public List<String> getNames(String prefix) {
+        byte[] bytes = prefix.getBytes(UTF8);
+        List<String> result = new ArrayList<String>();
+        for(int i = lowerBound(bytes); i < size() && startsWith(i, bytes); i++){
+            result.add(getName(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the names of the entries which start with the given prefix and
+     * end with the given suffix, in order.
+     */
+    public List<String> getNames(String prefix, String suffix) {
+        byte[] prefixBytes = prefix.getBytes(UTF8);
+        byte[] suffixBytes = suffix.getBytes(UTF8);
+        List<String> result = new ArrayList<String>();
+        for(int i = lowerBound(prefixBytes); i < size() && startsWith(i, prefixBytes); i++){
+            int length = nameOffsets[i+1] - nameOffsets[i];
+            if(length >= suffixBytes.length
+                    && compareBytes(names, nameOffsets[i+1] - suffixBytes.length, suffixBytes.length,
+                            suffixBytes, 0, suffixBytes.length) == 0)
+                result.add(getName(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the contents of the given entry, or null if there is no such
+     * entry. If the archive changed since we read this TOC, they are read
+     * with its current TOC instead.
+     */
+    public byte[] getContents(String name) throws IOException {
+        if(!isCurrent())
+            return get(file).getContents(name);
+        int i = indexOf(name);
+        if(i == -1)
+            return null;
+        if(localHeaderOffsets == null){
+            try(ZipFile zf = new ZipFile(file)){
+                ZipEntry entry = zf.getEntry(name);
+                if(entry == null)
+                    return null;
+                try(InputStream is = zf.getInputStream(entry)){
+                    return readFully(is, entry.getSize());
+                }
+            }
+        }
+        try(RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()){
+            ByteBuffer header = read(channel, localHeaderOffsets[i], LOCAL_HEADER_SIZE);
+            if(header.getInt(0) != LOCAL_HEADER)
+                throw new IOException("Invalid local header for entry "+name+" in "+file);
+            int method = header.getShort(8) & 0xFFFF;
+            int nameLength = header.getShort(26) & 0xFFFF;
+            int extraLength = header.getShort(28) & 0xFFFF;
+            long dataStart = localHeaderOffsets[i] + LOCAL_HEADER_SIZE + nameLength + extraLength;
+            switch(method){
+            case ZipEntry.STORED:
+                return read(channel, dataStart, uncompressedSizes[i]).array();
+            case ZipEntry.DEFLATED:
+                // inflating without the zlib wrapper needs an extra dummy byte
+                byte[] input = new byte[compressedSizes[i] + 1];
+                ByteBuffer data = ByteBuffer.wrap(input, 0, compressedSizes[i]);
+                readFully(channel, dataStart, data);
+                return inflate(input, uncompressedSizes[i], name);
+            default:
+                throw new IOException("Unsupported compression method "+method+" for entry "+name+" in "+file);
+            }
+        }
+    }
+
+    /**
+     * Returns the contents of the given entry as a stream, or null if there
+     * is no such entry.
+     */
+    public InputStream getInputStream(String name) throws IOException {
+        byte[] contents = getContents(name);
+        return contents != null ? new ByteArrayInputStream(contents) : null;
+    }
+
+    private byte[] inflate(byte[] input, int size, String name) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try{
+            inflater.setInput(input);
+            byte[] output = new byte[size];
+            int offset = 0;
+            while(offset < size){
+                int inflated = inflater.inflate(output, offset, size - offset);
+                if(inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                offset += inflated;
+            }
+            if(offset != size)
+                throw new IOException("Truncated entry "+name+" in "+file);
+            return output;
+        }catch(DataFormatException x){
+            throw new IOException("Invalid entry "+name+" in "+file, x);
+        }finally{
+            inflater.end();
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, position, buf);
+        return buf;
+    }
+
+    private static void readFully(FileChannel channel, long position, ByteBuffer buf) throws IOException {
+        while(buf.hasRemaining()){
+            int read = channel.read(buf, position);
+            if(read < 0)
+                throw new EOFException();
+            position += read;
+        }
+    }
+
+    /**
+     * Reads the given number of bytes, or everything up to the end of the
+     * stream if the size is unknown (-1).
+     */
+    private static byte[] readFully(InputStream is, long size) throws IOException {
+        if(size < 0){
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buf = new byte[8192];
+            int read;
+            while((read = is.read(buf)) >= 0){
+                os.write(buf, 0, read);
+            }
+            return os.toByteArray();
+        }
+        byte[] buf = new byte[(int)size];
+        int offset = 0;
+        int read;
+        while(offset != buf.length && (read = is.read(buf, offset, buf.length - offset)) >= 0){
+            offset += read;
+        }
+        if(offset != buf.length)
+            throw new EOFException();
+        return buf;
+    }
+
+    @Override
+    public String toString() {
+        return "JarTOC[file="+file+", entries="+size()+"]";
+    }
+}
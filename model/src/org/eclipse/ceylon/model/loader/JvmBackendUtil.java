@@ -34,7 +34,6 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -44,7 +43,6 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -424,43 +422,49 @@ public class JvmBackendUtil {
         // jarless modules don't have packages
         if(ModuleUtil.isMavenJarlessModule(jar))
             return packages;
-        try(ZipFile zf = new ZipFile(jar)){
-            Enumeration<? extends ZipEntry> entries = zf.entries();
-            while(entries.hasMoreElements()){
-                ZipEntry entry = entries.nextElement();
-                if(entry.isDirectory())
-                    continue;
-                String pkg = getPackageForPath(entry.getName(), pathFilter);
-                if(pkg != null)
-                    packages.add(pkg);
-            }
+        Collection<String> packagePaths = PackageListCache.get(jar);
+        if(packagePaths == null){
+            packagePaths = listPackagePaths(jar);
+            PackageListCache.put(jar, packagePaths);
+        }
+        for(String path : packagePaths){
+            String pkg = getPackageForPackagePath(path, pathFilter);
+            if(pkg != null)
+                packages.add(pkg);
         }
         return packages;
     }
 
-    private static String getPackageForPath(String path, PathFilter pathFilter) {
-        if(definesPackage(path)){
-            int sep = path.lastIndexOf('/');
-            if(sep != -1)
-                path = path.substring(0, sep);
-            else
-                path = "";// default package
-            String pkg = path;
-            // make sure we unquote any package part
-            pkg = pkg.replace("$", "");
-            String pathQuery;
-            if(path.isEmpty())
-                pathQuery = pkg;
-            else
-                pathQuery = pkg+"/";
-            if(pathFilter == null || pathFilter.accept(pathQuery)){
-                pkg = pkg.replace('/', '.');
-                return pkg;
+    private static SortedSet<String> listPackagePaths(File jar) throws IOException {
+        SortedSet<String> packagePaths = new TreeSet<String>();
+        for(String path : JarTOC.get(jar).getNames()){
+            if(path.endsWith("/"))
+                continue;
+            if(definesPackage(path)){
+                int sep = path.lastIndexOf('/');
+                if(sep != -1)
+                    path = path.substring(0, sep);
+                else
+                    path = "";// default package
+                // make sure we unquote any package part
+                packagePaths.add(path.replace("$", ""));
             }
         }
+        return packagePaths;
+    }
+
+    private static String getPackageForPackagePath(String pkg, PathFilter pathFilter) {
+        String pathQuery;
+        if(pkg.isEmpty())
+            pathQuery = pkg;
+        else
+            pathQuery = pkg+"/";
+        if(pathFilter == null || pathFilter.accept(pathQuery)){
+            return pkg.replace('/', '.');
+        }
         return null;
     }
-    
+
     public static boolean definesPackage(String path) {
         return path.toLowerCase().endsWith(".class")
             // skip Java 9 module descriptors
@@ -498,7 +502,7 @@ public class JvmBackendUtil {
         writeStaticMetamodel(ret, entries, jdkProvider, providedModules);
     }
 
-    private static void writeStaticMetamodel(Writer ret, List<ArtifactResult> entries, JdkProvider jdkProvider, Set<String> providedModules) throws IOException {
+    public static void writeStaticMetamodel(Writer ret, List<ArtifactResult> entries, JdkProvider jdkProvider, Set<String> providedModules) throws IOException {
         if(jdkProvider.isAlternateJdk()){
             for (String jdkModule : jdkProvider.getJDKModuleNames()) {
                 ret.write("="+jdkModule+"/"+jdkProvider.getJDKVersion()+"\n");
@@ -0,0 +1,185 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.loader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.ceylon.common.config.Repositories;
+
+/**
+ * Persistent cache of the packages contained in module artifacts, so that we
+ * don't have to go through the entries of every dependency jar each time we
+ * start the model loader.
+ *
+ * Entries are keyed by the absolute path of the artifact, and record its size
+ * and modification time: an entry is only used while the artifact still has
+ * both. Artifacts modified too recently for a rewrite to change their
+ * modification time are not cached. The cache files live in the
+ * <tt>.packages</tt> folder of the cache repository, which holds at most
+ * <tt>ceylon.cache.packages.max</tt> files (2048 by default): when it gets
+ * bigger the least recently used files are removed.
+ */
+final class PackageListCache {
+
+    private static final int MAGIC = 0xCE7C0002;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String CACHE_FOLDER = ".packages";
+    /**
+     * Some file systems only record modification times to the second, or
+     * to two seconds for FAT.
+     */
+    private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+    private static final String PROP_MAX_ENTRIES = "ceylon.cache.packages.max";
+    private static final int DEFAULT_MAX_ENTRIES = 2048;
+    /**
+     * The modification time of a cache file records when it was last used,
+     * but we only update it this often so that hits don't write to disk.
+     */
+    private static final long LAST_USE_RESOLUTION = 24 * 3600000L;
+
+    private PackageListCache() {}
+
+    /**
+     * Returns the cached package paths of the given artifact, or null if
+     * they are not cached.
+     */
+    static List<String> get(File artifact) {
+        File cacheFile = getCacheFile(artifact);
+        if(cacheFile == null || !cacheFile.isFile())
+            return null;
+        try(DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))){
+            if(is.readInt() != MAGIC
+                    || !is.readUTF().equals(artifact.getAbsolutePath())
+                    || is.readLong() != artifact.length()
+                    || is.readLong() != artifact.lastModified())
+                return null;
+            int count = is.readInt();
+            List<String> packagePaths = new ArrayList<String>(count);
+            for(int i=0;i<count;i++){
+                packagePaths.add(is.readUTF());
+            }
+            long now = System.currentTimeMillis();
+            if(now - cacheFile.lastModified() > LAST_USE_RESOLUTION)
+                cacheFile.setLastModified(now);
+            return packagePaths;
+        }catch(IOException x){
+            // corrupt or unreadable, we'll just overwrite it
+            return null;
+        }
+    }
+
+    /**
+     * Stores the package paths of the given artifact, if it can be cached.
+     * Failures are ignored, since this is only a cache.
+     */
+    static void put(File artifact, Collection<String> packagePaths) {
+        long lastModified = artifact.lastModified();
+        if(lastModified == 0
+                || System.currentTimeMillis() - lastModified < MODIFICATION_TIME_RESOLUTION)
+            return;
+        File cacheFile = getCacheFile(artifact);
+        if(cacheFile == null)
+            return;
+        File folder = cacheFile.getParentFile();
+        if(!folder.isDirectory() && !folder.mkdirs())
+            return;
+        File tmp = null;
+        try{
+            // write to a temporary file first so concurrent readers never see
+            // a partial entry
+            tmp = File.createTempFile(cacheFile.getName(), ".tmp", folder);
+            try(DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))){
+                os.writeInt(MAGIC);
+                os.writeUTF(artifact.getAbsolutePath());
+                os.writeLong(artifact.length());
+                os.writeLong(lastModified);
+                os.writeInt(packagePaths.size());
+                for(String path : packagePaths){
+                    os.writeUTF(path);
+                }
+            }
+            if(!tmp.renameTo(cacheFile)){
+                // some platforms won't rename over an existing file
+                cacheFile.delete();
+                tmp.renameTo(cacheFile);
+            }
+        }catch(IOException x){
+            // ignore
+        }finally{
+            if(tmp != null && tmp.exists())
+                tmp.delete();
+        }
+        prune(folder);
+    }
+
+    /**
+     * Removes the least recently used cache files if there are too many of
+     * them. We go down to three quarters of the limit, so that we don't have
+     * to do it again for the next few new artifacts.
+     */
+    private static void prune(File folder) {
+        int maxEntries = Integer.getInteger(PROP_MAX_ENTRIES, DEFAULT_MAX_ENTRIES);
+        File[] files = folder.listFiles();
+        if(files == null || files.length <= maxEntries)
+            return;
+        final long[] lastUses = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for(int i=0;i<files.length;i++){
+            lastUses[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        // most recently used first
+        Arrays.sort(order, new Comparator<Integer>(){
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(lastUses[b], lastUses[a]);
+            }
+        });
+        for(int i=maxEntries - maxEntries / 4;i<order.length;i++){
+            files[order[i]].delete();
+        }
+    }
+
+    private static File getCacheFile(File artifact) {
+        String key = hash(artifact.getAbsolutePath());
+        if(key == null)
+            return null;
+        return new File(new File(Repositories.get().getCacheRepoDir(), CACHE_FOLDER), key);
+    }
+
+    private static String hash(String path) {
+        try{
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(path.getBytes(UTF8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for(byte b : digest){
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        }catch(NoSuchAlgorithmException x){
+            return null;
+        }
+    }
+}
@@ -11,40 +11,45 @@ package org.eclipse.ceylon.model.loader.impl.reflect;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import org.eclipse.ceylon.common.FileUtil;
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
 import org.eclipse.ceylon.model.cmr.PathFilter;
 import org.eclipse.ceylon.model.loader.ContentAwareArtifactResult;
+import org.eclipse.ceylon.model.loader.JarTOC;
 import org.eclipse.ceylon.model.loader.JvmBackendUtil;
 import org.eclipse.ceylon.model.typechecker.model.Module;
 
 public class CachedTOCJars {
 
+    /**
+     * How long we trust the TOC of a jar before checking that the jar didn't
+     * change, so that we don't stat every jar for every class we look for.
+     */
+    private static final long VALIDATION_INTERVAL = 1000;
+
     /**
      * Jar file where we cache the TOC
      */
     static class CachedTOCJar {
         ArtifactResult artifact;
-        // contents, folders and packages are lazy-loaded
+        // contents and packages are lazy-loaded
         private boolean loaded = false;
-        // stores class file names with slashes
+        // stores class file names with slashes, for artifacts which know their contents
         Set<String> contents = new HashSet<String>();
-        // stores folder names with slashes
-        Set<String> folders = new HashSet<String>();
+        // the entries of the other ones
+        private JarTOC toc;
+        // when we last checked that the toc is current
+        private long validated;
         // stores package paths with slashes but not last one
         Set<String> packagePaths = new HashSet<String>();
         // not not attempt to load contents from this jar, just its TOC
@@ -56,8 +61,19 @@ public class CachedTOCJars {
         }
 
         private void load(){
-            if(loaded)
-                return;
+            if(loaded){
+                if(toc == null)
+                    return;
+                long now = System.currentTimeMillis();
+                if(now - validated < VALIDATION_INTERVAL)
+                    return;
+                validated = now;
+                if(toc.isCurrent())
+                    return;
+                // the jar changed, read it again
+                toc = null;
+                packagePaths = new HashSet<String>();
+            }
             if (artifact instanceof ContentAwareArtifactResult) {
                 // make sure we turn package names into paths
                 for(String pkg : ((ContentAwareArtifactResult) artifact).getPackages()){
@@ -67,29 +83,17 @@ public class CachedTOCJars {
             } else {
                 if (artifact.artifact() != null) {
                     try {
-                        ZipFile zf = new ZipFile(artifact.artifact());
-                        try{
-                            Enumeration<? extends ZipEntry> entries = zf.entries();
-                            while(entries.hasMoreElements()){
-                                ZipEntry entry = entries.nextElement();
-                                // only cache class files
-                                String name = entry.getName();
-                                if(accept(name)){
-                                    if(entry.isDirectory()){
-                                        folders.add(name);
-                                    }else{
-                                        if(JvmBackendUtil.definesPackage(name))
-                                            packagePaths.add(getPackageName(name));
-                                        contents.add(name);
-                                    }
-                                }
-                            }
-                        }finally{
-                            zf.close();
-                        }
+                        toc = JarTOC.get(artifact.artifact());
+                        validated = System.currentTimeMillis();
                     } catch (IOException e) {
                         throw new RuntimeException(e);
                     }
+                    for(String name : toc.getNames()){
+                        if(accept(name)
+                                && !isFolder(name)
+                                && JvmBackendUtil.definesPackage(name))
+                            packagePaths.add(getPackageName(name));
+                    }
                 }
             }
             loaded = true;
@@ -111,9 +115,19 @@ public class CachedTOCJars {
 
         boolean containsFile(String path){
             load();
+            if(toc != null)
+                return !isFolder(path) && accept(path) && toc.contains(path);
             return contents.contains(path);
         }
 
+        private boolean containsEntry(String path){
+            return accept(path) && toc.contains(path);
+        }
+
+        private boolean isFolder(String path) {
+            return path.endsWith("/");
+        }
+
         boolean containsPackage(String path) {
             load();
             return packagePaths.contains(path);
@@ -125,15 +139,11 @@ public class CachedTOCJars {
             }
             File jar = artifact.artifact();
             if (jar != null) {
+                load();
                 try {
-                    ZipFile zf = new ZipFile(jar);
-                    try{
-                        ZipEntry entry = zf.getEntry(path);
-                        if(entry != null)
-                            return loadFile(zf.getInputStream(entry), (int)entry.getSize());
-                    }finally{
-                        zf.close();
-                    }
+                    byte[] contents = toc.getContents(path);
+                    if(contents != null)
+                        return contents;
                 } catch (IOException e) {
                     throw new RuntimeException(e);
                 }
@@ -150,7 +160,7 @@ public class CachedTOCJars {
             if (jar != null) {
                 load();
                 try{
-                    if(contents.contains(path) || folders.contains(path)){
+                    if(containsEntry(path)){
                         String uripath = FileUtil.absoluteFile(jar).toURI().getSchemeSpecificPart();
                         return new URI("classpath", uripath + "!" + path, null);
                     }
@@ -162,20 +172,6 @@ public class CachedTOCJars {
             throw new RuntimeException("No file associated with artifact : " + artifact.toString());
         }
 
-        private byte[] loadFile(InputStream inputStream, int size) throws IOException {
-            byte[] buf = new byte[size];
-            try{
-                int read;
-                int offset = 0;
-                while(offset != size && (read = inputStream.read(buf, offset, size - offset)) >= 0){
-                    offset += read;
-                }
-                return buf;
-            }finally    {
-                inputStream.close();
-            }
-        }
-        
         private List<String> getFileNames(String path){
             if (artifact instanceof ContentAwareArtifactResult) {
                 return ((ContentAwareArtifactResult) artifact).getFileNames(path);
@@ -185,21 +181,13 @@ public class CachedTOCJars {
             if (jar != null) {
                 load();
                 // add a trailing / to only list members
-                boolean emptyPackage = path.isEmpty();
-                // only used for non-empty packages
-                path += "/";
+                String prefix = path.isEmpty() ? path : path + "/";
                 List<String> ret = new ArrayList<String>();
-                for(String name : contents){
-                    String part = null;
-                    if(!emptyPackage && name.startsWith(path)){
-                        // keep only the part after the package name
-                        part = name.substring(path.length());
-                    }else if(emptyPackage){
-                        // keep it all, we'll filter later those in subfolders
-                        part = name;
-                    }
+                for(String name : toc.getNames(prefix)){
                     // only keep those not in subfolders
-                    if(part != null && part.indexOf('/') == -1)
+                    if(!isFolder(name)
+                            && name.indexOf('/', prefix.length()) == -1
+                            && accept(name))
                         ret.add(name);
                 }
                 return ret;
@@ -28,7 +28,7 @@ public class AnnotationProxyClass extends Class {
 
     public final LazyInterface iface;
     private ModelCompleter completer;
-    private boolean isLoaded2;
+    private volatile boolean isLoaded2;
     private boolean isLoaded;
 
     public AnnotationProxyClass(ModelCompleter completer, LazyInterface iface) {
@@ -32,7 +32,7 @@ public class AnnotationProxyMethod extends Function {
 
     private ModelCompleter completer;
 
-    private boolean isLoaded2;
+    private volatile boolean isLoaded2;
 
     private boolean isLoaded;
 
@@ -50,7 +50,8 @@ public class LazyPackage extends Package {
     private List<Declaration> compiledDeclarations = new ArrayList<Declaration>(3);
     private Set<Unit> lazyUnits = new HashSet<Unit>();
     private Map<String,Declaration> cache = new HashMap<String,Declaration>();
-    private boolean descriptorLoaded;
+    private volatile boolean descriptorLoaded;
+    private volatile boolean descriptorComplete;
     
     public LazyPackage(AbstractModelLoader modelLoader){
         this.modelLoader = modelLoader;
@@ -316,4 +317,17 @@ public class LazyPackage extends Package {
     public boolean isDescriptorLoaded() {
         return descriptorLoaded;
     }
+
+    /**
+     * Marks the package descriptor as fully loaded, as opposed to
+     * {@link #setDescriptorLoaded(boolean)} which is set as soon as we start
+     * loading it.
+     */
+    public void setDescriptorComplete(boolean complete) {
+        this.descriptorComplete = complete;
+    }
+
+    public boolean isDescriptorComplete() {
+        return descriptorComplete;
+    }
 }
@@ -9,26 +9,77 @@
  ********************************************************************************/
 package org.eclipse.ceylon.model.typechecker.context;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.ceylon.model.typechecker.model.Type;
 import org.eclipse.ceylon.model.typechecker.model.TypeDeclaration;
 import org.eclipse.ceylon.model.typechecker.model.UnknownType;
 
+/**
+ * Caches the supertypes of types. By default the cache is
+ * unbounded, but it may be given a maximum number of types
+ * whose supertypes are cached, in which case types are 
+ * evicted by segmented LRU: types which have only been used
+ * once since they were cached are evicted first, least
+ * recently used first, so that a run of types which are 
+ * only used once doesn't evict the types which are used 
+ * over and over. Eviction is done per segment of the cache, 
+ * to avoid contention between threads using the cache.
+ * 
+ * Each module has its own cache, unless the cache is
+ * {@link #setShared(boolean) shared}, in which case every
+ * module uses the cache of its language module, which is
+ * released along with the modules it was shared by.
+ */
 public class TypeCache {
     
+    private static final int SEGMENTS = 16;
+    
     private static boolean cachingEnabledByDefault = true;
     
     public static void setEnabledByDefault(boolean enabled) {
         cachingEnabledByDefault = enabled;
     }
     
+    private static volatile int defaultMaximumSize = 0;
+    
+    /**
+     * Sets the maximum size of caches created from now on,
+     * or 0 for unbounded caches.
+     */
+    public static void setDefaultMaximumSize(int size) {
+        defaultMaximumSize = size;
+    }
+    
+    public static int getDefaultMaximumSize() {
+        return defaultMaximumSize;
+    }
+    
+    private static volatile boolean shared = false;
+    
+    /**
+     * Use a single cache for every module of a type 
+     * checker, instead of one cache per module.
+     */
+    public static void setShared(boolean share) {
+        shared = share;
+    }
+    
+    public static boolean isShared() {
+        return shared;
+    }
+    
     private static final ThreadLocal<Boolean> cachingEnabled = 
             new ThreadLocal<Boolean>();
     
@@ -93,11 +144,199 @@ public class TypeCache {
     public final static Type NULL_VALUE = new UnknownType(null).getType();
     // need ConcurrentHashMap even for the cache, otherwise get/put/containsKey can get info infinite loops
     // on concurrent operations
-    private final Map<Type, Map<TypeDeclaration, Type>> superTypes = 
-            new ConcurrentHashMap<Type, Map<TypeDeclaration, Type>>();
+    // (used when the cache is unbounded)
+    private final ConcurrentMap<Type, Map<TypeDeclaration, Type>> superTypes;
+    // (used when the cache is bounded)
+    private final Segment[] segments;
+    
+    private final int maximumSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    
+    public TypeCache() {
+        this(defaultMaximumSize);
+    }
+    
+    /**
+     * @param maximumSize the maximum number of types whose
+     *        supertypes are cached, or 0 for no maximum
+     */
+    public TypeCache(int maximumSize) {
+        this.maximumSize = Math.max(maximumSize, 0);
+        if (this.maximumSize == 0) {
+            superTypes = 
+                    new ConcurrentHashMap<Type, Map<TypeDeclaration, Type>>();
+            segments = null;
+        }
+        else {
+            superTypes = null;
+            int count = Math.min(SEGMENTS, this.maximumSize);
+            int capacity = (this.maximumSize + count - 1) / count;
+            segments = new Segment[count];
+            for (int i=0; i<count; i++) {
+                segments[i] = new Segment(capacity);
+            }
+        }
+    }
+    
+    /**
+     * A segment of a bounded cache. Types are cached on 
+     * probation, and become protected when they are used
+     * again. When there are too many protected types, the 
+     * least recently used one goes back on probation, and 
+     * when the segment grows beyond its capacity, the 
+     * type which has been on probation for longest is 
+     * evicted.
+     */
+    private final class Segment {
+        private final int capacity;
+        private final int protectedCapacity;
+        private final LinkedHashMap<Type, Map<TypeDeclaration, Type>> 
+        probation = new LinkedHashMap<Type, Map<TypeDeclaration, Type>>();
+        private final LinkedHashMap<Type, Map<TypeDeclaration, Type>> 
+        protectedTypes = new LinkedHashMap<Type, Map<TypeDeclaration, Type>>(16, 0.75f, true);
+        
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = 
+                    capacity - Math.max(1, capacity / 5);
+        }
+        
+        Map<TypeDeclaration, Type> get(Type type) {
+            Map<TypeDeclaration, Type> cache = 
+                    protectedTypes.get(type);
+            if (cache == null) {
+                cache = probation.remove(type);
+                if (cache != null) {
+                    protectedTypes.put(type, cache);
+                    if (protectedTypes.size() > protectedCapacity) {
+                        Entry<Type, Map<TypeDeclaration, Type>> eldest = 
+                                removeEldest(protectedTypes);
+                        probation.put(eldest.getKey(), eldest.getValue());
+                    }
+                }
+            }
+            return cache;
+        }
+        
+        void put(Type type, Map<TypeDeclaration, Type> cache) {
+            if (protectedTypes.containsKey(type)) {
+                protectedTypes.put(type, cache);
+                return;
+            }
+            probation.put(type, cache);
+            while (size() > capacity) {
+                removeEldest(probation.isEmpty() ? 
+                        protectedTypes : probation);
+                evictions.incrementAndGet();
+            }
+        }
+        
+        Map<TypeDeclaration, Type> remove(Type type) {
+            Map<TypeDeclaration, Type> cache = 
+                    protectedTypes.remove(type);
+            return cache == null ? probation.remove(type) : cache;
+        }
+        
+        void clear() {
+            probation.clear();
+            protectedTypes.clear();
+        }
+        
+        int size() {
+            return probation.size() + protectedTypes.size();
+        }
+        
+        void addEntriesTo(
+                List<Entry<Type, Map<TypeDeclaration, Type>>> result) {
+            result.addAll(probation.entrySet());
+            result.addAll(protectedTypes.entrySet());
+        }
+    }
+    
+    private static Entry<Type, Map<TypeDeclaration, Type>> removeEldest(
+            Map<Type, Map<TypeDeclaration, Type>> map) {
+        Iterator<Entry<Type, Map<TypeDeclaration, Type>>> iterator = 
+                map.entrySet().iterator();
+        Entry<Type, Map<TypeDeclaration, Type>> eldest = 
+                iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+    
+    private Segment segmentFor(Type producedType) {
+        int h = producedType.hashCode();
+        h ^= (h >>> 16);
+        return segments[(h & 0x7fffffff) % segments.length];
+    }
+    
+    private Map<TypeDeclaration, Type> getCache(Type producedType) {
+        if (segments == null) {
+            return superTypes.get(producedType);
+        }
+        Segment segment = segmentFor(producedType);
+        synchronized (segment) {
+            return segment.get(producedType);
+        }
+    }
+    
+    private Map<TypeDeclaration, Type> getOrCreateCache(Type producedType) {
+        // need ConcurrentHashMap even for the cache, otherwise get/put/containsKey can get info infinite loops
+        // on concurrent operations
+        if (segments == null) {
+            Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
+            if (cache == null) {
+                cache = new ConcurrentHashMap<TypeDeclaration, Type>();
+                // another thread may have got there first
+                Map<TypeDeclaration, Type> existing = 
+                        superTypes.putIfAbsent(producedType, cache);
+                if (existing != null) {
+                    cache = existing;
+                }
+            }
+            return cache;
+        }
+        Segment segment = segmentFor(producedType);
+        synchronized (segment) {
+            Map<TypeDeclaration, Type> cache = segment.get(producedType);
+            if (cache == null) {
+                cache = new ConcurrentHashMap<TypeDeclaration, Type>();
+                segment.put(producedType, cache);
+            }
+            return cache;
+        }
+    }
+    
+    private Map<TypeDeclaration, Type> removeCache(Type producedType) {
+        if (segments == null) {
+            return superTypes.remove(producedType);
+        }
+        Segment segment = segmentFor(producedType);
+        synchronized (segment) {
+            return segment.remove(producedType);
+        }
+    }
+    
+    /**
+     * A snapshot of the cached types and their supertypes.
+     */
+    private Collection<Entry<Type, Map<TypeDeclaration, Type>>> getCaches() {
+        if (segments == null) {
+            return superTypes.entrySet();
+        }
+        List<Entry<Type, Map<TypeDeclaration, Type>>> result = 
+                new ArrayList<Entry<Type, Map<TypeDeclaration, Type>>>();
+        for (Segment segment: segments) {
+            synchronized (segment) {
+                segment.addEntriesTo(result);
+            }
+        }
+        return result;
+    }
     
     public boolean containsKey(Type producedType, TypeDeclaration dec) {
-        Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
+        Map<TypeDeclaration, Type> cache = getCache(producedType);
         if (cache == null) {
             return false;
         }
@@ -111,11 +350,15 @@ public class TypeCache {
      * @return
      */
     public Type get(Type producedType, TypeDeclaration dec) {
-        Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
-        if (cache == null) {
-            return null;
+        Map<TypeDeclaration, Type> cache = getCache(producedType);
+        Type result = cache == null ? null : cache.get(dec);
+        if (result == null) {
+            misses.incrementAndGet();
+        }
+        else {
+            hits.incrementAndGet();
         }
-        return cache.get(dec);
+        return result;
     }
 
     /**
@@ -125,18 +368,20 @@ public class TypeCache {
      * @param superType
      */
     public void put(Type producedType, TypeDeclaration dec, Type superType) {
-        Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
-        if (cache == null) {
-            // need ConcurrentHashMap even for the cache, otherwise get/put/containsKey can get info infinite loops
-            // on concurrent operations
-            cache = new ConcurrentHashMap<TypeDeclaration, Type>();
-            superTypes.put(producedType, cache);
-        }
-        cache.put(dec, superType);
+        getOrCreateCache(producedType).put(dec, superType);
     }
 
     public void clear(){
-        superTypes.clear();
+        if (segments == null) {
+            superTypes.clear();
+        }
+        else {
+            for (Segment segment: segments) {
+                synchronized (segment) {
+                    segment.clear();
+                }
+            }
+        }
     }
 
     /**
@@ -144,22 +389,22 @@ public class TypeCache {
      * @param producedType
      */
     public void remove(Type producedType) {
-        Map<TypeDeclaration, Type> cache = superTypes.get(producedType);
+        Map<TypeDeclaration, Type> cache = removeCache(producedType);
         if (cache != null) {
             // help GC a bit
             cache.clear();
-            superTypes.remove(producedType);
         }
         int hashCode = producedType.hashCode();
         // also clear cached values
-        for(Map<TypeDeclaration, Type> cacheValues : superTypes.values()){
+        for(Entry<Type, Map<TypeDeclaration, Type>> entry : getCaches()){
+            Map<TypeDeclaration, Type> cacheValues = entry.getValue();
             Iterator<Entry<TypeDeclaration, Type>> iterator = cacheValues.entrySet().iterator();
             while(iterator.hasNext()){
-                Entry<TypeDeclaration, Type> entry = iterator.next();
-                if(entry.getValue() != NULL_VALUE
-                        && !entry.getValue().isUnknown()
-                        && entry.getValue().hashCode() == hashCode
-                        && entry.getValue().equals(producedType))
+                Entry<TypeDeclaration, Type> value = iterator.next();
+                if(value.getValue() != NULL_VALUE
+                        && !value.getValue().isUnknown()
+                        && value.getValue().hashCode() == hashCode
+                        && value.getValue().equals(producedType))
                     iterator.remove();
             }
         }
@@ -174,7 +419,7 @@ public class TypeCache {
     public void clearNullValues() {
         List<Type> cachesToremove = new LinkedList<Type>();
         for (Map.Entry<Type, Map<TypeDeclaration, Type>> entry: 
-                superTypes.entrySet()) {
+                getCaches()) {
             Map<TypeDeclaration, Type> cache = entry.getValue();
             if (cache == null) {
                 cachesToremove.add(entry.getKey());
@@ -194,7 +439,49 @@ public class TypeCache {
             }
         }
         for (Type toRemove: cachesToremove) {
-            superTypes.remove(toRemove);
+            removeCache(toRemove);
+        }
+    }
+    
+    /**
+     * The maximum number of types whose supertypes are
+     * cached, or 0 if the cache is unbounded.
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+    
+    /**
+     * The number of types whose supertypes are cached.
+     */
+    public int size() {
+        if (segments == null) {
+            return superTypes.size();
+        }
+        int size = 0;
+        for (Segment segment: segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
         }
+        return size;
+    }
+    
+    public long getHits() {
+        return hits.get();
+    }
+    
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    public long getEvictions() {
+        return evictions.get();
+    }
+    
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
     }
 }
@@ -15,6 +15,7 @@ import static org.eclipse.ceylon.model.typechecker.model.DeclarationFlags.ClassF
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 
 public class Class extends ClassOrInterface implements Functional {
@@ -508,8 +509,11 @@ public class Class extends ClassOrInterface implements Functional {
             return false;
         }
         else {
-            //TODO: optimize this to avoid walking the
-            //      same supertypes multiple times
+            Set<TypeDeclaration> inherited = 
+                    getInheritedDeclarations();
+            if (inherited!=null) {
+                return inherited.contains(dec);
+            }
             Type et = getExtendedType();
             if (et!=null 
                     && et.getDeclaration()
@@ -10,18 +10,24 @@
 package org.eclipse.ceylon.model.typechecker.model;
 
 import static java.util.Collections.emptyList;
+import static org.eclipse.ceylon.model.typechecker.model.ModelUtil.lookupMember;
+import static org.eclipse.ceylon.model.typechecker.model.ModelUtil.lookupMemberForBackend;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
+import org.eclipse.ceylon.common.Backends;
 
 public abstract class ClassOrInterface extends TypeDeclaration {
 
-    private List<Declaration> members = new ArrayList<Declaration>(3);
+    private MemberList members = new MemberList(3);
     private List<Annotation> annotations = new ArrayList<Annotation>(4);
     private List<TypeParameter> typeParameters = emptyList();
     private List<Declaration> overloads;
+    private MemberIndex memberIndex;
+    private InheritedDeclarations inheritedDeclarations;
     
     @Override
     public List<Annotation> getAnnotations() {
@@ -36,6 +42,44 @@ public abstract class ClassOrInterface extends TypeDeclaration {
     @Override
     public void addMember(Declaration declaration) {
         members.add(declaration);
+        if (memberIndex!=null) {
+            memberIndex.invalidate();
+        }
+    }
+    
+    @Override
+    public Declaration getDirectMember(String name, 
+            List<Type> signature, boolean variadic, 
+            boolean onlyExactMatches) {
+        return lookupMember(getMembersNamed(name), 
+                name, signature, variadic, 
+                onlyExactMatches);
+    }
+    
+    @Override
+    public Declaration getDirectMemberForBackend(String name, 
+            Backends backends) {
+        return lookupMemberForBackend(getMembersNamed(name), 
+                name, backends);
+    }
+    
+    /**
+     * The members with the given name, or all members if
+     * there are too few of them to be worth indexing.
+     */
+    private List<Declaration> getMembersNamed(String name) {
+        List<Declaration> members = getMembers();
+        if (members.size()<MemberIndex.THRESHOLD
+                || !(members instanceof MemberList)) {
+            return members;
+        }
+        MemberIndex index = memberIndex;
+        if (index==null) {
+            index = new MemberIndex();
+            memberIndex = index;
+        }
+        return index.getMembersNamed((MemberList) members, 
+                name);
     }
     
     @Override
@@ -230,6 +274,28 @@ public abstract class ClassOrInterface extends TypeDeclaration {
         ModelUtil.clearProducedTypeCache(this);
     }
     
+    /**
+     * The classes and interfaces this declaration inherits,
+     * as seen by {@link #inherits(TypeDeclaration)}, not 
+     * including itself, or null if its hierarchy can't be
+     * enumerated. Computed again when the supertypes of
+     * this declaration or of one of its supertypes have
+     * changed since it was last computed.
+     */
+    Set<TypeDeclaration> getInheritedDeclarations() {
+        return getInherited().declarations;
+    }
+    
+    InheritedDeclarations getInherited() {
+        InheritedDeclarations inherited = 
+                inheritedDeclarations;
+        if (inherited==null || !inherited.isValid()) {
+            inherited = new InheritedDeclarations(this);
+            inheritedDeclarations = inherited;
+        }
+        return inherited;
+    }
+    
     public void makeMembersDynamic() {
         for (Declaration m : getMembers()) {
             m.setDynamic(true);
@@ -0,0 +1,128 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.typechecker.model;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * The classes and interfaces inherited by a class or
+ * interface, so that {@link Class#inherits} and
+ * {@link Interface#inherits} don't have to walk the whole
+ * hierarchy each time they are called.
+ *
+ * The inherited declarations are those the recursive walk
+ * of these methods can match: the classes reached through
+ * extended types, and the interfaces reached through
+ * satisfied types of classes and interfaces. Aliases and
+ * constructors are walked through, but not included. 
+ * Every declaration walked through remembers the snapshot,
+ * and invalidates it when its own supertypes change, so a
+ * change only invalidates the snapshots of its subtypes.
+ */
+final class InheritedDeclarations {
+
+    private volatile boolean valid = true;
+    /**
+     * The inherited declarations, not including the class
+     * or interface itself, or null if the hierarchy has a
+     * declaration we can't walk, and the caller must fall
+     * back to the recursive walk
+     */
+    final Set<TypeDeclaration> declarations;
+
+    InheritedDeclarations(ClassOrInterface declaration) {
+        this.declarations = collect(declaration);
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+
+    private Set<TypeDeclaration> collect(
+            ClassOrInterface declaration) {
+        Set<TypeDeclaration> result =
+                new HashSet<TypeDeclaration>();
+        //declarations reached through extended types only
+        Deque<TypeDeclaration> extended =
+                new ArrayDeque<TypeDeclaration>();
+        //declarations reached through a satisfied type,
+        //where only interfaces can match
+        Deque<TypeDeclaration> satisfied =
+                new ArrayDeque<TypeDeclaration>();
+        Set<TypeDeclaration> seenExtended = identitySet();
+        Set<TypeDeclaration> seenSatisfied = identitySet();
+        seenExtended.add(declaration);
+        extended.add(declaration);
+        while (!extended.isEmpty() || !satisfied.isEmpty()) {
+            boolean viaSatisfiedType = extended.isEmpty();
+            TypeDeclaration td = viaSatisfiedType ?
+                    satisfied.poll() : extended.poll();
+            Deque<TypeDeclaration> next =
+                    viaSatisfiedType ? satisfied : extended;
+            Set<TypeDeclaration> seen =
+                    viaSatisfiedType ?
+                            seenSatisfied : seenExtended;
+            //before reading its supertypes, so that a
+            //change made meanwhile invalidates us
+            td.addInheritedBy(this);
+            if (td.isAlias() || td instanceof Constructor) {
+                add(td.getExtendedType(), next, seen);
+            }
+            else if (td instanceof Class) {
+                if (td!=declaration && !viaSatisfiedType) {
+                    result.add(td);
+                }
+                add(td.getExtendedType(), next, seen);
+                for (Type st: td.getSatisfiedTypes()) {
+                    add(st, satisfied, seenSatisfied);
+                }
+            }
+            else if (td instanceof Interface) {
+                if (td!=declaration) {
+                    result.add(td);
+                }
+                for (Type st: td.getSatisfiedTypes()) {
+                    add(st, satisfied, seenSatisfied);
+                }
+            }
+            else if (!(td instanceof UnknownType)) {
+                //Nothing, or something else
+                //that isn't a supertype
+                return null;
+            }
+        }
+        return result;
+    }
+
+    private static void add(Type type,
+            Deque<TypeDeclaration> queue,
+            Set<TypeDeclaration> seen) {
+        if (type!=null) {
+            TypeDeclaration td = type.getDeclaration();
+            if (td!=null && seen.add(td)) {
+                queue.add(td);
+            }
+        }
+    }
+
+    private static Set<TypeDeclaration> identitySet() {
+        return Collections.newSetFromMap(
+                new IdentityHashMap<TypeDeclaration,Boolean>());
+    }
+}
@@ -10,6 +10,7 @@
 package org.eclipse.ceylon.model.typechecker.model;
 
 import java.util.List;
+import java.util.Set;
 
 public class Interface extends ClassOrInterface {
 
@@ -121,9 +122,12 @@ public class Interface extends ClassOrInterface {
             return true;
         }
         else {
-            //TODO: optimize this to avoid walking the
-            //      same supertypes multiple times
             if (dec instanceof Interface) {
+                Set<TypeDeclaration> inherited = 
+                        getInheritedDeclarations();
+                if (inherited!=null) {
+                    return inherited.contains(dec);
+                }
                 List<Type> sts = getSatisfiedTypes();
                 for (int i=0, s=sts.size(); i<s; i++) {
                     Type st = sts.get(i);
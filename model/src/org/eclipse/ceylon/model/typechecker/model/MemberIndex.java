@@ -0,0 +1,96 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.typechecker.model;
+
+import static java.util.Collections.emptyList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A lazily built index from name to the members with that
+ * name, so that looking up a member of a scope with many
+ * members doesn't have to scan the whole member list.
+ * The members of each name are kept in the order they
+ * occur in the member list, so that
+ * {@link ModelUtil#lookupMember} gives the same result for
+ * them as for the whole list.
+ *
+ * The index is rebuilt when it has been
+ * {@link #invalidate() invalidated}, or when the member
+ * list it was built from has been modified.
+ */
+final class MemberIndex {
+
+    /**
+     * Member lists shorter than this are simply scanned.
+     */
+    static final int THRESHOLD = 16;
+
+    private MemberList indexedMembers;
+    private int indexedVersion;
+    private Map<String,List<Declaration>> membersByName;
+
+    /**
+     * Get the members with the given name, in the order
+     * they occur in the given list of members.
+     */
+    synchronized List<Declaration> getMembersNamed(
+            MemberList members, String name) {
+        if (!isCurrent(members)) {
+            index(members);
+        }
+        List<Declaration> named = membersByName.get(name);
+        if (named==null) {
+            return emptyList();
+        }
+        else {
+            return named;
+        }
+    }
+
+    synchronized void invalidate() {
+        indexedMembers = null;
+        membersByName = null;
+    }
+
+    private boolean isCurrent(MemberList members) {
+        //the member list is sometimes modified directly,
+        //instead of via addMember()
+        return membersByName!=null
+            && indexedMembers==members
+            && indexedVersion==members.getVersion();
+    }
+
+    private void index(MemberList members) {
+        int size = members.size();
+        Map<String,List<Declaration>> result =
+                new HashMap<String,List<Declaration>>
+                    (size*4/3+1);
+        for (int i=0; i<size; i++) {
+            Declaration d = members.get(i);
+            String name = d.getName();
+            if (name!=null) {
+                List<Declaration> named = result.get(name);
+                if (named==null) {
+                    named = new ArrayList<Declaration>(1);
+                    result.put(name, named);
+                }
+                named.add(d);
+            }
+        }
+        indexedMembers = members;
+        indexedVersion = members.getVersion();
+        membersByName = result;
+    }
+
+}
@@ -0,0 +1,81 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.typechecker.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The member list of a scope with a {@link MemberIndex}.
+ * The member list is sometimes modified directly, instead
+ * of via {@link Scope#addMember}, so the list counts every
+ * change made to it, including replacing an element, and
+ * the index is rebuilt when the count has changed.
+ */
+final class MemberList extends ArrayList<Declaration> {
+
+    private static final long serialVersionUID = 1L;
+
+    MemberList() {}
+
+    MemberList(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * A number which changes every time the list is
+     * modified.
+     */
+    int getVersion() {
+        //every structural modification, also via an
+        //iterator or a sublist, increments modCount
+        return modCount;
+    }
+
+    @Override
+    public Declaration set(int index, Declaration element) {
+        Declaration result = super.set(index, element);
+        modCount++;
+        return result;
+    }
+
+    @Override
+    public List<Declaration> subList(int fromIndex, int toIndex) {
+        //the sublists of an ArrayList don't call set()
+        final List<Declaration> list =
+                super.subList(fromIndex, toIndex);
+        return new AbstractList<Declaration>() {
+            @Override
+            public Declaration get(int index) {
+                return list.get(index);
+            }
+            @Override
+            public int size() {
+                return list.size();
+            }
+            @Override
+            public Declaration set(int index, Declaration element) {
+                Declaration result = list.set(index, element);
+                MemberList.this.modCount++;
+                return result;
+            }
+            @Override
+            public void add(int index, Declaration element) {
+                list.add(index, element);
+            }
+            @Override
+            public Declaration remove(int index) {
+                return list.remove(index);
+            }
+        };
+    }
+
+}
@@ -1144,7 +1144,8 @@ public class ModelUtil {
      * Helper method for eliminating duplicate types from
      * lists of types that form a union type, taking into
      * account that a subtype is a "duplicate" of its
-     * supertype.
+     * supertype. Pass a {@link UnionList} to build a union
+     * which may have many case types.
      */
     public static void addToUnion(List<Type> list, 
             Type pt) {
@@ -1175,6 +1176,11 @@ public class ModelUtil {
             }
         }
         else if (pt.isWellDefined()) {
+            if (list.size()>=UnionIndex.THRESHOLD
+                    && list instanceof UnionList) {
+                UnionIndex.get((UnionList) list).add(pt);
+                return;
+            }
             boolean add=true;
             for (int i=0; i<list.size(); i++) {
                 Type t = list.get(i);
@@ -2610,6 +2616,7 @@ public class ModelUtil {
     }
 
     public static void clearProducedTypeCache(TypeDeclaration decl) {
+        decl.supertypesChanged();
         Module module = getModule(decl);
         if(module != null){
             module.clearCache(decl);
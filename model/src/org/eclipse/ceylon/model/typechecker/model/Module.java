@@ -50,7 +50,7 @@ public class Module
             new ArrayList<Annotation>();
     private Unit unit;
     private String nameAsString;
-    private TypeCache cache = new TypeCache();
+    private volatile TypeCache cache;
     private String signature;
     private List<ModuleImport> overridenImports = null;
     private Backends nativeBackends = Backends.ANY;
@@ -436,7 +436,17 @@ public class Module
     }
 
     public TypeCache getCache(){
-        return cache;
+        Module owner = 
+                TypeCache.isShared() && languageModule != null ?
+                        languageModule : this;
+        TypeCache result = owner.cache;
+        if (result == null) {
+            //a cache another thread created at the same
+            //time is just dropped
+            result = new TypeCache();
+            owner.cache = result;
+        }
+        return result;
     }
 
     public void clearCache(TypeDeclaration declaration) {
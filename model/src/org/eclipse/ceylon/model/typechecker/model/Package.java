@@ -116,6 +116,7 @@ public class Package
     }
 
     private List<Declaration> members;
+    private final MemberIndex memberIndex = new MemberIndex();
     
     @Override
     public List<Declaration> getMembers() {
@@ -131,11 +132,25 @@ public class Package
     @Override
     public void addMember(Declaration declaration) {
         members=null;
+        memberIndex.invalidate();
+    }
+    
+    /**
+     * The members with the given name, or all members if
+     * there are too few of them to be worth indexing.
+     */
+    private List<Declaration> getMembersNamed(String name) {
+        List<Declaration> members = getMembers();
+        if (members.size()<MemberIndex.THRESHOLD
+                || !(members instanceof MemberList)) {
+            return members;
+        }
+        return memberIndex.getMembersNamed(
+                (MemberList) members, name);
     }
     
     private List<Declaration> getMembersInternal() {
-        List<Declaration> result = 
-                new ArrayList<Declaration>();
+        List<Declaration> result = new MemberList();
         for (Unit unit: units) {
             for (Declaration d: unit.getDeclarations()) {
                 if (d.getContainer().equals(this)) {
@@ -203,14 +218,14 @@ public class Package
     @Override
     public Declaration getDirectMember(String name, 
             List<Type> signature, boolean variadic) {
-        return lookupMember(getMembers(), 
+        return lookupMember(getMembersNamed(name), 
                 name, signature, variadic);
     }
 
     @Override
     public Declaration getDirectMemberForBackend(String name, 
             Backends backends) {
-        return lookupMemberForBackend(getMembers(), 
+        return lookupMemberForBackend(getMembersNamed(name), 
                 name, backends);
     }
 
@@ -1500,7 +1500,7 @@ public class Type extends Reference {
         else if (isUnion()) {
             List<Type> caseTypes = getCaseTypes();
             List<Type> types = 
-                    new ArrayList<Type>
+                    new UnionList
                         (caseTypes.size());
             for (Type ct: caseTypes) {
                 addToUnion(types, ct.eliminateNull());
@@ -1521,7 +1521,7 @@ public class Type extends Reference {
         else if (isUnion()) {
             List<Type> caseTypes = getCaseTypes();
             List<Type> types = 
-                    new ArrayList<Type>
+                    new UnionList
                         (caseTypes.size());
             for (Type ct: caseTypes) {
                 addToUnion(types, ct.shallowMinus(pt));
@@ -1545,7 +1545,7 @@ public class Type extends Reference {
                 List<Type> cts = 
                         ucts.getCaseTypes();
                 List<Type> types = 
-                        new ArrayList<Type>
+                        new UnionList
                             (cts.size());
                 for (Type ct: cts) {
                     addToUnion(types, ct.minus(pt));
@@ -2402,7 +2402,7 @@ public class Type extends Reference {
             Unit unit = getDeclaration().getUnit();
             if (tp.isCovariant()) {
                 List<Type> union = 
-                        new ArrayList<Type>
+                        new UnionList
                             (caseTypes.size());
                 for (Type pt: caseTypes) {
                     if (pt==null) {
@@ -2449,7 +2449,7 @@ public class Type extends Reference {
                 //invariant is harder, need to account for
                 //use site variances!
                 List<Type> union = 
-                        new ArrayList<Type>
+                        new UnionList
                             (caseTypes.size());
                 List<Type> intersection = 
                         new ArrayList<Type>
@@ -3797,7 +3797,7 @@ public class Type extends Reference {
                 Unit unit, Type tc) {
             if (sub.isUnion()) {
                 List<Type> list =
-                        new ArrayList<Type>();
+                        new UnionList();
                 for (Type ct: sub.getCaseTypes()) {
                     addToUnion(list, 
                             substituteIntoTypeConstructors(
@@ -4173,7 +4173,7 @@ public class Type extends Reference {
                 //an enumerated type with cases U and V, 
                 //then the cases of X are the union U|V|B
                 List<Type> list = 
-                        new ArrayList<Type>
+                        new UnionList
                             (cases.size());
                 for (Type type: cases) {
                     addToUnion(list, 
@@ -4457,7 +4457,7 @@ public class Type extends Reference {
             List<Type> caseTypes = 
                     getCaseTypes();
             List<Type> list = 
-                    new ArrayList<Type>
+                    new UnionList
                         (caseTypes.size());
             for (Type pt: caseTypes) {
                 addToUnion(list, 
@@ -5215,7 +5215,7 @@ public class Type extends Reference {
         }
         else if (type.isUnion()) {
             List<Type> list = 
-                    new ArrayList<Type>();
+                    new UnionList();
             for (Type ut: type.getCaseTypes()) {
                 addToUnion(list, 
                         applyVarianceOverrides(ut, 
@@ -18,7 +18,9 @@ import static org.eclipse.ceylon.model.typechecker.model.ModelUtil.isResolvable;
 import static org.eclipse.ceylon.model.typechecker.model.ModelUtil.strictlyBetterMatch;
 import static org.eclipse.ceylon.model.typechecker.model.ModelUtil.typeArgumentsAsMap;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -32,13 +34,21 @@ public abstract class TypeDeclaration extends Declaration
     private Type extendedType;
     private List<Type> satisfiedTypes = 
             needsSatisfiedTypes() ? 
-                    new ArrayList<Type>(3) : 
+                    new SatisfiedTypes() : 
                     Collections.<Type>emptyList();
     private List<Type> caseTypes = null;
     private Type selfType;
     private List<Type> brokenSupertypes = null; // delayed allocation
     private boolean inconsistentType;
     private boolean sealed;
+    /**
+     * The inherited declarations cached by subtypes, and 
+     * by this declaration itself, which were computed by 
+     * walking through this declaration, and which must be
+     * computed again when its supertypes change
+     */
+    private List<WeakReference<InheritedDeclarations>> 
+    inheritedBy;
     private List<TypedDeclaration> caseValues;
     private String samName;
 
@@ -78,7 +88,10 @@ public abstract class TypeDeclaration extends Declaration
     @Override
     protected TypeDeclaration clone() {
         try {
-            return (TypeDeclaration) super.clone();
+            TypeDeclaration clone = 
+                    (TypeDeclaration) super.clone();
+            clone.inheritedBy = null;
+            return clone;
         } 
         catch (CloneNotSupportedException e) {
             throw new RuntimeException(e);
@@ -117,6 +130,7 @@ public abstract class TypeDeclaration extends Declaration
     
     public void setExtendedType(Type extendedType) {
         this.extendedType = extendedType;
+        supertypesChanged();
     }
     
     public List<Type> getSatisfiedTypes() {
@@ -125,6 +139,140 @@ public abstract class TypeDeclaration extends Declaration
     
     public void setSatisfiedTypes(List<Type> satisfiedTypes) {
         this.satisfiedTypes = satisfiedTypes;
+        supertypesChanged();
+    }
+    
+    /**
+     * Record that the given inherited declarations were
+     * computed by walking through this declaration.
+     */
+    synchronized void addInheritedBy(
+            InheritedDeclarations inherited) {
+        List<WeakReference<InheritedDeclarations>> list = 
+                inheritedBy;
+        if (list==null) {
+            list = new ArrayList
+                    <WeakReference<InheritedDeclarations>>(2);
+            inheritedBy = list;
+        }
+        else {
+            int size = list.size();
+            if (size>=8 && (size & (size-1))==0) {
+                //forget the ones which were dropped, each
+                //time the list doubles
+                for (int i=size-1; i>=0; i--) {
+                    if (list.get(i).get()==null) {
+                        list.remove(i);
+                    }
+                }
+            }
+        }
+        list.add(new WeakReference<InheritedDeclarations>
+                (inherited));
+    }
+    
+    /**
+     * Invalidate the inherited declarations computed by
+     * walking through this declaration, that is, those of
+     * its subtypes, since its extended or satisfied types 
+     * changed.
+     */
+    void supertypesChanged() {
+        List<WeakReference<InheritedDeclarations>> list;
+        synchronized (this) {
+            list = inheritedBy;
+            inheritedBy = null;
+        }
+        if (list!=null) {
+            for (int i=0, s=list.size(); i<s; i++) {
+                InheritedDeclarations inherited = 
+                        list.get(i).get();
+                if (inherited!=null) {
+                    inherited.invalidate();
+                }
+            }
+        }
+    }
+    
+    /**
+     * The default list of satisfied types, which is filled 
+     * in place by the model loader, and which records that
+     * the supertypes changed when it is modified.
+     */
+    private final class SatisfiedTypes 
+            extends ArrayList<Type> {
+        private static final long serialVersionUID = 1L;
+        
+        SatisfiedTypes() {
+            super(3);
+        }
+        
+        @Override
+        public boolean add(Type type) {
+            supertypesChanged();
+            return super.add(type);
+        }
+        
+        @Override
+        public void add(int index, Type type) {
+            supertypesChanged();
+            super.add(index, type);
+        }
+        
+        @Override
+        public boolean addAll(Collection<? extends Type> types) {
+            supertypesChanged();
+            return super.addAll(types);
+        }
+        
+        @Override
+        public boolean addAll(int index, 
+                Collection<? extends Type> types) {
+            supertypesChanged();
+            return super.addAll(index, types);
+        }
+        
+        @Override
+        public Type set(int index, Type type) {
+            supertypesChanged();
+            return super.set(index, type);
+        }
+        
+        @Override
+        public Type remove(int index) {
+            supertypesChanged();
+            return super.remove(index);
+        }
+        
+        @Override
+        public boolean remove(Object type) {
+            supertypesChanged();
+            return super.remove(type);
+        }
+        
+        @Override
+        public boolean removeAll(Collection<?> types) {
+            supertypesChanged();
+            return super.removeAll(types);
+        }
+        
+        @Override
+        public boolean retainAll(Collection<?> types) {
+            supertypesChanged();
+            return super.retainAll(types);
+        }
+        
+        @Override
+        protected void removeRange(int from, int to) {
+            supertypesChanged();
+            super.removeRange(from, to);
+        }
+        
+        @Override
+        public void clear() {
+            supertypesChanged();
+            super.clear();
+        }
     }
     
     public List<Type> getCaseTypes() {
@@ -0,0 +1,292 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.typechecker.model;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the case types of a union being built by
+ * {@link ModelUtil#addToUnion}, so that adding a type to a
+ * union with many case types doesn't have to compare it
+ * with every one of them.
+ *
+ * A class or interface type can only be a subtype of
+ * another class or interface type if its declaration
+ * inherits the declaration of the other type. So case
+ * types are bucketed by their declaration, and by every
+ * declaration their declaration inherits, and a new type
+ * is only compared with the case types in the buckets of
+ * the declarations it inherits, of its own declaration,
+ * and with the case types which aren't simple class or
+ * interface types. The types are compared in the order
+ * they occur in the list, so that the result is the same
+ * as comparing the new type with every case type.
+ *
+ * Each thread keeps the index of the last union it built
+ * with enough case types. It is rebuilt when the 
+ * {@link UnionList} it was built from was changed other 
+ * than by the index, or when the inherited declarations of
+ * one of the declarations it buckets were invalidated.
+ */
+final class UnionIndex {
+
+    /**
+     * Lists shorter than this are simply scanned.
+     */
+    static final int THRESHOLD = 16;
+
+    private static final ThreadLocal<SoftReference<UnionIndex>>
+    current = new ThreadLocal<SoftReference<UnionIndex>>();
+
+    /**
+     * Get an index of the given list of types, which has
+     * already been built by {@code addToUnion()}.
+     */
+    static UnionIndex get(UnionList list) {
+        SoftReference<UnionIndex> ref = current.get();
+        UnionIndex index = ref==null ? null : ref.get();
+        if (index==null || !index.isCurrent(list)) {
+            index = new UnionIndex(list);
+            current.set(new SoftReference<UnionIndex>(index));
+        }
+        return index;
+    }
+
+    private static final class Member {
+        final Type type;
+        final int sequence;
+        boolean removed;
+        Member(Type type, int sequence) {
+            this.type = type;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Member> ORDER =
+            new Comparator<Member>() {
+        @Override
+        public int compare(Member x, Member y) {
+            return x.sequence<y.sequence ? -1 :
+                (x.sequence==y.sequence ? 0 : 1);
+        }
+    };
+
+    private final UnionList list;
+    /**
+     * The inherited declarations the buckets were built 
+     * from
+     */
+    private final Set<InheritedDeclarations> inherited =
+            new HashSet<InheritedDeclarations>();
+    /**
+     * The case types, in the order they occur in the list,
+     * including removed ones
+     */
+    private final List<Member> members =
+            new ArrayList<Member>();
+    /**
+     * The simple case types of each declaration
+     */
+    private final Map<TypeDeclaration,List<Member>> byDeclaration =
+            new HashMap<TypeDeclaration,List<Member>>();
+    /**
+     * The simple case types whose declaration inherits
+     * each declaration, or is that declaration
+     */
+    private final Map<TypeDeclaration,List<Member>> byInherited =
+            new HashMap<TypeDeclaration,List<Member>>();
+    /**
+     * The case types which aren't simple class or
+     * interface types
+     */
+    private final List<Member> others =
+            new ArrayList<Member>();
+    /**
+     * The version of the list when the index last changed 
+     * it
+     */
+    private int version;
+    private int sequence;
+
+    private UnionIndex(UnionList list) {
+        this.list = list;
+        for (int i=0, s=list.size(); i<s; i++) {
+            index(list.get(i));
+        }
+        version = list.getVersion();
+    }
+
+    private boolean isCurrent(UnionList list) {
+        if (this.list!=list
+                || version!=list.getVersion()) {
+            return false;
+        }
+        for (InheritedDeclarations id: inherited) {
+            if (!id.isValid()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The declaration of the given type, if it is a class
+     * or interface type which can only be a subtype or a
+     * supertype of the types whose declarations inherit
+     * or are inherited by its declaration.
+     */
+    private static ClassOrInterface simpleDeclaration(Type type) {
+        if (type==null) {
+            return null;
+        }
+        TypeDeclaration dec = type.getDeclaration();
+        //eliminate class and interface aliases,
+        //just like Type.isSubtypeOf()
+        while (dec!=null && dec.isAlias()
+                && !(dec instanceof TypeAlias)) {
+            Type et = dec.getExtendedType();
+            if (et==null) {
+                break;
+            }
+            dec = et.getDeclaration();
+        }
+        if (!(dec instanceof ClassOrInterface)
+                || dec.isAlias()
+                //these are inherited by declarations
+                //which don't list them as supertypes
+                || dec.isAnything()
+                || dec.isObject()
+                || dec.isNull()
+                //a subtype of every type
+                || type.isExactlyNothing()) {
+            return null;
+        }
+        ClassOrInterface ci = (ClassOrInterface) dec;
+        return ci.getInheritedDeclarations()==null ? null : ci;
+    }
+
+    private Member index(Type type) {
+        Member member = new Member(type, sequence++);
+        members.add(member);
+        ClassOrInterface dec = simpleDeclaration(type);
+        if (dec==null) {
+            others.add(member);
+        }
+        else {
+            put(byDeclaration, dec, member);
+            put(byInherited, dec, member);
+            InheritedDeclarations id = dec.getInherited();
+            inherited.add(id);
+            for (TypeDeclaration td: id.declarations) {
+                put(byInherited, td, member);
+            }
+        }
+        return member;
+    }
+
+    private static void put(Map<TypeDeclaration,List<Member>> map,
+            TypeDeclaration dec, Member member) {
+        List<Member> bucket = map.get(dec);
+        if (bucket==null) {
+            bucket = new ArrayList<Member>(2);
+            map.put(dec, bucket);
+        }
+        bucket.add(member);
+    }
+
+    /**
+     * Add the given well-defined type to the list, unless
+     * it is a subtype of one of the types in the list, and
+     * remove the types in the list which are subtypes of
+     * it.
+     */
+    void add(Type pt) {
+        for (Member member: candidates(pt)) {
+            if (member.removed) {
+                continue;
+            }
+            Type t = member.type;
+            if (pt.isSubtypeOf(t)) {
+                return;
+            }
+            else if (pt.isSupertypeOf(t)) {
+                remove(member);
+            }
+        }
+        list.add(pt);
+        index(pt);
+        version = list.getVersion();
+    }
+
+    /**
+     * The case types the given type needs to be compared
+     * with, in the order they occur in the list.
+     */
+    private List<Member> candidates(Type pt) {
+        ClassOrInterface dec = simpleDeclaration(pt);
+        if (dec==null) {
+            return new ArrayList<Member>(members);
+        }
+        List<Member> result = new ArrayList<Member>();
+        //types which may be supertypes of the new type
+        addAll(result, byDeclaration.get(dec));
+        for (TypeDeclaration inherited:
+                dec.getInheritedDeclarations()) {
+            addAll(result, byDeclaration.get(inherited));
+        }
+        //types which may be subtypes of the new type
+        addAll(result, byInherited.get(dec));
+        addAll(result, others);
+        Collections.sort(result, ORDER);
+        //remove the duplicates
+        List<Member> distinct = 
+                new ArrayList<Member>(result.size());
+        Member previous = null;
+        for (int i=0, s=result.size(); i<s; i++) {
+            Member member = result.get(i);
+            if (member!=previous) {
+                distinct.add(member);
+            }
+            previous = member;
+        }
+        return distinct;
+    }
+
+    private static void addAll(List<Member> result,
+            List<Member> bucket) {
+        if (bucket!=null) {
+            for (int i=0, s=bucket.size(); i<s; i++) {
+                Member member = bucket.get(i);
+                if (!member.removed) {
+                    result.add(member);
+                }
+            }
+        }
+    }
+
+    private void remove(Member member) {
+        member.removed = true;
+        for (int i=0, s=list.size(); i<s; i++) {
+            if (list.get(i)==member.type) {
+                list.remove(i);
+                break;
+            }
+        }
+        version = list.getVersion();
+    }
+}
@@ -0,0 +1,82 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.typechecker.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of the case types of a union being built by
+ * {@link ModelUtil#addToUnion}. Once such a list has many
+ * case types, addToUnion() keeps a {@link UnionIndex} of
+ * them, instead of comparing a new type with every one of
+ * them. The list counts every change made to it, including
+ * replacing an element, and the index is rebuilt when the 
+ * count has changed.
+ */
+public final class UnionList extends ArrayList<Type> {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnionList() {}
+
+    public UnionList(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * A number which changes every time the list is
+     * modified.
+     */
+    int getVersion() {
+        //every structural modification, also via an
+        //iterator or a sublist, increments modCount
+        return modCount;
+    }
+
+    @Override
+    public Type set(int index, Type element) {
+        Type result = super.set(index, element);
+        modCount++;
+        return result;
+    }
+
+    @Override
+    public List<Type> subList(int fromIndex, int toIndex) {
+        //the sublists of an ArrayList don't call set()
+        final List<Type> list =
+                super.subList(fromIndex, toIndex);
+        return new AbstractList<Type>() {
+            @Override
+            public Type get(int index) {
+                return list.get(index);
+            }
+            @Override
+            public int size() {
+                return list.size();
+            }
+            @Override
+            public Type set(int index, Type element) {
+                Type result = list.set(index, element);
+                UnionList.this.modCount++;
+                return result;
+            }
+            @Override
+            public void add(int index, Type element) {
+                list.add(index, element);
+            }
+            @Override
+            public Type remove(int index) {
+                return list.remove(index);
+            }
+        };
+    }
+}
@@ -1617,7 +1617,7 @@ public class Unit implements LanguageModuleProvider, ImportScope {
                 //tuple types are created with unsimplified
                 //unions
                 Unit unit = et.getDeclaration().getUnit();
-                List<Type> types = new ArrayList<Type>();
+                List<Type> types = new UnionList();
                 for (Type ct: et.getCaseTypes()) {
                     addToUnion(types, ct);
                 }
@@ -1784,7 +1784,7 @@ public class Unit implements LanguageModuleProvider, ImportScope {
             if (type.isUnion()) {
                 List<Type> cts = type.getCaseTypes();
                 List<Type> list = 
-                        new ArrayList<Type>
+                        new UnionList
                             (cts.size()+1);
                 for (Type ct: cts) {
                     addToUnion(list, 
@@ -9,7 +9,13 @@
  ********************************************************************************/
 package org.eclipse.ceylon.model.test;
 
+import org.eclipse.ceylon.model.test.loader.JarTOCTest;
+import org.eclipse.ceylon.model.test.loader.PackageListCacheTest;
 import org.eclipse.ceylon.model.test.loader.impl.reflect.CachedTOCJarsTest;
+import org.eclipse.ceylon.model.test.typechecker.context.TypeCacheTest;
+import org.eclipse.ceylon.model.test.typechecker.model.InheritanceTest;
+import org.eclipse.ceylon.model.test.typechecker.model.MemberLookupTest;
+import org.eclipse.ceylon.model.test.typechecker.model.UnionTest;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
@@ -18,7 +24,13 @@ import org.junit.runners.Suite.SuiteClasses;
 @SuiteClasses({
     CachedTOCJarsTest.class,
     ClassFileUtilTest.class,
-    OsgiVersionTests.class
+    InheritanceTest.class,
+    JarTOCTest.class,
+    MemberLookupTest.class,
+    OsgiVersionTests.class,
+    PackageListCacheTest.class,
+    TypeCacheTest.class,
+    UnionTest.class
 })
 public class AllModelTests {
 }
@@ -0,0 +1,132 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.test.loader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.model.loader.JarTOC;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that we read the entries of archives like ZipFile does.
+ */
+public class JarTOCTest {
+
+    private File dir;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("jar-toc", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void cleanup() {
+        FileUtil.delete(dir);
+    }
+
+    private static void writeJar(OutputStream os, boolean stored, String... entries) throws IOException {
+        try (ZipOutputStream zos = new ZipOutputStream(os)) {
+            for (String entry : entries) {
+                byte[] contents = entry.getBytes("UTF-8");
+                ZipEntry zipEntry = new ZipEntry(entry);
+                if (stored) {
+                    CRC32 crc = new CRC32();
+                    crc.update(contents);
+                    zipEntry.setMethod(ZipEntry.STORED);
+                    zipEntry.setSize(contents.length);
+                    zipEntry.setCrc(crc.getValue());
+                }
+                zos.putNextEntry(zipEntry);
+                zos.write(contents);
+                zos.closeEntry();
+            }
+        }
+    }
+
+    private File writeJar(String name, boolean stored, String... entries) throws IOException {
+        File jar = new File(dir, name);
+        writeJar(new FileOutputStream(jar), stored, entries);
+        return jar;
+    }
+
+    @Test
+    public void testEntries() throws IOException {
+        File jar = writeJar("a.jar", false, "b/B.class", "a/", "a/A.class", "a/b/AB.class", "été.txt", "Top.class");
+        JarTOC toc = JarTOC.get(jar);
+        Assert.assertEquals(6, toc.size());
+        Assert.assertEquals(Arrays.asList("Top.class", "a/", "a/A.class", "a/b/AB.class", "b/B.class", "été.txt"),
+                toc.getNames());
+        Assert.assertTrue(toc.contains("a/"));
+        Assert.assertTrue(toc.contains("été.txt"));
+        Assert.assertFalse(toc.contains("a"));
+        Assert.assertFalse(toc.contains("c/C.class"));
+        Assert.assertEquals(Arrays.asList("a/", "a/A.class", "a/b/AB.class"), toc.getNames("a/"));
+        Assert.assertEquals(Arrays.asList("a/b/AB.class"), toc.getNames("a/", "B.class"));
+        Assert.assertEquals(Arrays.asList("Top.class", "a/A.class", "a/b/AB.class", "b/B.class"), toc.getNames("", ".class"));
+        Assert.assertTrue(toc.getNames("c/").isEmpty());
+    }
+
+    @Test
+    public void testContents() throws IOException {
+        for (boolean stored : new boolean[]{ false, true }) {
+            File jar = writeJar(stored ? "stored.jar" : "deflated.jar", stored, "a/A.class", "b/B.class");
+            JarTOC toc = JarTOC.get(jar);
+            Assert.assertEquals("a/A.class", new String(toc.getContents("a/A.class"), "UTF-8"));
+            Assert.assertEquals("b/B.class", new String(toc.getContents("b/B.class"), "UTF-8"));
+            Assert.assertNull(toc.getContents("c/C.class"));
+        }
+    }
+
+    @Test
+    public void testPrefixedArchive() throws IOException {
+        // like an executable jar with a launcher script in front
+        File jar = new File(dir, "prefixed.jar");
+        try (OutputStream os = new FileOutputStream(jar)) {
+            os.write("#!/bin/sh\nexec java -jar \"$0\"\n".getBytes("UTF-8"));
+            writeJar(os, false, "a/A.class");
+        }
+        JarTOC toc = JarTOC.get(jar);
+        Assert.assertEquals(Arrays.asList("a/A.class"), toc.getNames());
+        Assert.assertEquals("a/A.class", new String(toc.getContents("a/A.class"), "UTF-8"));
+    }
+
+    @Test
+    public void testReadAgainWhenChanged() throws IOException {
+        File jar = writeJar("changed.jar", false, "a/A.class");
+        Assert.assertSame(JarTOC.get(jar), JarTOC.get(jar));
+        Assert.assertTrue(JarTOC.get(jar).contains("a/A.class"));
+        writeJar("changed.jar", false, "a/A.class", "b/B.class");
+        Assert.assertTrue(JarTOC.get(jar).contains("b/B.class"));
+    }
+
+    @Test
+    public void testContentsOfChangedArchive() throws IOException {
+        File jar = writeJar("changed.jar", false, "a/A.class");
+        JarTOC toc = JarTOC.get(jar);
+        Assert.assertTrue(toc.isCurrent());
+        // moves a/A.class further into the archive
+        writeJar("changed.jar", false, "0/Zero.class", "a/A.class");
+        Assert.assertFalse(toc.isCurrent());
+        Assert.assertEquals("a/A.class", new String(toc.getContents("a/A.class"), "UTF-8"));
+    }
+}
@@ -0,0 +1,192 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.test.loader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.ceylon.common.Constants;
+import org.eclipse.ceylon.common.FileUtil;
+import org.eclipse.ceylon.model.cmr.PathFilter;
+import org.eclipse.ceylon.model.loader.JvmBackendUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the package lists of artifacts are cached on disk
+ * until the artifact changes.
+ */
+public class PackageListCacheTest {
+
+    private static final long AN_HOUR_AGO = 
+            System.currentTimeMillis() - 3600000;
+
+    private static final long TWO_DAYS_AGO = 
+            System.currentTimeMillis() - 2 * 24 * 3600000;
+
+    private static final String PROP_MAX_ENTRIES = "ceylon.cache.packages.max";
+
+    private File dir;
+    private String oldCacheRepo;
+
+    @Before
+    public void setup() throws IOException {
+        dir = File.createTempFile("package-list-cache", "");
+        dir.delete();
+        dir.mkdirs();
+        oldCacheRepo = System.getProperty(Constants.PROP_CEYLON_CACHE_REPO);
+        System.setProperty(Constants.PROP_CEYLON_CACHE_REPO, new File(dir, "cache").getPath());
+    }
+
+    @After
+    public void cleanup() {
+        if (oldCacheRepo != null) {
+            System.setProperty(Constants.PROP_CEYLON_CACHE_REPO, oldCacheRepo);
+        } else {
+            System.clearProperty(Constants.PROP_CEYLON_CACHE_REPO);
+        }
+        System.clearProperty(PROP_MAX_ENTRIES);
+        FileUtil.delete(dir);
+    }
+
+    private static void writeJar(File jar, long lastModified, String... entries) throws IOException {
+        try (ZipOutputStream os = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (String entry : entries) {
+                os.putNextEntry(new ZipEntry(entry));
+                os.closeEntry();
+            }
+        }
+        Assert.assertTrue(jar.setLastModified(lastModified));
+    }
+
+    private File[] cacheFiles() {
+        File[] files = new File(dir, "cache/.packages").listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    private File newCacheFile(Set<File> known) {
+        for (File file : cacheFiles()) {
+            if (known.add(file)) {
+                return file;
+            }
+        }
+        Assert.fail("No new cache file");
+        return null;
+    }
+
+    private static SortedSet<String> set(String... elements) {
+        return new TreeSet<String>(Arrays.asList(elements));
+    }
+
+    @Test
+    public void testCachedUntilModified() throws IOException {
+        File jar = new File(dir, "a.jar");
+        writeJar(jar, AN_HOUR_AGO, "Top.class", "a/A.class", "a/b/B.class", "a/b$/C.class", 
+                "META-INF/MANIFEST.MF", "module-info.class");
+        Assert.assertEquals(set("", "a", "a.b"), JvmBackendUtil.listPackages(jar, null));
+        Assert.assertEquals(1, cacheFiles().length);
+        // same size and modification time, so we must not look at the jar again
+        writeJar(jar, AN_HOUR_AGO, "Top.class", "c/C.class", "c/d/D.class", "c/d$/E.class", 
+                "META-INF/MANIFEST.MF", "module-info.class");
+        Assert.assertEquals(set("", "a", "a.b"), JvmBackendUtil.listPackages(jar, null));
+        // but filters still apply
+        PathFilter filter = new PathFilter() {
+            @Override
+            public boolean accept(String path) {
+                return path.equals("a/b/");
+            }
+        };
+        Assert.assertEquals(set("a.b"), JvmBackendUtil.listPackages(jar, filter));
+        // a new modification time means new contents
+        Assert.assertTrue(jar.setLastModified(AN_HOUR_AGO + 10000));
+        Assert.assertEquals(set("", "c", "c.d"), JvmBackendUtil.listPackages(jar, null));
+        // and so does a new size
+        writeJar(jar, AN_HOUR_AGO + 10000, "f/F.class");
+        Assert.assertEquals(set("f"), JvmBackendUtil.listPackages(jar, null));
+        Assert.assertEquals(1, cacheFiles().length);
+    }
+
+    @Test
+    public void testNotCachedWhenJustModified() throws IOException {
+        File jar = new File(dir, "b.jar");
+        writeJar(jar, System.currentTimeMillis(), "a/A.class");
+        Assert.assertEquals(set("a"), JvmBackendUtil.listPackages(jar, null));
+        // since a rewrite may not change the modification time yet
+        Assert.assertEquals(0, cacheFiles().length);
+        Assert.assertTrue(jar.setLastModified(AN_HOUR_AGO));
+        Assert.assertEquals(set("a"), JvmBackendUtil.listPackages(jar, null));
+        Assert.assertEquals(1, cacheFiles().length);
+    }
+
+    @Test
+    public void testCachedByPath() throws IOException {
+        File jar1 = new File(dir, "c1.jar");
+        File jar2 = new File(dir, "c2.jar");
+        writeJar(jar1, AN_HOUR_AGO, "a/A.class");
+        writeJar(jar2, AN_HOUR_AGO, "c/C.class");
+        Assert.assertEquals(set("a"), JvmBackendUtil.listPackages(jar1, null));
+        Assert.assertEquals(set("c"), JvmBackendUtil.listPackages(jar2, null));
+        Assert.assertEquals(set("a"), JvmBackendUtil.listPackages(jar1, null));
+        Assert.assertEquals(2, cacheFiles().length);
+    }
+
+    @Test
+    public void testCorruptCacheEntry() throws IOException {
+        File jar = new File(dir, "d.jar");
+        writeJar(jar, AN_HOUR_AGO, "a/A.class");
+        Assert.assertEquals(set("a"), JvmBackendUtil.listPackages(jar, null));
+        File[] cacheFiles = cacheFiles();
+        Assert.assertEquals(1, cacheFiles.length);
+        try (FileWriter writer = new FileWriter(cacheFiles[0])) {
+            writer.write("garbage");
+        }
+        Assert.assertEquals(set("a"), JvmBackendUtil.listPackages(jar, null));
+        // and it got fixed
+        writeJar(jar, AN_HOUR_AGO, "c/C.class");
+        Assert.assertEquals(set("a"), JvmBackendUtil.listPackages(jar, null));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedPruned() throws IOException {
+        System.setProperty(PROP_MAX_ENTRIES, "4");
+        Set<File> known = new HashSet<File>();
+        File[] jars = new File[5];
+        File[] entries = new File[5];
+        for (int i = 0; i < 4; i++) {
+            jars[i] = new File(dir, "e" + i + ".jar");
+            writeJar(jars[i], AN_HOUR_AGO, "a/A.class");
+            JvmBackendUtil.listPackages(jars[i], null);
+            entries[i] = newCacheFile(known);
+            Assert.assertTrue(entries[i].setLastModified(TWO_DAYS_AGO + i * 1000));
+        }
+        // a hit counts as a use
+        Assert.assertEquals(set("a"), JvmBackendUtil.listPackages(jars[0], null));
+        Assert.assertTrue(entries[0].lastModified() > AN_HOUR_AGO);
+        Assert.assertEquals(4, cacheFiles().length);
+        // one too many, so we go down to three
+        jars[4] = new File(dir, "e4.jar");
+        writeJar(jars[4], AN_HOUR_AGO, "a/A.class");
+        JvmBackendUtil.listPackages(jars[4], null);
+        entries[4] = newCacheFile(known);
+        Assert.assertEquals(new HashSet<File>(Arrays.asList(entries[0], entries[3], entries[4])),
+                new HashSet<File>(Arrays.asList(cacheFiles())));
+    }
+}
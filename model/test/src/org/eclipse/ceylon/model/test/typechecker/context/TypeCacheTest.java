@@ -0,0 +1,133 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.test.typechecker.context;
+
+import java.util.Collections;
+
+import org.eclipse.ceylon.model.typechecker.context.TypeCache;
+import org.eclipse.ceylon.model.typechecker.model.Class;
+import org.eclipse.ceylon.model.typechecker.model.Module;
+import org.eclipse.ceylon.model.typechecker.model.Package;
+import org.eclipse.ceylon.model.typechecker.model.Type;
+import org.eclipse.ceylon.model.typechecker.model.Unit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the eviction and statistics of bounded type caches.
+ */
+public class TypeCacheTest {
+
+    private static final Unit unit = new Unit();
+    static {
+        Package pkg = new Package();
+        pkg.setName(Collections.singletonList("pkg"));
+        unit.setPackage(pkg);
+    }
+
+    private static Class declaration(String name) {
+        Class c = new Class();
+        c.setName(name);
+        c.setUnit(unit);
+        c.setContainer(unit.getPackage());
+        return c;
+    }
+
+    @Test
+    public void testUnbounded() {
+        TypeCache cache = new TypeCache(0);
+        Class supertype = declaration("Super");
+        for (int i=0; i<1000; i++) {
+            cache.put(declaration("C" + i).getType(), 
+                    supertype, supertype.getType());
+        }
+        Assert.assertEquals(0, cache.getMaximumSize());
+        Assert.assertEquals(1000, cache.size());
+        Assert.assertEquals(0, cache.getEvictions());
+    }
+
+    @Test
+    public void testBounded() {
+        TypeCache cache = new TypeCache(64);
+        Class supertype = declaration("Super");
+        Type first = declaration("First").getType();
+        cache.put(first, supertype, supertype.getType());
+        for (int i=0; i<1000; i++) {
+            cache.put(declaration("C" + i).getType(), 
+                    supertype, supertype.getType());
+            //keep the first type in use
+            Assert.assertNotNull(cache.get(first, supertype));
+        }
+        Assert.assertTrue(cache.size() <= 64);
+        Assert.assertEquals(1001, cache.size() + cache.getEvictions());
+        Assert.assertEquals(1000, cache.getHits());
+        Assert.assertEquals(0, cache.getMisses());
+        Assert.assertNull(cache.get(declaration("Missing").getType(), 
+                supertype));
+        Assert.assertEquals(1, cache.getMisses());
+        cache.resetStatistics();
+        Assert.assertEquals(0, cache.getHits());
+    }
+
+    @Test
+    public void testNullValues() {
+        TypeCache cache = new TypeCache(8);
+        Class supertype = declaration("Super");
+        Type type = declaration("C").getType();
+        cache.put(type, supertype, TypeCache.NULL_VALUE);
+        Assert.assertTrue(cache.containsKey(type, supertype));
+        cache.clearNullValues();
+        Assert.assertFalse(cache.containsKey(type, supertype));
+        cache.put(type, supertype, supertype.getType());
+        cache.remove(type);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testScanResistant() {
+        TypeCache cache = new TypeCache(160);
+        Class supertype = declaration("Super");
+        Type hot = declaration("Hot").getType();
+        cache.put(hot, supertype, supertype.getType());
+        Assert.assertNotNull(cache.get(hot, supertype));
+        //types which are only used once don't evict it
+        for (int i=0; i<1000; i++) {
+            cache.put(declaration("C" + i).getType(), 
+                    supertype, supertype.getType());
+        }
+        Assert.assertTrue(cache.size() <= 160);
+        Assert.assertNotNull(cache.get(hot, supertype));
+    }
+
+    @Test
+    public void testShared() {
+        Module language = new Module();
+        Module m1 = new Module();
+        Module m2 = new Module();
+        m1.setLanguageModule(language);
+        m2.setLanguageModule(language);
+        Assert.assertNotSame(m1.getCache(), m2.getCache());
+        Assert.assertSame(m1.getCache(), m1.getCache());
+        TypeCache.setShared(true);
+        try {
+            Assert.assertSame(m1.getCache(), m2.getCache());
+            Assert.assertSame(language.getCache(), m1.getCache());
+            //the modules of another type checker don't 
+            //share it
+            Module other = new Module();
+            Module m3 = new Module();
+            m3.setLanguageModule(other);
+            Assert.assertNotSame(m1.getCache(), m3.getCache());
+        }
+        finally {
+            TypeCache.setShared(false);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.test.typechecker.model;
+
+import java.util.Collections;
+
+import org.eclipse.ceylon.model.typechecker.model.Class;
+import org.eclipse.ceylon.model.typechecker.model.ClassAlias;
+import org.eclipse.ceylon.model.typechecker.model.ClassOrInterface;
+import org.eclipse.ceylon.model.typechecker.model.Interface;
+import org.eclipse.ceylon.model.typechecker.model.Package;
+import org.eclipse.ceylon.model.typechecker.model.Unit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that the cached inherited declarations of classes
+ * and interfaces give the same results as walking their
+ * supertypes, and that they follow changes to the
+ * supertypes. See InheritanceBenchmark for how the time
+ * to test inheritance scales with the depth of the
+ * hierarchy.
+ */
+public class InheritanceTest {
+
+    private static final Unit unit = new Unit();
+    static {
+        Package pkg = new Package();
+        pkg.setName(Collections.singletonList("pkg"));
+        unit.setPackage(pkg);
+    }
+
+    private static <T extends ClassOrInterface> T declaration(T d, String name) {
+        d.setName(name);
+        d.setUnit(unit);
+        d.setContainer(unit.getPackage());
+        return d;
+    }
+
+    private static Class clazz(String name, Class extended, Interface... satisfied) {
+        Class c = declaration(new Class(), name);
+        if (extended!=null) {
+            c.setExtendedType(extended.getType());
+        }
+        for (Interface i: satisfied) {
+            c.getSatisfiedTypes().add(i.getType());
+        }
+        return c;
+    }
+
+    private static Interface iface(String name, Interface... satisfied) {
+        Interface i = declaration(new Interface(), name);
+        for (Interface s: satisfied) {
+            i.getSatisfiedTypes().add(s.getType());
+        }
+        return i;
+    }
+
+    @Test
+    public void testHierarchy() {
+        Interface i1 = iface("I1");
+        Interface i2 = iface("I2", i1);
+        Interface i3 = iface("I3");
+        Class a = clazz("A", null, i2);
+        Class b = clazz("B", a);
+        Class c = clazz("C", b, i3);
+        Assert.assertTrue(c.inherits(c));
+        Assert.assertTrue(c.inherits(b));
+        Assert.assertTrue(c.inherits(a));
+        Assert.assertTrue(c.inherits(i1));
+        Assert.assertTrue(c.inherits(i2));
+        Assert.assertTrue(c.inherits(i3));
+        Assert.assertFalse(a.inherits(b));
+        Assert.assertFalse(a.inherits(i3));
+        Assert.assertTrue(i2.inherits(i1));
+        Assert.assertFalse(i1.inherits(i2));
+        Assert.assertFalse(i2.inherits(a));
+        Assert.assertFalse(c.inherits(null));
+        //equal declarations are inherited too
+        Assert.assertTrue(c.inherits(iface("I1")));
+        Assert.assertFalse(c.inherits(iface("I4")));
+    }
+
+    @Test
+    public void testSupertypesChanged() {
+        Interface i1 = iface("I1");
+        Interface i2 = iface("I2");
+        Class a = clazz("A", null);
+        Class b = clazz("B", a, i1);
+        Assert.assertTrue(b.inherits(a));
+        Assert.assertFalse(b.inherits(i2));
+        a.getSatisfiedTypes().add(i2.getType());
+        Assert.assertTrue(b.inherits(i2));
+        Class other = clazz("Other", null);
+        b.setExtendedType(other.getType());
+        Assert.assertFalse(b.inherits(a));
+        Assert.assertFalse(b.inherits(i2));
+        Assert.assertTrue(b.inherits(other));
+        b.getSatisfiedTypes().clear();
+        Assert.assertFalse(b.inherits(i1));
+        b.setSatisfiedTypes(Collections.singletonList(i1.getType()));
+        Assert.assertTrue(b.inherits(i1));
+    }
+
+    @Test
+    public void testDistantSupertypesChanged() {
+        Interface i1 = iface("I1");
+        Interface i2 = iface("I2", i1);
+        Interface i3 = iface("I3");
+        Class a = clazz("A", null);
+        Class b = clazz("B", a, i2);
+        Class c = clazz("C", b);
+        Class other = clazz("Other", null, i1);
+        Assert.assertFalse(c.inherits(i3));
+        Assert.assertFalse(other.inherits(i3));
+        //two levels up, through an interface
+        i1.getSatisfiedTypes().add(i3.getType());
+        Assert.assertTrue(c.inherits(i3));
+        Assert.assertTrue(b.inherits(i3));
+        Assert.assertTrue(other.inherits(i3));
+        //through the extended type
+        Interface i4 = iface("I4");
+        Assert.assertFalse(c.inherits(i4));
+        a.getSatisfiedTypes().add(i4.getType());
+        Assert.assertTrue(c.inherits(i4));
+        Assert.assertFalse(other.inherits(i4));
+        //a change to a subtype doesn't affect its supertypes
+        c.getSatisfiedTypes().add(iface("I5").getType());
+        Assert.assertTrue(c.inherits(iface("I5")));
+        Assert.assertFalse(b.inherits(iface("I5")));
+    }
+
+    @Test
+    public void testAliases() {
+        Interface i = iface("I");
+        Class a = clazz("A", null, i);
+        ClassAlias alias = declaration(new ClassAlias(), "Alias");
+        alias.setExtendedType(a.getType());
+        Class b = clazz("B", alias);
+        Assert.assertTrue(b.inherits(a));
+        Assert.assertTrue(b.inherits(i));
+        Assert.assertFalse(b.inherits(alias));
+    }
+
+    @Test
+    public void testClassThroughSatisfiedType() {
+        //an erroneous hierarchy, where only the
+        //interfaces above the class are inherited
+        Interface i1 = iface("I1");
+        Class a = clazz("A", null, i1);
+        Interface i2 = iface("I2");
+        i2.getSatisfiedTypes().add(a.getType());
+        Class b = clazz("B", null, i2);
+        Assert.assertFalse(b.inherits(a));
+        Assert.assertTrue(b.inherits(i1));
+        Assert.assertFalse(i2.inherits(a));
+        Assert.assertTrue(i2.inherits(i1));
+    }
+}
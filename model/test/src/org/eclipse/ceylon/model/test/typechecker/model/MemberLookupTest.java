@@ -0,0 +1,144 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.test.typechecker.model;
+
+import java.util.Collections;
+
+import org.eclipse.ceylon.model.typechecker.model.Class;
+import org.eclipse.ceylon.model.typechecker.model.Declaration;
+import org.eclipse.ceylon.model.typechecker.model.ModelUtil;
+import org.eclipse.ceylon.model.typechecker.model.Package;
+import org.eclipse.ceylon.model.typechecker.model.Scope;
+import org.eclipse.ceylon.model.typechecker.model.Unit;
+import org.eclipse.ceylon.model.typechecker.model.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that looking up the direct members of scopes with
+ * many members gives the same results as scanning the whole
+ * member list. How the lookup time scales with the number of
+ * members is measured by {@code MemberLookupBenchmark}.
+ */
+public class MemberLookupTest {
+
+    private static Value value(String name, Scope container, Unit unit) {
+        Value value = new Value();
+        value.setName(name);
+        value.setContainer(container);
+        value.setScope(container);
+        value.setUnit(unit);
+        return value;
+    }
+
+    private static Class classWithMembers(int count) {
+        Class c = new Class();
+        c.setName("C");
+        for (int i=0; i<count; i++) {
+            c.addMember(value("m" + i, c, null));
+        }
+        return c;
+    }
+
+    @Test
+    public void testClassMemberLookup() {
+        Class c = classWithMembers(200);
+        for (int i=0; i<200; i++) {
+            String name = "m" + i;
+            Declaration expected =
+                    ModelUtil.lookupMember(c.getMembers(),
+                            name, null, false);
+            Assert.assertNotNull(expected);
+            Assert.assertSame(expected,
+                    c.getDirectMember(name, null, false));
+        }
+        Assert.assertNull(c.getDirectMember("missing", null, false));
+    }
+
+    @Test
+    public void testClassMemberAddedAfterLookup() {
+        Class c = classWithMembers(50);
+        Assert.assertNull(c.getDirectMember("late", null, false));
+        Value late = value("late", c, null);
+        c.addMember(late);
+        Assert.assertSame(late, c.getDirectMember("late", null, false));
+        //members are sometimes added to the list directly
+        Value direct = value("direct", c, null);
+        c.getMembers().add(direct);
+        Assert.assertSame(direct, c.getDirectMember("direct", null, false));
+    }
+
+    @Test
+    public void testClassMemberDropped() {
+        Class c = classWithMembers(50);
+        Declaration m7 = c.getDirectMember("m7", null, false);
+        Assert.assertNotNull(m7);
+        m7.setDropped(true);
+        Assert.assertNull(c.getDirectMember("m7", null, false));
+    }
+
+    @Test
+    public void testPackageMemberLookup() {
+        Package pkg = new Package();
+        pkg.setName(Collections.singletonList("pkg"));
+        Unit unit = new Unit();
+        unit.setPackage(pkg);
+        unit.setFilename("members.ceylon");
+        unit.setFullPath("pkg/members.ceylon");
+        pkg.addUnit(unit);
+        for (int i=0; i<100; i++) {
+            Value value = value("v" + i, pkg, unit);
+            unit.addDeclaration(value);
+            pkg.addMember(value);
+        }
+        for (int i=0; i<100; i++) {
+            Declaration member =
+                    pkg.getDirectMember("v" + i, null, false);
+            Assert.assertNotNull(member);
+            Assert.assertEquals("v" + i, member.getName());
+        }
+        Assert.assertNull(pkg.getDirectMember("missing", null, false));
+        Value late = value("late", pkg, unit);
+        unit.addDeclaration(late);
+        pkg.addMember(late);
+        Assert.assertSame(late, pkg.getDirectMember("late", null, false));
+    }
+
+    @Test
+    public void testClassMemberReplaced() {
+        Class c = classWithMembers(50);
+        Assert.assertNotNull(c.getDirectMember("m20", null, false));
+        //replacing a member in the middle of the list leaves
+        //its size and its last member unchanged
+        Value replacement = value("replacement", c, null);
+        c.getMembers().set(20, replacement);
+        Assert.assertNull(c.getDirectMember("m20", null, false));
+        Assert.assertSame(replacement, 
+                c.getDirectMember("replacement", null, false));
+        Value other = value("other", c, null);
+        c.getMembers().subList(10, 30).set(0, other);
+        Assert.assertNull(c.getDirectMember("m10", null, false));
+        Assert.assertSame(other, 
+                c.getDirectMember("other", null, false));
+        c.getMembers().remove(30);
+        Assert.assertNull(c.getDirectMember("m30", null, false));
+    }
+
+    @Test
+    public void testLookupInLargeClass() {
+        Class c = classWithMembers(10000);
+        for (int i=0; i<10000; i+=97) {
+            Declaration member = 
+                    c.getDirectMember("m" + i, null, false);
+            Assert.assertNotNull(member);
+            Assert.assertEquals("m" + i, member.getName());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.model.test.typechecker.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.ceylon.model.typechecker.model.Class;
+import org.eclipse.ceylon.model.typechecker.model.ClassOrInterface;
+import org.eclipse.ceylon.model.typechecker.model.Interface;
+import org.eclipse.ceylon.model.typechecker.model.ModelUtil;
+import org.eclipse.ceylon.model.typechecker.model.Package;
+import org.eclipse.ceylon.model.typechecker.model.Type;
+import org.eclipse.ceylon.model.typechecker.model.UnionList;
+import org.eclipse.ceylon.model.typechecker.model.Unit;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that adding types to very wide unions gives the
+ * same case types, in the same order, as comparing each
+ * new type with every case type. See UnionBenchmark for
+ * how the time to build a union scales with its number of
+ * case types.
+ */
+public class UnionTest {
+
+    private static final Unit unit = new Unit();
+    static {
+        Package pkg = new Package();
+        pkg.setName(Collections.singletonList("pkg"));
+        unit.setPackage(pkg);
+    }
+
+    private static <T extends ClassOrInterface> T declaration(T d, String name) {
+        d.setName(name);
+        d.setUnit(unit);
+        d.setContainer(unit.getPackage());
+        return d;
+    }
+
+    /**
+     * A hierarchy of classes, each of which extends one of
+     * the classes before it, or none, and satisfies some
+     * interfaces.
+     */
+    private static List<Type> hierarchy(int count, Random random) {
+        List<Interface> interfaces = new ArrayList<Interface>();
+        for (int i=0; i<count/10+1; i++) {
+            Interface iface = declaration(new Interface(), "I" + i);
+            if (i>0 && random.nextBoolean()) {
+                iface.getSatisfiedTypes().add(
+                        interfaces.get(random.nextInt(i)).getType());
+            }
+            interfaces.add(iface);
+        }
+        List<Class> classes = new ArrayList<Class>();
+        for (int i=0; i<count; i++) {
+            Class c = declaration(new Class(), "C" + i);
+            if (i>0 && random.nextInt(3)==0) {
+                c.setExtendedType(classes.get(random.nextInt(i)).getType());
+            }
+            if (random.nextBoolean()) {
+                c.getSatisfiedTypes().add(
+                        interfaces.get(random.nextInt(interfaces.size())).getType());
+            }
+            classes.add(c);
+        }
+        List<Type> types = new ArrayList<Type>();
+        for (Class c: classes) {
+            types.add(c.getType());
+        }
+        for (Interface i: interfaces) {
+            types.add(i.getType());
+        }
+        return types;
+    }
+
+    /**
+     * What addToUnion() does for lists of class and
+     * interface types, without an index.
+     */
+    private static void addToUnionByScanning(List<Type> list, Type pt) {
+        for (int i=0; i<list.size(); i++) {
+            Type t = list.get(i);
+            if (pt.isSubtypeOf(t)) {
+                return;
+            }
+            else if (pt.isSupertypeOf(t)) {
+                list.remove(i--);
+            }
+        }
+        list.add(pt);
+    }
+
+    private static void assertSameTypes(List<Type> expected, List<Type> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i=0; i<expected.size(); i++) {
+            Assert.assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testWideUnions() {
+        Random random = new Random(42);
+        for (int round=0; round<20; round++) {
+            List<Type> types = hierarchy(300, random);
+            Collections.shuffle(types, random);
+            List<Type> expected = new ArrayList<Type>();
+            List<Type> actual = new UnionList();
+            //lists of other kinds are simply scanned
+            List<Type> plain = new ArrayList<Type>();
+            for (Type type: types) {
+                addToUnionByScanning(expected, type);
+                ModelUtil.addToUnion(actual, type);
+                ModelUtil.addToUnion(plain, type);
+                assertSameTypes(expected, actual);
+                assertSameTypes(expected, plain);
+            }
+        }
+    }
+
+    @Test
+    public void testUnionModifiedBetweenAdditions() {
+        Random random = new Random(7);
+        List<Type> types = hierarchy(100, random);
+        List<Type> expected = new ArrayList<Type>();
+        List<Type> actual = new UnionList();
+        for (int i=0; i<types.size(); i++) {
+            Type type = types.get(i);
+            addToUnionByScanning(expected, type);
+            ModelUtil.addToUnion(actual, type);
+            if (i%7==0 && actual.size()>2) {
+                //lists are sometimes changed directly
+                int index = actual.size()/2;
+                Assert.assertSame(expected.remove(index),
+                        actual.remove(index));
+            }
+            assertSameTypes(expected, actual);
+        }
+    }
+
+    @Test
+    public void testUnionReplacedInTheMiddle() {
+        Random random = new Random(11);
+        List<Type> types = hierarchy(100, random);
+        List<Type> expected = new ArrayList<Type>();
+        List<Type> actual = new UnionList();
+        int replaced = 0;
+        for (int i=0; i<types.size(); i++) {
+            Type type = types.get(i);
+            addToUnionByScanning(expected, type);
+            ModelUtil.addToUnion(actual, type);
+            if (i%5==0 && actual.size()>20) {
+                //the same size, first and last types
+                int index = actual.size()/2;
+                Type other = 
+                        declaration(new Interface(), "R" + i)
+                            .getType();
+                if (replaced%2==0) {
+                    expected.set(index, other);
+                    actual.set(index, other);
+                }
+                else {
+                    expected.remove(index);
+                    expected.add(index, other);
+                    actual.remove(index);
+                    actual.add(index, other);
+                }
+                replaced++;
+                //and a type which is a subtype of the new one
+                Class sub = declaration(new Class(), "S" + i);
+                sub.getSatisfiedTypes().add(other);
+                addToUnionByScanning(expected, sub.getType());
+                ModelUtil.addToUnion(actual, sub.getType());
+            }
+            assertSameTypes(expected, actual);
+        }
+        Assert.assertTrue(replaced>2);
+    }
+
+    @Test
+    public void testUnionOfUnrelatedTypes() {
+        List<Type> list = new UnionList();
+        Interface top = declaration(new Interface(), "Top");
+        for (int i=0; i<500; i++) {
+            Class c = declaration(new Class(), "C" + i);
+            c.getSatisfiedTypes().add(top.getType());
+            ModelUtil.addToUnion(list, c.getType());
+            //a duplicate
+            ModelUtil.addToUnion(list, c.getType());
+        }
+        Assert.assertEquals(500, list.size());
+        ModelUtil.addToUnion(list, top.getType());
+        Assert.assertEquals(1, list.size());
+        Assert.assertSame(top, list.get(0).getDeclaration());
+    }
+}
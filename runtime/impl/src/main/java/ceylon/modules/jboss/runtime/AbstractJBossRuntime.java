@@ -17,6 +17,7 @@ import org.eclipse.ceylon.cmr.spi.ContentTransformer;
 import org.eclipse.ceylon.cmr.spi.MergeStrategy;
 import org.eclipse.ceylon.common.log.Logger;
 import org.jboss.modules.Module;
+import org.jboss.modules.ModuleClassLoader;
 import org.jboss.modules.ModuleIdentifier;
 import org.jboss.modules.ModuleLoader;
 import org.jboss.modules.ModuleNotFoundException;
@@ -80,6 +81,51 @@ public abstract class AbstractJBossRuntime extends AbstractRuntime {
         }
     }
 
+    @Override
+    protected void execute(Configuration conf, String name, ClassLoaderHolder clh) throws Exception {
+        try {
+            super.execute(conf, name, clh);
+        } catch (Exception | LinkageError e) {
+            String msg = (e instanceof CeylonRuntimeException) ? null : getClassNotFoundMessage(clh, e);
+            if (msg == null)
+                throw e;
+            final CeylonRuntimeException cre = new CeylonRuntimeException(msg);
+            cre.initCause(e);
+            throw cre;
+        }
+    }
+
+    /**
+     * Explains a class that could not be found with the modules that
+     * provide it, if it is what made the run fail.
+     */
+    private static String getClassNotFoundMessage(ClassLoaderHolder clh, Throwable t) {
+        ClassLoader cl = clh.getClassLoader();
+        if (cl instanceof ModuleClassLoader == false)
+            return null;
+        ModuleLoader moduleLoader = ((ModuleClassLoader) cl).getModule().getModuleLoader();
+        if (moduleLoader instanceof CeylonModuleLoader == false)
+            return null;
+        for (; t != null; t = t.getCause()) {
+            String className = null;
+            if (t instanceof ClassNotFoundException && t.getMessage() != null) {
+                // "className from [Module ...]"
+                className = t.getMessage();
+                int p = className.indexOf(' ');
+                if (p >= 0)
+                    className = className.substring(0, p);
+            } else if (t instanceof NoClassDefFoundError && t.getMessage() != null) {
+                // "internal/class/Name"
+                className = t.getMessage().replace('/', '.');
+            }
+            if (className != null)
+                return ((CeylonModuleLoader) moduleLoader).getClassNotFoundMessage(className);
+            if (t.getCause() == t)
+                break;
+        }
+        return null;
+    }
+
     private RepositoryManager createRepository(Configuration conf, boolean offline) {
         Logger log = new CMRJULLogger();
         final RepositoryManagerBuilder builder = CeylonUtils.repoManager()
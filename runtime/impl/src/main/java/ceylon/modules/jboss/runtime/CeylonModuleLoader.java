@@ -158,9 +158,9 @@ public class CeylonModuleLoader extends ModuleLoader
     private Map<ModuleIdentifier, List<DependencySpec>> dependencies = new ConcurrentHashMap<>();
     private Graph<ModuleIdentifier, ModuleIdentifier, Boolean> graph = new Graph<>();
     private boolean exportMavenImports = false;
-    // Stef: enable back when we upgrade jboss modules
-//    private Map<String,Object> classNamesToModules = new ConcurrentHashMap<>();
-    
+    private ModuleIndex index = new ModuleIndex();
+    private Map<String, ModuleIdentifier> missingClasses = new ConcurrentHashMap<>();
+
 
     public CeylonModuleLoader(RepositoryManager repository, boolean autoExportMavenDependencies) throws Exception {
         if (repository == null)
@@ -337,8 +337,11 @@ public class CeylonModuleLoader extends ModuleLoader
             builder.addDependency(lds); // local resources
             deps.add(lds);
 
+            // remembers the classes we could not load, unless we look for them in optional dependencies
+            LocalLoader fallbackLoader = new MissingClassLocalLoader(moduleIdentifier, this);
             if (isDefault == false) {
                 Node<ArtifactResult> root = new Node<>();
+                List<ArtifactResult> optionals = new ArrayList<>();
                 for (ArtifactResult i : artifact.dependencies()) {
                     // Skip test scopes
                     if(i.moduleScope() == ModuleScope.TEST)
@@ -371,6 +374,7 @@ public class CeylonModuleLoader extends ModuleLoader
                             current = child;
                         }
                         current.setValue(i);
+                        optionals.add(i);
                     } else {
                         DependencySpec mds = createModuleDependency(i, exportMavenImports && isMaven && isDepMaven);
                         builder.addDependency(mds);
@@ -381,11 +385,11 @@ public class CeylonModuleLoader extends ModuleLoader
                     Graph.Vertex<ModuleIdentifier, Boolean> dv = graph.createVertex(mi, mi);
                     Graph.Edge.create(i.exported() || (exportMavenImports && isMaven && isDepMaven), vertex, dv);
                 }
-                if (root.isEmpty() == false) {
-                    LocalLoader onDemandLoader = new OnDemandLocalLoader(moduleIdentifier, this, root);
-                    builder.setFallbackLoader(onDemandLoader);
+                if (optionals.isEmpty() == false) {
+                    fallbackLoader = new OnDemandLocalLoader(moduleIdentifier, this, root, optionals);
                 }
             }
+            builder.setFallbackLoader(fallbackLoader);
 
             // automagically import the JDK module
             builder.addDependency(JDK_DEPENDENCY);
@@ -407,8 +411,7 @@ public class CeylonModuleLoader extends ModuleLoader
             Graph.Edge.create(false, vertex, sdsv);
 
             dependencies.put(moduleIdentifier, deps);
-            // Stef: enable back when we upgrade jboss modules
-//            index(artifact.artifact(), moduleIdentifier);
+            index.add(moduleIdentifier, moduleFile);
 
             UtilRegistryTransformer transformer = new UtilRegistryTransformer(moduleIdentifier, artifact);
             builder.setClassFileTransformer(transformer);
@@ -423,56 +426,71 @@ public class CeylonModuleLoader extends ModuleLoader
         }
     }
 
-    // Stef: enable back when we upgrade jboss modules
-//    @SuppressWarnings("unchecked")
-//    public List<ModuleIdentifier> findModuleForClass(String className){
-//        Object value = classNamesToModules.get(className);
-//        if(value == null)
-//            return Collections.emptyList();
-//        if(value instanceof ModuleIdentifier)
-//            return Arrays.asList((ModuleIdentifier)value);
-//        if(value instanceof List)
-//            return (List<ModuleIdentifier>) value;
-//        // WTF?
-//        return Collections.emptyList();
-//    }
-//    
-//    private void index(File artifact, ModuleIdentifier moduleIdentifier) {
-//        if(artifact != null && artifact.exists() && artifact.canRead()){
-//            // only index jars since we can't have CNFE with Ceylon modules
-//            if(artifact.getName().toLowerCase().endsWith(".jar")){
-//                System.err.println("Indexing "+artifact);
-//                try (ZipFile zipFile = new ZipFile(artifact)) {
-//                    Enumeration<? extends ZipEntry> entries = zipFile.entries();
-//                    while(entries.hasMoreElements()){
-//                        ZipEntry entry = entries.nextElement();
-//                        if(entry.isDirectory())
-//                            continue;
-//                        String name = entry.getName();
-//                        if(!name.toLowerCase().endsWith(".class"))
-//                            continue;
-//                        String className = name.replace('/', '.').substring(0, name.length()-6);
-//                        Object value = classNamesToModules.get(className);
-//                        if(value == null)
-//                            classNamesToModules.put(className, moduleIdentifier);
-//                        else if(value instanceof ModuleIdentifier){
-//                            List<ModuleIdentifier> list = new ArrayList<ModuleIdentifier>(2);
-//                            list.add((ModuleIdentifier) value);
-//                            list.add(moduleIdentifier);
-//                            classNamesToModules.put(className, list);
-//                        }else if(value instanceof List){
-//                            @SuppressWarnings("unchecked")
-//                            List<ModuleIdentifier> list = (List<ModuleIdentifier>) value;
-//                            list.add(moduleIdentifier);
-//                        }
-//                    }
-//                } catch (IOException e) {
-//                    // TODO Auto-generated catch block
-//                    e.printStackTrace();
-//                }
-//            }
-//        }
-//    }
+    /**
+     * Returns the modules of the module graph which contain the given class.
+     */
+    public List<ModuleIdentifier> findModuleForClass(String className) {
+        return index.findModulesForClass(className);
+    }
+
+    /**
+     * Returns the optional dependency which contains the package of the
+     * given class, or null. Every optional dependency is indexed the first
+     * time we need it, and the missing ones are removed from the list.
+     */
+    ArtifactResult findOptionalDependencyForClass(String className, List<ArtifactResult> optionals) {
+        String pkg = ModuleIndex.getPackageName(className);
+        for (ArtifactResult i : optionals) {
+            ModuleIdentifier mi = createModuleIdentifier(i);
+            try {
+                index.indexNow(mi, i.artifact());
+            } catch (RuntimeException e) {
+                // missing optional dependency, don't look for it again
+                optionals.remove(i);
+                continue;
+            }
+            if (index.findModulesForPackage(pkg).contains(mi))
+                return i;
+        }
+        return null;
+    }
+
+    /**
+     * Remembers that the given module could not load the given class, so
+     * that we can explain why later.
+     */
+    void classNotFound(ModuleIdentifier mi, String className) {
+        // this also sees every class that was looked up just in case, so
+        // don't let it grow
+        if (missingClasses.size() >= 256)
+            missingClasses.clear();
+        missingClasses.put(className, mi);
+    }
+
+    /**
+     * Explains why the given class could not be loaded, if it is provided by
+     * modules which its importer does not import, or returns null.
+     */
+    public String getClassNotFoundMessage(String className) {
+        List<ModuleIdentifier> modules = findModuleForClass(className);
+        if (modules.isEmpty())
+            return null;
+        StringBuilder b = new StringBuilder("Could not load class '").append(className).append("'");
+        ModuleIdentifier importer = missingClasses.get(className);
+        if (importer != null)
+            b.append(" from module '").append(importer).append("'");
+        b.append(": it is provided by module");
+        if (modules.size() > 1)
+            b.append("s");
+        boolean first = true;
+        for (ModuleIdentifier module : modules) {
+            b.append(first ? " '" : ", '").append(module).append("'");
+            first = false;
+        }
+        if (importer != null)
+            b.append(", which '").append(importer).append("' does not import");
+        return b.toString();
+    }
 
     private void addLoggingModules(Builder builder, List<DependencySpec> deps, List<ModuleDependencyInfo> replacements) {
         for (ModuleDependencyInfo mi : replacements) {
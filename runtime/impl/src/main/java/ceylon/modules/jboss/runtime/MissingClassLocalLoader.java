@@ -0,0 +1,45 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package ceylon.modules.jboss.runtime;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.modules.LocalLoader;
+import org.jboss.modules.ModuleIdentifier;
+import org.jboss.modules.Resource;
+
+/**
+ * Fallback loader of the modules without optional dependencies, which
+ * loads nothing, but remembers the classes that the module could not
+ * load, so that we can explain why later.
+ */
+class MissingClassLocalLoader implements LocalLoader {
+    private final ModuleIdentifier target;
+    private final CeylonModuleLoader loader;
+
+    MissingClassLocalLoader(ModuleIdentifier target, CeylonModuleLoader loader) {
+        this.target = target;
+        this.loader = loader;
+    }
+
+    public Class<?> loadClassLocal(String name, boolean resolve) {
+        loader.classNotFound(target, name);
+        return null;
+    }
+
+    public List<Resource> loadResourceLocal(String name) {
+        return Collections.emptyList();
+    }
+
+    public Package loadPackageLocal(String name) {
+        return null;
+    }
+}
@@ -0,0 +1,183 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package ceylon.modules.jboss.runtime;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.ZipFile;
+
+import org.eclipse.ceylon.model.loader.JvmBackendUtil;
+import org.jboss.modules.ModuleIdentifier;
+
+/**
+ * Index of the packages contained in the jars and cars of the module graph,
+ * so that we can tell which modules provide a given class without loading
+ * them.
+ *
+ * The artifacts are only recorded as the modules are found, and indexed
+ * the first time a query needs them, which is usually never: only when a
+ * class can't be found. The package lists are persisted in the cache
+ * repository by {@link JvmBackendUtil#listPackages}, keyed by the path of
+ * the artifacts and checked against their size and modification time, so
+ * we only go through the entries of each jar once.
+ */
+class ModuleIndex {
+
+    /**
+     * Package name to a ModuleIdentifier, or a ModuleIdentifier[] for split
+     * packages, which are rare.
+     */
+    private final ConcurrentMap<String, Object> packagesToModules = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ModuleIdentifier, File> artifacts = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ModuleIdentifier, Future<?>> tasks = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the given module artifact to the ones to index when we need to.
+     */
+    void add(ModuleIdentifier mi, File artifact) {
+        if (artifact != null)
+            artifacts.putIfAbsent(mi, artifact);
+    }
+
+    /**
+     * Indexes the given module artifact right away, unless it is already
+     * indexed, in which case we wait for it to be done.
+     */
+    void indexNow(ModuleIdentifier mi, File artifact) {
+        add(mi, artifact);
+        FutureTask<?> task = claim(mi, artifact);
+        if (task != null)
+            task.run();
+        else
+            await(tasks.get(mi));
+    }
+
+    /**
+     * Returns the task which indexes the given artifact, or null if it is
+     * somebody else's job.
+     */
+    private FutureTask<?> claim(final ModuleIdentifier mi, final File artifact) {
+        if (artifact == null || tasks.containsKey(mi))
+            return null;
+        FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                addPackages(mi, artifact);
+            }
+        }, null);
+        if (tasks.putIfAbsent(mi, task) != null)
+            return null;
+        return task;
+    }
+
+    private void addPackages(ModuleIdentifier mi, File artifact) {
+        if (!artifact.isFile())
+            return;
+        List<String> packages;
+        try {
+            packages = new ArrayList<>(JvmBackendUtil.listPackages(artifact, null));
+        } catch (IOException | RuntimeException e) {
+            // not a zip we can read, it just won't be indexed
+            return;
+        }
+        for (String pkg : packages) {
+            addModule(pkg, mi);
+        }
+    }
+
+    private void addModule(String pkg, ModuleIdentifier mi) {
+        while (true) {
+            Object value = packagesToModules.putIfAbsent(pkg, mi);
+            if (value == null || value.equals(mi))
+                return;
+            ModuleIdentifier[] modules;
+            if (value instanceof ModuleIdentifier) {
+                modules = new ModuleIdentifier[]{(ModuleIdentifier) value, mi};
+            } else {
+                ModuleIdentifier[] old = (ModuleIdentifier[]) value;
+                for (ModuleIdentifier m : old) {
+                    if (m.equals(mi))
+                        return;
+                }
+                modules = new ModuleIdentifier[old.length + 1];
+                System.arraycopy(old, 0, modules, 0, old.length);
+                modules[old.length] = mi;
+            }
+            if (packagesToModules.replace(pkg, value, modules))
+                return;
+        }
+    }
+
+    /**
+     * Returns the modules which contain the given package, among those that
+     * are indexed so far, without waiting for the pending ones.
+     */
+    List<ModuleIdentifier> findModulesForPackage(String pkg) {
+        Object value = packagesToModules.get(pkg);
+        if (value == null)
+            return Collections.emptyList();
+        if (value instanceof ModuleIdentifier)
+            return Collections.singletonList((ModuleIdentifier) value);
+        return Arrays.asList((ModuleIdentifier[]) value);
+    }
+
+    /**
+     * Returns the modules which contain the given class, once every artifact
+     * is indexed.
+     */
+    List<ModuleIdentifier> findModulesForClass(String className) {
+        for (Map.Entry<ModuleIdentifier, File> entry : artifacts.entrySet()) {
+            indexNow(entry.getKey(), entry.getValue());
+        }
+        List<ModuleIdentifier> candidates = findModulesForPackage(getPackageName(className));
+        if (candidates.isEmpty())
+            return candidates;
+        // the package is only a hint, check that the class is really there
+        String path = className.replace('.', '/') + ".class";
+        List<ModuleIdentifier> modules = new ArrayList<>(candidates.size());
+        for (ModuleIdentifier mi : candidates) {
+            File artifact = artifacts.get(mi);
+            try (ZipFile zf = new ZipFile(artifact)) {
+                if (zf.getEntry(path) != null)
+                    modules.add(mi);
+            } catch (IOException e) {
+                // we indexed it, so it was there, but not anymore
+            }
+        }
+        return modules;
+    }
+
+    static String getPackageName(String className) {
+        int sep = className.lastIndexOf('.');
+        return sep != -1 ? className.substring(0, sep) : "";
+    }
+
+    private static void await(Future<?> future) {
+        if (future == null)
+            return;
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // we just won't know about that module
+        }
+    }
+}
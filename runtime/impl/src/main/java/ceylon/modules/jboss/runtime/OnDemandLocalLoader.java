@@ -11,6 +11,9 @@ package ceylon.modules.jboss.runtime;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
 import org.jboss.modules.DependencySpec;
@@ -23,17 +26,26 @@ import org.jboss.modules.Resource;
 /**
  * Load modules on demand.
  *
+ * Optional dependencies are found by module name first, then by looking
+ * up the package of the class in the module index, for modules whose name
+ * is not a prefix of their packages, like Maven modules. The optional
+ * dependencies only ever get fewer, so a package which none of them
+ * provides is remembered, and not looked up again.
+ *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 class OnDemandLocalLoader implements LocalLoader {
     private ModuleIdentifier target;
     private CeylonModuleLoader loader;
     private Node<ArtifactResult> root;
+    private List<ArtifactResult> optionals;
+    private Set<String> missingPackages = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
-    OnDemandLocalLoader(ModuleIdentifier target, CeylonModuleLoader loader, Node<ArtifactResult> root) {
+    OnDemandLocalLoader(ModuleIdentifier target, CeylonModuleLoader loader, Node<ArtifactResult> root, List<ArtifactResult> optionals) {
         this.target = target;
         this.loader = loader;
         this.root = root;
+        this.optionals = new CopyOnWriteArrayList<>(optionals);
     }
 
     protected LocalLoader doUpdate(String[] tokens) {
@@ -48,27 +60,52 @@ class OnDemandLocalLoader implements LocalLoader {
                 ArtifactResult i = current.getValue();
                 if (i != null) {
                     current.remove(); // remove, so we don't loop; should not happen though
-
-                    DependencySpec mds = loader.createModuleDependency(i, false);
-                    try {
-                        Module owner = loader.preloadModule(target);
-                        loader.updateModule(owner, mds); // update / add lazy dep
-
-                        Module module = loader.loadModule(CeylonModuleLoader.createModuleIdentifier(i));
-                        return new ModuleLocalLoader(module);
-                    } catch (ModuleLoadException ignored) {
-                        return null;
-                    }
+                    return link(i);
                 }
             }
         }
         return null;
     }
 
+    protected LocalLoader updateFromIndex(String className) {
+        if (optionals.isEmpty())
+            return null;
+        String pkg = ModuleIndex.getPackageName(className);
+        if (missingPackages.contains(pkg))
+            return null;
+        ArtifactResult i = loader.findOptionalDependencyForClass(className, optionals);
+        if (i == null) {
+            missingPackages.add(pkg);
+            return null;
+        }
+        return link(i);
+    }
+
+    private LocalLoader link(ArtifactResult i) {
+        try {
+            // it may be found both ways, only add it once
+            if (optionals.remove(i)) {
+                DependencySpec mds = loader.createModuleDependency(i, false);
+                Module owner = loader.preloadModule(target);
+                loader.updateModule(owner, mds); // update / add lazy dep
+            }
+
+            Module module = loader.loadModule(CeylonModuleLoader.createModuleIdentifier(i));
+            return new ModuleLocalLoader(module);
+        } catch (ModuleLoadException ignored) {
+            return null;
+        }
+    }
+
     public Class<?> loadClassLocal(String name, boolean resolve) {
         String[] tokens = name.split("\\.");
         LocalLoader ll = doUpdate(tokens);
-        return (ll != null ? ll.loadClassLocal(name, resolve) : null);
+        if (ll == null)
+            ll = updateFromIndex(name);
+        Class<?> c = (ll != null ? ll.loadClassLocal(name, resolve) : null);
+        if (c == null)
+            loader.classNotFound(target, name);
+        return c;
     }
 
     public List<Resource> loadResourceLocal(String name) {
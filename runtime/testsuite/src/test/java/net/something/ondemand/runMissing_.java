@@ -0,0 +1,23 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package net.something.ondemand;
+
+/**
+ * Loads a class of an optional dependency which is missing.
+ */
+public class runMissing_ {
+    public static void main(String[] args) {
+        try {
+            runMissing_.class.getClassLoader().loadClass("org.jboss.missing.Foo");
+            throw new IllegalStateException("Loaded a class of a missing module");
+        } catch (ClassNotFoundException expected) {
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package net.something.ondemand;
+
+/**
+ * Loads classes which no dependency provides, more than once, and then
+ * a class of an optional dependency which is there.
+ */
+public class runRepeatedMiss_ {
+    public static void main(String[] args) {
+        ClassLoader cl = runRepeatedMiss_.class.getClassLoader();
+        for (int i = 0; i < 3; i++) {
+            for (String name : new String[]{"net.nowhere.Foo", "org.jboss.acme.Nowhere", "org.jboss.missing.Foo"}) {
+                try {
+                    cl.loadClass(name);
+                    throw new IllegalStateException("Loaded a class which is nowhere: " + name);
+                } catch (ClassNotFoundException expected) {
+                }
+            }
+        }
+        try {
+            cl.loadClass("org.jboss.acme.Qwert").newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package net.something.ondemand;
+
+/**
+ * Loads a class of an optional dependency which is there.
+ */
+public class runResolved_ {
+    public static void main(String[] args) {
+        try {
+            runResolved_.class.getClassLoader().loadClass("org.jboss.acme.Qwert").newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
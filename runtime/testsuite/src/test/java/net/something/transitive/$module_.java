@@ -0,0 +1,22 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package net.something.transitive;
+
+import org.eclipse.ceylon.compiler.java.metadata.Import;
+import org.eclipse.ceylon.compiler.java.metadata.Module;
+
+@Module(name = "net.something.transitive",
+        version = "1.0.0.Final",
+        dependencies = {
+                @Import(name = "org.jboss.acme",
+                        version = "1.0.0.CR1")
+        })
+public class $module_ {
+}
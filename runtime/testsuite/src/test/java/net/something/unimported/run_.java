@@ -0,0 +1,24 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the 
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0 
+ ********************************************************************************/
+package net.something.unimported;
+
+/**
+ * Loads a class of a module which is only imported by one of its
+ * dependencies.
+ */
+public class run_ {
+    public static void main(String[] args) {
+        try {
+            run_.class.getClassLoader().loadClass("org.jboss.acme.Qwert").newInstance();
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
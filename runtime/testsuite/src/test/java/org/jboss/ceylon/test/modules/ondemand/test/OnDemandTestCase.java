@@ -15,6 +15,7 @@ import org.jboss.ceylon.test.modules.ModulesTest;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
 import org.jboss.shrinkwrap.api.asset.StringAsset;
 import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
 import org.junit.Test;
 import si.alesj.ceylon.$module_;
 import si.alesj.ceylon.test.Touch;
@@ -41,4 +42,57 @@ public class OnDemandTestCase extends ModulesTest {
 
         testArchive(module, lib1, lib2);
     }
+
+    @Test
+    public void testResolvedOptional() throws Throwable {
+        testOptionals("net.something.ondemand.runResolved");
+    }
+
+    @Test
+    public void testMissingOptional() throws Throwable {
+        testOptionals("net.something.ondemand.runMissing");
+    }
+
+    @Test
+    public void testRepeatedMiss() throws Throwable {
+        testOptionals("net.something.ondemand.runRepeatedMiss");
+    }
+
+    @Test
+    public void testUnimportedWithoutOptionals() throws Throwable {
+        JavaArchive module = ShrinkWrap.create(JavaArchive.class, "net.something.unimported-1.0.0.Final.car");
+        module.addClasses(net.something.unimported.$module_.class, net.something.unimported.run_.class);
+
+        JavaArchive transitive = ShrinkWrap.create(JavaArchive.class, "net.something.transitive-1.0.0.Final.car");
+        transitive.addClass(net.something.transitive.$module_.class);
+
+        JavaArchive lib = ShrinkWrap.create(JavaArchive.class, "org.jboss.acme-1.0.0.CR1.car");
+        lib.addClasses(org.jboss.acme.$module_.class, Qwert.class);
+
+        // the module has no optional imports, and does not import org.jboss.acme
+        try {
+            testArchive(module, transitive, lib);
+        } catch (Throwable t) {
+            String msg = t.getMessage();
+            Assert.assertNotNull(msg);
+            Assert.assertTrue(msg, msg.contains("from module 'net.something.unimported:1.0.0.Final'"));
+            Assert.assertTrue(msg, msg.contains("provided by module 'org.jboss.acme:1.0.0.CR1'"));
+            return;
+        }
+        Assert.fail("Loaded a class of a module which is not imported");
+    }
+
+    private void testOptionals(String run) throws Throwable {
+        JavaArchive module = ShrinkWrap.create(JavaArchive.class, "net.something.ondemand-1.0.0.Final.car");
+        module.addClasses(net.something.ondemand.$module_.class, 
+                net.something.ondemand.runResolved_.class, 
+                net.something.ondemand.runMissing_.class, 
+                net.something.ondemand.runRepeatedMiss_.class);
+
+        JavaArchive lib = ShrinkWrap.create(JavaArchive.class, "org.jboss.acme-1.0.0.CR1.car");
+        lib.addClasses(org.jboss.acme.$module_.class, Qwert.class);
+
+        // org.jboss.missing is not there
+        testArchive(module, run, lib);
+    }
 }
@@ -13,24 +13,17 @@ import static org.eclipse.ceylon.common.JVMModuleUtil.javaClassNameFromCeylon;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.jar.Attributes;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import org.eclipse.ceylon.cmr.api.ModuleQuery;
 import org.eclipse.ceylon.cmr.ceylon.loader.ModuleGraph;
-import org.eclipse.ceylon.cmr.impl.IOUtils;
+import org.eclipse.ceylon.cmr.util.ArchiveWriter;
 import org.eclipse.ceylon.common.FileUtil;
 import org.eclipse.ceylon.common.ModuleSpec;
 import org.eclipse.ceylon.common.Versions;
@@ -41,7 +34,6 @@ import org.eclipse.ceylon.common.tool.OptionArgument;
 import org.eclipse.ceylon.common.tool.Summary;
 import org.eclipse.ceylon.common.tool.ToolUsageError;
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
-import org.eclipse.ceylon.model.loader.JvmBackendUtil;
 import org.eclipse.ceylon.tools.moduleloading.ResourceRootTool;
 
 @Summary("Generate a Ceylon executable jar for a given module")
@@ -146,7 +138,6 @@ public class CeylonFatJarTool extends ResourceRootTool {
         if(outputJar.exists()){
             FileUtil.delete(outputJar);
         }
-        final Set<String> added = new HashSet<>();
         
         if (firstModuleName!=null 
                 && run!=null 
@@ -162,15 +153,11 @@ public class CeylonFatJarTool extends ResourceRootTool {
         mainAttributes.putValue("Manifest-Version", "1.0");
         mainAttributes.putValue("Created-By", "Ceylon fat-jar for module "+firstModuleName+"/"+firstModuleVersion);
         writeManifestEntries(mainAttributes);
-        added.add("META-INF/");
-        added.add("META-INF/MANIFEST.MF");
         
         addResources();
 
-        try(JarOutputStream zipFile 
-                = new JarOutputStream(
-                        new FileOutputStream(outputJar), 
-                        manifest)){
+        try(final ArchiveWriter zipFile = new ArchiveWriter(outputJar)){
+            zipFile.addManifest(manifest);
             writeResources(zipFile);
             final List<ArtifactResult> staticMetamodelEntries = new ArrayList<>();
             loader.visitModules(new ModuleGraph.Visitor() {
@@ -178,7 +165,7 @@ public class CeylonFatJarTool extends ResourceRootTool {
                 @Override
                 public void visit(ModuleGraph.Module module) {
                     if(module.artifact != null){
-                        File file = module.artifact.artifact();
+                        final File file = module.artifact.artifact();
                         try{
                             if(file != null){
                                 if(isVerbose()){
@@ -187,32 +174,29 @@ public class CeylonFatJarTool extends ResourceRootTool {
                                 }
                                 staticMetamodelEntries.add(module.artifact);
 
-                                try(ZipFile src = new ZipFile(file)){
-                                    Enumeration<? extends ZipEntry> entries = src.entries();
-                                    while(entries.hasMoreElements()){
-                                        ZipEntry srcEntry = entries.nextElement();
-                                        if (srcEntry.getName().equals(runClassPath))
+                                // copied without inflating them
+                                zipFile.copyFrom(file, new ArchiveWriter.EntryVisitor() {
+                                    @Override
+                                    public boolean accept(String name, boolean directory) throws IOException {
+                                        if (name.equals(runClassPath))
                                             foundRun = true;
                                         // skip manifests
-                                        if(skipEntry(srcEntry.getName()))
-                                            continue;
-                                        if(!added.add(srcEntry.getName())){
+                                        if(skipEntry(name))
+                                            return false;
+                                        if(zipFile.contains(name)){
                                             // multiple folders is fine
-                                            if(!srcEntry.isDirectory()){
+                                            if(!directory){
                                                 append("Warning: skipping duplicate entry ")
-                                                .append(srcEntry.getName())
+                                                .append(name)
                                                 .append(" from ")
                                                 .append(file)
                                                 .newline();
                                             }
-                                            continue;
+                                            return false;
                                         }
-                                        srcEntry.setCompressedSize(-1);
-                                        zipFile.putNextEntry(srcEntry);
-                                        if(!srcEntry.isDirectory())
-                                            IOUtils.copyStream(src.getInputStream(srcEntry), zipFile, true, false);
+                                        return true;
                                     }
-                                }
+                                });
                             }
                         }catch(IOException x){
                             // lame
@@ -221,9 +205,7 @@ public class CeylonFatJarTool extends ResourceRootTool {
                     }
                 }
             });
-            JvmBackendUtil.writeStaticMetamodel(zipFile, added, staticMetamodelEntries, jdkProvider,
-                    Collections.<String>emptySet());
-            zipFile.flush();
+            writeStaticMetamodel(zipFile, staticMetamodelEntries, Collections.<String>emptySet());
         }
         flush();
         
@@ -10,21 +10,25 @@
 package org.eclipse.ceylon.tools.moduleloading;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 import java.util.jar.Attributes;
-import java.util.jar.JarOutputStream;
-import java.util.zip.ZipEntry;
 
-import org.eclipse.ceylon.cmr.impl.IOUtils;
+import org.eclipse.ceylon.cmr.util.ArchiveWriter;
 import org.eclipse.ceylon.common.tool.Description;
 import org.eclipse.ceylon.common.tool.OptionArgument;
+import org.eclipse.ceylon.model.cmr.ArtifactResult;
+import org.eclipse.ceylon.model.loader.JvmBackendUtil;
 
 public abstract class ResourceRootTool extends ModuleLoadingTool {
 
@@ -51,12 +55,21 @@ public abstract class ResourceRootTool extends ModuleLoadingTool {
         }
     }
     
-    protected void writeResources(JarOutputStream zipFile) throws IOException {
+    protected void writeResources(ArchiveWriter zipFile) throws IOException {
         for (EntrySpec entry : entrySpecs) {
             entry.write(zipFile);
         }
     }
 
+    protected void writeStaticMetamodel(ArchiveWriter zipFile, List<ArtifactResult> entries, 
+            Set<String> providedModules) throws IOException {
+        StringWriter metamodel = new StringWriter();
+        JvmBackendUtil.writeStaticMetamodel(metamodel, entries, jdkProvider, providedModules);
+        zipFile.addDirectory("META-INF/");
+        zipFile.addDirectory("META-INF/ceylon/");
+        zipFile.addBytes("META-INF/ceylon/metamodel", metamodel.toString().getBytes());
+    }
+
     protected void writeManifestEntries(Attributes mainAttributes) {
         for (String[] keyValue: manifestEntries) {
             mainAttributes.putValue(keyValue[0], keyValue[1]);
@@ -112,9 +125,10 @@ public abstract class ResourceRootTool extends ModuleLoadingTool {
             this.name = name;
         }
         
-        public void write(final JarOutputStream out) throws IOException {
-            out.putNextEntry(new ZipEntry(this.name));
-            IOUtils.copyStream(openStream(), out, true, false);
+        public void write(final ArchiveWriter out) throws IOException {
+            try (InputStream in = openStream()) {
+                out.addStream(this.name, in);
+            }
         }
         
         abstract InputStream openStream() throws IOException;
@@ -128,6 +142,19 @@ public abstract class ResourceRootTool extends ModuleLoadingTool {
             this.url = url;
         }
         
+        public void write(final ArchiveWriter out) throws IOException {
+            if ("file".equals(this.url.getProtocol())) {
+                // read by the thread which deflates it
+                try {
+                    out.addFile(this.name, new File(this.url.toURI()));
+                    return;
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    // read it ourselves
+                }
+            }
+            super.write(out);
+        }
+        
         InputStream openStream() throws IOException {
             return this.url.openStream();
         }
@@ -155,9 +182,10 @@ public abstract class ResourceRootTool extends ModuleLoadingTool {
             this.properties = properties;
         }
         
-        public void write(final JarOutputStream out) throws IOException {
-            out.putNextEntry(new ZipEntry(this.name));
-            this.properties.store(out, "");
+        public void write(final ArchiveWriter out) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            this.properties.store(bytes, "");
+            out.addBytes(this.name, bytes.toByteArray());
         }
         
         InputStream openStream() throws IOException {
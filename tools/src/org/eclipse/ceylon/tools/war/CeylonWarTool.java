@@ -9,24 +9,21 @@
  ********************************************************************************/
 package org.eclipse.ceylon.tools.war;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.jar.Attributes;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 
 import org.eclipse.ceylon.cmr.api.ModuleQuery;
 import org.eclipse.ceylon.cmr.ceylon.loader.ModuleGraph;
 import org.eclipse.ceylon.cmr.ceylon.loader.ModuleGraph.Module;
+import org.eclipse.ceylon.cmr.util.ArchiveWriter;
 import org.eclipse.ceylon.common.ModuleSpec;
 import org.eclipse.ceylon.common.ModuleUtil;
 import org.eclipse.ceylon.common.Versions;
@@ -39,7 +36,6 @@ import org.eclipse.ceylon.common.tool.Summary;
 import org.eclipse.ceylon.common.tool.ToolUsageError;
 import org.eclipse.ceylon.model.cmr.ArtifactResult;
 import org.eclipse.ceylon.model.cmr.ModuleScope;
-import org.eclipse.ceylon.model.loader.JvmBackendUtil;
 import org.eclipse.ceylon.tools.moduleloading.ResourceRootTool;
 
 @Summary("Generates a WAR file from a compiled `.car` file")
@@ -278,17 +274,12 @@ public class CeylonWarTool extends ResourceRootTool {
         Attributes mainAttributes = manifest.getMainAttributes();
         writeManifestEntries(mainAttributes);
         
-        try (BufferedOutputStream out = 
-                new BufferedOutputStream(new FileOutputStream(jarFile));
-             JarOutputStream zipFile = 
-                mainAttributes.isEmpty() 
-                        ? new JarOutputStream(out) 
-                        : new JarOutputStream(out, manifest)) {
+        try (ArchiveWriter zipFile = new ArchiveWriter(jarFile)) {
+            if (!mainAttributes.isEmpty()) {
+                zipFile.addManifest(manifest);
+            }
             writeResources(zipFile);
-            // FIXME: this is not done properly
-            Set<String> added = new HashSet<>();
-            JvmBackendUtil.writeStaticMetamodel(zipFile, added, staticMetamodelEntries, jdkProvider, 
-                    new HashSet<>(providedModules));
+            writeStaticMetamodel(zipFile, staticMetamodelEntries, new HashSet<>(providedModules));
         }
     }
     
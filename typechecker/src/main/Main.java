@@ -14,6 +14,7 @@ import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.cmr.ceylon.CeylonUtils;
 import org.eclipse.ceylon.compiler.typechecker.TypeCheckerBuilder;
 import org.eclipse.ceylon.compiler.typechecker.io.cmr.impl.LeakingLogger;
+import org.eclipse.ceylon.model.typechecker.context.TypeCache;
 
 /**
  * Entry point for the type checker. Pass the source directory 
@@ -44,12 +45,19 @@ public class Main {
         
         String verbose = 
                 System.getProperties().getProperty("verbose");
+        int parallelism = 
+                Integer.getInteger("parallelism", 1);
+        TypeCache.setDefaultMaximumSize(
+                Integer.getInteger("typeCacheSize", 0));
+        TypeCache.setShared(
+                Boolean.getBoolean("sharedTypeCache"));
         //ClosableVirtualFile latestZippedLanguageSourceFile = 
         //        MainHelper.getLatestZippedLanguageSourceFile();
         TypeCheckerBuilder tcb = 
                 new TypeCheckerBuilder()
                     .setRepositoryManager(repositoryManager)
                     .verbose("true".equals(verbose))
+                    .parallelism(parallelism)
                     .statistics(true);
                 //.addSrcDirectory(latestZippedLanguageSourceFile);
         for (String path: args) {
@@ -9,7 +9,12 @@
  ********************************************************************************/
 package org.eclipse.ceylon.compiler.typechecker;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.eclipse.ceylon.cmr.api.RepositoryManager;
 import org.eclipse.ceylon.common.Versions;
@@ -23,6 +28,7 @@ import org.eclipse.ceylon.compiler.typechecker.tree.Message;
 import org.eclipse.ceylon.compiler.typechecker.util.AssertionVisitor;
 import org.eclipse.ceylon.compiler.typechecker.util.ModuleManagerFactory;
 import org.eclipse.ceylon.compiler.typechecker.util.StatisticsVisitor;
+import org.eclipse.ceylon.model.typechecker.context.TypeCache;
 import org.eclipse.ceylon.model.typechecker.model.Module;
 
 /**
@@ -44,6 +50,7 @@ public class TypeChecker {
     private final boolean verifyDependencies;
     private final AssertionVisitor assertionVisitor;
     private final StatisticsVisitor statsVisitor;
+    private final int parallelism;
 
     TypeChecker(VFS vfs, 
             List<VirtualFile> srcDirectories, 
@@ -54,7 +61,8 @@ public class TypeChecker {
             boolean verbose, boolean statistics,
             List<String> moduleFilters, 
             List<VirtualFile> srcFiles, 
-            String encoding) {
+            String encoding,
+            int parallelism) {
         long start = System.nanoTime();
         this.verbose = verbose;
         this.statistics = statistics;
@@ -64,10 +72,12 @@ public class TypeChecker {
                         moduleManagerFactory);
         this.verifyDependencies = verifyDependencies;
         this.assertionVisitor = assertionVisitor;
+        this.parallelism = parallelism;
         statsVisitor = new StatisticsVisitor();
         phasedUnits.setSourceFiles(srcFiles);
         phasedUnits.setModuleFilters(moduleFilters);
         phasedUnits.setEncoding(encoding);
+        phasedUnits.setParallelism(parallelism);
         phasedUnits.parseUnits(srcDirectories);
         long time = System.nanoTime()-start;
         if(statistics)
@@ -192,6 +202,11 @@ public class TypeChecker {
                 pu.runAssertions(assertionVisitor);
             }
             if (verbose||statistics) {
+                for (Module module: 
+                        context.getModules()
+                            .getListOfModules()) {
+                    statsVisitor.addTypeCache(module.getCache());
+                }
                 statsVisitor.print();
             }
             assertionVisitor.print(verbose);
@@ -201,6 +216,10 @@ public class TypeChecker {
 
     protected void executePhases(
             List<PhasedUnit> listOfUnits) {
+        if (parallelism>1 && listOfUnits.size()>1) {
+            executePhasesInParallel(listOfUnits);
+            return;
+        }
         for (PhasedUnit pu : listOfUnits) {
             pu.validateTree();
             pu.scanDeclarations();
@@ -222,6 +241,149 @@ public class TypeChecker {
         }
     }
     
+    /**
+     * The same phases as the sequential loop, but the 
+     * phases which only look at the tree of each unit are 
+     * run over all the units concurrently, and every unit 
+     * finishes such a phase before any unit starts the 
+     * next one. The other phases read and fill in the 
+     * shared model, whose lazily computed members, 
+     * supertypes and caches aren't safe for concurrent 
+     * use, and their errors depend on the order in which 
+     * the units are visited, so they're still run in the 
+     * order of the units.
+     */
+    private void executePhasesInParallel(
+            List<PhasedUnit> listOfUnits) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Phase phase: Phase.values()) {
+                if (phase.isParallel()) {
+                    executePhase(pool, phase, listOfUnits);
+                }
+                else {
+                    for (PhasedUnit pu: listOfUnits) {
+                        phase.run(pu);
+                    }
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void executePhase(ForkJoinPool pool, 
+            final Phase phase, List<PhasedUnit> listOfUnits) {
+        //the worker threads don't inherit the caching 
+        //setting of the calling thread
+        final boolean cachingEnabled = TypeCache.isEnabled();
+        List<Callable<Void>> tasks = 
+                new ArrayList<Callable<Void>>
+                    (listOfUnits.size());
+        for (final PhasedUnit pu: listOfUnits) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Boolean was = 
+                            TypeCache.setEnabled(cachingEnabled);
+                    try {
+                        phase.run(pu);
+                    }
+                    finally {
+                        TypeCache.setEnabled(was);
+                    }
+                    return null;
+                }
+            });
+        }
+        List<Future<Void>> results = pool.invokeAll(tasks);
+        for (Future<Void> result: results) {
+            try {
+                result.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+    
+    private static enum Phase {
+        VALIDATE_TREE {
+            @Override
+            void run(PhasedUnit pu) {
+                pu.validateTree();
+            }
+            /**
+             * Only looks at the tree of the unit, and at
+             * the units and modules which were registered
+             * while parsing.
+             */
+            @Override
+            boolean isParallel() {
+                return true;
+            }
+        },
+        SCAN_DECLARATIONS {
+            @Override
+            void run(PhasedUnit pu) {
+                pu.scanDeclarations();
+            }
+        },
+        SCAN_TYPE_DECLARATIONS {
+            @Override
+            void run(PhasedUnit pu) {
+                pu.scanTypeDeclarations();
+            }
+        },
+        VALIDATE_REFINEMENT {
+            @Override
+            void run(PhasedUnit pu) {
+                pu.validateRefinement();
+            }
+        },
+        ANALYSE_TYPES {
+            @Override
+            void run(PhasedUnit pu) {
+                pu.analyseTypes();
+            }
+        },
+        ANALYSE_FLOW {
+            @Override
+            void run(PhasedUnit pu) {
+                pu.analyseFlow();
+            }
+        },
+        ANALYSE_USAGE {
+            @Override
+            void run(PhasedUnit pu) {
+                pu.analyseUsage();
+            }
+        };
+        
+        abstract void run(PhasedUnit pu);
+        
+        /**
+         * Is the phase run over the units concurrently,
+         * or, when it reads or changes the shared model, 
+         * in the order of the units?
+         */
+        boolean isParallel() {
+            return false;
+        }
+    }
+    
     public int getErrors(){
         return assertionVisitor.getErrors();
     }
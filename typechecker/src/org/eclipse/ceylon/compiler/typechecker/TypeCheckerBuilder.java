@@ -37,6 +37,7 @@ import org.eclipse.ceylon.compiler.typechecker.util.ModuleManagerFactory;
 public class TypeCheckerBuilder {
     private boolean verbose = false;
     private boolean statistics = false;
+    private int parallelism = 1;
     private String encoding;
     private List<VirtualFile> srcDirectories = new ArrayList<VirtualFile>();
     private List<VirtualFile> srcFiles = null;
@@ -134,6 +135,20 @@ public class TypeCheckerBuilder {
         return this;
     }
 
+    /**
+     * Sets the number of threads used to parse the source 
+     * files and to run each type checking phase over the 
+     * source units. The default of 1 does everything 
+     * sequentially.
+     *
+     * @param parallelism number of worker threads
+     * @return type checker builder.
+     */
+    public TypeCheckerBuilder parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
     /**
      * Enables or disables output of the warning messages about unused declarations.
      *
@@ -166,7 +181,7 @@ public class TypeCheckerBuilder {
                     .buildManager();
         }
         return new TypeChecker(vfs, srcDirectories, repositoryManager, verifyDependencies, assertionVisitor,
-                moduleManagerFactory, verbose, statistics, moduleFilters, srcFiles, encoding);
+                moduleManagerFactory, verbose, statistics, moduleFilters, srcFiles, encoding, parallelism);
     }
 
 }
@@ -127,6 +127,7 @@ import org.eclipse.ceylon.model.typechecker.model.TypeDeclaration;
 import org.eclipse.ceylon.model.typechecker.model.TypeParameter;
 import org.eclipse.ceylon.model.typechecker.model.TypedDeclaration;
 import org.eclipse.ceylon.model.typechecker.model.TypedReference;
+import org.eclipse.ceylon.model.typechecker.model.UnionList;
 import org.eclipse.ceylon.model.typechecker.model.Unit;
 import org.eclipse.ceylon.model.typechecker.model.UnknownType;
 import org.eclipse.ceylon.model.typechecker.model.Value;
@@ -383,7 +384,7 @@ public class ExpressionVisitor extends Visitor {
         checkSwitch(switchClause, switchCaseList);
         
         if (switchCaseList!=null) {
-            List<Type> list = new ArrayList<Type>();
+            List<Type> list = new UnionList();
             for (Tree.CaseClause cc: 
                     that.getSwitchCaseList()
                         .getCaseClauses()) {
@@ -10199,7 +10200,7 @@ public class ExpressionVisitor extends Visitor {
         List<Tree.CaseClause> caseClauses = 
                 switchCaseList.getCaseClauses();
         List<Type> list = 
-                new ArrayList<Type>
+                new UnionList
                     (caseClauses.size());
         for (Tree.CaseClause cc: caseClauses) {
             Type ct = getTypeIgnoringLiteralsAndConstants(cc);
@@ -10400,7 +10401,7 @@ public class ExpressionVisitor extends Visitor {
         List<Tree.Type> ts = 
                 ml.getTypes();
         List<Type> list = 
-                new ArrayList<Type>
+                new UnionList
                 (es.size() + ts.size());
         for (Tree.Expression e: es) {
             if (e.getTypeModel()!=null) {
@@ -10440,7 +10441,7 @@ public class ExpressionVisitor extends Visitor {
         List<Tree.Type> ts = 
                 ml.getTypes();
         List<Type> list = 
-                new ArrayList<Type>
+                new UnionList
                 (es.size() + ts.size());
         for (Tree.Expression e: es) {
             if (e.getTypeModel()!=null) {
@@ -10484,7 +10485,7 @@ public class ExpressionVisitor extends Visitor {
         List<Tree.Type> ts = 
                 ml.getTypes();
         List<Type> list = 
-                new ArrayList<Type>
+                new UnionList
                 (es.size() + ts.size());
         for (Tree.Expression e: es) {
             Type tm = e.getTypeModel();
@@ -53,6 +53,11 @@ public class ModuleValidator {
     private final ModuleManager moduleManager;
     private final ModuleSourceMapper moduleManagerUtil;
     private Map<Module, ArtifactResult> searchedArtifacts = new HashMap<Module, ArtifactResult>();
+    /**
+     * The artifacts looked up ahead of their resolution by 
+     * {@link #prefetchArtifacts}, by {@link #getArtifactKey}
+     */
+    private Map<String, ArtifactResult> prefetchedArtifacts = new HashMap<String, ArtifactResult>();
     private Map<Module, List<Module>> moduleToImportPath = new HashMap<>();
 
     public static interface ProgressListener {
@@ -130,6 +135,7 @@ public class ModuleValidator {
                     verifyModuleDependencyTree(module.getImports(), dependencyTree, new ArrayList<Module>(), ImportDepth.First, searchedArtifacts);
                     dependencyTree.pollLast();
                 }
+                prefetchedArtifacts.clear();
                 for (Module module : compiledModules) {
                     verifyNative(module);
                 }
@@ -221,6 +227,7 @@ public class ModuleValidator {
             Map<Module, ArtifactResult> alreadySearchedArtifacts) {
         List<Module> visibleDependencies = new ArrayList<Module>();
         visibleDependencies.add(dependencyTree.getLast()); //first addition => no possible conflict
+        prefetchArtifacts(moduleImports, dependencyTree, alreadySearchedArtifacts);
         for (ModuleImport moduleImport : moduleImports) {
             if (moduleImport.isNative() &&
                     !isForBackend(moduleImport.getNativeBackends(), moduleManager.getSupportedBackends())) {
@@ -256,6 +263,65 @@ public class ModuleValidator {
         }
     }
 
+    /**
+     * Looks up the artifacts of the imported modules which we're 
+     * about to resolve all at once, so that the repository manager
+     * can look them up concurrently. If that fails, we just look 
+     * them up one by one when we resolve them, which reports the
+     * errors.
+     */
+    private void prefetchArtifacts(Collection<ModuleImport> moduleImports,
+            LinkedList<Module> dependencyTree,
+            Map<Module, ArtifactResult> alreadySearchedArtifacts) {
+        RepositoryManager repositoryManager = context.getRepositoryManager();
+        List<String> keys = new ArrayList<String>();
+        List<ArtifactContext> artifactContexts = new ArrayList<ArtifactContext>();
+        for (ModuleImport moduleImport : moduleImports) {
+            if (moduleImport.isNative() &&
+                    !isForBackend(moduleImport.getNativeBackends(), moduleManager.getSupportedBackends())) {
+                continue;
+            }
+            Module module = moduleImport.getModule();
+            if (module.isAvailable()
+                    || alreadySearchedArtifacts.containsKey(module)
+                    || !repositoryManager.isValidNamespace(moduleImport.getNamespace())
+                    || moduleManager.findModule(module, dependencyTree, true) != null) {
+                continue;
+            }
+            String key = getArtifactKey(moduleImport, module);
+            if (prefetchedArtifacts.containsKey(key) || keys.contains(key)) {
+                continue;
+            }
+            keys.add(key);
+            artifactContexts.add(newArtifactContext(moduleImport, module));
+        }
+        if (artifactContexts.size() > 1) {
+            List<ArtifactResult> artifacts;
+            try {
+                artifacts = repositoryManager.getArtifactResultsBatch(artifactContexts);
+            } catch (Exception e) {
+                return;
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                prefetchedArtifacts.put(keys.get(i), artifacts.get(i));
+            }
+        }
+    }
+    
+    /**
+     * The key of the artifact of the given module in 
+     * {@link #prefetchedArtifacts}, which takes its current 
+     * version into account, in case it gets overridden
+     */
+    private static String getArtifactKey(ModuleImport moduleImport, Module module) {
+        return moduleImport.getNamespace() + ":" + module.getNameAsString() + "/" + module.getVersion();
+    }
+    
+    private ArtifactContext newArtifactContext(ModuleImport moduleImport, Module module) {
+        Iterable<String> searchedArtifactExtensions = moduleManager.getSearchedArtifactExtensions();
+        return new ArtifactContext(moduleImport.getNamespace(), module.getNameAsString(), module.getVersion(), getArtifactSuffixes(searchedArtifactExtensions));
+    }
+
     private void resolveModuleIfRequired(Module module, boolean forCompiledModule, ModuleImport moduleImport, 
             ImportDepth importDepth, LinkedList<Module> dependencyTree, 
             Map<Module, ArtifactResult> alreadySearchedArtifacts) {
@@ -270,13 +336,17 @@ public class ModuleValidator {
                 RepositoryManager repositoryManager = context.getRepositoryManager();
                 if (repositoryManager.isValidNamespace(moduleImport.getNamespace())) {
                     Exception exceptionOnGetArtifact = null;
-                    Iterable<String> searchedArtifactExtensions = moduleManager.getSearchedArtifactExtensions();
-                    ArtifactContext artifactContext = new ArtifactContext(moduleImport.getNamespace(), module.getNameAsString(), module.getVersion(), getArtifactSuffixes(searchedArtifactExtensions));
+                    ArtifactContext artifactContext = newArtifactContext(moduleImport, module);
                     listener.retrievingModuleArtifact(module, artifactContext);
-                    try {
-                        artifact = repositoryManager.getArtifactResult(artifactContext);
-                    } catch (Exception e) {
-                        exceptionOnGetArtifact = catchIfPossible(e);
+                    String key = getArtifactKey(moduleImport, module);
+                    if (prefetchedArtifacts.containsKey(key)) {
+                        artifact = prefetchedArtifacts.remove(key);
+                    } else {
+                        try {
+                            artifact = repositoryManager.getArtifactResult(artifactContext);
+                        } catch (Exception e) {
+                            exceptionOnGetArtifact = catchIfPossible(e);
+                        }
                     }
                     if (artifact == null) {
                         boolean error = true;
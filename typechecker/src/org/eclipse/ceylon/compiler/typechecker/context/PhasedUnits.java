@@ -13,6 +13,11 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 import org.antlr.runtime.ANTLRInputStream;
@@ -45,6 +50,9 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
     private Set<VirtualFile> sourceFiles  = new HashSet<VirtualFile>();
     private String encoding;
     private List<VirtualFile> srcDirectories;
+    private int parallelism = 1;
+    private ExecutorService parserPool;
+    private List<PendingUnit> pendingUnits;
 
     public PhasedUnits(Context context) {
         this.context = context;
@@ -89,14 +97,73 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
         return moduleSourceMapper;
     }
 
+    /**
+     * Sets the number of threads used to lex and parse the
+     * source files in {@link #parseUnits(List)}. The default
+     * of 1 parses them one after another.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
     public void parseUnits(List<VirtualFile> srcDirectories) {
         this.srcDirectories = srcDirectories;
-        for (VirtualFile file : srcDirectories) {
-            parseUnit(file, file);
+        if (parallelism > 1) {
+            parseUnitsInParallel(srcDirectories);
+        }
+        else {
+            for (VirtualFile file : srcDirectories) {
+                parseUnit(file, file);
+            }
         }
         this.srcDirectories = null;
     }
 
+    /**
+     * The source directories are walked just like in the
+     * sequential case, since the walk keeps track of the
+     * current module and package, but each file is handed
+     * to a bounded pool to be lexed and parsed. Once the 
+     * walk is done the resulting units are registered in 
+     * the order they were found, so that the later phases 
+     * see them in the same order as in a sequential run.
+     */
+    private void parseUnitsInParallel(List<VirtualFile> srcDirectories) {
+        parserPool = Executors.newFixedThreadPool(parallelism);
+        pendingUnits = new ArrayList<PendingUnit>();
+        try {
+            for (VirtualFile file : srcDirectories) {
+                parseUnit(file, file);
+            }
+            for (PendingUnit pending : pendingUnits) {
+                ParsedFile parsed;
+                try {
+                    parsed = pending.parsed.get();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(e);
+                }
+                catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException("Error while parsing the source file: " + pending.file, cause);
+                }
+                addParsedFile(pending.file, pending.srcDir, pending.pkg, parsed);
+            }
+        }
+        finally {
+            parserPool.shutdownNow();
+            parserPool = null;
+            pendingUnits = null;
+        }
+    }
+
     public void parseUnit(VirtualFile srcDir) {
         parseUnit(srcDir, srcDir);
     }
@@ -130,29 +197,82 @@ public class PhasedUnits extends PhasedUnitMap<PhasedUnit, PhasedUnit> {
                 && (sourceFiles.isEmpty() || sourceFiles.contains(file))) {
 
             //System.out.println("Parsing " + file.getName());
-            CeylonLexer lexer = new CeylonLexer(new ANTLRInputStream(file.getInputStream(), getEncoding()));
-            CommonTokenStream tokenStream = new CommonTokenStream(new CeylonInterpolatingLexer(lexer));
-            CeylonParser parser = new CeylonParser(tokenStream);
-            Tree.CompilationUnit cu = parser.compilationUnit();
-            PhasedUnit phasedUnit = new PhasedUnit(file, srcDir, cu, 
-                    moduleSourceMapper.getCurrentPackage(), moduleManager, moduleSourceMapper,
-                    context, new ArrayList<Token>(tokenStream.getTokens()));
-            addPhasedUnit(file, phasedUnit);
-
-            List<LexError> lexerErrors = lexer.getErrors();
-            for (LexError le : lexerErrors) {
-                //System.out.println("Lexer error in " + file.getName() + ": " + le.getMessage());
-                cu.addLexError(le);
+            Package pkg = moduleSourceMapper.getCurrentPackage();
+            if (pendingUnits != null) {
+                final VirtualFile toParse = file;
+                Future<ParsedFile> parsed = parserPool.submit(new Callable<ParsedFile>() {
+                    @Override
+                    public ParsedFile call() throws Exception {
+                        return parse(toParse);
+                    }
+                });
+                pendingUnits.add(new PendingUnit(file, srcDir, pkg, parsed));
             }
-            lexerErrors.clear();
-
-            List<ParseError> parserErrors = parser.getErrors();
-            for (ParseError pe : parserErrors) {
-                //System.out.println("Parser error in " + file.getName() + ": " + pe.getMessage());
-                cu.addParseError(pe);
+            else {
+                addParsedFile(file, srcDir, pkg, parse(file));
             }
-            parserErrors.clear();
+        }
+    }
+
+    private ParsedFile parse(VirtualFile file) throws Exception {
+        CeylonLexer lexer = new CeylonLexer(new ANTLRInputStream(file.getInputStream(), getEncoding()));
+        CommonTokenStream tokenStream = new CommonTokenStream(new CeylonInterpolatingLexer(lexer));
+        CeylonParser parser = new CeylonParser(tokenStream);
+        Tree.CompilationUnit cu = parser.compilationUnit();
+        return new ParsedFile(cu, new ArrayList<Token>(tokenStream.getTokens()), 
+                lexer.getErrors(), parser.getErrors());
+    }
+
+    private void addParsedFile(VirtualFile file, VirtualFile srcDir, Package pkg, 
+            ParsedFile parsed) {
+        Tree.CompilationUnit cu = parsed.compilationUnit;
+        PhasedUnit phasedUnit = new PhasedUnit(file, srcDir, cu, 
+                pkg, moduleManager, moduleSourceMapper,
+                context, parsed.tokens);
+        addPhasedUnit(file, phasedUnit);
+
+        List<LexError> lexerErrors = parsed.lexerErrors;
+        for (LexError le : lexerErrors) {
+            //System.out.println("Lexer error in " + file.getName() + ": " + le.getMessage());
+            cu.addLexError(le);
+        }
+        lexerErrors.clear();
+
+        List<ParseError> parserErrors = parsed.parserErrors;
+        for (ParseError pe : parserErrors) {
+            //System.out.println("Parser error in " + file.getName() + ": " + pe.getMessage());
+            cu.addParseError(pe);
+        }
+        parserErrors.clear();
+    }
+
+    private static final class ParsedFile {
+        final Tree.CompilationUnit compilationUnit;
+        final List<Token> tokens;
+        final List<LexError> lexerErrors;
+        final List<ParseError> parserErrors;
+
+        ParsedFile(Tree.CompilationUnit compilationUnit, List<Token> tokens,
+                List<LexError> lexerErrors, List<ParseError> parserErrors) {
+            this.compilationUnit = compilationUnit;
+            this.tokens = tokens;
+            this.lexerErrors = lexerErrors;
+            this.parserErrors = parserErrors;
+        }
+    }
+
+    private static final class PendingUnit {
+        final VirtualFile file;
+        final VirtualFile srcDir;
+        final Package pkg;
+        final Future<ParsedFile> parsed;
 
+        PendingUnit(VirtualFile file, VirtualFile srcDir, Package pkg,
+                Future<ParsedFile> parsed) {
+            this.file = file;
+            this.srcDir = srcDir;
+            this.pkg = pkg;
+            this.parsed = parsed;
         }
     }
 
@@ -9,12 +9,17 @@
  ********************************************************************************/
 package org.eclipse.ceylon.compiler.typechecker.util;
 
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
 import org.eclipse.ceylon.compiler.typechecker.tree.Visitor;
 import org.eclipse.ceylon.compiler.typechecker.tree.Tree.AnyAttribute;
 import org.eclipse.ceylon.compiler.typechecker.tree.Tree.AnyMethod;
 import org.eclipse.ceylon.compiler.typechecker.tree.Tree.ClassDefinition;
 import org.eclipse.ceylon.compiler.typechecker.tree.Tree.Declaration;
 import org.eclipse.ceylon.compiler.typechecker.tree.Tree.ExecutableStatement;
+import org.eclipse.ceylon.model.typechecker.context.TypeCache;
 
 public class StatisticsVisitor extends Visitor {
     
@@ -23,6 +28,19 @@ public class StatisticsVisitor extends Visitor {
     private int classes = 0;
     private int methods = 0;
     private int attributes = 0;
+    private final Set<TypeCache> typeCaches = 
+            Collections.newSetFromMap(
+                    new IdentityHashMap<TypeCache,Boolean>());
+    
+    /**
+     * Include the statistics of the given type cache 
+     * in the output. A shared cache is counted once.
+     */
+    public void addTypeCache(TypeCache cache) {
+        if (cache!=null) {
+            typeCaches.add(cache);
+        }
+    }
     
     @Override
     public void visit(ExecutableStatement that) {
@@ -60,6 +78,20 @@ public class StatisticsVisitor extends Visitor {
                         classes + " classes, " + 
                         methods + " functions, " + 
                         attributes + " values");
+        if (!typeCaches.isEmpty()) {
+            long hits = 0, misses = 0, evictions = 0, size = 0;
+            for (TypeCache cache: typeCaches) {
+                hits += cache.getHits();
+                misses += cache.getMisses();
+                evictions += cache.getEvictions();
+                size += cache.size();
+            }
+            System.out.println("Type cache: " + 
+                            hits + " hits, " + 
+                            misses + " misses, " + 
+                            evictions + " evictions, " + 
+                            size + " cached types");
+        }
     }
     
 }
@@ -0,0 +1,115 @@
+/********************************************************************************
+ * Copyright (c) 2011-2017 Red Hat Inc. and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Apache License, Version 2.0 which is available at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ ********************************************************************************/
+package org.eclipse.ceylon.compiler.typechecker.util;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.ceylon.compiler.typechecker.tree.Tree;
+import org.eclipse.ceylon.compiler.typechecker.tree.Visitor;
+import org.eclipse.ceylon.model.typechecker.model.Declaration;
+import org.eclipse.ceylon.model.typechecker.model.Module;
+import org.eclipse.ceylon.model.typechecker.model.Package;
+import org.eclipse.ceylon.model.typechecker.model.Scope;
+import org.eclipse.ceylon.model.typechecker.model.Unit;
+
+/**
+ * Collects the toplevel declarations of other units that a
+ * typechecked unit refers to, directly or through one of
+ * their members, so that we know which units need to be
+ * typechecked again when one of them changes. Declarations
+ * of the language module are not collected, since they
+ * never change between two compilations.
+ *
+ * Declarations are identified by their qualified names,
+ * because they may come from source units or from binary
+ * units, which don't know where their source file is.
+ */
+public class UnitDependencyVisitor extends Visitor {
+
+    private final Unit unit;
+    private final Set<String> dependencies = new TreeSet<String>();
+
+    public UnitDependencyVisitor(Unit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * The qualified names of the toplevel declarations
+     * this unit depends on.
+     */
+    public Set<String> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * The qualified names of the toplevel declarations
+     * of the given unit.
+     */
+    public static Set<String> getDeclarations(Unit unit) {
+        Set<String> declarations = new TreeSet<String>();
+        for (Declaration d: unit.getDeclarations()) {
+            if (d.isToplevel() && d.getName()!=null) {
+                declarations.add(d.getQualifiedNameString());
+            }
+        }
+        return declarations;
+    }
+
+    private void referenced(Declaration d) {
+        if (d==null) return;
+        Unit du = d.getUnit();
+        if (du==null || du==unit) return;
+        Package pkg = du.getPackage();
+        if (pkg==null) return;
+        Module mod = pkg.getModule();
+        if (mod==null || mod.isLanguageModule()) return;
+        Declaration toplevel = d;
+        while (!toplevel.isToplevel()) {
+            Scope container = toplevel.getContainer();
+            if (container instanceof Declaration) {
+                toplevel = (Declaration) container;
+            }
+            else {
+                //something local, only visible
+                //from its own unit anyway
+                return;
+            }
+        }
+        if (toplevel.getName()!=null) {
+            dependencies.add(toplevel.getQualifiedNameString());
+        }
+    }
+
+    @Override
+    public void visit(Tree.MemberOrTypeExpression that) {
+        super.visit(that);
+        referenced(that.getDeclaration());
+    }
+
+    @Override
+    public void visit(Tree.SimpleType that) {
+        super.visit(that);
+        referenced(that.getDeclarationModel());
+    }
+
+    @Override
+    public void visit(Tree.ImportMemberOrType that) {
+        super.visit(that);
+        referenced(that.getDeclarationModel());
+    }
+
+    @Override
+    public void visit(Tree.MemberLiteral that) {
+        super.visit(that);
+        referenced(that.getDeclaration());
+    }
+
+}